@@ -0,0 +1,38 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the benchmarks with the usual JMH command line and always adds the GC profiler,
+ * so that the allocation rate per operation is reported next to the throughput.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regexp]
+ * </pre>
+ */
+public class BenchmarkMain
+{
+   public static void main(String[] args) throws Exception
+   {
+      Options options = new OptionsBuilder()
+         .parent(new CommandLineOptions(args))
+         .addProfiler(GCProfiler.class)
+         .build();
+
+      new Runner(options).run();
+   }
+}
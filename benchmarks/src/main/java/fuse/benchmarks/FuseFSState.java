@@ -0,0 +1,114 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.openjdk.jmh.annotations.Setup;
+
+import fuse.Filesystem;
+import fuse.examples.fake.FakeFilesystem;
+import fuse.impl.FilesystemToFuseFSAdapter;
+import fuse.impl.FuseBuffer;
+import fuse.impl.FuseFS;
+import fuse.impl.FuseOpenSetter;
+
+
+/**
+ * Base of the benchmark states: a FuseFS adapter over a Filesystem, called the way the native
+ * side calls it (paths as direct ByteBuffers), but without mounting anything. Subclasses are
+ * the <code>@State</code> classes and choose the Filesystem.
+ */
+public abstract class FuseFSState
+{
+   public Filesystem fs;
+   public FuseFS fuseFS;
+
+   public final OpenSetter openSetter = new OpenSetter();
+   public final FuseBuffer bufferSetter = new FuseBuffer();
+
+
+   @Setup
+   public void setupFuseFS()
+   {
+      fs = createFilesystem();
+      fuseFS = new FilesystemToFuseFSAdapter(fs, null);
+   }
+
+   protected abstract Filesystem createFilesystem();
+
+   /**
+    * @param name <code>fake</code> for the FakeFilesystem example or <code>noop</code> for a NoopFilesystem
+    * @param dirSize number of entries in a NoopFilesystem directory
+    */
+   public static Filesystem createFilesystem(String name, int dirSize)
+   {
+      if (name.equals("fake"))
+         return new FakeFilesystem();
+      if (name.equals("noop"))
+         return new NoopFilesystem(dirSize);
+
+      throw new IllegalArgumentException("unknown filesystem: " + name);
+   }
+
+   /**
+    * Encodes <code>str</code> into a direct ByteBuffer the way the native side passes paths and names.
+    */
+   public ByteBuffer encode(String str)
+   {
+      byte[] bytes = str.getBytes(Charset.forName("UTF-8"));
+      ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+      buf.put(bytes).flip();
+      return buf;
+   }
+
+   /**
+    * Throws if a FuseFS call returned an error, so that a benchmark never silently measures an error path.
+    */
+   public static void check(int errno, String op)
+   {
+      if (errno != 0)
+         throw new IllegalStateException(op + " failed with errno " + errno);
+   }
+
+
+   public static final class OpenSetter implements FuseOpenSetter
+   {
+      public long fh;
+      private boolean directIO;
+      private boolean keepCache;
+
+      public void setFh(long fh)
+      {
+         this.fh = fh;
+      }
+
+      public boolean isDirectIO()
+      {
+         return directIO;
+      }
+
+      public void setDirectIO(boolean directIO)
+      {
+         this.directIO = directIO;
+      }
+
+      public boolean isKeepCache()
+      {
+         return keepCache;
+      }
+
+      public void setKeepCache(boolean keepCache)
+      {
+         this.keepCache = keepCache;
+      }
+   }
+}
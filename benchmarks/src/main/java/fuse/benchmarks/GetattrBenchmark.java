@@ -0,0 +1,82 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fuse.Errno;
+import fuse.Filesystem;
+import fuse.impl.FuseGetattrBuffer;
+
+
+/**
+ * getattr() through the flat attribute buffer, for an existing path and for ENOENT.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetattrBenchmark
+{
+   @State(Scope.Thread)
+   public static class GetattrState extends FuseFSState
+   {
+      @Param({"fake", "noop"})
+      public String filesystem;
+
+      public ByteBuffer existing;
+      public ByteBuffer missing;
+      public ByteBuffer attr;
+
+      protected Filesystem createFilesystem()
+      {
+         return createFilesystem(filesystem, 0);
+      }
+
+      @Setup
+      public void setupPaths()
+      {
+         existing = encode("/README");
+         missing = encode("/missing");
+         attr = ByteBuffer.allocateDirect(FuseGetattrBuffer.LENGTH);
+      }
+   }
+
+
+   @Benchmark
+   public int hit(GetattrState state)
+   {
+      int errno = state.fuseFS.getattr(state.existing, state.attr);
+      FuseFSState.check(errno, "getattr");
+      return errno;
+   }
+
+   @Benchmark
+   public int miss(GetattrState state)
+   {
+      int errno = state.fuseFS.getattr(state.missing, state.attr);
+      if (errno != Errno.ENOENT.getErrno())
+         throw new IllegalStateException("getattr returned " + errno + " instead of ENOENT");
+      return errno;
+   }
+}
@@ -0,0 +1,71 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fuse.Filesystem;
+import fuse.impl.FuseFSDirFiller;
+
+
+/**
+ * getdir() of a NoopFilesystem directory with the given number of entries, collected into a
+ * reused FuseFSDirFiller like the per-thread one of the native getdir. FakeFilesystem is left out
+ * as its directories have a fixed handful of entries. readdir() is not covered because its filler
+ * writes straight into the libfuse reply buffer and needs the native library.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetdirBenchmark
+{
+   @State(Scope.Thread)
+   public static class GetdirState extends FuseFSState
+   {
+      @Param({"10", "1000", "100000", "1000000"})
+      public int entries;
+
+      public ByteBuffer path;
+      public final FuseFSDirFiller dirFiller = new FuseFSDirFiller();
+
+      protected Filesystem createFilesystem()
+      {
+         return new NoopFilesystem(entries);
+      }
+
+      @Setup
+      public void setupPath()
+      {
+         path = encode("/");
+      }
+   }
+
+
+   @Benchmark
+   public int getdir(GetdirState state)
+   {
+      FuseFSState.check(state.fuseFS.getdir(state.path, state.dirFiller), "getdir");
+      return state.dirFiller.size();
+   }
+}
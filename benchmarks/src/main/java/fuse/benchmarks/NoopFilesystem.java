@@ -0,0 +1,102 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.benchmarks;
+
+import java.nio.ByteBuffer;
+
+import fuse.Errno;
+import fuse.Filesystem;
+import fuse.FuseAttrSetter;
+import fuse.FuseDirFiller;
+import fuse.FuseException;
+import fuse.FuseFileInfo;
+import fuse.Mode;
+import fuse.XattrLister;
+
+
+/**
+ * A Filesystem that does as little as possible, so that benchmarks measure the bridge and
+ * not the filesystem. Every path exists except those starting with <code>/missing</code>,
+ * files have any size, reads and writes only move the buffer position and every directory
+ * has <code>dirSize</code> entries.
+ */
+public class NoopFilesystem extends Filesystem
+{
+   private static final Object FH = new Object();
+   private static final byte[] XATTR_VALUE = "text/plain".getBytes();
+
+   private final String[] names;
+
+   public NoopFilesystem(int dirSize)
+   {
+      names = new String[dirSize];
+      for (int i = 0; i < dirSize; i++)
+         names[i] = "file" + i;
+   }
+
+   public void getattr(String path, FuseAttrSetter attrSetter) throws FuseException
+   {
+      if (path.startsWith("/missing"))
+         throw FuseException.shared(Errno.ENOENT);
+
+      attrSetter.set(1, Mode.TYPE_FILE.getMode() | 0644, 1, 0, 0, 0, 1 << 30, 1 << 21, 0, 0, 0);
+   }
+
+   public void getdir(String path, FuseDirFiller dirFiller) throws FuseException
+   {
+      int mode = Mode.TYPE_FILE.getMode() | 0644;
+
+      for (int i = 0; i < names.length; i++)
+         dirFiller.add(names[i], i + 2, mode);
+   }
+
+   public void open(String path, FuseFileInfo ffi) throws FuseException
+   {
+      ffi.setFh(FH);
+   }
+
+   public void read(String path, Object fh, ByteBuffer buf, long offset) throws FuseException
+   {
+      buf.position(buf.limit());
+   }
+
+   public void write(String path, Object fh, boolean isWritepage, ByteBuffer buf, long offset) throws FuseException
+   {
+      buf.position(buf.limit());
+   }
+
+   public void flush(String path, Object fh) throws FuseException
+   {
+   }
+
+   public void release(String path, Object fh, int flags) throws FuseException
+   {
+   }
+
+   public void getxattr(String path, String name, ByteBuffer dst) throws FuseException
+   {
+      dst.put(XATTR_VALUE);
+   }
+
+   public void listxattr(String path, XattrLister lister) throws FuseException
+   {
+      lister.add("mimetype");
+      lister.add("description");
+   }
+
+   public void setxattr(String path, String name, ByteBuffer value, XAttrSetMode flags) throws FuseException
+   {
+      value.position(value.limit());
+   }
+
+   public void removexattr(String path, String name) throws FuseException
+   {
+   }
+}
@@ -0,0 +1,101 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fuse.Filesystem;
+
+
+/**
+ * open(), read() and release() of a file of FakeFilesystem and of NoopFilesystem, the latter
+ * measuring only the bridge. The read buffer is a direct ByteBuffer like the one the native side
+ * wraps around the libfuse buffer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark
+{
+   @State(Scope.Thread)
+   public static class ReadState extends FuseFSState
+   {
+      @Param({"fake", "noop"})
+      public String filesystem;
+
+      @Param({"4096", "65536", "1048576"})
+      public int size;
+
+      public ByteBuffer path;
+      public ByteBuffer buf;
+
+      // handle of the file kept open for read()
+      public long fh;
+
+      protected Filesystem createFilesystem()
+      {
+         return createFilesystem(filesystem, 0);
+      }
+
+      @Setup
+      public void setupBuffers()
+      {
+         path = encode(filesystem.equals("fake")? "/README" : "/file");
+         buf = ByteBuffer.allocateDirect(size);
+
+         FuseFSState.check(fuseFS.open(path, 0, openSetter), "open");
+         fh = openSetter.fh;
+      }
+
+      @TearDown
+      public void releaseFile()
+      {
+         FuseFSState.check(fuseFS.release(path, fh, 0), "release");
+      }
+   }
+
+
+   @Benchmark
+   public int openReadRelease(ReadState state)
+   {
+      FuseFSState.check(state.fuseFS.open(state.path, 0, state.openSetter), "open");
+      long fh = state.openSetter.fh;
+
+      state.buf.clear();
+      FuseFSState.check(state.fuseFS.read(state.path, fh, state.buf, 0), "read");
+
+      FuseFSState.check(state.fuseFS.release(state.path, fh, 0), "release");
+
+      return state.buf.position();
+   }
+
+   @Benchmark
+   public int read(ReadState state)
+   {
+      state.buf.clear();
+      FuseFSState.check(state.fuseFS.read(state.path, state.fh, state.buf, 0), "read");
+      return state.buf.position();
+   }
+}
@@ -0,0 +1,80 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fuse.Filesystem;
+
+
+/**
+ * write() of a NoopFilesystem file from a direct ByteBuffer of the given size and setxattr()
+ * of a value of that size. FakeFilesystem is read-only, so there is nothing to compare it with.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark
+{
+   @State(Scope.Thread)
+   public static class WriteState extends FuseFSState
+   {
+      @Param({"4096", "65536", "1048576"})
+      public int size;
+
+      public ByteBuffer path;
+      public ByteBuffer name;
+      public ByteBuffer buf;
+
+      protected Filesystem createFilesystem()
+      {
+         return new NoopFilesystem(0);
+      }
+
+      @Setup
+      public void setupBuffers()
+      {
+         path = encode("/file");
+         name = encode("description");
+         buf = ByteBuffer.allocateDirect(size);
+      }
+   }
+
+
+   @Benchmark
+   public int write(WriteState state)
+   {
+      state.buf.clear();
+      FuseFSState.check(state.fuseFS.write(state.path, 0, false, state.buf, 0), "write");
+      return state.buf.position();
+   }
+
+   @Benchmark
+   public int setxattr(WriteState state)
+   {
+      state.buf.clear();
+      FuseFSState.check(state.fuseFS.setxattr(state.path, state.name, state.buf, 0), "setxattr");
+      return state.buf.position();
+   }
+}
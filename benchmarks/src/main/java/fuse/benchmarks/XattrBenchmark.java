@@ -0,0 +1,82 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fuse.Filesystem;
+
+
+/**
+ * The getxattr() and listxattr() upcalls, each answers both the size probe and the fetch.
+ * setxattr() is in WriteBenchmark because FakeFilesystem is read only.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XattrBenchmark
+{
+   @State(Scope.Thread)
+   public static class XattrState extends FuseFSState
+   {
+      @Param({"fake", "noop"})
+      public String filesystem;
+
+      public ByteBuffer path;
+      public ByteBuffer name;
+      public ByteBuffer value;
+
+      protected Filesystem createFilesystem()
+      {
+         return createFilesystem(filesystem, 0);
+      }
+
+      @Setup
+      public void setupBuffers()
+      {
+         path = encode("/README");
+         name = encode("description");
+         value = ByteBuffer.allocateDirect(4096);
+      }
+   }
+
+
+   @Benchmark
+   public int getxattr(XattrState state)
+   {
+      FuseFSState.check(state.fuseFS.getxattr(state.path, state.name, state.bufferSetter), "getxattr");
+      state.value.clear();
+      state.value.put(state.bufferSetter.buffer);
+      return state.value.position();
+   }
+
+   @Benchmark
+   public int listxattr(XattrState state)
+   {
+      FuseFSState.check(state.fuseFS.listxattr(state.path, state.bufferSetter), "listxattr");
+      state.value.clear();
+      state.value.put(state.bufferSetter.buffer);
+      return state.value.position();
+   }
+}
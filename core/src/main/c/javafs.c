@@ -12,24 +12,26 @@
 //
 // JVM allocation/deallocation
 
-static JavaVM *vm;
-static JNIEnv *mainEnv;
-
-static jclass_fuse_FuseGetattr *FuseGetattr;
-static jclass_fuse_FuseFSDirEnt *FuseFSDirEnt;
-static jclass_fuse_FuseFSDirFiller *FuseFSDirFiller;
-static jclass_fuse_FuseStatfs *FuseStatfs;
-static jclass_fuse_FuseOpen *FuseOpen;
-static jclass_fuse_FuseSize *FuseSize;
-static jclass_fuse_FuseContext *FuseContext;
-static jclass_java_nio_ByteBuffer *ByteBuffer;
+JavaVM *vm;
+JNIEnv *mainEnv;
+
+jclass_fuse_FuseGetattr *FuseGetattr;
+jclass_fuse_impl_FuseFSDirFiller *FuseFSDirFiller;
+jclass_fuse_FuseStatfs *FuseStatfs;
+jclass_fuse_FuseOpen *FuseOpen;
+jclass_fuse_FuseSize *FuseSize;
+jclass_fuse_FuseContext *FuseContext;
+jclass_java_nio_ByteBuffer *ByteBuffer;
 static jclass_fuse_FuseFS *FuseFS;
+static jclass_fuse_FuseFSFillDir *FuseFSFillDir;
+static jclass_fuse_impl_FuseBuffer *FuseBuffer;
+static jclass_fuse_impl_FuseRegion *FuseRegion;
 
 static jobject fuseFS;
-static jobject threadGroup;
+jobject threadGroup;
 
 
-static void free_fuseFS(JNIEnv *env)
+void free_fuseFS(JNIEnv *env)
 {
    if (fuseFS != NULL)
    {
@@ -39,7 +41,7 @@ static void free_fuseFS(JNIEnv *env)
 }
 
 
-static int retain_fuseFS(JNIEnv *env, jobject util)
+int retain_fuseFS(JNIEnv *env, jobject util)
 {
    fuseFS = (*env)->NewGlobalRef(env, util);
 
@@ -53,7 +55,7 @@ static int retain_fuseFS(JNIEnv *env, jobject util)
 }
 
 
-static void free_threadGroup(JNIEnv *env)
+void free_threadGroup(JNIEnv *env)
 {
    if (threadGroup != NULL)
    {
@@ -63,7 +65,7 @@ static void free_threadGroup(JNIEnv *env)
 }
 
 
-static int retain_threadGroup(JNIEnv *env, jobject util)
+int retain_threadGroup(JNIEnv *env, jobject util)
 {
    threadGroup = (*env)->NewGlobalRef(env, util);
 
@@ -115,31 +117,946 @@ err:
 }
 
 
-static void free_classes(JNIEnv *env)
+//
+// per-thread reusable direct ByteBuffers
+//
+// Every native thread keeps one direct ByteBuffer per argument slot. Instead of creating a new
+// ByteBuffer (and a new Java object) on each upcall, the cached buffer is re-pointed at the
+// incoming char* and size by rewriting the address/capacity/limit/position/mark fields of
+// java.nio.Buffer, and the byte order is reset to BIG_ENDIAN, so every call gets a buffer as
+// fresh as a new one. Java code must therefore never retain these buffers beyond the call.
+// The slots (BUF_PATH, BUF_NAME, BUF_DATA, BUF_ATTR) are defined in javafs.h.
+
+typedef struct _thread_buffers
+{
+   JNIEnv *env;
+   jobject buf[BUF_SLOTS];
+   jobject bufferSetter;       // fuse.impl.FuseBuffer passed to FuseFS.readBuffer()
+   jobject regionSetter;       // fuse.impl.FuseRegion passed to FuseFS.readRegion()/writeRegion()
+   jobject context;            // direct ByteBuffer behind fuse.FuseContext.current() of the thread
+   jobject dirFiller;          // fuse.impl.FuseFSDirFiller passed to FuseFS.getdir()/FuseLowlevelFS.readdir()
+   char *readBuf;              // reply memory of the low-level read
+   size_t readBufSize;
+   int replyFd;                // region descriptor libfuse splices from after javafs_read_buf() returned, -1 if none
+   javafs_context *contextData;
+   struct _thread_buffers *next;
+} thread_buffers;
+
+static pthread_key_t threadBuffersKey;
+static int threadBuffersKeyCreated;
+static pthread_mutex_t threadBuffersLock = PTHREAD_MUTEX_INITIALIZER;
+static thread_buffers *threadBuffersList;
+// buffers of terminated threads whose global references are still to be deleted
+static thread_buffers *retiredThreadBuffers;
+
+static struct
+{
+   jfieldID address;
+   jfieldID capacity;
+   jfieldID limit;
+   jfieldID position;
+   jfieldID mark;
+   jfieldID bigEndian;         // java.nio.ByteBuffer
+   jfieldID nativeByteOrder;
+} BufferField;
+
+// the value of ByteBuffer.nativeByteOrder for BIG_ENDIAN
+static jboolean bigEndianIsNative;
+
+
+static void delete_thread_buffers(JNIEnv *env, thread_buffers *tb)
+{
+   int i;
+
+   for (i = 0; i < BUF_SLOTS; i++)
+      if (tb->buf[i] != NULL) (*env)->DeleteGlobalRef(env, tb->buf[i]);
+   if (tb->bufferSetter != NULL) (*env)->DeleteGlobalRef(env, tb->bufferSetter);
+   if (tb->regionSetter != NULL) (*env)->DeleteGlobalRef(env, tb->regionSetter);
+   if (tb->context != NULL) (*env)->DeleteGlobalRef(env, tb->context);
+   if (tb->dirFiller != NULL) (*env)->DeleteGlobalRef(env, tb->dirFiller);
+   if (tb->replyFd != -1) close(tb->replyFd);
+
+   free(tb->readBuf);
+   free(tb);
+}
+
+
+// called with threadBuffersLock held
+static void unlink_thread_buffers(thread_buffers *tb)
+{
+   thread_buffers **p;
+
+   for (p = &threadBuffersList; *p != NULL; p = &(*p)->next)
+   {
+      if (*p == tb)
+      {
+         *p = tb->next;
+         break;
+      }
+   }
+}
+
+
+// destructor of threadBuffersKey, for threads that terminate without detach_env() (threads the
+// first upcall attached on demand); the thread may already be detached from the JVM here, so the
+// global references are deleted later by a thread that is attached
+static void retire_thread_buffers(void *data)
+{
+   thread_buffers *tb = (thread_buffers *) data;
+
+   // the last reply of the thread has been sent
+   if (tb->replyFd != -1)
+   {
+      close(tb->replyFd);
+      tb->replyFd = -1;
+   }
+
+   pthread_mutex_lock(&threadBuffersLock);
+   unlink_thread_buffers(tb);
+   tb->next = retiredThreadBuffers;
+   retiredThreadBuffers = tb;
+   pthread_mutex_unlock(&threadBuffersLock);
+}
+
+
+static void free_retired_thread_buffers(JNIEnv *env)
+{
+   thread_buffers *tb;
+   thread_buffers *next;
+
+   pthread_mutex_lock(&threadBuffersLock);
+   tb = retiredThreadBuffers;
+   retiredThreadBuffers = NULL;
+   pthread_mutex_unlock(&threadBuffersLock);
+
+   for (; tb != NULL; tb = next)
+   {
+      next = tb->next;
+      delete_thread_buffers(env, tb);
+   }
+}
+
+
+static int alloc_thread_buffers(JNIEnv *env)
+{
+   uint16_t one = 1;
+   jclass bufferClass = (*env)->FindClass(env, "java/nio/Buffer");
+   if ((*env)->ExceptionCheck(env)) return 0;
+
+   BufferField.address  = (*env)->GetFieldID(env, bufferClass, "address", "J");
+   BufferField.capacity = (*env)->GetFieldID(env, bufferClass, "capacity", "I");
+   BufferField.limit    = (*env)->GetFieldID(env, bufferClass, "limit", "I");
+   BufferField.position = (*env)->GetFieldID(env, bufferClass, "position", "I");
+   BufferField.mark     = (*env)->GetFieldID(env, bufferClass, "mark", "I");
+
+   (*env)->DeleteLocalRef(env, bufferClass);
+
+   if ((*env)->ExceptionCheck(env)) return 0;
+
+   bufferClass = (*env)->FindClass(env, "java/nio/ByteBuffer");
+   if ((*env)->ExceptionCheck(env)) return 0;
+
+   BufferField.bigEndian       = (*env)->GetFieldID(env, bufferClass, "bigEndian", "Z");
+   BufferField.nativeByteOrder = (*env)->GetFieldID(env, bufferClass, "nativeByteOrder", "Z");
+
+   (*env)->DeleteLocalRef(env, bufferClass);
+
+   if ((*env)->ExceptionCheck(env)) return 0;
+
+   bigEndianIsNative = (*(uint8_t *)&one == 0)? JNI_TRUE : JNI_FALSE;
+
+   if (pthread_key_create(&threadBuffersKey, retire_thread_buffers) != 0)
+      return 0;
+
+   threadBuffersKeyCreated = 1;
+
+   return 1;
+}
+
+
+static void free_thread_buffers(JNIEnv *env)
+{
+   thread_buffers *tb;
+
+   // no destructor may run on the structures freed below
+   if (threadBuffersKeyCreated)
+   {
+      pthread_key_delete(threadBuffersKey);
+      threadBuffersKeyCreated = 0;
+   }
+
+   pthread_mutex_lock(&threadBuffersLock);
+
+   while ((tb = threadBuffersList) != NULL)
+   {
+      threadBuffersList = tb->next;
+      delete_thread_buffers(env, tb);
+   }
+
+   pthread_mutex_unlock(&threadBuffersLock);
+
+   free_retired_thread_buffers(env);
+}
+
+
+static thread_buffers *get_thread_buffers(JNIEnv *env)
+{
+   thread_buffers *tb = (thread_buffers *) pthread_getspecific(threadBuffersKey);
+
+   if (tb != NULL)
+   {
+      // global references survive a detach and re-attach of the thread
+      tb->env = env;
+      return tb;
+   }
+
+   // a new thread, a good time to clean up after the terminated ones
+   free_retired_thread_buffers(env);
+
+   tb = (thread_buffers *) calloc(1, sizeof(thread_buffers));
+   if (tb == NULL)
+      return NULL;
+
+   tb->env = env;
+   tb->replyFd = -1;
+
+   pthread_mutex_lock(&threadBuffersLock);
+   tb->next = threadBuffersList;
+   threadBuffersList = tb;
+   pthread_mutex_unlock(&threadBuffersLock);
+
+   pthread_setspecific(threadBuffersKey, tb);
+
+   TRACE("allocated thread buffers for env: %p", env);
+
+   return tb;
+}
+
+
+// write the caller of the current operation into the fuse.FuseContext of the thread; the
+// buffer is looked up once per thread and never touched through JNI again
+void set_context(JNIEnv *env, uid_t uid, gid_t gid, pid_t pid, mode_t umask)
+{
+   thread_buffers *tb = get_thread_buffers(env);
+   javafs_context *context;
+
+   if (tb == NULL)
+      return;
+
+   if (tb->context == NULL)
+   {
+      jobject jContext = (*env)->CallStaticObjectMethod(env, FuseContext->class, FuseContext->static_method.threadBuffer);
+
+      if ((*env)->ExceptionCheck(env))
+      {
+         (*env)->ExceptionDescribe(env);
+         (*env)->ExceptionClear(env);
+         return;
+      }
+
+      tb->contextData = (javafs_context *) (*env)->GetDirectBufferAddress(env, jContext);
+      tb->context = (*env)->NewGlobalRef(env, jContext);
+      (*env)->DeleteLocalRef(env, jContext);
+   }
+
+   context = tb->contextData;
+   if (context == NULL)
+      return;
+
+   context->uid = (int32_t) uid;
+   context->gid = (int32_t) gid;
+   context->pid = (int32_t) pid;
+   context->umask = (int32_t) umask;
+}
+
+
+jobject wrap_buffer(JNIEnv *env, int slot, void *address, size_t size)
+{
+   thread_buffers *tb = get_thread_buffers(env);
+   jobject jBuf;
+
+   if (tb == NULL)
+      return NULL;
+
+   jBuf = tb->buf[slot];
+
+   if (jBuf == NULL)
+   {
+      // 1st use of this slot on this thread
+      jobject jLocal = (*env)->NewDirectByteBuffer(env, address, (jlong)size);
+      if (jLocal == NULL)
+         return NULL;
+
+      tb->buf[slot] = (*env)->NewGlobalRef(env, jLocal);
+      (*env)->DeleteLocalRef(env, jLocal);
+
+      return tb->buf[slot];
+   }
+
+   (*env)->SetLongField(env, jBuf, BufferField.address, (jlong)(intptr_t)address);
+   (*env)->SetIntField(env, jBuf, BufferField.capacity, (jint)size);
+   (*env)->SetIntField(env, jBuf, BufferField.limit, (jint)size);
+   (*env)->SetIntField(env, jBuf, BufferField.position, 0);
+   (*env)->SetIntField(env, jBuf, BufferField.mark, -1);
+   // order() of the previous call
+   (*env)->SetBooleanField(env, jBuf, BufferField.bigEndian, JNI_TRUE);
+   (*env)->SetBooleanField(env, jBuf, BufferField.nativeByteOrder, bigEndianIsNative);
+
+   return jBuf;
+}
+
+
+jint buffer_position(JNIEnv *env, jobject jBuf)
+{
+   return (*env)->GetIntField(env, jBuf, BufferField.position);
+}
+
+
+// address of the remaining bytes of a direct ByteBuffer (also a MappedByteBuffer or a slice)
+void *buffer_data(JNIEnv *env, jobject jBuf, size_t *length)
+{
+   char *address = (char *)(intptr_t)(*env)->GetLongField(env, jBuf, BufferField.address);
+   jint position = (*env)->GetIntField(env, jBuf, BufferField.position);
+   jint limit = (*env)->GetIntField(env, jBuf, BufferField.limit);
+
+   if (address == NULL || limit < position)
+   {
+      *length = 0;
+      return NULL;
+   }
+
+   *length = (size_t)(limit - position);
+
+   return address + position;
+}
+
+
+// the per-thread FuseBufferSetter, created on first use like the buffers
+static jobject thread_buffer_setter(JNIEnv *env)
+{
+   thread_buffers *tb = get_thread_buffers(env);
+   jobject jLocal;
+
+   if (tb == NULL)
+      return NULL;
+
+   if (tb->bufferSetter == NULL)
+   {
+      jLocal = (*env)->NewObject(env, FuseBuffer->class, FuseBuffer->constructor.new);
+      if (jLocal == NULL)
+         return NULL;
+
+      tb->bufferSetter = (*env)->NewGlobalRef(env, jLocal);
+      (*env)->DeleteLocalRef(env, jLocal);
+   }
+
+   return tb->bufferSetter;
+}
+
+
+// the per-thread FuseRegionSetter
+static jobject thread_region_setter(JNIEnv *env)
+{
+   thread_buffers *tb = get_thread_buffers(env);
+   jobject jLocal;
+
+   if (tb == NULL)
+      return NULL;
+
+   if (tb->regionSetter == NULL)
+   {
+      jLocal = (*env)->NewObject(env, FuseRegion->class, FuseRegion->constructor.new);
+      if (jLocal == NULL)
+         return NULL;
+
+      tb->regionSetter = (*env)->NewGlobalRef(env, jLocal);
+      (*env)->DeleteLocalRef(env, jLocal);
+   }
+
+   return tb->regionSetter;
+}
+
+
+// keeps fd open until the next call on the thread, by then libfuse has spliced the previous
+// reply from it; closes the one kept before
+static void thread_reply_fd(JNIEnv *env, int fd)
+{
+   thread_buffers *tb = get_thread_buffers(env);
+
+   if (tb == NULL)
+   {
+      if (fd != -1) close(fd);
+      return;
+   }
+
+   if (tb->replyFd != -1)
+      close(tb->replyFd);
+
+   tb->replyFd = fd;
+}
+
+
+// per-thread memory for a reply of at least size bytes, reused by the next call on the thread
+void *thread_read_buffer(JNIEnv *env, size_t size)
+{
+   thread_buffers *tb = get_thread_buffers(env);
+   char *buf;
+
+   if (tb == NULL)
+      return NULL;
+
+   if (tb->readBufSize < size)
+   {
+      buf = (char *) malloc(size);
+      if (buf == NULL)
+         return NULL;
+
+      free(tb->readBuf);
+      tb->readBuf = buf;
+      tb->readBufSize = size;
+   }
+
+   return tb->readBuf;
+}
+
+
+// the per-thread FuseFSDirFiller, reset by the adapter before every getdir()/readdir
+jobject thread_dir_filler(JNIEnv *env)
+{
+   thread_buffers *tb = get_thread_buffers(env);
+   jobject jLocal;
+
+   if (tb == NULL)
+      return NULL;
+
+   if (tb->dirFiller == NULL)
+   {
+      jLocal = (*env)->NewObject(env, FuseFSDirFiller->class, FuseFSDirFiller->constructor.new);
+      if (jLocal == NULL)
+         return NULL;
+
+      tb->dirFiller = (*env)->NewGlobalRef(env, jLocal);
+      (*env)->DeleteLocalRef(env, jLocal);
+   }
+
+   return tb->dirFiller;
+}
+
+
+// the records a FuseFSDirFiller collected, valid until the next call on the same thread
+javafs_dirent *dir_filler_records(JNIEnv *env, jobject jDirFiller, size_t *length)
+{
+   jobject jBuf;
+   char *address;
+
+   *length = 0;
+
+   jBuf = (*env)->GetObjectField(env, jDirFiller, FuseFSDirFiller->field.buffer);
+   if (jBuf == NULL)
+      return NULL;
+
+   address = (char *)(intptr_t)(*env)->GetLongField(env, jBuf, BufferField.address);
+   if (address != NULL)
+      *length = (size_t)buffer_position(env, jBuf);
+
+   (*env)->DeleteLocalRef(env, jBuf);
+
+   return (javafs_dirent *)address;
+}
+
+
+// java.io.FileDescriptor.fd, JNI field access is not subject to the Java access checks
+static jfieldID FileDescriptorFd;
+
+static int alloc_file_descriptor(JNIEnv *env)
+{
+   jclass fdClass = (*env)->FindClass(env, "java/io/FileDescriptor");
+   if ((*env)->ExceptionCheck(env)) return 0;
+
+   FileDescriptorFd = (*env)->GetFieldID(env, fdClass, "fd", "I");
+
+   (*env)->DeleteLocalRef(env, fdClass);
+
+   return !(*env)->ExceptionCheck(env);
+}
+
+
+// take the region out of the setter (it must not stay reachable after the call),
+// returns a duplicate of the file descriptor, which the caller closes, or -1 if no region was
+// set. The duplicate stays valid when Java closes the descriptor (or a Cleaner does) and its
+// number is reused before libfuse is done with the region.
+static int take_region(JNIEnv *env, jobject jSetter, off_t *position, size_t *length, jint *jerrno)
+{
+   jobject jFd = (*env)->GetObjectField(env, jSetter, FuseRegion->field.fd);
+   int fd = -1;
+
+   if (jFd != NULL)
+   {
+      fd = dup((int) (*env)->GetIntField(env, jFd, FileDescriptorFd));
+      if (fd == -1)
+         *jerrno = errno;
+
+      *position = (off_t) (*env)->GetLongField(env, jSetter, FuseRegion->field.position);
+      *length = (size_t) (*env)->GetLongField(env, jSetter, FuseRegion->field.length);
+
+      (*env)->SetObjectField(env, jSetter, FuseRegion->field.fd, NULL);
+      (*env)->DeleteLocalRef(env, jFd);
+   }
+
+   return fd;
+}
+
+
+void getattr_to_stat(JNIEnv *env, jobject jGetattr, struct stat *stbuf)
+{
+   memset(stbuf, 0, sizeof(struct stat));
+
+   // inode support fix by Edwin Olson <eolson@mit.edu>
+   stbuf->st_ino =    (ino_t)((*env)->GetLongField(env, jGetattr, FuseGetattr->field.inode));
+   stbuf->st_mode =   (mode_t)((*env)->GetIntField(env, jGetattr, FuseGetattr->field.mode));
+   stbuf->st_nlink =  (nlink_t)((*env)->GetIntField(env, jGetattr, FuseGetattr->field.nlink));
+   stbuf->st_uid =    (uid_t)((*env)->GetIntField(env, jGetattr, FuseGetattr->field.uid));
+   stbuf->st_gid =    (gid_t)((*env)->GetIntField(env, jGetattr, FuseGetattr->field.gid));
+   stbuf->st_rdev =   (dev_t)((*env)->GetIntField(env, jGetattr, FuseGetattr->field.rdev));
+   stbuf->st_size =   (off_t)((*env)->GetLongField(env, jGetattr, FuseGetattr->field.size));
+   stbuf->st_blocks = (blkcnt_t)((*env)->GetLongField(env, jGetattr, FuseGetattr->field.blocks));
+   stbuf->st_atime =  (time_t)((*env)->GetIntField(env, jGetattr, FuseGetattr->field.atime));
+   stbuf->st_mtime =  (time_t)((*env)->GetIntField(env, jGetattr, FuseGetattr->field.mtime));
+   stbuf->st_ctime =  (time_t)((*env)->GetIntField(env, jGetattr, FuseGetattr->field.ctime));
+}
+
+
+void attr_to_stat(const javafs_attr *attr, struct stat *stbuf)
+{
+   memset(stbuf, 0, sizeof(struct stat));
+
+   stbuf->st_ino =    (ino_t) attr->inode;
+   stbuf->st_mode =   (mode_t) attr->mode;
+   stbuf->st_nlink =  (nlink_t) attr->nlink;
+   stbuf->st_uid =    (uid_t) attr->uid;
+   stbuf->st_gid =    (gid_t) attr->gid;
+   stbuf->st_rdev =   (dev_t) attr->rdev;
+   stbuf->st_size =   (off_t) attr->size;
+   stbuf->st_blocks = (blkcnt_t) attr->blocks;
+   stbuf->st_atime =  (time_t) attr->atime;
+   stbuf->st_mtime =  (time_t) attr->mtime;
+   stbuf->st_ctime =  (time_t) attr->ctime;
+}
+
+
+//
+// writeback cache
+
+static int writebackCacheRequested;
+static int writebackCache;
+
+void request_writeback_cache(int requested)
+{
+   writebackCacheRequested = requested;
+   writebackCache = 0;
+}
+
+void init_writeback_cache(struct fuse_conn_info *conn)
+{
+   if (!writebackCacheRequested)
+      return;
+
+#ifdef FUSE_CAP_WRITEBACK_CACHE
+   if (conn->capable & FUSE_CAP_WRITEBACK_CACHE)
+   {
+      conn->want |= FUSE_CAP_WRITEBACK_CACHE;
+      writebackCache = 1;
+      return;
+   }
+#endif
+
+   fprintf(stderr, "javafs: writeback cache is not supported, mounting without it\n");
+}
+
+// with the writeback cache the kernel fills partially written pages by reading through the
+// handle it writes with and positions O_APPEND writes itself (it owns the file size), so
+// write-only handles must be readable and O_APPEND must not reach the filesystem
+void writeback_open_flags(struct fuse_file_info *ffi)
+{
+   if (!writebackCache)
+      return;
+
+   if ((ffi->flags & O_ACCMODE) == O_WRONLY)
+      ffi->flags = (ffi->flags & ~O_ACCMODE) | O_RDWR;
+
+   ffi->flags &= ~O_APPEND;
+}
+
+
+//
+// xattr value cache
+//
+// getxattr(2) and listxattr(2) are usually called twice: with size 0 to learn the size, then
+// with a buffer of that size. The value Java produces for the size probe is kept here and the
+// fetch that follows is served from it without crossing into Java again. The fetch may be
+// served by another thread, so the entries are shared and keyed by the caller's pid, the path
+// and the attribute name (NULL for the name list). An entry is used once and lives at most
+// XATTR_CACHE_TTL seconds; setxattr and removexattr drop the entries of their path.
+
+#define XATTR_CACHE_SLOTS 16
+#define XATTR_CACHE_TTL   1
+
+typedef struct _xattr_entry
+{
+   pid_t pid;
+   time_t time;
+   char *path;                 // path, name and value share one allocation
+   char *name;
+   char *value;
+   size_t length;
+} xattr_entry;
+
+static xattr_entry xattrCache[XATTR_CACHE_SLOTS];
+static pthread_mutex_t xattrCacheLock = PTHREAD_MUTEX_INITIALIZER;
+
+
+static void drop_xattr_entry(xattr_entry *e)
+{
+   free(e->path);
+   memset(e, 0, sizeof(xattr_entry));
+}
+
+static pid_t caller_pid(void)
+{
+   struct fuse_context *context = fuse_get_context();
+
+   return (context == NULL)? 0 : context->pid;
+}
+
+static void put_xattr_cache(pid_t pid, const char *path, const char *name, const void *value, size_t length)
+{
+   size_t pathLength = strlen(path) + 1;
+   size_t nameLength = (name == NULL)? 0 : strlen(name) + 1;
+   char *block = (char *) malloc(pathLength + nameLength + length + 1);
+   xattr_entry *e = &xattrCache[pid % XATTR_CACHE_SLOTS];
+
+   if (block == NULL)
+      return;
+
+   memcpy(block, path, pathLength);
+   if (name != NULL)
+      memcpy(block + pathLength, name, nameLength);
+   if (length > 0)
+      memcpy(block + pathLength + nameLength, value, length);
+
+   pthread_mutex_lock(&xattrCacheLock);
+
+   drop_xattr_entry(e);
+   e->pid = pid;
+   e->time = time(NULL);
+   e->path = block;
+   e->name = (name == NULL)? NULL : block + pathLength;
+   e->value = block + pathLength + nameLength;
+   e->length = length;
+
+   pthread_mutex_unlock(&xattrCacheLock);
+}
+
+// copy a cached value into the reply, returns 0 if there is none or its length (-ERANGE if
+// it does not fit) in *result
+static int take_xattr_cache(pid_t pid, const char *path, const char *name, char *reply, size_t size, int *result)
+{
+   xattr_entry *e = &xattrCache[pid % XATTR_CACHE_SLOTS];
+   int found = 0;
+
+   pthread_mutex_lock(&xattrCacheLock);
+
+   if (e->path != NULL && e->pid == pid && strcmp(e->path, path) == 0 &&
+       ((name == NULL)? e->name == NULL : e->name != NULL && strcmp(e->name, name) == 0))
+   {
+      if (time(NULL) - e->time <= XATTR_CACHE_TTL)
+      {
+         found = 1;
+
+         if (e->length > size)
+            *result = -ERANGE;
+         else
+         {
+            memcpy(reply, e->value, e->length);
+            *result = (int) e->length;
+         }
+      }
+
+      drop_xattr_entry(e);
+   }
+
+   pthread_mutex_unlock(&xattrCacheLock);
+
+   return found;
+}
+
+static void invalidate_xattr_cache(const char *path)
+{
+   int i;
+
+   pthread_mutex_lock(&xattrCacheLock);
+
+   for (i = 0; i < XATTR_CACHE_SLOTS; i++)
+      if (xattrCache[i].path != NULL && strcmp(xattrCache[i].path, path) == 0)
+         drop_xattr_entry(&xattrCache[i]);
+
+   pthread_mutex_unlock(&xattrCacheLock);
+}
+
+static void free_xattr_cache(void)
+{
+   int i;
+
+   pthread_mutex_lock(&xattrCacheLock);
+
+   for (i = 0; i < XATTR_CACHE_SLOTS; i++)
+      drop_xattr_entry(&xattrCache[i]);
+
+   pthread_mutex_unlock(&xattrCacheLock);
+}
+
+// answer getxattr()/listxattr() from the value Java handed out: a size probe keeps it for the
+// fetch that follows, a fetch copies it into the reply
+static int reply_xattr(JNIEnv *env, pid_t pid, const char *path, const char *name, jobject jValue, char *reply, size_t size)
+{
+   size_t length = 0;
+   void *data = (jValue == NULL)? NULL : buffer_data(env, jValue, &length);
+
+   if (data == NULL)
+      length = 0;
+
+   if (size == 0)
+   {
+      put_xattr_cache(pid, path, name, data, length);
+      return (int) length;
+   }
+
+   if (length > size)
+      return -ERANGE;
+
+   if (length > 0)
+      memcpy(reply, data, length);
+
+   return (int) length;
+}
+
+
+//
+// readdirplus attribute cache
+//
+// libfuse 2.x can not send attributes with directory entries, so the attributes a filesystem
+// lists with FuseFS.readdirplus() are kept here and answer the getattr() calls that follow a
+// listing without crossing into Java. Entries live ATTR_CACHE_TTL_MS at most, never longer than
+// the attr_timeout of the entry or else of the mount, and are not kept at all when that is 0. Operations that change attributes
+// drop the entry of their path; operations that change the namespace (and writes without a
+// path) drop everything by bumping the generation.
+
+#define ATTR_CACHE_SLOTS   4096
+#define ATTR_CACHE_LOCKS   64
+#define ATTR_CACHE_TTL_MS  1000
+
+typedef struct _attr_entry
+{
+   char *path;
+   javafs_attr attr;
+   int64_t expires;
+   unsigned int generation;
+} attr_entry;
+
+static attr_entry attrCache[ATTR_CACHE_SLOTS];
+static pthread_mutex_t attrCacheLocks[ATTR_CACHE_LOCKS];
+static volatile unsigned int attrCacheGeneration;
+static int attrCacheEnabled;
+// attr_timeout of the mount, capped at ATTR_CACHE_TTL_MS
+static int64_t attrCacheTtl = ATTR_CACHE_TTL_MS;
+
+
+static int64_t now_ms(void)
+{
+   struct timespec ts;
+
+   clock_gettime(CLOCK_MONOTONIC, &ts);
+
+   return (int64_t) ts.tv_sec * 1000 + ts.tv_nsec / 1000000;
+}
+
+static unsigned int attr_cache_slot(const char *path)
+{
+   unsigned int hash = 2166136261u;
+
+   while (*path)
+      hash = (hash ^ (unsigned char) *path++) * 16777619u;
+
+   return hash % ATTR_CACHE_SLOTS;
+}
+
+// attrTimeout is the attr_timeout of the mount in seconds, negative for the libfuse default of 1 s
+static void set_attr_cache_timeout(double attrTimeout)
+{
+   if (attrTimeout < 0)
+      attrTimeout = 1.0;
+
+   attrCacheTtl = (attrTimeout * 1000 < ATTR_CACHE_TTL_MS)? (int64_t)(attrTimeout * 1000) : ATTR_CACHE_TTL_MS;
+}
+
+static void enable_attr_cache(void)
+{
+   int i;
+
+   if (attrCacheEnabled)
+      return;
+
+   for (i = 0; i < ATTR_CACHE_LOCKS; i++)
+      pthread_mutex_init(&attrCacheLocks[i], NULL);
+
+   attrCacheEnabled = 1;
+}
+
+// keep the attributes of the entry name of directory dir
+static void put_attr_cache(const char *dir, const char *name, const javafs_attr *attr)
+{
+   size_t dirLength = strlen(dir);
+   size_t nameLength = strlen(name);
+   char *path;
+   unsigned int slot;
+   int64_t ttl = attrCacheTtl;
+
+   if (name[0] == '.' && (name[1] == '\0' || (name[1] == '.' && name[2] == '\0')))
+      return;
+
+   // a timeout of the entry overrides the one of the mount
+   if (attr->attr_timeout >= 0 && attr->attr_timeout * 1000 < ttl)
+      ttl = (int64_t)(attr->attr_timeout * 1000);
+
+   if (ttl <= 0)
+      return;
+
+   // "/" + name or dir + "/" + name
+   if (dirLength == 1)
+      dirLength = 0;
+
+   path = (char *) malloc(dirLength + nameLength + 2);
+   if (path == NULL)
+      return;
+
+   memcpy(path, dir, dirLength);
+   path[dirLength] = '/';
+   memcpy(path + dirLength + 1, name, nameLength + 1);
+
+   slot = attr_cache_slot(path);
+
+   pthread_mutex_lock(&attrCacheLocks[slot % ATTR_CACHE_LOCKS]);
+
+   free(attrCache[slot].path);
+   attrCache[slot].path = path;
+   attrCache[slot].attr = *attr;
+   attrCache[slot].expires = now_ms() + ttl;
+   attrCache[slot].generation = attrCacheGeneration;
+
+   pthread_mutex_unlock(&attrCacheLocks[slot % ATTR_CACHE_LOCKS]);
+}
+
+static int get_attr_cache(const char *path, javafs_attr *attr)
+{
+   unsigned int slot = attr_cache_slot(path);
+   attr_entry *e = &attrCache[slot];
+   int found = 0;
+
+   pthread_mutex_lock(&attrCacheLocks[slot % ATTR_CACHE_LOCKS]);
+
+   if (e->path != NULL && e->generation == attrCacheGeneration && e->expires > now_ms() && strcmp(e->path, path) == 0)
+   {
+      *attr = e->attr;
+      found = 1;
+   }
+
+   pthread_mutex_unlock(&attrCacheLocks[slot % ATTR_CACHE_LOCKS]);
+
+   return found;
+}
+
+// drop the entry of path, all entries if path is NULL
+static void invalidate_attr_cache(const char *path)
+{
+   unsigned int slot;
+
+   if (!attrCacheEnabled)
+      return;
+
+   if (path == NULL)
+   {
+      __sync_fetch_and_add(&attrCacheGeneration, 1);
+      return;
+   }
+
+   slot = attr_cache_slot(path);
+
+   pthread_mutex_lock(&attrCacheLocks[slot % ATTR_CACHE_LOCKS]);
+
+   if (attrCache[slot].path != NULL && strcmp(attrCache[slot].path, path) == 0)
+   {
+      free(attrCache[slot].path);
+      attrCache[slot].path = NULL;
+   }
+
+   pthread_mutex_unlock(&attrCacheLocks[slot % ATTR_CACHE_LOCKS]);
+}
+
+static void free_attr_cache(void)
+{
+   int i;
+
+   if (!attrCacheEnabled)
+      return;
+
+   for (i = 0; i < ATTR_CACHE_SLOTS; i++)
+   {
+      free(attrCache[i].path);
+      attrCache[i].path = NULL;
+   }
+
+   for (i = 0; i < ATTR_CACHE_LOCKS; i++)
+      pthread_mutex_destroy(&attrCacheLocks[i]);
+
+   attrCacheEnabled = 0;
+}
+
+
+void free_classes(JNIEnv *env)
 {
    if (FuseGetattr != NULL)     { free_jclass_fuse_FuseGetattr(env, FuseGetattr);         FuseGetattr = NULL; }
-   if (FuseFSDirEnt != NULL)    { free_jclass_fuse_FuseFSDirEnt(env, FuseFSDirEnt);       FuseFSDirEnt = NULL; }
-   if (FuseFSDirFiller != NULL) { free_jclass_fuse_FuseFSDirFiller(env, FuseFSDirFiller); FuseFSDirFiller = NULL; }
+   if (FuseFSDirFiller != NULL) { free_jclass_fuse_impl_FuseFSDirFiller(env, FuseFSDirFiller); FuseFSDirFiller = NULL; }
    if (FuseStatfs != NULL)      { free_jclass_fuse_FuseStatfs(env, FuseStatfs);           FuseStatfs = NULL; }
    if (FuseOpen != NULL)        { free_jclass_fuse_FuseOpen(env, FuseOpen);               FuseOpen = NULL; }
    if (FuseSize != NULL)        { free_jclass_fuse_FuseSize(env, FuseSize);               FuseSize = NULL; }
    if (FuseContext != NULL)     { free_jclass_fuse_FuseContext(env, FuseContext);         FuseContext = NULL; }
    if (ByteBuffer != NULL)      { free_jclass_java_nio_ByteBuffer(env, ByteBuffer);       ByteBuffer = NULL; }
    if (FuseFS != NULL)          { free_jclass_fuse_FuseFS(env, FuseFS);                   FuseFS = NULL; }
+   if (FuseFSFillDir != NULL)   { free_jclass_fuse_FuseFSFillDir(env, FuseFSFillDir);     FuseFSFillDir = NULL; }
+   if (FuseBuffer != NULL)      { free_jclass_fuse_impl_FuseBuffer(env, FuseBuffer);      FuseBuffer = NULL; }
+   if (FuseRegion != NULL)      { free_jclass_fuse_impl_FuseRegion(env, FuseRegion);      FuseRegion = NULL; }
+
+   free_thread_buffers(env);
+   free_xattr_cache();
+   free_attr_cache();
 }
 
 
-static int alloc_classes(JNIEnv *env)
+int alloc_classes(JNIEnv *env)
 {
       if (!(FuseGetattr     = alloc_jclass_fuse_FuseGetattr(env))) goto err;
-      if (!(FuseFSDirEnt    = alloc_jclass_fuse_FuseFSDirEnt(env))) goto err;
-      if (!(FuseFSDirFiller = alloc_jclass_fuse_FuseFSDirFiller(env))) goto err;
+      if (!(FuseFSDirFiller = alloc_jclass_fuse_impl_FuseFSDirFiller(env))) goto err;
       if (!(FuseStatfs      = alloc_jclass_fuse_FuseStatfs(env))) goto err;
       if (!(FuseOpen        = alloc_jclass_fuse_FuseOpen(env))) goto err;
       if (!(FuseSize        = alloc_jclass_fuse_FuseSize(env))) goto err;
       if (!(FuseContext     = alloc_jclass_fuse_FuseContext(env))) goto err;
       if (!(ByteBuffer      = alloc_jclass_java_nio_ByteBuffer(env))) goto err;
       if (!(FuseFS          = alloc_jclass_fuse_FuseFS(env))) goto err;
+      if (!(FuseFSFillDir   = alloc_jclass_fuse_FuseFSFillDir(env))) goto err;
+      if (!(FuseBuffer      = alloc_jclass_fuse_impl_FuseBuffer(env))) goto err;
+      if (!(FuseRegion      = alloc_jclass_fuse_impl_FuseRegion(env))) goto err;
+      if (!alloc_file_descriptor(env)) goto err;
+      if (!alloc_thread_buffers(env)) goto err;
 
       return 1;
 err:
@@ -204,7 +1121,7 @@ static JNIEnv *alloc_JVM(int argc, char *argv[])
 //
 // attaching/detachnig current thread to/from JVM
 
-static JNIEnv *get_env()
+JNIEnv *get_env(void)
 {
    JNIEnv *env;
    JavaVMAttachArgs args;
@@ -222,12 +1139,67 @@ static JNIEnv *get_env()
    // attach thread as daemon thread so that JVM can exit after unmounting the fuseFS
    (*vm)->AttachCurrentThreadAsDaemon(vm, (void**)&env, (void*)&args);
 
-   TRACE("did attach thread to env: %p", env);
+   TRACE("did attach thread to env: %p", env);
+
+   return env;
+}
+
+// attach the calling native thread up front as a named daemon thread of the FUSE thread group
+// and create its reusable buffers, so that the first request served by it does not pay for that
+JNIEnv *attach_env(const char *name)
+{
+   static char empty;
+   JNIEnv *env;
+   JavaVMAttachArgs args;
+   int i;
+
+   args.version = JNI_VERSION_1_4;
+   args.name = (char *)name;
+   args.group = threadGroup;
+
+   if ((*vm)->AttachCurrentThreadAsDaemon(vm, (void**)&env, (void*)&args) != JNI_OK)
+   {
+      WARN("could not attach thread %s", name);
+      return NULL;
+   }
+
+   TRACE("did attach thread %s to env: %p", name, env);
+
+   for (i = 0; i < BUF_SLOTS; i++)
+   {
+      wrap_buffer(env, i, &empty, 0);
+      if ((*env)->ExceptionCheck(env))
+      {
+         (*env)->ExceptionDescribe(env);
+         (*env)->ExceptionClear(env);
+      }
+   }
+
+   return env;
+}
+
+// detach a thread attached with attach_env() before it terminates
+void detach_env(JNIEnv *env)
+{
+   thread_buffers *tb = threadBuffersKeyCreated? (thread_buffers *) pthread_getspecific(threadBuffersKey) : NULL;
+
+   // still attached, the buffers are freed right away instead of by the key destructor
+   if (tb != NULL)
+   {
+      pthread_setspecific(threadBuffersKey, NULL);
+
+      pthread_mutex_lock(&threadBuffersLock);
+      unlink_thread_buffers(tb);
+      pthread_mutex_unlock(&threadBuffersLock);
+
+      delete_thread_buffers(env, tb);
+   }
 
-   return env;
+   TRACE("will detach thread from env: %p", env);
+   (*vm)->DetachCurrentThread(vm);
 }
 
-static void release_env(JNIEnv *env)
+void release_env(JNIEnv *env)
 {
    if (env == mainEnv)
    {
@@ -248,7 +1220,7 @@ static void release_env(JNIEnv *env)
    }
 }
 
-static jint exception_check_jerrno(JNIEnv *env, jint *jerrno)
+jint exception_check_jerrno(JNIEnv *env, jint *jerrno)
 {
    if ((*env)->ExceptionCheck(env))
    {
@@ -264,58 +1236,107 @@ static jint exception_check_jerrno(JNIEnv *env, jint *jerrno)
 }
 
 
+// operations on an open file whose path is gone get none when mounted with
+// FuseMountOptions.nullPathOk(), Java sees a null path then
+static jobject wrap_path(JNIEnv *env, const char *path)
+{
+   return (path == NULL)? NULL : wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
+}
+
+
+// the env of the thread serving a high-level operation, with its caller published to Java
+static JNIEnv *get_fs_env(void)
+{
+   JNIEnv *env = get_env();
+   struct fuse_context *context = fuse_get_context();
+
+   if (context != NULL)
+      set_context(env, context->uid, context->gid, context->pid, context->umask);
+
+   return env;
+}
+
+
 //
 // javafs API functions
 
 static int javafs_getattr(const char *path, struct stat *stbuf)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env;
    jobject jPath = NULL;
-   jobject jattr = NULL;
-   jobject jGetattr = NULL;
+   jobject jAttr = NULL;
    jint jerrno = 0;
+   javafs_attr attr;
 
-   jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
-   if (exception_check_jerrno(env, &jerrno)) goto out;
-
-   jGetattr = (*env)->NewObject(env, FuseGetattr->class, FuseGetattr->constructor.new);
-   if (exception_check_jerrno(env, &jerrno)) goto out;
-
-   jattr =  (*env)->CallIntMethod(env, fuseFS, FuseFS->method.getattr__Ljava_nio_ByteBuffer_Lfuse_FuseGetattrSetter_, jPath, jGetattr);
-   if (exception_check_jerrno(env, &jerrno)) goto out;
-
-   if(!jattr) {
-	   jerrno = ENOENT;
-	   goto out;
-   }
-
-      // inode support fix by Edwin Olson <eolson@mit.edu>
-      stbuf->st_ino =    (ino_t)((*env)->CallLongMethod(env, jattr, FuseGetattr->field.inode));
-      stbuf->st_mode =   (mode_t)((*env)->CallIntMethod(env, jattr, FuseGetattr->field.mode));
-      stbuf->st_nlink =  (nlink_t)((*env)->CallIntMethod(env, jattr, FuseGetattr->field.nlink));
-      stbuf->st_uid =    (uid_t)((*env)->CallIntMethod(env, jattr, FuseGetattr->field.uid));
-      stbuf->st_gid =    (gid_t)((*env)->CallIntMethod(env, jattr, FuseGetattr->field.gid));
-      stbuf->st_rdev =   (dev_t)((*env)->CallIntMethod(env, jattr, FuseGetattr->field.rdev));
-      stbuf->st_size =   (off_t)((*env)->CallLongMethod(env, jattr, FuseGetattr->field.size));
-      stbuf->st_blocks = (blkcnt_t)((*env)->CallLongMethod(env, jattr, FuseGetattr->field.blocks));
-      stbuf->st_atime =  (time_t)((*env)->CallIntMethod(env, jattr, FuseGetattr->field.atime));
-      stbuf->st_mtime =  (time_t)((*env)->CallIntMethod(env, jattr, FuseGetattr->field.mtime));
-      stbuf->st_ctime =  (time_t)((*env)->CallIntMethod(env, jattr, FuseGetattr->field.ctime));
-out:
-   // cleanup
+   // listed by readdirplus a moment ago
+   if (attrCacheEnabled && get_attr_cache(path, &attr))
+   {
+      attr_to_stat(&attr, stbuf);
+      return 0;
+   }
+
+   env = get_fs_env();
+
+   // fields that Java does not set stay 0
+   memset(&attr, 0, sizeof(attr));
+
+   while (1)
+   {
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jAttr = wrap_buffer(env, BUF_ATTR, &attr, sizeof(attr));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.getattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, jPath, jAttr);
+      if (exception_check_jerrno(env, &jerrno)) break;
 
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
-   if (jattr != NULL) (*env)->DeleteLocalRef(env, jattr);
-   if (jGetattr != NULL) (*env)->DeleteLocalRef(env, JGetattr);
+      attr_to_stat(&attr, stbuf);
+      break;
+   }
+
+   release_env(env);
+
+   return -jerrno;
+}
+
+
+// fstat() of an open file, the filesystem gets the handle and does not have to resolve the path
+static int javafs_fgetattr(const char *path, struct stat *stbuf, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_fs_env();
+   jobject jPath = NULL;
+   jobject jAttr = NULL;
+   jint jerrno = 0;
+   javafs_attr attr;
+
+   // fields that Java does not set stay 0
+   memset(&attr, 0, sizeof(attr));
+
+   while (1)
+   {
+      jPath = wrap_path(env, path);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jAttr = wrap_buffer(env, BUF_ATTR, &attr, sizeof(attr));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.fgetattr__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_, jPath, (jlong) (ffi->fh), jAttr);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      attr_to_stat(&attr, stbuf);
+      break;
+   }
 
    release_env(env);
-   return -abs(jerrno);
+
+   return -jerrno;
 }
 
 
 static int javafs_readlink(const char *path, char *buf, size_t size)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jobject jLink = NULL;
    jint jLinkPosition;
@@ -323,28 +1344,23 @@ static int javafs_readlink(const char *path, char *buf, size_t size)
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jLink = (*env)->NewDirectByteBuffer(env, buf, (jlong)(size - 1));
+      jLink = wrap_buffer(env, BUF_DATA, buf, size - 1);
       if (exception_check_jerrno(env, &jerrno)) break;
 
       jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.readlink__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, jPath, jLink);
       if (exception_check_jerrno(env, &jerrno)) break;
 
       // write a cstring terminator at the end of writen data
-      jLinkPosition = (*env)->CallIntMethod(env, jLink, ByteBuffer->method.position);
+      jLinkPosition = buffer_position(env, jLink);
       if (exception_check_jerrno(env, &jerrno)) break;
       buf[jLinkPosition] = '\0';
 
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
-   if (jLink != NULL) (*env)->DeleteLocalRef(env, jLink);
-
    release_env(env);
 
    return -jerrno;
@@ -353,84 +1369,133 @@ static int javafs_readlink(const char *path, char *buf, size_t size)
 
 static int javafs_getdir(const char *path, fuse_dirh_t h, fuse_dirfil_t filler)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
-   jobjectArray jDirEntList = NULL;
-   jobject jDirEnt = NULL;
-   jbyteArray jName = NULL;
-   jbyte *jNameBytes = NULL;
-   jsize jNameLength;
-   jint mode;
-   jlong inode;
+   jobject jDirFiller;
+   javafs_dirent *records;
+   javafs_dirent *d;
+   size_t length;
+   size_t offset;
    jint jerrno = 0;
-   jint i;
-   jint n;
    int res1;
 
+   // an open directory removed meanwhile (FuseMountOptions.nullPathOk())
+   if (path == NULL)
+   {
+      release_env(env);
+      return -ENOENT;
+   }
+
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jDirEntList = (*env)->NewObject(env, FuseFSDirFiller->class, FuseFSDirFiller->constructor.new);
+      jDirFiller = thread_dir_filler(env);
       if (exception_check_jerrno(env, &jerrno)) break;
+      if (jDirFiller == NULL)
+      {
+         jerrno = ENOMEM;
+         break;
+      }
 
-      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.getdir__Ljava_nio_ByteBuffer_Lfuse_FuseFSDirFiller_, jPath, jDirEntList);
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.getdir__Ljava_nio_ByteBuffer_Lfuse_impl_FuseFSDirFiller_, jPath, jDirFiller);
       if (exception_check_jerrno(env, &jerrno)) break;
+      if (jerrno != 0) break;
 
-      n = (*env)->CallIntMethod(env, jDirEntList, FuseFSDirFiller->method.size);
+      records = dir_filler_records(env, jDirFiller, &length);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      for (i = 0; i < n; i++)
+      for (offset = 0; offset < length; offset += DIRENT_SIZE(d))
       {
-         char name[MAX_GETDIR_NAME_LENGTH];
-         int nameLength = MAX_GETDIR_NAME_LENGTH - 1;
+         d = (javafs_dirent *)((char *)records + offset);
 
-         jDirEnt = (*env)->CallObjectMethod(env, jDirEntList, FuseFSDirFiller->method.get__I, i);
-         if (exception_check_jerrno(env, &jerrno)) break;
+         res1 = filler(h, d->name, IFTODT(d->mode), (ino_t)d->inode);
+         if (res1 != 0)
+         {
+            jerrno = (jint) res1;
+            break;
+         }
+      }
 
-         mode = (*env)->GetIntField(env, jDirEnt, FuseFSDirEnt->field.mode);
-         if (exception_check_jerrno(env, &jerrno)) break;
+      break;
+   }
 
-         jName = (*env)->GetObjectField(env, jDirEnt, FuseFSDirEnt->field.name);
-         if (exception_check_jerrno(env, &jerrno)) break;
+   release_env(env);
 
-         inode = (*env)->GetLongField(env, jDirEnt, FuseFSDirEnt->field.inode);
-         if (exception_check_jerrno(env, &jerrno)) break;
+   return -jerrno;
+}
 
-         jNameBytes = (*env)->GetByteArrayElements(env, jName, NULL);
-         if (exception_check_jerrno(env, &jerrno)) break;
 
-         jNameLength = (*env)->GetArrayLength(env, jName);
+static int javafs_readdir(const char *path, void *buf, fuse_fill_dir_t filler, off_t offset, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_fs_env();
+   jobject jPath = NULL;
+   jobject jFillDir = NULL;
+   jint jerrno = 0;
 
-         if (nameLength > (int)jNameLength)
-            nameLength = (int)jNameLength;
+   // an open directory removed meanwhile (FuseMountOptions.nullPathOk())
+   if (path == NULL)
+   {
+      release_env(env);
+      return -ENOENT;
+   }
 
-         memcpy(name, jNameBytes, nameLength);
-         name[nameLength] = '\0';
+   while (1)
+   {
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
+      if (exception_check_jerrno(env, &jerrno)) break;
 
-         res1 = filler(h, name, IFTODT(mode), inode);
-         if (res1 != 0)
-         {
-            jerrno = (jint) res1;
-            break;
-         }
+      // entries are passed straight to filler through Java_fuse_FuseFSFillDir_fill
+      jFillDir = (*env)->NewObject(env, FuseFSFillDir->class, FuseFSFillDir->constructor.new__JJ, (jlong)(intptr_t)buf, (jlong)(intptr_t)filler);
+      if (exception_check_jerrno(env, &jerrno)) break;
 
-         (*env)->ReleaseByteArrayElements(env, jName, jNameBytes, JNI_ABORT); jNameBytes = NULL;
-         (*env)->DeleteLocalRef(env, jName); jName = NULL;
-         (*env)->DeleteLocalRef(env, jDirEnt); jDirEnt = NULL;
-      }
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.readdir__Ljava_nio_ByteBuffer_JJLfuse_FuseFSFillDir_, jPath, (jlong) (ffi->fh), (jlong)offset, jFillDir);
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   // cleanup
+
+   if (jFillDir != NULL) (*env)->DeleteLocalRef(env, jFillDir);
+
+   release_env(env);
+
+   return -jerrno;
+}
+
+// readdir through FuseFS.readdirplus(): the entries come with attributes for the attribute cache
+static int javafs_readdirplus(const char *path, void *buf, fuse_fill_dir_t filler, off_t offset, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_fs_env();
+   jobject jPath = NULL;
+   jobject jFillDir = NULL;
+   jint jerrno = 0;
+
+   // an open directory removed meanwhile (FuseMountOptions.nullPathOk())
+   if (path == NULL)
+   {
+      release_env(env);
+      return -ENOENT;
+   }
+
+   while (1)
+   {
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      // entries are passed straight to filler through Java_fuse_FuseFSFillDir_fillPlus
+      jFillDir = (*env)->NewObject(env, FuseFSFillDir->class, FuseFSFillDir->constructor.new__JJJ, (jlong)(intptr_t)buf, (jlong)(intptr_t)filler, (jlong)(intptr_t)path);
+      if (exception_check_jerrno(env, &jerrno)) break;
 
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.readdirplus__Ljava_nio_ByteBuffer_JJLfuse_FuseFSFillDir_, jPath, (jlong) (ffi->fh), (jlong)offset, jFillDir);
+      exception_check_jerrno(env, &jerrno);
       break;
    }
 
    // cleanup
 
-   if (jNameBytes != NULL) (*env)->ReleaseByteArrayElements(env, jName, jNameBytes, JNI_ABORT);
-   if (jName != NULL) (*env)->DeleteLocalRef(env, jName);
-   if (jDirEnt != NULL) (*env)->DeleteLocalRef(env, jDirEnt);
-   if (jDirEntList != NULL) (*env)->DeleteLocalRef(env, jDirEntList);
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
+   if (jFillDir != NULL) (*env)->DeleteLocalRef(env, jFillDir);
 
    release_env(env);
 
@@ -440,13 +1505,13 @@ static int javafs_getdir(const char *path, fuse_dirh_t h, fuse_dirfil_t filler)
 
 static int javafs_mknod(const char *path, mode_t mode, dev_t rdev)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
       jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.mknod__Ljava_nio_ByteBuffer_II, jPath, (jint)mode, (jint)rdev);
@@ -454,9 +1519,7 @@ static int javafs_mknod(const char *path, mode_t mode, dev_t rdev)
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
+   invalidate_attr_cache(NULL);
 
    release_env(env);
 
@@ -466,13 +1529,13 @@ static int javafs_mknod(const char *path, mode_t mode, dev_t rdev)
 
 static int javafs_mkdir(const char *path, mode_t mode)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
       jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.mkdir__Ljava_nio_ByteBuffer_I, jPath, (jint)mode);
@@ -480,9 +1543,7 @@ static int javafs_mkdir(const char *path, mode_t mode)
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
+   invalidate_attr_cache(NULL);
 
    release_env(env);
 
@@ -492,13 +1553,13 @@ static int javafs_mkdir(const char *path, mode_t mode)
 
 static int javafs_unlink(const char *path)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
       jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.unlink__Ljava_nio_ByteBuffer_, jPath);
@@ -506,9 +1567,7 @@ static int javafs_unlink(const char *path)
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
+   invalidate_attr_cache(NULL);
 
    release_env(env);
 
@@ -518,13 +1577,13 @@ static int javafs_unlink(const char *path)
 
 static int javafs_rmdir(const char *path)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
       jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.rmdir__Ljava_nio_ByteBuffer_, jPath);
@@ -532,9 +1591,7 @@ static int javafs_rmdir(const char *path)
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
+   invalidate_attr_cache(NULL);
 
    release_env(env);
 
@@ -544,17 +1601,17 @@ static int javafs_rmdir(const char *path)
 
 static int javafs_symlink(const char *from, const char *to)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jFrom = NULL;
    jobject jTo = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jFrom = (*env)->NewDirectByteBuffer(env, (void *)from, (jlong)strlen(from));
+      jFrom = wrap_buffer(env, BUF_PATH, (void *)from, strlen(from));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jTo = (*env)->NewDirectByteBuffer(env, (void *)to, (jlong)strlen(to));
+      jTo = wrap_buffer(env, BUF_NAME, (void *)to, strlen(to));
       if (exception_check_jerrno(env, &jerrno)) break;
 
       jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.symlink__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, jFrom, jTo);
@@ -562,10 +1619,7 @@ static int javafs_symlink(const char *from, const char *to)
       break;
    }
 
-   // cleanup
-
-   if (jTo != NULL) (*env)->DeleteLocalRef(env, jTo);
-   if (jFrom != NULL) (*env)->DeleteLocalRef(env, jFrom);
+   invalidate_attr_cache(NULL);
 
    release_env(env);
 
@@ -575,17 +1629,17 @@ static int javafs_symlink(const char *from, const char *to)
 
 static int javafs_rename(const char *from, const char *to)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jFrom = NULL;
    jobject jTo = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jFrom = (*env)->NewDirectByteBuffer(env, (void *)from, (jlong)strlen(from));
+      jFrom = wrap_buffer(env, BUF_PATH, (void *)from, strlen(from));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jTo = (*env)->NewDirectByteBuffer(env, (void *)to, (jlong)strlen(to));
+      jTo = wrap_buffer(env, BUF_NAME, (void *)to, strlen(to));
       if (exception_check_jerrno(env, &jerrno)) break;
 
       jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.rename__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, jFrom, jTo);
@@ -593,10 +1647,7 @@ static int javafs_rename(const char *from, const char *to)
       break;
    }
 
-   // cleanup
-
-   if (jTo != NULL) (*env)->DeleteLocalRef(env, jTo);
-   if (jFrom != NULL) (*env)->DeleteLocalRef(env, jFrom);
+   invalidate_attr_cache(NULL);
 
    release_env(env);
 
@@ -606,17 +1657,17 @@ static int javafs_rename(const char *from, const char *to)
 
 static int javafs_link(const char *from, const char *to)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jFrom = NULL;
    jobject jTo = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jFrom = (*env)->NewDirectByteBuffer(env, (void *)from, (jlong)strlen(from));
+      jFrom = wrap_buffer(env, BUF_PATH, (void *)from, strlen(from));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jTo = (*env)->NewDirectByteBuffer(env, (void *)to, (jlong)strlen(to));
+      jTo = wrap_buffer(env, BUF_NAME, (void *)to, strlen(to));
       if (exception_check_jerrno(env, &jerrno)) break;
 
       jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.link__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, jFrom, jTo);
@@ -624,10 +1675,7 @@ static int javafs_link(const char *from, const char *to)
       break;
    }
 
-   // cleanup
-
-   if (jTo != NULL) (*env)->DeleteLocalRef(env, jTo);
-   if (jFrom != NULL) (*env)->DeleteLocalRef(env, jFrom);
+   invalidate_attr_cache(NULL);
 
    release_env(env);
 
@@ -637,23 +1685,162 @@ static int javafs_link(const char *from, const char *to)
 
 static int javafs_chmod(const char *path, mode_t mode)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
+   jobject jPath = NULL;
+   jint jerrno = 0;
+
+   while (1)
+   {
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.chmod__Ljava_nio_ByteBuffer_I, jPath, (jint)mode);
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   invalidate_attr_cache(path);
+
+   release_env(env);
+
+   return -jerrno;
+}
+
+
+static int javafs_chown(const char *path, uid_t uid, gid_t gid)
+{
+   JNIEnv *env = get_fs_env();
+   jobject jPath = NULL;
+   jint jerrno = 0;
+
+   while (1)
+   {
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.chown__Ljava_nio_ByteBuffer_II, jPath, (jint)uid, (jint)gid);
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   invalidate_attr_cache(path);
+
+   release_env(env);
+
+   return -jerrno;
+}
+
+
+static int javafs_truncate(const char *path, off_t size)
+{
+   JNIEnv *env = get_fs_env();
+   jobject jPath = NULL;
+   jint jerrno = 0;
+
+   while (1)
+   {
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.truncate__Ljava_nio_ByteBuffer_J, jPath, (jlong)size);
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   invalidate_attr_cache(path);
+
+   release_env(env);
+
+   return -jerrno;
+}
+
+
+static int javafs_ftruncate(const char *path, off_t size, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_fs_env();
+   jobject jPath = NULL;
+   jint jerrno = 0;
+
+   while (1)
+   {
+      jPath = wrap_path(env, path);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.ftruncate__Ljava_nio_ByteBuffer_JJ, jPath, (jlong) (ffi->fh), (jlong)size);
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   invalidate_attr_cache(path);
+
+   release_env(env);
+
+   return -jerrno;
+}
+
+
+static int javafs_utime(const char *path, struct utimbuf *buf)
+{
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      (*env)->CallVoidMethod(env, fuseFS, FuseFS->method.utime__Ljava_nio_ByteBuffer_II, jPath, (jint)(buf->actime), (jint)(buf->modtime));
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   invalidate_attr_cache(path);
+
+   release_env(env);
+
+   return -jerrno;
+}
+
+
+static int javafs_open(const char *path, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_fs_env();
+   jobject jPath = NULL;
+   jobject jOpen = NULL;
+   jint jerrno = 0;
+
+   while (1)
+   {
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jOpen = (*env)->NewObject(env, FuseOpen->class, FuseOpen->constructor.new);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      (*env)->SetBooleanField(env, jOpen, FuseOpen->field.directIO, ffi->direct_io ? JNI_TRUE : JNI_FALSE);
+      (*env)->SetBooleanField(env, jOpen, FuseOpen->field.keepCache, ffi->keep_cache ? JNI_TRUE : JNI_FALSE);
+
+      writeback_open_flags(ffi);
+
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.open__Ljava_nio_ByteBuffer_ILfuse_FuseOpenSetter_, jPath, (jint)(ffi->flags), jOpen);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.chmod__Ljava_nio_ByteBuffer_I, jPath, (jint)mode);
-      exception_check_jerrno(env, &jerrno);
+      // fh is a handle of the Java side file handle table (fuse.impl.util.FileHandleTable),
+      // the release callback frees it
+      ffi->fh = (uint64_t) (*env)->GetLongField(env, jOpen, FuseOpen->field.fh);
+      ffi->direct_io = ((*env)->GetBooleanField(env, jOpen, FuseOpen->field.directIO) == JNI_TRUE)? 1 : 0;
+      ffi->keep_cache = ((*env)->GetBooleanField(env, jOpen, FuseOpen->field.keepCache) == JNI_TRUE)? 1 : 0;
+
       break;
    }
 
    // cleanup
 
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
+   if (jOpen != NULL) (*env)->DeleteLocalRef(env, jOpen);
+
+   if (ffi->flags & O_TRUNC)
+      invalidate_attr_cache(path);
 
    release_env(env);
 
@@ -661,25 +1848,43 @@ static int javafs_chmod(const char *path, mode_t mode)
 }
 
 
-static int javafs_chown(const char *path, uid_t uid, gid_t gid)
+// creates and opens the file in a single upcall, libfuse falls back to mknod + open without it
+static int javafs_create(const char *path, mode_t mode, struct fuse_file_info *ffi)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
+   jobject jOpen = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.chown__Ljava_nio_ByteBuffer_II, jPath, (jint)uid, (jint)gid);
-      exception_check_jerrno(env, &jerrno);
+      jOpen = (*env)->NewObject(env, FuseOpen->class, FuseOpen->constructor.new);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      (*env)->SetBooleanField(env, jOpen, FuseOpen->field.directIO, ffi->direct_io ? JNI_TRUE : JNI_FALSE);
+      (*env)->SetBooleanField(env, jOpen, FuseOpen->field.keepCache, ffi->keep_cache ? JNI_TRUE : JNI_FALSE);
+
+      writeback_open_flags(ffi);
+
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.create__Ljava_nio_ByteBuffer_IILfuse_impl_FuseOpenSetter_, jPath, (jint)mode, (jint)(ffi->flags), jOpen);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      // the same as in open, the release callback frees the handle
+      ffi->fh = (uint64_t) (*env)->GetLongField(env, jOpen, FuseOpen->field.fh);
+      ffi->direct_io = ((*env)->GetBooleanField(env, jOpen, FuseOpen->field.directIO) == JNI_TRUE)? 1 : 0;
+      ffi->keep_cache = ((*env)->GetBooleanField(env, jOpen, FuseOpen->field.keepCache) == JNI_TRUE)? 1 : 0;
+
       break;
    }
 
    // cleanup
 
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
+   if (jOpen != NULL) (*env)->DeleteLocalRef(env, jOpen);
+
+   invalidate_attr_cache(NULL);
 
    release_env(env);
 
@@ -687,180 +1892,312 @@ static int javafs_chown(const char *path, uid_t uid, gid_t gid)
 }
 
 
-static int javafs_truncate(const char *path, off_t size)
+static int javafs_read(const char *path, char *buf, size_t size, off_t offset, struct fuse_file_info *ffi)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
+   jobject jBuf = NULL;
    jint jerrno = 0;
+   jint nread = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_path(env, path);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.truncate__Ljava_nio_ByteBuffer_J, jPath, (jlong)size);
+      jBuf = wrap_buffer(env, BUF_DATA, buf, size);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.read__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_J, jPath, (jlong) (ffi->fh), jBuf, (jlong)offset);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      // to obtain # of bytes read, get current position from ByteBuffer
+      nread = buffer_position(env, jBuf);
       exception_check_jerrno(env, &jerrno);
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
-
    release_env(env);
 
-   return -jerrno;
+   return jerrno? -jerrno : nread;
 }
 
 
-static int javafs_utime(const char *path, struct utimbuf *buf)
+// read through FuseFS.readBuffer(): a direct ByteBuffer handed out by Java is copied from here
+static int javafs_read_buffer(const char *path, char *buf, size_t size, off_t offset, struct fuse_file_info *ffi)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
+   jobject jBuf = NULL;
+   jobject jSetter = NULL;
+   jobject jData = NULL;
    jint jerrno = 0;
+   jint nread = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_path(env, path);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      (*env)->CallVoidMethod(env, fuseFS, FuseFS->method.utime__Ljava_nio_ByteBuffer_II, jPath, (jint)(buf->actime), (jint)(buf->modtime));
+      jBuf = wrap_buffer(env, BUF_DATA, buf, size);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jSetter = thread_buffer_setter(env);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.readBuffer__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_JLfuse_impl_FuseBufferSetter_, jPath, (jlong) (ffi->fh), jBuf, (jlong)offset, jSetter);
+
       exception_check_jerrno(env, &jerrno);
+
+      // take the buffer out of the setter, it must not stay reachable after the call
+      jData = (*env)->GetObjectField(env, jSetter, FuseBuffer->field.buffer);
+      (*env)->SetObjectField(env, jSetter, FuseBuffer->field.buffer, NULL);
+
+      if (jerrno) break;
+
+      if (jData != NULL)
+      {
+         size_t length;
+         void *data = buffer_data(env, jData, &length);
+
+         if (length > size)
+            length = size;
+
+         if (data != NULL)
+            memcpy(buf, data, length);
+
+         nread = (jint) length;
+      }
+      else
+      {
+         // no buffer handed out, the data was put into jBuf
+         nread = buffer_position(env, jBuf);
+         exception_check_jerrno(env, &jerrno);
+      }
+
       break;
    }
 
    // cleanup
 
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
+   if (jData != NULL) (*env)->DeleteLocalRef(env, jData);
 
    release_env(env);
 
-   return -jerrno;
+   return jerrno? -jerrno : nread;
 }
 
 
-static int javafs_open(const char *path, struct fuse_file_info *ffi)
+static int javafs_write(const char *path, const char *buf, size_t size, off_t offset, struct fuse_file_info *ffi)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
-   jobject jOpen = NULL;
+   jobject jBuf = NULL;
    jint jerrno = 0;
+   jint nwriten = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_path(env, path);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jOpen = (*env)->NewObject(env, FuseOpen->class, FuseOpen->constructor.new);
+      jBuf = wrap_buffer(env, BUF_DATA, (void *)buf, size);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      (*env)->SetBooleanField(env, jOpen, FuseOpen->field.directIO, ffi->direct_io ? JNI_TRUE : JNI_FALSE);
-      (*env)->SetBooleanField(env, jOpen, FuseOpen->field.keepCache, ffi->keep_cache ? JNI_TRUE : JNI_FALSE);
-
-      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.open__Ljava_nio_ByteBuffer_ILfuse_FuseOpenSetter_, jPath, (jint)(ffi->flags), jOpen);
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.write__Ljava_nio_ByteBuffer_JZLjava_nio_ByteBuffer_J, jPath, (jlong) (ffi->fh), (ffi->writepage)? JNI_TRUE : JNI_FALSE, jBuf, (jlong)offset);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      // if fh is non null then create a global reference to it (will be released in release callback)
-      jobject jFh = (*env)->GetObjectField(env, jOpen, FuseOpen->field.fh);
-      jobject jFhGlobalRef = (jFh == NULL) ? NULL : (*env)->NewGlobalRef(env, jFh);
-
-      // every sane platform should store a pointer into unsigned long without a problem
-      ffi->fh = (unsigned long) jFhGlobalRef;
-      ffi->direct_io = ((*env)->GetBooleanField(env, jOpen, FuseOpen->field.directIO) == JNI_TRUE)? 1 : 0;
-      ffi->keep_cache = ((*env)->GetBooleanField(env, jOpen, FuseOpen->field.keepCache) == JNI_TRUE)? 1 : 0;
-
-      // remove local reference to fh
-      if (jFh != NULL) (*env)->DeleteLocalRef(env, jFh);
-
+      // to obtain # of bytes writen, get current position from ByteBuffer
+      nwriten = buffer_position(env, jBuf);
+      exception_check_jerrno(env, &jerrno);
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
-   if (jOpen != NULL) (*env)->DeleteLocalRef(env, jOpen);
+   invalidate_attr_cache(path);
 
    release_env(env);
 
-   return -jerrno;
+   return jerrno? -jerrno : nwriten;
 }
 
 
-static int javafs_read(const char *path, char *buf, size_t size, off_t offset, struct fuse_file_info *ffi)
+// read through FuseFS.readRegion(): a file descriptor range handed out by Java goes back to libfuse
+// as an fd buffer, which it splices into the reply. Without a range Java reads the data into
+// memory in the same call.
+static int javafs_read_buf(const char *path, struct fuse_bufvec **bufp, size_t size, off_t offset, struct fuse_file_info *ffi)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jobject jBuf = NULL;
+   jobject jSetter = NULL;
    jint jerrno = 0;
-   jint nread = 0;
+   struct fuse_bufvec *bufv;
+   off_t position = 0;
+   size_t length = 0;
+   size_t nread = 0;
+   int fd = -1;
+
+   // libfuse frees the bufvec and the memory of non-fd buffers after the reply
+   bufv = malloc(sizeof(struct fuse_bufvec));
+   if (bufv == NULL)
+   {
+      release_env(env);
+      return -ENOMEM;
+   }
+
+   *bufv = FUSE_BUFVEC_INIT(size);
+   bufv->buf[0].mem = malloc(size);
+   if (bufv->buf[0].mem == NULL)
+   {
+      free(bufv);
+      release_env(env);
+      return -ENOMEM;
+   }
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_path(env, path);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jBuf = (*env)->NewDirectByteBuffer(env, buf, (jlong)size);
+      jBuf = wrap_buffer(env, BUF_DATA, bufv->buf[0].mem, size);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.read__Ljava_nio_ByteBuffer_Ljava_lang_Object_Ljava_nio_ByteBuffer_J, jPath, (jobject) (ffi->fh), jBuf, (jlong)offset);
+      jSetter = thread_region_setter(env);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      // to obtain # of bytes read, get current position from ByteBuffer
-      nread = (*env)->CallIntMethod(env, jBuf, ByteBuffer->method.position);
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.readRegion__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_JLfuse_impl_FuseRegionSetter_, jPath, (jlong) (ffi->fh), jBuf, (jlong)offset, jSetter);
+
       exception_check_jerrno(env, &jerrno);
+
+      fd = take_region(env, jSetter, &position, &length, &jerrno);
+
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      if (fd == -1)
+      {
+         nread = (size_t) buffer_position(env, jBuf);
+         exception_check_jerrno(env, &jerrno);
+      }
+
       break;
    }
 
-   // cleanup
-
-   if (jBuf != NULL) (*env)->DeleteLocalRef(env, jBuf);
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
+   // libfuse splices the region into the reply after we return, the thread keeps the
+   // descriptor open until then
+   if (!jerrno)
+      thread_reply_fd(env, fd);
+   else if (fd != -1)
+      close(fd);
 
    release_env(env);
 
-   return jerrno? -jerrno : nread;
+   if (jerrno)
+   {
+      free(bufv->buf[0].mem);
+      free(bufv);
+      return -jerrno;
+   }
+
+   if (fd != -1)
+   {
+      free(bufv->buf[0].mem);
+      *bufv = FUSE_BUFVEC_INIT((length < size)? length : size);
+      bufv->buf[0].flags = FUSE_BUF_IS_FD | FUSE_BUF_FD_SEEK;
+      bufv->buf[0].fd = fd;
+      bufv->buf[0].pos = position;
+   }
+   else
+      bufv->buf[0].size = nread;
+
+   *bufp = bufv;
+
+   return 0;
 }
 
 
-static int javafs_write(const char *path, const char *buf, size_t size, off_t offset, struct fuse_file_info *ffi)
+// write through FuseFS.writeRegion(): the data is copied (spliced, when libfuse received it into
+// a pipe) into the file descriptor range handed out by Java. Without a range it goes to write().
+static int javafs_write_buf(const char *path, struct fuse_bufvec *buf, off_t offset, struct fuse_file_info *ffi)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
-   jobject jBuf = NULL;
+   jobject jSetter = NULL;
    jint jerrno = 0;
-   jint nwriten = 0;
+   size_t size = fuse_buf_size(buf);
+   struct fuse_bufvec dst;
+   off_t position = 0;
+   size_t length = 0;
+   int fd = -1;
+   ssize_t res;
+   void *mem;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_path(env, path);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jBuf = (*env)->NewDirectByteBuffer(env, (void *)buf, (jlong)size);
+      jSetter = thread_region_setter(env);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.write__Ljava_nio_ByteBuffer_Ljava_lang_Object_ZLjava_nio_ByteBuffer_J, jPath, (jobject) (ffi->fh), (ffi->writepage)? JNI_TRUE : JNI_FALSE, jBuf, (jlong)offset);
-      if (exception_check_jerrno(env, &jerrno)) break;
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.writeRegion__Ljava_nio_ByteBuffer_JJILfuse_impl_FuseRegionSetter_, jPath, (jlong) (ffi->fh), (jlong)offset, (jint)size, jSetter);
+
+      exception_check_jerrno(env, &jerrno);
+
+      fd = take_region(env, jSetter, &position, &length, &jerrno);
 
-      // to obtain # of bytes writen, get current position from ByteBuffer
-      nwriten = (*env)->CallIntMethod(env, jBuf, ByteBuffer->method.position);
       exception_check_jerrno(env, &jerrno);
       break;
    }
 
-   // cleanup
-
-   if (jBuf != NULL) (*env)->DeleteLocalRef(env, jBuf);
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
+   // without a range javafs_write() below invalidates
+   if (jerrno || fd != -1)
+      invalidate_attr_cache(path);
 
    release_env(env);
 
-   return jerrno? -jerrno : nwriten;
+   if (jerrno)
+   {
+      if (fd != -1) close(fd);
+      return -jerrno;
+   }
+
+   if (fd != -1)
+   {
+      dst = FUSE_BUFVEC_INIT((length < size)? length : size);
+      dst.buf[0].flags = FUSE_BUF_IS_FD | FUSE_BUF_FD_SEEK;
+      dst.buf[0].fd = fd;
+      dst.buf[0].pos = position;
+
+      res = fuse_buf_copy(&dst, buf, FUSE_BUF_SPLICE_NONBLOCK);
+      close(fd);
+
+      return (int) res;
+   }
+
+   // a single memory buffer is written in place
+   if (buf->count == 1 && buf->idx == 0 && buf->off == 0 && !(buf->buf[0].flags & FUSE_BUF_IS_FD))
+      return javafs_write(path, buf->buf[0].mem, buf->buf[0].size, offset, ffi);
+
+   mem = malloc(size);
+   if (mem == NULL)
+      return -ENOMEM;
+
+   dst = FUSE_BUFVEC_INIT(size);
+   dst.buf[0].mem = mem;
+
+   res = fuse_buf_copy(&dst, buf, 0);
+   if (res >= 0)
+      res = javafs_write(path, mem, (size_t) res, offset, ffi);
+
+   free(mem);
+
+   return (int) res;
 }
 
 
-static int javafs_statfs(const char *path, struct statfs *fst)
+static int javafs_statfs(const char *path, struct statvfs *fst)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jStatfs = NULL;
    jint jerrno = 0;
 
@@ -873,12 +2210,13 @@ static int javafs_statfs(const char *path, struct statfs *fst)
       if (exception_check_jerrno(env, &jerrno)) break;
 
       fst->f_bsize   = (long) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.blockSize);
+      fst->f_frsize  = fst->f_bsize;
       fst->f_blocks  = (long) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.blocks);
       fst->f_bfree   = (long) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.blocksFree);
       fst->f_bavail  = (long) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.blocksAvail);
       fst->f_files   = (long) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.files);
       fst->f_ffree   = (long) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.filesFree);
-      fst->f_namelen = (long) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.namelen);
+      fst->f_namemax = (long) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.namelen);
       break;
    }
 
@@ -894,24 +2232,20 @@ static int javafs_statfs(const char *path, struct statfs *fst)
 
 static int javafs_flush(const char *path, struct fuse_file_info *ffi)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_path(env, path);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.flush__Ljava_nio_ByteBuffer_Ljava_lang_Object_, jPath, (jobject) (ffi->fh));
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.flush__Ljava_nio_ByteBuffer_J, jPath, (jlong) (ffi->fh));
       exception_check_jerrno(env, &jerrno);
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
-
    release_env(env);
 
    return -jerrno;
@@ -920,32 +2254,22 @@ static int javafs_flush(const char *path, struct fuse_file_info *ffi)
 
 static int javafs_release(const char *path, struct fuse_file_info *ffi)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
-   jobject jFh = (jobject) (ffi->fh);
    jint jerrno = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_path(env, path);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.release__Ljava_nio_ByteBuffer_Ljava_lang_Object_I, jPath, jFh, (jint)(ffi->flags));
+      // frees the handle on the Java side
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.release__Ljava_nio_ByteBuffer_JI, jPath, (jlong) (ffi->fh), (jint)(ffi->flags));
       exception_check_jerrno(env, &jerrno);
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
-
-   // jFh is global reference and should be released in release callback
-   if (jFh != NULL)
-   {
-      (*env)->DeleteGlobalRef(env, jFh);
-      (*env)->DeleteLocalRef(env, jFh);
-      ffi->fh = 0;
-   }
+   ffi->fh = 0;
 
    release_env(env);
 
@@ -955,24 +2279,20 @@ static int javafs_release(const char *path, struct fuse_file_info *ffi)
 
 static int javafs_fsync(const char *path, int datasync, struct fuse_file_info *ffi)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jint jerrno = 0;
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_path(env, path);
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.fsync__Ljava_nio_ByteBuffer_Ljava_lang_Object_Z, jPath, (jobject) (ffi->fh), (jint)(ffi->flags), datasync? JNI_TRUE : JNI_FALSE);
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.fsync__Ljava_nio_ByteBuffer_JZ, jPath, (jlong) (ffi->fh), datasync? JNI_TRUE : JNI_FALSE);
       exception_check_jerrno(env, &jerrno);
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
-
    release_env(env);
 
    return -jerrno;
@@ -986,21 +2306,23 @@ static int javafs_fsync(const char *path, int datasync, struct fuse_file_info *f
 
 static int javafs_setxattr(const char *path, const char *name, const char *value, size_t size, int flags)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jobject jName = NULL;
    jobject jValue = NULL;
    jint jerrno = 0;
 
+   invalidate_xattr_cache(path);
+
    while(1)
    {
-      jobject jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jobject jName = (*env)->NewDirectByteBuffer(env, (void *)name, (jlong)strlen(name));
+      jName = wrap_buffer(env, BUF_NAME, (void *)name, strlen(name));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jobject jValue = (*env)->NewDirectByteBuffer(env, (void *)value, (jlong)size);
+      jValue = wrap_buffer(env, BUF_DATA, (void *)value, size);
       if (exception_check_jerrno(env, &jerrno)) break;
 
       jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.setxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_I, jPath, jName, jValue, (jint)flags);
@@ -1008,11 +2330,7 @@ static int javafs_setxattr(const char *path, const char *name, const char *value
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
-   if (jName != NULL) (*env)->DeleteLocalRef(env, jName);
-   if (jValue != NULL) (*env)->DeleteLocalRef(env, jValue);
+   invalidate_attr_cache(path);
 
    release_env(env);
 
@@ -1021,55 +2339,49 @@ static int javafs_setxattr(const char *path, const char *name, const char *value
 
 static int javafs_getxattr(const char *path, const char *name, char *value, size_t size)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env;
    jobject jPath = NULL;
    jobject jName = NULL;
+   jobject jSetter = NULL;
    jobject jValue = NULL;
-   jobject jSize = NULL;
    jint jerrno = 0;
-   jint xattrsize;
+   int xattrsize = 0;
+   pid_t pid = caller_pid();
+
+   // the fetch that follows a size probe
+   if (size > 0 && take_xattr_cache(pid, path, name, value, size, &xattrsize))
+      return xattrsize;
+
+   env = get_fs_env();
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jName = (*env)->NewDirectByteBuffer(env, (void *)name, (jlong)strlen(name));
+      jName = wrap_buffer(env, BUF_NAME, (void *)name, strlen(name));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      // Size of the attribute
-      if (size == 0)
-      {
-         jSize = (*env)->NewObject(env, FuseSize->class, FuseSize->constructor.new);
-         if (exception_check_jerrno(env, &jerrno)) break;
+      jSetter = thread_buffer_setter(env);
+      if (exception_check_jerrno(env, &jerrno)) break;
 
-         jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.getxattrsize__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Lfuse_FuseSizeSetter_, jPath, jName, jSize);
-         if (exception_check_jerrno(env, &jerrno)) break;
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.getxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Lfuse_impl_FuseBufferSetter_, jPath, jName, jSetter);
 
-         xattrsize = (*env)->GetIntField(env, jSize, FuseSize->field.size);
-      }
-      else
-      {
-         jValue = (*env)->NewDirectByteBuffer(env, value , (jlong)size);
-         if (exception_check_jerrno(env, &jerrno)) break;
+      exception_check_jerrno(env, &jerrno);
 
-         jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.getxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, jPath, jName, jValue);
-         if (exception_check_jerrno(env, &jerrno)) break;
+      // take the buffer out of the setter, it must not stay reachable after the call
+      jValue = (*env)->GetObjectField(env, jSetter, FuseBuffer->field.buffer);
+      (*env)->SetObjectField(env, jSetter, FuseBuffer->field.buffer, NULL);
 
-         // to obtain # of bytes read, get current position from ByteBuffer
-         xattrsize = (*env)->CallIntMethod(env, jValue, ByteBuffer->method.position);
-      }
+      if (jerrno) break;
 
-      exception_check_jerrno(env, &jerrno);
+      xattrsize = reply_xattr(env, pid, path, name, jValue, value, size);
       break;
    }
 
    // cleanup
 
-   if (jSize != NULL) (*env)->DeleteLocalRef(env, jSize);
    if (jValue != NULL) (*env)->DeleteLocalRef(env, jValue);
-   if (jName != NULL) (*env)->DeleteLocalRef(env, jName);
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
 
    release_env(env);
 
@@ -1078,49 +2390,44 @@ static int javafs_getxattr(const char *path, const char *name, char *value, size
 
 static int javafs_listxattr(const char *path, char *list, size_t size)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env;
    jobject jPath = NULL;
+   jobject jSetter = NULL;
    jobject jList = NULL;
-   jobject jSize = NULL;
    jint jerrno = 0;
-   jint xattrsize;
+   int xattrsize = 0;
+   pid_t pid = caller_pid();
+
+   // the fetch that follows a size probe
+   if (size > 0 && take_xattr_cache(pid, path, NULL, list, size, &xattrsize))
+      return xattrsize;
+
+   env = get_fs_env();
 
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      // Size of the attribute list
-      if (size == 0)
-      {
-         jSize = (*env)->NewObject(env, FuseSize->class, FuseSize->constructor.new);
-         if (exception_check_jerrno(env, &jerrno)) break;
+      jSetter = thread_buffer_setter(env);
+      if (exception_check_jerrno(env, &jerrno)) break;
 
-         jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.listxattrsize__Ljava_nio_ByteBuffer_Lfuse_FuseSizeSetter_, jPath, jSize);
-         if (exception_check_jerrno(env, &jerrno)) break;
+      jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.listxattr__Ljava_nio_ByteBuffer_Lfuse_impl_FuseBufferSetter_, jPath, jSetter);
 
-         xattrsize = (*env)->GetIntField(env, jSize, FuseSize->field.size);
-      }
-      else
-      {
-         jList = (*env)->NewDirectByteBuffer(env, list , (jlong)size);
-         if (exception_check_jerrno(env, &jerrno)) break;
+      exception_check_jerrno(env, &jerrno);
 
-         jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.listxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, jPath, jList);
-         if (exception_check_jerrno(env, &jerrno)) break;
+      // take the buffer out of the setter, it must not stay reachable after the call
+      jList = (*env)->GetObjectField(env, jSetter, FuseBuffer->field.buffer);
+      (*env)->SetObjectField(env, jSetter, FuseBuffer->field.buffer, NULL);
 
-         // to obtain # of bytes read, get current position from ByteBuffer
-         xattrsize = (*env)->CallIntMethod(env, jList, ByteBuffer->method.position);
-      }
+      if (jerrno) break;
 
-      exception_check_jerrno(env, &jerrno);
+      xattrsize = reply_xattr(env, pid, path, NULL, jList, list, size);
       break;
    }
 
    // cleanup
 
-   if (jSize != NULL) (*env)->DeleteLocalRef(env, jSize);
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
    if (jList != NULL) (*env)->DeleteLocalRef(env, jList);
 
    release_env(env);
@@ -1128,19 +2435,21 @@ static int javafs_listxattr(const char *path, char *list, size_t size)
    return jerrno? -jerrno : xattrsize;
 }
 
-static int javafs_removexattr(const char *path, char *name)
+static int javafs_removexattr(const char *path, const char *name)
 {
-   JNIEnv *env = get_env();
+   JNIEnv *env = get_fs_env();
    jobject jPath = NULL;
    jobject jName = NULL;
    jint jerrno = 0;
 
+   invalidate_xattr_cache(path);
+
    while (1)
    {
-      jPath = (*env)->NewDirectByteBuffer(env, (void *)path, (jlong)strlen(path));
+      jPath = wrap_buffer(env, BUF_PATH, (void *)path, strlen(path));
       if (exception_check_jerrno(env, &jerrno)) break;
 
-      jName = (*env)->NewDirectByteBuffer(env, (void *)name, (jlong)strlen(name));
+      jName = wrap_buffer(env, BUF_NAME, (void *)name, strlen(name));
       if (exception_check_jerrno(env, &jerrno)) break;
 
       jerrno = (*env)->CallIntMethod(env, fuseFS, FuseFS->method.removexattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, jPath, jName);
@@ -1148,10 +2457,7 @@ static int javafs_removexattr(const char *path, char *name)
       break;
    }
 
-   // cleanup
-
-   if (jPath != NULL) (*env)->DeleteLocalRef(env, jPath);
-   if (jName != NULL) (*env)->DeleteLocalRef(env, jName);
+   invalidate_attr_cache(path);
 
    release_env(env);
 
@@ -1159,10 +2465,21 @@ static int javafs_removexattr(const char *path, char *name)
 }
 
 
+static void *javafs_init(struct fuse_conn_info *conn)
+{
+   init_writeback_cache(conn);
+
+   return NULL;
+}
+
+
 static struct fuse_operations javafs_oper = {
+   init:       javafs_init,
    getattr:    javafs_getattr,
+   fgetattr:   javafs_fgetattr,
    readlink:   javafs_readlink,
    getdir:     javafs_getdir,
+   readdir:    javafs_readdir,
    mknod:      javafs_mknod,
    mkdir:      javafs_mkdir,
    symlink:    javafs_symlink,
@@ -1173,8 +2490,10 @@ static struct fuse_operations javafs_oper = {
    chmod:      javafs_chmod,
    chown:      javafs_chown,
    truncate:   javafs_truncate,
+   ftruncate:  javafs_ftruncate,
    utime:      javafs_utime,
    open:       javafs_open,
+   create:     javafs_create,
    read:       javafs_read,
    write:      javafs_write,
    statfs:     javafs_statfs,
@@ -1185,13 +2504,94 @@ static struct fuse_operations javafs_oper = {
    setxattr:    javafs_setxattr,
    getxattr:    javafs_getxattr,
    listxattr:   javafs_listxattr,
-   removexattr: javafs_removexattr
+   removexattr: javafs_removexattr,
+   // splice capable variants of read & write, registered only on demand
+   write_buf:   javafs_write_buf,
+   read_buf:    javafs_read_buf
 };
 
 
+static int is_implemented(JNIEnv *env, const char *name)
+{
+   jstring jName = (*env)->NewStringUTF(env, name);
+   jboolean implemented = JNI_TRUE;
+
+   if (jName != NULL)
+   {
+      implemented = (*env)->CallBooleanMethod(env, fuseFS, FuseFS->method.isImplemented__Ljava_lang_String_, jName);
+      (*env)->DeleteLocalRef(env, jName);
+   }
+
+   // when in doubt register the operation
+   if ((*env)->ExceptionCheck(env))
+   {
+      (*env)->ExceptionDescribe(env);
+      (*env)->ExceptionClear(env);
+      implemented = JNI_TRUE;
+   }
+
+   return implemented == JNI_TRUE;
+}
+
+
+#define REGISTER_IF_IMPLEMENTED(oper, op) \
+   do { if (!is_implemented(env, #op)) (oper)->op = NULL; } while (0)
+
+// fill oper with the callbacks for operations the Java filesystem implements,
+// libfuse answers the rest with ENOSYS without crossing into Java
+void select_operations(JNIEnv *env, struct fuse_operations *oper)
+{
+   *oper = javafs_oper;
+
+   REGISTER_IF_IMPLEMENTED(oper, getattr);
+   REGISTER_IF_IMPLEMENTED(oper, fgetattr);
+   REGISTER_IF_IMPLEMENTED(oper, readlink);
+   REGISTER_IF_IMPLEMENTED(oper, getdir);
+   REGISTER_IF_IMPLEMENTED(oper, readdir);
+   if (is_implemented(env, "readdirplus"))
+   {
+      oper->readdir = javafs_readdirplus;
+      enable_attr_cache();
+   }
+   REGISTER_IF_IMPLEMENTED(oper, mknod);
+   REGISTER_IF_IMPLEMENTED(oper, mkdir);
+   REGISTER_IF_IMPLEMENTED(oper, symlink);
+   REGISTER_IF_IMPLEMENTED(oper, unlink);
+   REGISTER_IF_IMPLEMENTED(oper, rmdir);
+   REGISTER_IF_IMPLEMENTED(oper, rename);
+   REGISTER_IF_IMPLEMENTED(oper, link);
+   REGISTER_IF_IMPLEMENTED(oper, chmod);
+   REGISTER_IF_IMPLEMENTED(oper, chown);
+   REGISTER_IF_IMPLEMENTED(oper, truncate);
+   REGISTER_IF_IMPLEMENTED(oper, ftruncate);
+   REGISTER_IF_IMPLEMENTED(oper, utime);
+   REGISTER_IF_IMPLEMENTED(oper, open);
+   REGISTER_IF_IMPLEMENTED(oper, create);
+   REGISTER_IF_IMPLEMENTED(oper, read);
+   if (oper->read != NULL && is_implemented(env, "readBuffer"))
+      oper->read = javafs_read_buffer;
+   if (!is_implemented(env, "readRegion"))
+      oper->read_buf = NULL;
+   REGISTER_IF_IMPLEMENTED(oper, write);
+   if (!is_implemented(env, "writeRegion"))
+      oper->write_buf = NULL;
+   REGISTER_IF_IMPLEMENTED(oper, statfs);
+   REGISTER_IF_IMPLEMENTED(oper, flush);
+   REGISTER_IF_IMPLEMENTED(oper, release);
+   REGISTER_IF_IMPLEMENTED(oper, fsync);
+   REGISTER_IF_IMPLEMENTED(oper, setxattr);
+   REGISTER_IF_IMPLEMENTED(oper, getxattr);
+   REGISTER_IF_IMPLEMENTED(oper, listxattr);
+   REGISTER_IF_IMPLEMENTED(oper, removexattr);
+}
+
+
 //
 // command line boot-up
 
+// the native harness (src/test/c) brings its own main()
+#ifndef JAVAFS_HARNESS
+
 int main(int argc, char *argv[])
 {
    char *fuseArgv[argc];
@@ -1238,8 +2638,12 @@ int main(int argc, char *argv[])
       {
          if (alloc_filesystem(env, filesystemClassName))
          {
+            struct fuse_operations oper;
+
+            select_operations(env, &oper);
+
             // main loop
-            fuse_main(fuseArgc, fuseArgv, &javafs_oper);
+            fuse_main(fuseArgc, fuseArgv, &oper, NULL);
 
             // cleanup
             free_fuseFS(env);
@@ -1260,20 +2664,49 @@ int main(int argc, char *argv[])
    return 0;
 }
 
+#endif
+
 
 //
 // JNI boot-up
 
+// like fuse_main(), but the requests are served by javafs_session_loop() on pre-attached threads
+static int javafs_main(int argc, char *argv[], const struct fuse_operations *oper, int workers)
+{
+   struct fuse *fuse;
+   char *mountpoint;
+   int multithreaded;
+   int res;
+
+   fuse = fuse_setup(argc, argv, oper, sizeof(*oper), &mountpoint, &multithreaded, NULL);
+   if (fuse == NULL)
+      return 1;
+
+   // -s on the command line wins
+   if (!multithreaded)
+      workers = 1;
+
+   res = javafs_session_loop(fuse_get_session(fuse), workers);
+
+   fuse_teardown(fuse, mountpoint);
+
+   return (res == -1)? 1 : 0;
+}
+
+
 /*
  * Class:     fuse_FuseMount
  * Method:    mount
- * Signature: ([Ljava/lang/String;Lfuse/FuseFS;Ljava/lang/ThreadGroup;)V
+ * Signature: ([Ljava/lang/String;Lfuse/impl/FuseFS;Ljava/lang/ThreadGroup;IDZZ)V
  */
-JNIEXPORT void JNICALL Java_fuse_FuseMount_mount(JNIEnv *env, jclass class, jobjectArray jArgs, jobject jFuseFS, jobject jThreadGroup)
+JNIEXPORT void JNICALL Java_fuse_FuseMount_mount(JNIEnv *env, jclass class, jobjectArray jArgs, jobject jFuseFS, jobject jThreadGroup, jint workers,
+                                                 jdouble jAttrTimeout, jboolean jWritebackCache, jboolean jNullPathOk)
 {
    if (!((*env)->GetJavaVM(env, &vm)))
    {
       mainEnv = env;
+      request_writeback_cache(jWritebackCache == JNI_TRUE);
+      set_attr_cache_timeout((double)jAttrTimeout);
       int i;
       int n = (*env)->GetArrayLength(env, jArgs);
       int fuseArgc = n + 1;
@@ -1308,8 +2741,18 @@ JNIEXPORT void JNICALL Java_fuse_FuseMount_mount(JNIEnv *env, jclass class, jobj
          {
             if (retain_threadGroup(env, jThreadGroup))
             {
+               struct fuse_operations oper;
+
+               select_operations(env, &oper);
+
+               // libfuse still builds the paths, but passes NULL for an open file or directory
+               // whose path is gone instead of failing; flag_nopath is not set as libfuse would
+               // then pass NULL to readdir as well
+               if (jNullPathOk == JNI_TRUE)
+                  oper.flag_nullpath_ok = 1;
+
                // main loop
-               fuse_main(fuseArgc, fuseArgv, &javafs_oper);
+               javafs_main(fuseArgc, fuseArgv, &oper, (int)workers);
 
                // cleanup
                free_threadGroup(env);
@@ -1348,21 +2791,6 @@ JNIEXPORT jint JNICALL Java_fuse_FuseOpen_sizeOfFh(JNIEnv *env, jclass class)
 }
 
 
-/*
- * Class:     fuse_FuseContext
- * Method:    fillInFuseContext
- * Signature: ()V
- */
-JNIEXPORT void JNICALL Java_fuse_FuseContext_fillInFuseContext(JNIEnv *env, jobject jContext)
-{
-   struct fuse_context *context = fuse_get_context();
-
-   (*env)->SetIntField(env, jContext, FuseContext->field.uid, (jint)(context->uid));
-   (*env)->SetIntField(env, jContext, FuseContext->field.gid, (jint)(context->gid));
-   (*env)->SetIntField(env, jContext, FuseContext->field.pid, (jint)(context->pid));
-}
-
-
 /*
  * Class:     fuse_FuseFSFillDir
  * Method:    fill
@@ -1372,15 +2800,41 @@ JNIEXPORT jboolean JNICALL Java_fuse_FuseFSFillDir_fill
   (JNIEnv *env, jobject jFillDir, jobject jName, jlong inode, jint mode, jlong nextOffset, jlong buf, jlong fillDir)
 {
    // cast jlong (64 bit signed integer) to function pointer
-   fuse_fill_dir_t fill_dir = (fuse_fill_dir_t) fillDir;
+   fuse_fill_dir_t fill_dir = (fuse_fill_dir_t) (intptr_t) fillDir;
 
    const char *name = (const char *) (*env)->GetDirectBufferAddress(env, jName);
 
    struct stat stbuf;
+   memset(&stbuf, 0, sizeof(stbuf));
    stbuf.st_ino = (ino_t) inode;
    stbuf.st_mode = (mode_t) mode;
 
-   int retval = fill_dir((void *)buf, name, &stbuf, (off_t) nextOffset);
+   int retval = fill_dir((void *)(intptr_t) buf, name, &stbuf, (off_t) nextOffset);
 
    return (retval == 0)? JNI_TRUE : JNI_FALSE;
 }
+
+
+/*
+ * Class:     fuse_FuseFSFillDir
+ * Method:    fillPlus
+ * Signature: (Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;JJJJ)Z
+ */
+JNIEXPORT jboolean JNICALL Java_fuse_FuseFSFillDir_fillPlus
+  (JNIEnv *env, jobject jFillDir, jobject jName, jobject jAttr, jlong nextOffset, jlong buf, jlong fillDir, jlong path)
+{
+   fuse_fill_dir_t fill_dir = (fuse_fill_dir_t) (intptr_t) fillDir;
+
+   const char *name = (const char *) (*env)->GetDirectBufferAddress(env, jName);
+   const javafs_attr *attr = (const javafs_attr *) (*env)->GetDirectBufferAddress(env, jAttr);
+
+   struct stat stbuf;
+   attr_to_stat(attr, &stbuf);
+
+   if (fill_dir((void *)(intptr_t) buf, name, &stbuf, (off_t) nextOffset) != 0)
+      return JNI_FALSE;
+
+   put_attr_cache((const char *)(intptr_t) path, name, attr);
+
+   return JNI_TRUE;
+}
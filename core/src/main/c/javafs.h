@@ -11,7 +11,9 @@
 #ifndef _JAVAFS_H_
 #define _JAVAFS_H_
 
-#define FUSE_USE_VERSION 22
+#ifndef FUSE_USE_VERSION
+#define FUSE_USE_VERSION 26
+#endif
 #include <fuse.h>
 
 #include <stdio.h>
@@ -21,16 +23,16 @@
 #include <fcntl.h>
 #include <dirent.h>
 #include <errno.h>
-#include <sys/statfs.h>
+#include <sys/statvfs.h>
+#include <stdint.h>
+#include <pthread.h>
+#include <time.h>
 
 #include <jni.h>
 
 
 // #define DEBUG 1
 
-#define MAX_GETDIR_NAME_LENGTH 1024
-
-
 #ifdef TRACE
 #undef TRACE
 #endif
@@ -80,6 +82,116 @@ extern "C" {
 
 #define IFTODT(mode)   (((mode) & 0170000) >> 12)
 
+
+//
+// shared between the high-level (javafs.c) and the low-level (javafs_lowlevel.c) bindings
+
+// per-thread reusable direct ByteBuffer slots
+#define BUF_PATH   0   // path argument
+#define BUF_NAME   1   // second path or name argument (link target, xattr name)
+#define BUF_DATA   2   // data argument (read/write buffer, xattr value, link buffer)
+#define BUF_ATTR   3   // getattr reply (javafs_attr)
+#define BUF_SLOTS  4
+
+// flat getattr reply written by Java, must match the offsets in fuse.impl.FuseGetattrBuffer
+typedef struct _javafs_attr
+{
+   int64_t inode;
+   int64_t size;
+   int64_t blocks;
+   int32_t mode;
+   int32_t nlink;
+   int32_t uid;
+   int32_t gid;
+   int32_t rdev;
+   int32_t atime;
+   int32_t mtime;
+   int32_t ctime;
+   double attr_timeout;        // seconds, negative for the default of the mount
+   double entry_timeout;
+   int64_t node;               // node id of a low-level entry reply
+
+} javafs_attr;
+
+// getdir()/readdir entry collected by Java, must match the offsets in fuse.impl.FuseFSDirFiller;
+// the records follow each other, every one padded to 8 bytes
+typedef struct _javafs_dirent
+{
+   int32_t length;             // of the name without the terminating NUL
+   int32_t mode;
+   int64_t inode;
+   char name[];
+
+} javafs_dirent;
+
+#define DIRENT_SIZE(d) ((sizeof(javafs_dirent) + (d)->length + 1 + 7) & ~(size_t)7)
+
+// caller of the current operation written before each upcall, must match the offsets in fuse.FuseContext
+typedef struct _javafs_context
+{
+   int32_t uid;
+   int32_t gid;
+   int32_t pid;
+   int32_t umask;
+
+} javafs_context;
+
+extern JavaVM *vm;
+extern JNIEnv *mainEnv;
+extern jobject threadGroup;
+
+extern jclass_fuse_FuseGetattr *FuseGetattr;
+extern jclass_fuse_impl_FuseFSDirFiller *FuseFSDirFiller;
+extern jclass_fuse_FuseStatfs *FuseStatfs;
+extern jclass_fuse_FuseOpen *FuseOpen;
+extern jclass_fuse_FuseSize *FuseSize;
+extern jclass_fuse_FuseContext *FuseContext;
+extern jclass_java_nio_ByteBuffer *ByteBuffer;
+
+int alloc_classes(JNIEnv *env);
+void free_classes(JNIEnv *env);
+int retain_threadGroup(JNIEnv *env, jobject util);
+void free_threadGroup(JNIEnv *env);
+
+JNIEnv *get_env(void);
+JNIEnv *attach_env(const char *name);
+void detach_env(JNIEnv *env);
+void release_env(JNIEnv *env);
+jint exception_check_jerrno(JNIEnv *env, jint *jerrno);
+
+jobject wrap_buffer(JNIEnv *env, int slot, void *address, size_t size);
+void set_context(JNIEnv *env, uid_t uid, gid_t gid, pid_t pid, mode_t umask);
+jint buffer_position(JNIEnv *env, jobject jBuf);
+void *buffer_data(JNIEnv *env, jobject jBuf, size_t *length);
+void *thread_read_buffer(JNIEnv *env, size_t size);
+jobject thread_dir_filler(JNIEnv *env);
+javafs_dirent *dir_filler_records(JNIEnv *env, jobject jDirFiller, size_t *length);
+void getattr_to_stat(JNIEnv *env, jobject jGetattr, struct stat *stbuf);
+void attr_to_stat(const javafs_attr *attr, struct stat *stbuf);
+
+// writeback cache (FuseMountOptions.writebackCache()): requested before the mount, negotiated
+// in the init callback, then open flags are adjusted for the kernel reading through any handle
+void request_writeback_cache(int requested);
+void init_writeback_cache(struct fuse_conn_info *conn);
+void writeback_open_flags(struct fuse_file_info *ffi);
+
+
+//
+// high-level bindings (javafs.c), also driven directly by the native harness (src/test/c)
+
+int retain_fuseFS(JNIEnv *env, jobject util);
+void free_fuseFS(JNIEnv *env);
+void select_operations(JNIEnv *env, struct fuse_operations *oper);
+
+
+//
+// request loop (javafs_loop.c)
+
+// workers <= 1 serves the requests on the calling thread, otherwise on a pool of pre-attached
+// "fuse-worker-N" threads; the filesystem stays mounted when it returns
+struct fuse_session;
+int javafs_session_loop(struct fuse_session *se, int workers);
+
 #ifdef __cplusplus
 } /* end of extern "C" { */
 #endif
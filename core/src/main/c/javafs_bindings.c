@@ -101,204 +101,82 @@ jclass_fuse_FuseGetattr *alloc_jclass_fuse_FuseGetattr(JNIEnv *env)
 }
 
 /**
- * free structure with a reference to fuse.FuseFSDirEnt java class and cached field & method IDs
+ * free structure with a reference to fuse.impl.FuseFSDirFiller java class and cached field & method IDs
  */
-void free_jclass_fuse_FuseFSDirEnt(JNIEnv *env, jclass_fuse_FuseFSDirEnt *fuse_FuseFSDirEnt)
+void free_jclass_fuse_impl_FuseFSDirFiller(JNIEnv *env, jclass_fuse_impl_FuseFSDirFiller *fuse_impl_FuseFSDirFiller)
 {
-   if (fuse_FuseFSDirEnt->class != NULL)
-      (*env)->DeleteGlobalRef(env, fuse_FuseFSDirEnt->class);
+   if (fuse_impl_FuseFSDirFiller->class != NULL)
+      (*env)->DeleteGlobalRef(env, fuse_impl_FuseFSDirFiller->class);
 
-   free(fuse_FuseFSDirEnt);
+   free(fuse_impl_FuseFSDirFiller);
 }
 
 /**
- * alloc structure with a reference to fuse.FuseFSDirEnt java class and cached field & method IDs
+ * alloc structure with a reference to fuse.impl.FuseFSDirFiller java class and cached field & method IDs
  */
-jclass_fuse_FuseFSDirEnt *alloc_jclass_fuse_FuseFSDirEnt(JNIEnv *env)
+jclass_fuse_impl_FuseFSDirFiller *alloc_jclass_fuse_impl_FuseFSDirFiller(JNIEnv *env)
 {
    jclass class;
 
-   jclass_fuse_FuseFSDirEnt *fuse_FuseFSDirEnt = (jclass_fuse_FuseFSDirEnt*)calloc(1, sizeof(jclass_fuse_FuseFSDirEnt));
-   if (fuse_FuseFSDirEnt == NULL)
+   jclass_fuse_impl_FuseFSDirFiller *fuse_impl_FuseFSDirFiller = (jclass_fuse_impl_FuseFSDirFiller*)calloc(1, sizeof(jclass_fuse_impl_FuseFSDirFiller));
+   if (fuse_impl_FuseFSDirFiller == NULL)
    {
-      WARN("Can't allocate structure jclass_fuse_FuseFSDirEnt");
+      WARN("Can't allocate structure jclass_fuse_impl_FuseFSDirFiller");
       return NULL;
    }
 
    while (1)
    {
-      class = (*env)->FindClass(env, "fuse/FuseFSDirEnt");
+      class = (*env)->FindClass(env, "fuse/impl/FuseFSDirFiller");
       if ((*env)->ExceptionCheck(env)) break;
 
-      fuse_FuseFSDirEnt->class = (*env)->NewGlobalRef(env, class);
+      fuse_impl_FuseFSDirFiller->class = (*env)->NewGlobalRef(env, class);
       if ((*env)->ExceptionCheck(env)) break;
 
       // obtain instance field IDs
-      fuse_FuseFSDirEnt->field.name = (*env)->GetFieldID(env, fuse_FuseFSDirEnt->class, "name", "[B");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->field.inode = (*env)->GetFieldID(env, fuse_FuseFSDirEnt->class, "inode", "J");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->field.mode = (*env)->GetFieldID(env, fuse_FuseFSDirEnt->class, "mode", "I");
-      if ((*env)->ExceptionCheck(env)) break;
-
-      // obtain constructor method IDs
-      fuse_FuseFSDirEnt->constructor.new = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "<init>", "()V");
-      if ((*env)->ExceptionCheck(env)) break;
-
-      // obtain instance method IDs
-      fuse_FuseFSDirEnt->method.clone = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "clone", "()Ljava/lang/Object;");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->method.toString = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "toString", "()Ljava/lang/String;");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->method.hashCode = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "hashCode", "()I");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->method.getClass = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "getClass", "()Ljava/lang/Class;");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->method.wait__J = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "wait", "(J)V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->method.wait__JI = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "wait", "(JI)V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->method.wait = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "wait", "()V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->method.equals__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "equals", "(Ljava/lang/Object;)Z");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->method.notify = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "notify", "()V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirEnt->method.notifyAll = (*env)->GetMethodID(env, fuse_FuseFSDirEnt->class, "notifyAll", "()V");
-      if ((*env)->ExceptionCheck(env)) break;
-
-      // we're done
-      return fuse_FuseFSDirEnt;
-   }
-
-   // error handler
-   (*env)->ExceptionDescribe(env);
-   (*env)->ExceptionClear(env);
-   free_jclass_fuse_FuseFSDirEnt(env, fuse_FuseFSDirEnt);
-   return NULL;
-}
-
-/**
- * free structure with a reference to fuse.FuseFSDirFiller java class and cached field & method IDs
- */
-void free_jclass_fuse_FuseFSDirFiller(JNIEnv *env, jclass_fuse_FuseFSDirFiller *fuse_FuseFSDirFiller)
-{
-   if (fuse_FuseFSDirFiller->class != NULL)
-      (*env)->DeleteGlobalRef(env, fuse_FuseFSDirFiller->class);
-
-   free(fuse_FuseFSDirFiller);
-}
-
-/**
- * alloc structure with a reference to fuse.FuseFSDirFiller java class and cached field & method IDs
- */
-jclass_fuse_FuseFSDirFiller *alloc_jclass_fuse_FuseFSDirFiller(JNIEnv *env)
-{
-   jclass class;
-
-   jclass_fuse_FuseFSDirFiller *fuse_FuseFSDirFiller = (jclass_fuse_FuseFSDirFiller*)calloc(1, sizeof(jclass_fuse_FuseFSDirFiller));
-   if (fuse_FuseFSDirFiller == NULL)
-   {
-      WARN("Can't allocate structure jclass_fuse_FuseFSDirFiller");
-      return NULL;
-   }
-
-   while (1)
-   {
-      class = (*env)->FindClass(env, "fuse/FuseFSDirFiller");
-      if ((*env)->ExceptionCheck(env)) break;
-
-      fuse_FuseFSDirFiller->class = (*env)->NewGlobalRef(env, class);
+      fuse_impl_FuseFSDirFiller->field.buffer = (*env)->GetFieldID(env, fuse_impl_FuseFSDirFiller->class, "buffer", "Ljava/nio/ByteBuffer;");
       if ((*env)->ExceptionCheck(env)) break;
 
       // obtain constructor method IDs
-      fuse_FuseFSDirFiller->constructor.new = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "<init>", "()V");
+      fuse_impl_FuseFSDirFiller->constructor.new = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "<init>", "()V");
       if ((*env)->ExceptionCheck(env)) break;
 
       // obtain instance method IDs
-      fuse_FuseFSDirFiller->method.setCharset__Ljava_nio_charset_Charset_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "setCharset", "(Ljava/nio/charset/Charset;)V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.add__Ljava_lang_String_JI = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "add", "(Ljava/lang/String;JI)V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.toString = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "toString", "()Ljava/lang/String;");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.add__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "add", "(Ljava/lang/Object;)Z");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.add__ILjava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "add", "(ILjava/lang/Object;)V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.indexOf__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "indexOf", "(Ljava/lang/Object;)I");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.clone = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "clone", "()Ljava/lang/Object;");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.clear = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "clear", "()V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.contains__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "contains", "(Ljava/lang/Object;)Z");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.lastIndexOf__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "lastIndexOf", "(Ljava/lang/Object;)I");
+      fuse_impl_FuseFSDirFiller->method.add__Ljava_lang_String_JI = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "add", "(Ljava/lang/String;JI)V");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.addAll__Ljava_util_Collection_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "addAll", "(Ljava/util/Collection;)Z");
+      fuse_impl_FuseFSDirFiller->method.toString = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "toString", "()Ljava/lang/String;");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.addAll__ILjava_util_Collection_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "addAll", "(ILjava/util/Collection;)Z");
+      fuse_impl_FuseFSDirFiller->method.size = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "size", "()I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.get__I = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "get", "(I)Ljava/lang/Object;");
+      fuse_impl_FuseFSDirFiller->method.reset = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "reset", "()V");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.size = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "size", "()I");
+      fuse_impl_FuseFSDirFiller->method.setCharset__Ljava_nio_charset_Charset_ = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "setCharset", "(Ljava/nio/charset/Charset;)V");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.toArray = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "toArray", "()[Ljava/lang/Object;");
+      fuse_impl_FuseFSDirFiller->method.wait__JI = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "wait", "(JI)V");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.toArray___Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "toArray", "([Ljava/lang/Object;)[Ljava/lang/Object;");
+      fuse_impl_FuseFSDirFiller->method.wait = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "wait", "()V");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.remove__I = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "remove", "(I)Ljava/lang/Object;");
+      fuse_impl_FuseFSDirFiller->method.wait__J = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "wait", "(J)V");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.remove__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "remove", "(Ljava/lang/Object;)Z");
+      fuse_impl_FuseFSDirFiller->method.equals__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "equals", "(Ljava/lang/Object;)Z");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.isEmpty = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "isEmpty", "()Z");
+      fuse_impl_FuseFSDirFiller->method.hashCode = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "hashCode", "()I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.set__ILjava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "set", "(ILjava/lang/Object;)Ljava/lang/Object;");
+      fuse_impl_FuseFSDirFiller->method.getClass = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "getClass", "()Ljava/lang/Class;");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.ensureCapacity__I = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "ensureCapacity", "(I)V");
+      fuse_impl_FuseFSDirFiller->method.notify = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "notify", "()V");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.trimToSize = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "trimToSize", "()V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.hashCode = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "hashCode", "()I");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.equals__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "equals", "(Ljava/lang/Object;)Z");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.iterator = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "iterator", "()Ljava/util/Iterator;");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.subList__II = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "subList", "(II)Ljava/util/List;");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.listIterator = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "listIterator", "()Ljava/util/ListIterator;");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.listIterator__I = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "listIterator", "(I)Ljava/util/ListIterator;");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.containsAll__Ljava_util_Collection_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "containsAll", "(Ljava/util/Collection;)Z");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.removeAll__Ljava_util_Collection_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "removeAll", "(Ljava/util/Collection;)Z");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.retainAll__Ljava_util_Collection_ = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "retainAll", "(Ljava/util/Collection;)Z");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.getClass = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "getClass", "()Ljava/lang/Class;");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.wait__J = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "wait", "(J)V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.wait__JI = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "wait", "(JI)V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.wait = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "wait", "()V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.notify = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "notify", "()V");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFSDirFiller->method.notifyAll = (*env)->GetMethodID(env, fuse_FuseFSDirFiller->class, "notifyAll", "()V");
+      fuse_impl_FuseFSDirFiller->method.notifyAll = (*env)->GetMethodID(env, fuse_impl_FuseFSDirFiller->class, "notifyAll", "()V");
       if ((*env)->ExceptionCheck(env)) break;
 
       // we're done
-      return fuse_FuseFSDirFiller;
+      return fuse_impl_FuseFSDirFiller;
    }
 
    // error handler
    (*env)->ExceptionDescribe(env);
    (*env)->ExceptionClear(env);
-   free_jclass_fuse_FuseFSDirFiller(env, fuse_FuseFSDirFiller);
+   free_jclass_fuse_impl_FuseFSDirFiller(env, fuse_impl_FuseFSDirFiller);
    return NULL;
 }
 
@@ -500,7 +378,7 @@ jclass_fuse_FuseOpen *alloc_jclass_fuse_FuseOpen(JNIEnv *env)
       if ((*env)->ExceptionCheck(env)) break;
 
       // obtain instance field IDs
-      fuse_FuseOpen->field.fh = (*env)->GetFieldID(env, fuse_FuseOpen->class, "fh", "Ljava/lang/Object;");
+      fuse_FuseOpen->field.fh = (*env)->GetFieldID(env, fuse_FuseOpen->class, "fh", "J");
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseOpen->field.directIO = (*env)->GetFieldID(env, fuse_FuseOpen->class, "directIO", "Z");
       if ((*env)->ExceptionCheck(env)) break;
@@ -512,7 +390,7 @@ jclass_fuse_FuseOpen *alloc_jclass_fuse_FuseOpen(JNIEnv *env)
       if ((*env)->ExceptionCheck(env)) break;
 
       // obtain instance method IDs
-      fuse_FuseOpen->method.setFh__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseOpen->class, "setFh", "(Ljava/lang/Object;)V");
+      fuse_FuseOpen->method.setFh__J = (*env)->GetMethodID(env, fuse_FuseOpen->class, "setFh", "(J)V");
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseOpen->method.isDirectIO = (*env)->GetMethodID(env, fuse_FuseOpen->class, "isDirectIO", "()Z");
       if ((*env)->ExceptionCheck(env)) break;
@@ -587,35 +465,37 @@ jclass_fuse_FuseContext *alloc_jclass_fuse_FuseContext(JNIEnv *env)
       fuse_FuseContext->class = (*env)->NewGlobalRef(env, class);
       if ((*env)->ExceptionCheck(env)) break;
 
-      // obtain instance field IDs
-      fuse_FuseContext->field.uid = (*env)->GetFieldID(env, fuse_FuseContext->class, "uid", "I");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseContext->field.gid = (*env)->GetFieldID(env, fuse_FuseContext->class, "gid", "I");
-      if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseContext->field.pid = (*env)->GetFieldID(env, fuse_FuseContext->class, "pid", "I");
-      if ((*env)->ExceptionCheck(env)) break;
-
       // obtain static method IDs
       fuse_FuseContext->static_method.get = (*env)->GetStaticMethodID(env, fuse_FuseContext->class, "get", "()Lfuse/FuseContext;");
       if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseContext->static_method.current = (*env)->GetStaticMethodID(env, fuse_FuseContext->class, "current", "()Lfuse/FuseContext;");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseContext->static_method.threadBuffer = (*env)->GetStaticMethodID(env, fuse_FuseContext->class, "threadBuffer", "()Ljava/nio/ByteBuffer;");
+      if ((*env)->ExceptionCheck(env)) break;
 
       // obtain instance method IDs
-      fuse_FuseContext->method.clone = (*env)->GetMethodID(env, fuse_FuseContext->class, "clone", "()Ljava/lang/Object;");
-      if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseContext->method.toString = (*env)->GetMethodID(env, fuse_FuseContext->class, "toString", "()Ljava/lang/String;");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseContext->method.hashCode = (*env)->GetMethodID(env, fuse_FuseContext->class, "hashCode", "()I");
+      fuse_FuseContext->method.getUid = (*env)->GetMethodID(env, fuse_FuseContext->class, "getUid", "()I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseContext->method.getClass = (*env)->GetMethodID(env, fuse_FuseContext->class, "getClass", "()Ljava/lang/Class;");
+      fuse_FuseContext->method.getGid = (*env)->GetMethodID(env, fuse_FuseContext->class, "getGid", "()I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseContext->method.wait__J = (*env)->GetMethodID(env, fuse_FuseContext->class, "wait", "(J)V");
+      fuse_FuseContext->method.getPid = (*env)->GetMethodID(env, fuse_FuseContext->class, "getPid", "()I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseContext->method.getUmask = (*env)->GetMethodID(env, fuse_FuseContext->class, "getUmask", "()I");
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseContext->method.wait__JI = (*env)->GetMethodID(env, fuse_FuseContext->class, "wait", "(JI)V");
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseContext->method.wait = (*env)->GetMethodID(env, fuse_FuseContext->class, "wait", "()V");
       if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseContext->method.wait__J = (*env)->GetMethodID(env, fuse_FuseContext->class, "wait", "(J)V");
+      if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseContext->method.equals__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseContext->class, "equals", "(Ljava/lang/Object;)Z");
       if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseContext->method.hashCode = (*env)->GetMethodID(env, fuse_FuseContext->class, "hashCode", "()I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseContext->method.getClass = (*env)->GetMethodID(env, fuse_FuseContext->class, "getClass", "()Ljava/lang/Class;");
+      if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseContext->method.notify = (*env)->GetMethodID(env, fuse_FuseContext->class, "notify", "()V");
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseContext->method.notifyAll = (*env)->GetMethodID(env, fuse_FuseContext->class, "notifyAll", "()V");
@@ -674,9 +554,17 @@ jclass_fuse_FuseFS *alloc_jclass_fuse_FuseFS(JNIEnv *env)
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseFS->method.getattr__Ljava_nio_ByteBuffer_Lfuse_FuseGetattrSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "getattr", "(Ljava/nio/ByteBuffer;Lfuse/FuseGetattrSetter;)I");
       if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFS->method.getattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "getattr", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFS->method.isImplemented__Ljava_lang_String_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "isImplemented", "(Ljava/lang/String;)Z");
+      if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseFS->method.readlink__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "readlink", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.getdir__Ljava_nio_ByteBuffer_Lfuse_FuseFSDirFiller_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "getdir", "(Ljava/nio/ByteBuffer;Lfuse/FuseFSDirFiller;)I");
+      fuse_FuseFS->method.getdir__Ljava_nio_ByteBuffer_Lfuse_impl_FuseFSDirFiller_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "getdir", "(Ljava/nio/ByteBuffer;Lfuse/impl/FuseFSDirFiller;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFS->method.readdir__Ljava_nio_ByteBuffer_JJLfuse_FuseFSFillDir_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "readdir", "(Ljava/nio/ByteBuffer;JJLfuse/FuseFSFillDir;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFS->method.readdirplus__Ljava_nio_ByteBuffer_JJLfuse_FuseFSFillDir_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "readdirplus", "(Ljava/nio/ByteBuffer;JJLfuse/FuseFSFillDir;)I");
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseFS->method.mknod__Ljava_nio_ByteBuffer_II = (*env)->GetMethodID(env, fuse_FuseFS->class, "mknod", "(Ljava/nio/ByteBuffer;II)I");
       if ((*env)->ExceptionCheck(env)) break;
@@ -688,36 +576,44 @@ jclass_fuse_FuseFS *alloc_jclass_fuse_FuseFS(JNIEnv *env)
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseFS->method.statfs__Lfuse_FuseStatfsSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "statfs", "(Lfuse/FuseStatfsSetter;)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.fsync__Ljava_nio_ByteBuffer_Ljava_lang_Object_Z = (*env)->GetMethodID(env, fuse_FuseFS->class, "fsync", "(Ljava/nio/ByteBuffer;Ljava/lang/Object;Z)I");
+      fuse_FuseFS->method.fsync__Ljava_nio_ByteBuffer_JZ = (*env)->GetMethodID(env, fuse_FuseFS->class, "fsync", "(Ljava/nio/ByteBuffer;JZ)I");
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseFS->method.setxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_I = (*env)->GetMethodID(env, fuse_FuseFS->class, "setxattr", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;I)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.getxattrsize__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Lfuse_FuseSizeSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "getxattrsize", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Lfuse/FuseSizeSetter;)I");
+      fuse_FuseFS->method.getxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Lfuse_impl_FuseBufferSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "getxattr", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Lfuse/impl/FuseBufferSetter;)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.getxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "getxattr", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
+      fuse_FuseFS->method.listxattr__Ljava_nio_ByteBuffer_Lfuse_impl_FuseBufferSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "listxattr", "(Ljava/nio/ByteBuffer;Lfuse/impl/FuseBufferSetter;)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.listxattrsize__Ljava_nio_ByteBuffer_Lfuse_FuseSizeSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "listxattrsize", "(Ljava/nio/ByteBuffer;Lfuse/FuseSizeSetter;)I");
+      fuse_FuseFS->method.removexattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "removexattr", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.listxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "listxattr", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
+      fuse_FuseFS->method.write__Ljava_nio_ByteBuffer_JZLjava_nio_ByteBuffer_J = (*env)->GetMethodID(env, fuse_FuseFS->class, "write", "(Ljava/nio/ByteBuffer;JZLjava/nio/ByteBuffer;J)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.removexattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "removexattr", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
+      fuse_FuseFS->method.flush__Ljava_nio_ByteBuffer_J = (*env)->GetMethodID(env, fuse_FuseFS->class, "flush", "(Ljava/nio/ByteBuffer;J)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFS->method.read__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_J = (*env)->GetMethodID(env, fuse_FuseFS->class, "read", "(Ljava/nio/ByteBuffer;JLjava/nio/ByteBuffer;J)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.write__Ljava_nio_ByteBuffer_Ljava_lang_Object_ZLjava_nio_ByteBuffer_J = (*env)->GetMethodID(env, fuse_FuseFS->class, "write", "(Ljava/nio/ByteBuffer;Ljava/lang/Object;ZLjava/nio/ByteBuffer;J)I");
+      fuse_FuseFS->method.readBuffer__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_JLfuse_impl_FuseBufferSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "readBuffer", "(Ljava/nio/ByteBuffer;JLjava/nio/ByteBuffer;JLfuse/impl/FuseBufferSetter;)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.flush__Ljava_nio_ByteBuffer_Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "flush", "(Ljava/nio/ByteBuffer;Ljava/lang/Object;)I");
+      fuse_FuseFS->method.readRegion__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_JLfuse_impl_FuseRegionSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "readRegion", "(Ljava/nio/ByteBuffer;JLjava/nio/ByteBuffer;JLfuse/impl/FuseRegionSetter;)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.read__Ljava_nio_ByteBuffer_Ljava_lang_Object_Ljava_nio_ByteBuffer_J = (*env)->GetMethodID(env, fuse_FuseFS->class, "read", "(Ljava/nio/ByteBuffer;Ljava/lang/Object;Ljava/nio/ByteBuffer;J)I");
+      fuse_FuseFS->method.writeRegion__Ljava_nio_ByteBuffer_JJILfuse_impl_FuseRegionSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "writeRegion", "(Ljava/nio/ByteBuffer;JJILfuse/impl/FuseRegionSetter;)I");
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseFS->method.open__Ljava_nio_ByteBuffer_ILfuse_FuseOpenSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "open", "(Ljava/nio/ByteBuffer;ILfuse/FuseOpenSetter;)I");
       if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFS->method.create__Ljava_nio_ByteBuffer_IILfuse_impl_FuseOpenSetter_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "create", "(Ljava/nio/ByteBuffer;IILfuse/impl/FuseOpenSetter;)I");
+      if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseFS->method.mkdir__Ljava_nio_ByteBuffer_I = (*env)->GetMethodID(env, fuse_FuseFS->class, "mkdir", "(Ljava/nio/ByteBuffer;I)I");
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseFS->method.rename__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "rename", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
       if ((*env)->ExceptionCheck(env)) break;
-      fuse_FuseFS->method.release__Ljava_nio_ByteBuffer_Ljava_lang_Object_I = (*env)->GetMethodID(env, fuse_FuseFS->class, "release", "(Ljava/nio/ByteBuffer;Ljava/lang/Object;I)I");
+      fuse_FuseFS->method.release__Ljava_nio_ByteBuffer_JI = (*env)->GetMethodID(env, fuse_FuseFS->class, "release", "(Ljava/nio/ByteBuffer;JI)I");
       if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseFS->method.truncate__Ljava_nio_ByteBuffer_J = (*env)->GetMethodID(env, fuse_FuseFS->class, "truncate", "(Ljava/nio/ByteBuffer;J)I");
       if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFS->method.ftruncate__Ljava_nio_ByteBuffer_JJ = (*env)->GetMethodID(env, fuse_FuseFS->class, "ftruncate", "(Ljava/nio/ByteBuffer;JJ)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFS->method.fgetattr__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "fgetattr", "(Ljava/nio/ByteBuffer;JLjava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
       fuse_FuseFS->method.link__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_FuseFS->class, "link", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
       if ((*env)->ExceptionCheck(env)) break;
 
@@ -934,3 +830,315 @@ jclass_java_nio_ByteBuffer *alloc_jclass_java_nio_ByteBuffer(JNIEnv *env)
    return NULL;
 }
 
+/**
+ * free structure with a reference to fuse.impl.FuseLowlevelFS java class and cached field & method IDs
+ */
+void free_jclass_fuse_impl_FuseLowlevelFS(JNIEnv *env, jclass_fuse_impl_FuseLowlevelFS *fuse_impl_FuseLowlevelFS)
+{
+   if (fuse_impl_FuseLowlevelFS->class != NULL)
+      (*env)->DeleteGlobalRef(env, fuse_impl_FuseLowlevelFS->class);
+
+   free(fuse_impl_FuseLowlevelFS);
+}
+
+/**
+ * alloc structure with a reference to fuse.impl.FuseLowlevelFS java class and cached field & method IDs
+ */
+jclass_fuse_impl_FuseLowlevelFS *alloc_jclass_fuse_impl_FuseLowlevelFS(JNIEnv *env)
+{
+   jclass class;
+
+   jclass_fuse_impl_FuseLowlevelFS *fuse_impl_FuseLowlevelFS = (jclass_fuse_impl_FuseLowlevelFS*)calloc(1, sizeof(jclass_fuse_impl_FuseLowlevelFS));
+   if (fuse_impl_FuseLowlevelFS == NULL)
+   {
+      WARN("Can't allocate structure jclass_fuse_impl_FuseLowlevelFS");
+      return NULL;
+   }
+
+   while (1)
+   {
+      class = (*env)->FindClass(env, "fuse/impl/FuseLowlevelFS");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      fuse_impl_FuseLowlevelFS->class = (*env)->NewGlobalRef(env, class);
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // obtain instance method IDs
+      fuse_impl_FuseLowlevelFS->method.flush__JJ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "flush", "(JJ)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.lookup__JLjava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "lookup", "(JLjava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.write__JJZLjava_nio_ByteBuffer_J = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "write", "(JJZLjava/nio/ByteBuffer;J)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.read__JJLjava_nio_ByteBuffer_J = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "read", "(JJLjava/nio/ByteBuffer;J)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.open__JILfuse_impl_FuseOpenSetter_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "open", "(JILfuse/impl/FuseOpenSetter;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.release__JJI = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "release", "(JJI)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.mkdir__JLjava_nio_ByteBuffer_ILjava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "mkdir", "(JLjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.rename__JLjava_nio_ByteBuffer_JLjava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "rename", "(JLjava/nio/ByteBuffer;JLjava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.readlink__JLjava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "readlink", "(JLjava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.link__JJLjava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "link", "(JJLjava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.unlink__JLjava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "unlink", "(JLjava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.rmdir__JLjava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "rmdir", "(JLjava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.symlink__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "symlink", "(Ljava/nio/ByteBuffer;JLjava/nio/ByteBuffer;Ljava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.mknod__JLjava_nio_ByteBuffer_IILjava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "mknod", "(JLjava/nio/ByteBuffer;IILjava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.readdir__JLfuse_impl_FuseFSDirFiller_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "readdir", "(JLfuse/impl/FuseFSDirFiller;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.forget__JJ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "forget", "(JJ)V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.getattr__JLjava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "getattr", "(JLjava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.setattr__JIIIIJIILjava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "setattr", "(JIIIIJIILjava/nio/ByteBuffer;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.statfs__Lfuse_impl_FuseStatfsSetter_ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "statfs", "(Lfuse/impl/FuseStatfsSetter;)I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseLowlevelFS->method.fsync__JJZ = (*env)->GetMethodID(env, fuse_impl_FuseLowlevelFS->class, "fsync", "(JJZ)I");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // we're done
+      return fuse_impl_FuseLowlevelFS;
+   }
+
+   // error handler
+   (*env)->ExceptionDescribe(env);
+   (*env)->ExceptionClear(env);
+   free_jclass_fuse_impl_FuseLowlevelFS(env, fuse_impl_FuseLowlevelFS);
+   return NULL;
+}
+
+/**
+ * free structure with a reference to fuse.FuseFSFillDir java class and cached field & method IDs
+ */
+void free_jclass_fuse_FuseFSFillDir(JNIEnv *env, jclass_fuse_FuseFSFillDir *fuse_FuseFSFillDir)
+{
+   if (fuse_FuseFSFillDir->class != NULL)
+      (*env)->DeleteGlobalRef(env, fuse_FuseFSFillDir->class);
+
+   free(fuse_FuseFSFillDir);
+}
+
+/**
+ * alloc structure with a reference to fuse.FuseFSFillDir java class and cached field & method IDs
+ */
+jclass_fuse_FuseFSFillDir *alloc_jclass_fuse_FuseFSFillDir(JNIEnv *env)
+{
+   jclass class;
+
+   jclass_fuse_FuseFSFillDir *fuse_FuseFSFillDir = (jclass_fuse_FuseFSFillDir*)calloc(1, sizeof(jclass_fuse_FuseFSFillDir));
+   if (fuse_FuseFSFillDir == NULL)
+   {
+      WARN("Can't allocate structure jclass_fuse_FuseFSFillDir");
+      return NULL;
+   }
+
+   while (1)
+   {
+      class = (*env)->FindClass(env, "fuse/FuseFSFillDir");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      fuse_FuseFSFillDir->class = (*env)->NewGlobalRef(env, class);
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // obtain constructor method IDs
+      fuse_FuseFSFillDir->constructor.new__JJ = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "<init>", "(JJ)V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->constructor.new__JJJ = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "<init>", "(JJJ)V");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // obtain instance method IDs
+      fuse_FuseFSFillDir->method.fill__Ljava_nio_ByteBuffer_JIJ = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "fill", "(Ljava/nio/ByteBuffer;JIJ)Z");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->method.fillPlus__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_J = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "fillPlus", "(Ljava/nio/ByteBuffer;Ljava/nio/ByteBuffer;J)Z");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->method.wait__JI = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "wait", "(JI)V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->method.wait = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "wait", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->method.wait__J = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "wait", "(J)V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->method.equals__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "equals", "(Ljava/lang/Object;)Z");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->method.toString = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "toString", "()Ljava/lang/String;");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->method.hashCode = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "hashCode", "()I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->method.getClass = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "getClass", "()Ljava/lang/Class;");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->method.notify = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "notify", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_FuseFSFillDir->method.notifyAll = (*env)->GetMethodID(env, fuse_FuseFSFillDir->class, "notifyAll", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // we're done
+      return fuse_FuseFSFillDir;
+   }
+
+   // error handler
+   (*env)->ExceptionDescribe(env);
+   (*env)->ExceptionClear(env);
+   free_jclass_fuse_FuseFSFillDir(env, fuse_FuseFSFillDir);
+   return NULL;
+}
+
+/**
+ * free structure with a reference to fuse.impl.FuseBuffer java class and cached field & method IDs
+ */
+void free_jclass_fuse_impl_FuseBuffer(JNIEnv *env, jclass_fuse_impl_FuseBuffer *fuse_impl_FuseBuffer)
+{
+   if (fuse_impl_FuseBuffer->class != NULL)
+      (*env)->DeleteGlobalRef(env, fuse_impl_FuseBuffer->class);
+
+   free(fuse_impl_FuseBuffer);
+}
+
+/**
+ * alloc structure with a reference to fuse.impl.FuseBuffer java class and cached field & method IDs
+ */
+jclass_fuse_impl_FuseBuffer *alloc_jclass_fuse_impl_FuseBuffer(JNIEnv *env)
+{
+   jclass class;
+
+   jclass_fuse_impl_FuseBuffer *fuse_impl_FuseBuffer = (jclass_fuse_impl_FuseBuffer*)calloc(1, sizeof(jclass_fuse_impl_FuseBuffer));
+   if (fuse_impl_FuseBuffer == NULL)
+   {
+      WARN("Can't allocate structure jclass_fuse_impl_FuseBuffer");
+      return NULL;
+   }
+
+   while (1)
+   {
+      class = (*env)->FindClass(env, "fuse/impl/FuseBuffer");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      fuse_impl_FuseBuffer->class = (*env)->NewGlobalRef(env, class);
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // obtain instance field IDs
+      fuse_impl_FuseBuffer->field.buffer = (*env)->GetFieldID(env, fuse_impl_FuseBuffer->class, "buffer", "Ljava/nio/ByteBuffer;");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // obtain constructor method IDs
+      fuse_impl_FuseBuffer->constructor.new = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "<init>", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // obtain instance method IDs
+      fuse_impl_FuseBuffer->method.setBuffer__Ljava_nio_ByteBuffer_ = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "setBuffer", "(Ljava/nio/ByteBuffer;)V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseBuffer->method.wait__JI = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "wait", "(JI)V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseBuffer->method.wait = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "wait", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseBuffer->method.wait__J = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "wait", "(J)V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseBuffer->method.equals__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "equals", "(Ljava/lang/Object;)Z");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseBuffer->method.toString = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "toString", "()Ljava/lang/String;");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseBuffer->method.hashCode = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "hashCode", "()I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseBuffer->method.getClass = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "getClass", "()Ljava/lang/Class;");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseBuffer->method.notify = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "notify", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseBuffer->method.notifyAll = (*env)->GetMethodID(env, fuse_impl_FuseBuffer->class, "notifyAll", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // we're done
+      return fuse_impl_FuseBuffer;
+   }
+
+   // error handler
+   (*env)->ExceptionDescribe(env);
+   (*env)->ExceptionClear(env);
+   free_jclass_fuse_impl_FuseBuffer(env, fuse_impl_FuseBuffer);
+   return NULL;
+}
+
+/**
+ * free structure with a reference to fuse.impl.FuseRegion java class and cached field & method IDs
+ */
+void free_jclass_fuse_impl_FuseRegion(JNIEnv *env, jclass_fuse_impl_FuseRegion *fuse_impl_FuseRegion)
+{
+   if (fuse_impl_FuseRegion->class != NULL)
+      (*env)->DeleteGlobalRef(env, fuse_impl_FuseRegion->class);
+
+   free(fuse_impl_FuseRegion);
+}
+
+/**
+ * alloc structure with a reference to fuse.impl.FuseRegion java class and cached field & method IDs
+ */
+jclass_fuse_impl_FuseRegion *alloc_jclass_fuse_impl_FuseRegion(JNIEnv *env)
+{
+   jclass class;
+
+   jclass_fuse_impl_FuseRegion *fuse_impl_FuseRegion = (jclass_fuse_impl_FuseRegion*)calloc(1, sizeof(jclass_fuse_impl_FuseRegion));
+   if (fuse_impl_FuseRegion == NULL)
+   {
+      WARN("Can't allocate structure jclass_fuse_impl_FuseRegion");
+      return NULL;
+   }
+
+   while (1)
+   {
+      class = (*env)->FindClass(env, "fuse/impl/FuseRegion");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      fuse_impl_FuseRegion->class = (*env)->NewGlobalRef(env, class);
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // obtain instance field IDs
+      fuse_impl_FuseRegion->field.fd = (*env)->GetFieldID(env, fuse_impl_FuseRegion->class, "fd", "Ljava/io/FileDescriptor;");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->field.position = (*env)->GetFieldID(env, fuse_impl_FuseRegion->class, "position", "J");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->field.length = (*env)->GetFieldID(env, fuse_impl_FuseRegion->class, "length", "J");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // obtain constructor method IDs
+      fuse_impl_FuseRegion->constructor.new = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "<init>", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // obtain instance method IDs
+      fuse_impl_FuseRegion->method.setRegion__Ljava_io_FileDescriptor_JJ = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "setRegion", "(Ljava/io/FileDescriptor;JJ)V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->method.wait__JI = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "wait", "(JI)V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->method.wait = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "wait", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->method.wait__J = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "wait", "(J)V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->method.equals__Ljava_lang_Object_ = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "equals", "(Ljava/lang/Object;)Z");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->method.toString = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "toString", "()Ljava/lang/String;");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->method.hashCode = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "hashCode", "()I");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->method.getClass = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "getClass", "()Ljava/lang/Class;");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->method.notify = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "notify", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+      fuse_impl_FuseRegion->method.notifyAll = (*env)->GetMethodID(env, fuse_impl_FuseRegion->class, "notifyAll", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // we're done
+      return fuse_impl_FuseRegion;
+   }
+
+   // error handler
+   (*env)->ExceptionDescribe(env);
+   (*env)->ExceptionClear(env);
+   free_jclass_fuse_impl_FuseRegion(env, fuse_impl_FuseRegion);
+   return NULL;
+}
+
@@ -64,9 +64,9 @@ jclass_fuse_FuseGetattr *alloc_jclass_fuse_FuseGetattr(JNIEnv *env);
 
 
 /**
- * structure with a reference to fuse.FuseFSDirEnt java class and cached field & method IDs
+ * structure with a reference to fuse.impl.FuseFSDirFiller java class and cached field & method IDs
  */
-typedef struct _jclass_fuse_FuseFSDirEnt
+typedef struct _jclass_fuse_impl_FuseFSDirFiller
 {
    // a pointer to globaly referenced Java class
    jclass class;
@@ -74,9 +74,7 @@ typedef struct _jclass_fuse_FuseFSDirEnt
    // cached instance field IDs
    struct
    {
-      jfieldID name;
-      jfieldID inode;
-      jfieldID mode;
+      jfieldID buffer;
 
    } field;
 
@@ -90,93 +88,29 @@ typedef struct _jclass_fuse_FuseFSDirEnt
    // cached instance method IDs
    struct
    {
-      jmethodID clone;
+      jmethodID add__Ljava_lang_String_JI;
       jmethodID toString;
-      jmethodID hashCode;
-      jmethodID getClass;
-      jmethodID wait__J;
+      jmethodID size;
+      jmethodID reset;
+      jmethodID setCharset__Ljava_nio_charset_Charset_;
       jmethodID wait__JI;
       jmethodID wait;
+      jmethodID wait__J;
       jmethodID equals__Ljava_lang_Object_;
-      jmethodID notify;
-      jmethodID notifyAll;
-
-   } method;
-
-} jclass_fuse_FuseFSDirEnt;
-
-// free structure
-void free_jclass_fuse_FuseFSDirEnt(JNIEnv *env, jclass_fuse_FuseFSDirEnt *fuse_FuseFSDirEnt);
-
-// alloc structure
-jclass_fuse_FuseFSDirEnt *alloc_jclass_fuse_FuseFSDirEnt(JNIEnv *env);
-
-
-/**
- * structure with a reference to fuse.FuseFSDirFiller java class and cached field & method IDs
- */
-typedef struct _jclass_fuse_FuseFSDirFiller
-{
-   // a pointer to globaly referenced Java class
-   jclass class;
-
-   // cached constructor IDs
-   struct
-   {
-      jmethodID new;
-
-   } constructor;
-
-   // cached instance method IDs
-   struct
-   {
-      jmethodID setCharset__Ljava_nio_charset_Charset_;
-      jmethodID add__Ljava_lang_String_JI;
-      jmethodID toString;
-      jmethodID add__Ljava_lang_Object_;
-      jmethodID add__ILjava_lang_Object_;
-      jmethodID indexOf__Ljava_lang_Object_;
-      jmethodID clone;
-      jmethodID clear;
-      jmethodID contains__Ljava_lang_Object_;
-      jmethodID lastIndexOf__Ljava_lang_Object_;
-      jmethodID addAll__Ljava_util_Collection_;
-      jmethodID addAll__ILjava_util_Collection_;
-      jmethodID get__I;
-      jmethodID size;
-      jmethodID toArray;
-      jmethodID toArray___Ljava_lang_Object_;
-      jmethodID remove__I;
-      jmethodID remove__Ljava_lang_Object_;
-      jmethodID isEmpty;
-      jmethodID set__ILjava_lang_Object_;
-      jmethodID ensureCapacity__I;
-      jmethodID trimToSize;
       jmethodID hashCode;
-      jmethodID equals__Ljava_lang_Object_;
-      jmethodID iterator;
-      jmethodID subList__II;
-      jmethodID listIterator;
-      jmethodID listIterator__I;
-      jmethodID containsAll__Ljava_util_Collection_;
-      jmethodID removeAll__Ljava_util_Collection_;
-      jmethodID retainAll__Ljava_util_Collection_;
       jmethodID getClass;
-      jmethodID wait__J;
-      jmethodID wait__JI;
-      jmethodID wait;
       jmethodID notify;
       jmethodID notifyAll;
 
    } method;
 
-} jclass_fuse_FuseFSDirFiller;
+} jclass_fuse_impl_FuseFSDirFiller;
 
 // free structure
-void free_jclass_fuse_FuseFSDirFiller(JNIEnv *env, jclass_fuse_FuseFSDirFiller *fuse_FuseFSDirFiller);
+void free_jclass_fuse_impl_FuseFSDirFiller(JNIEnv *env, jclass_fuse_impl_FuseFSDirFiller *fuse_impl_FuseFSDirFiller);
 
 // alloc structure
-jclass_fuse_FuseFSDirFiller *alloc_jclass_fuse_FuseFSDirFiller(JNIEnv *env);
+jclass_fuse_impl_FuseFSDirFiller *alloc_jclass_fuse_impl_FuseFSDirFiller(JNIEnv *env);
 
 
 /**
@@ -308,7 +242,7 @@ typedef struct _jclass_fuse_FuseOpen
    // cached instance method IDs
    struct
    {
-      jmethodID setFh__Ljava_lang_Object_;
+      jmethodID setFh__J;
       jmethodID isDirectIO;
       jmethodID setDirectIO__Z;
       jmethodID isKeepCache;
@@ -343,33 +277,29 @@ typedef struct _jclass_fuse_FuseContext
    // a pointer to globaly referenced Java class
    jclass class;
 
-   // cached instance field IDs
-   struct
-   {
-      jfieldID uid;
-      jfieldID gid;
-      jfieldID pid;
-
-   } field;
-
    // cached static method IDs
    struct
    {
       jmethodID get;
+      jmethodID current;
+      jmethodID threadBuffer;
 
    } static_method;
 
    // cached instance method IDs
    struct
    {
-      jmethodID clone;
       jmethodID toString;
-      jmethodID hashCode;
-      jmethodID getClass;
-      jmethodID wait__J;
+      jmethodID getUid;
+      jmethodID getGid;
+      jmethodID getPid;
+      jmethodID getUmask;
       jmethodID wait__JI;
       jmethodID wait;
+      jmethodID wait__J;
       jmethodID equals__Ljava_lang_Object_;
+      jmethodID hashCode;
+      jmethodID getClass;
       jmethodID notify;
       jmethodID notifyAll;
 
@@ -399,28 +329,36 @@ typedef struct _jclass_fuse_FuseFS
       jmethodID chmod__Ljava_nio_ByteBuffer_I;
       jmethodID symlink__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
       jmethodID getattr__Ljava_nio_ByteBuffer_Lfuse_FuseGetattrSetter_;
+      jmethodID getattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
+      jmethodID isImplemented__Ljava_lang_String_;
       jmethodID readlink__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
-      jmethodID getdir__Ljava_nio_ByteBuffer_Lfuse_FuseFSDirFiller_;
+      jmethodID getdir__Ljava_nio_ByteBuffer_Lfuse_impl_FuseFSDirFiller_;
+      jmethodID readdir__Ljava_nio_ByteBuffer_JJLfuse_FuseFSFillDir_;
+      jmethodID readdirplus__Ljava_nio_ByteBuffer_JJLfuse_FuseFSFillDir_;
       jmethodID mknod__Ljava_nio_ByteBuffer_II;
       jmethodID unlink__Ljava_nio_ByteBuffer_;
       jmethodID rmdir__Ljava_nio_ByteBuffer_;
       jmethodID utime__Ljava_nio_ByteBuffer_II;
       jmethodID statfs__Lfuse_FuseStatfsSetter_;
-      jmethodID fsync__Ljava_nio_ByteBuffer_Ljava_lang_Object_Z;
+      jmethodID fsync__Ljava_nio_ByteBuffer_JZ;
       jmethodID setxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_I;
-      jmethodID getxattrsize__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Lfuse_FuseSizeSetter_;
-      jmethodID getxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
-      jmethodID listxattrsize__Ljava_nio_ByteBuffer_Lfuse_FuseSizeSetter_;
-      jmethodID listxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
+      jmethodID getxattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_Lfuse_impl_FuseBufferSetter_;
+      jmethodID listxattr__Ljava_nio_ByteBuffer_Lfuse_impl_FuseBufferSetter_;
       jmethodID removexattr__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
-      jmethodID write__Ljava_nio_ByteBuffer_Ljava_lang_Object_ZLjava_nio_ByteBuffer_J;
-      jmethodID flush__Ljava_nio_ByteBuffer_Ljava_lang_Object_;
-      jmethodID read__Ljava_nio_ByteBuffer_Ljava_lang_Object_Ljava_nio_ByteBuffer_J;
+      jmethodID write__Ljava_nio_ByteBuffer_JZLjava_nio_ByteBuffer_J;
+      jmethodID flush__Ljava_nio_ByteBuffer_J;
+      jmethodID read__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_J;
+      jmethodID readBuffer__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_JLfuse_impl_FuseBufferSetter_;
+      jmethodID readRegion__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_JLfuse_impl_FuseRegionSetter_;
+      jmethodID writeRegion__Ljava_nio_ByteBuffer_JJILfuse_impl_FuseRegionSetter_;
       jmethodID open__Ljava_nio_ByteBuffer_ILfuse_FuseOpenSetter_;
+      jmethodID create__Ljava_nio_ByteBuffer_IILfuse_impl_FuseOpenSetter_;
       jmethodID mkdir__Ljava_nio_ByteBuffer_I;
       jmethodID rename__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
-      jmethodID release__Ljava_nio_ByteBuffer_Ljava_lang_Object_I;
+      jmethodID release__Ljava_nio_ByteBuffer_JI;
       jmethodID truncate__Ljava_nio_ByteBuffer_J;
+      jmethodID ftruncate__Ljava_nio_ByteBuffer_JJ;
+      jmethodID fgetattr__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_;
       jmethodID link__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
 
    } method;
@@ -539,3 +477,184 @@ void free_jclass_java_nio_ByteBuffer(JNIEnv *env, jclass_java_nio_ByteBuffer *ja
 // alloc structure
 jclass_java_nio_ByteBuffer *alloc_jclass_java_nio_ByteBuffer(JNIEnv *env);
 
+
+/**
+ * structure with a reference to fuse.impl.FuseLowlevelFS java class and cached field & method IDs
+ */
+typedef struct _jclass_fuse_impl_FuseLowlevelFS
+{
+   // a pointer to globaly referenced Java class
+   jclass class;
+
+   // cached instance method IDs
+   struct
+   {
+      jmethodID flush__JJ;
+      jmethodID lookup__JLjava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
+      jmethodID write__JJZLjava_nio_ByteBuffer_J;
+      jmethodID read__JJLjava_nio_ByteBuffer_J;
+      jmethodID open__JILfuse_impl_FuseOpenSetter_;
+      jmethodID release__JJI;
+      jmethodID mkdir__JLjava_nio_ByteBuffer_ILjava_nio_ByteBuffer_;
+      jmethodID rename__JLjava_nio_ByteBuffer_JLjava_nio_ByteBuffer_;
+      jmethodID readlink__JLjava_nio_ByteBuffer_;
+      jmethodID link__JJLjava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
+      jmethodID unlink__JLjava_nio_ByteBuffer_;
+      jmethodID rmdir__JLjava_nio_ByteBuffer_;
+      jmethodID symlink__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_Ljava_nio_ByteBuffer_;
+      jmethodID mknod__JLjava_nio_ByteBuffer_IILjava_nio_ByteBuffer_;
+      jmethodID readdir__JLfuse_impl_FuseFSDirFiller_;
+      jmethodID forget__JJ;
+      jmethodID getattr__JLjava_nio_ByteBuffer_;
+      jmethodID setattr__JIIIIJIILjava_nio_ByteBuffer_;
+      jmethodID statfs__Lfuse_impl_FuseStatfsSetter_;
+      jmethodID fsync__JJZ;
+
+   } method;
+
+} jclass_fuse_impl_FuseLowlevelFS;
+
+// free structure
+void free_jclass_fuse_impl_FuseLowlevelFS(JNIEnv *env, jclass_fuse_impl_FuseLowlevelFS *fuse_impl_FuseLowlevelFS);
+
+// alloc structure
+jclass_fuse_impl_FuseLowlevelFS *alloc_jclass_fuse_impl_FuseLowlevelFS(JNIEnv *env);
+
+
+/**
+ * structure with a reference to fuse.FuseFSFillDir java class and cached field & method IDs
+ */
+typedef struct _jclass_fuse_FuseFSFillDir
+{
+   // a pointer to globaly referenced Java class
+   jclass class;
+
+   // cached constructor IDs
+   struct
+   {
+      jmethodID new__JJ;
+      jmethodID new__JJJ;
+
+   } constructor;
+
+   // cached instance method IDs
+   struct
+   {
+      jmethodID fill__Ljava_nio_ByteBuffer_JIJ;
+      jmethodID fillPlus__Ljava_nio_ByteBuffer_Ljava_nio_ByteBuffer_J;
+      jmethodID wait__JI;
+      jmethodID wait;
+      jmethodID wait__J;
+      jmethodID equals__Ljava_lang_Object_;
+      jmethodID toString;
+      jmethodID hashCode;
+      jmethodID getClass;
+      jmethodID notify;
+      jmethodID notifyAll;
+
+   } method;
+
+} jclass_fuse_FuseFSFillDir;
+
+// free structure
+void free_jclass_fuse_FuseFSFillDir(JNIEnv *env, jclass_fuse_FuseFSFillDir *fuse_FuseFSFillDir);
+
+// alloc structure
+jclass_fuse_FuseFSFillDir *alloc_jclass_fuse_FuseFSFillDir(JNIEnv *env);
+
+
+/**
+ * structure with a reference to fuse.impl.FuseBuffer java class and cached field & method IDs
+ */
+typedef struct _jclass_fuse_impl_FuseBuffer
+{
+   // a pointer to globaly referenced Java class
+   jclass class;
+
+   // cached instance field IDs
+   struct
+   {
+      jfieldID buffer;
+
+   } field;
+
+   // cached constructor IDs
+   struct
+   {
+      jmethodID new;
+
+   } constructor;
+
+   // cached instance method IDs
+   struct
+   {
+      jmethodID setBuffer__Ljava_nio_ByteBuffer_;
+      jmethodID wait__JI;
+      jmethodID wait;
+      jmethodID wait__J;
+      jmethodID equals__Ljava_lang_Object_;
+      jmethodID toString;
+      jmethodID hashCode;
+      jmethodID getClass;
+      jmethodID notify;
+      jmethodID notifyAll;
+
+   } method;
+
+} jclass_fuse_impl_FuseBuffer;
+
+// free structure
+void free_jclass_fuse_impl_FuseBuffer(JNIEnv *env, jclass_fuse_impl_FuseBuffer *fuse_impl_FuseBuffer);
+
+// alloc structure
+jclass_fuse_impl_FuseBuffer *alloc_jclass_fuse_impl_FuseBuffer(JNIEnv *env);
+
+
+/**
+ * structure with a reference to fuse.impl.FuseRegion java class and cached field & method IDs
+ */
+typedef struct _jclass_fuse_impl_FuseRegion
+{
+   // a pointer to globaly referenced Java class
+   jclass class;
+
+   // cached instance field IDs
+   struct
+   {
+      jfieldID fd;
+      jfieldID position;
+      jfieldID length;
+
+   } field;
+
+   // cached constructor IDs
+   struct
+   {
+      jmethodID new;
+
+   } constructor;
+
+   // cached instance method IDs
+   struct
+   {
+      jmethodID setRegion__Ljava_io_FileDescriptor_JJ;
+      jmethodID wait__JI;
+      jmethodID wait;
+      jmethodID wait__J;
+      jmethodID equals__Ljava_lang_Object_;
+      jmethodID toString;
+      jmethodID hashCode;
+      jmethodID getClass;
+      jmethodID notify;
+      jmethodID notifyAll;
+
+   } method;
+
+} jclass_fuse_impl_FuseRegion;
+
+// free structure
+void free_jclass_fuse_impl_FuseRegion(JNIEnv *env, jclass_fuse_impl_FuseRegion *fuse_impl_FuseRegion);
+
+// alloc structure
+jclass_fuse_impl_FuseRegion *alloc_jclass_fuse_impl_FuseRegion(JNIEnv *env);
+
@@ -0,0 +1,228 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+//
+// Request loop with a fixed pool of worker threads. Unlike fuse_loop_mt(), which starts threads
+// on demand that get attached to the JVM by the first request they serve, every worker here is
+// attached up front as a named daemon thread of the FUSE thread group.
+
+#define FUSE_USE_VERSION 26
+
+#include "javafs.h"
+#include <fuse_lowlevel.h>
+#include <semaphore.h>
+#include <signal.h>
+#include <time.h>
+
+
+// interrupts the read() of the workers at exit; HotSpot uses SIGUSR2 for itself
+#define WAKE_SIGNAL SIGUSR1
+
+
+typedef struct _javafs_loop
+{
+   struct fuse_session *se;
+   struct fuse_chan *ch;
+   size_t bufsize;
+   sem_t finished;
+
+} javafs_loop;
+
+typedef struct _javafs_worker
+{
+   javafs_loop *loop;
+   pthread_t thread;
+   int started;
+   volatile int finished;
+   char name[32];
+
+} javafs_worker;
+
+
+// serve requests until the session exits or the channel goes away
+static void serve(javafs_loop *loop)
+{
+   char *buf = (char *) malloc(loop->bufsize);
+
+   if (buf == NULL)
+   {
+      fuse_session_exit(loop->se);
+      return;
+   }
+
+   while (!fuse_session_exited(loop->se))
+   {
+      struct fuse_chan *ch = loop->ch;
+      int res = fuse_chan_recv(&ch, buf, loop->bufsize);
+
+      if (res == -EINTR)
+         continue;
+
+      if (res <= 0)
+      {
+         fuse_session_exit(loop->se);
+         break;
+      }
+
+      fuse_session_process(loop->se, buf, res, ch);
+   }
+
+   free(buf);
+}
+
+
+static void *worker_main(void *arg)
+{
+   javafs_worker *w = (javafs_worker *) arg;
+   JNIEnv *env = attach_env(w->name);
+   sigset_t wake;
+
+   serve(w->loop);
+
+   // a late wake-up stays pending and dies with the thread instead of hitting a restored handler
+   sigemptyset(&wake);
+   sigaddset(&wake, WAKE_SIGNAL);
+   pthread_sigmask(SIG_BLOCK, &wake, NULL);
+
+   if (env != NULL)
+      detach_env(env);
+
+   w->finished = 1;
+   sem_post(&w->loop->finished);
+
+   return NULL;
+}
+
+
+static void wake_handler(int sig)
+{
+   (void) sig;
+}
+
+
+// make the workers still blocked in read() see the exited session: the wake-up signal has no
+// SA_RESTART, so read() fails with EINTR; it is repeated as a worker may have checked the
+// session just before the signal and only then entered read()
+static void wake_workers(javafs_loop *loop, javafs_worker *w, int workers, int running)
+{
+   struct sigaction sa;
+   struct sigaction saved;
+   int i;
+
+   memset(&sa, 0, sizeof(sa));
+   sa.sa_handler = wake_handler;
+   sigemptyset(&sa.sa_mask);
+   sigaction(WAKE_SIGNAL, &sa, &saved);
+
+   fuse_session_exit(loop->se);
+
+   while (running > 0)
+   {
+      struct timespec timeout;
+
+      for (i = 0; i < workers; i++)
+         if (w[i].started && !w[i].finished)
+            pthread_kill(w[i].thread, WAKE_SIGNAL);
+
+      clock_gettime(CLOCK_REALTIME, &timeout);
+      timeout.tv_nsec += 100 * 1000000L;
+      if (timeout.tv_nsec >= 1000000000L)
+      {
+         timeout.tv_sec++;
+         timeout.tv_nsec -= 1000000000L;
+      }
+
+      while (running > 0 && sem_timedwait(&loop->finished, &timeout) == 0)
+         running--;
+   }
+
+   for (i = 0; i < workers; i++)
+      if (w[i].started)
+         pthread_join(w[i].thread, NULL);
+
+   sigaction(WAKE_SIGNAL, &saved, NULL);
+}
+
+
+int javafs_session_loop(struct fuse_session *se, int workers)
+{
+   javafs_loop loop;
+   javafs_worker *w;
+   sigset_t blocked, saved;
+   int started = 0;
+   int running;
+   int i;
+
+   loop.se = se;
+   loop.ch = fuse_session_next_chan(se, NULL);
+   loop.bufsize = fuse_chan_bufsize(loop.ch);
+
+   if (workers <= 1)
+   {
+      serve(&loop);
+      return 0;
+   }
+
+   w = (javafs_worker *) calloc(workers, sizeof(javafs_worker));
+   if (w == NULL || sem_init(&loop.finished, 0, 0) != 0)
+   {
+      free(w);
+      return -1;
+   }
+
+   // the termination signals must be handled by the mounting thread, not by the workers
+   sigemptyset(&blocked);
+   sigaddset(&blocked, SIGHUP);
+   sigaddset(&blocked, SIGINT);
+   sigaddset(&blocked, SIGTERM);
+   sigaddset(&blocked, SIGQUIT);
+   pthread_sigmask(SIG_BLOCK, &blocked, &saved);
+
+   for (i = 0; i < workers; i++)
+   {
+      w[i].loop = &loop;
+      snprintf(w[i].name, sizeof(w[i].name), "fuse-worker-%d", i);
+
+      if (pthread_create(&w[i].thread, NULL, worker_main, &w[i]) != 0)
+      {
+         WARN("could not start %s", w[i].name);
+         break;
+      }
+
+      w[i].started = 1;
+      started++;
+   }
+
+   pthread_sigmask(SIG_SETMASK, &saved, NULL);
+
+   if (started == 0)
+      fuse_session_exit(se);
+
+   running = started;
+
+   // wait for the first worker to finish or for a signal handler to exit the session
+   while (running > 0 && !fuse_session_exited(se))
+   {
+      struct timespec timeout;
+
+      clock_gettime(CLOCK_REALTIME, &timeout);
+      timeout.tv_sec += 1;
+
+      if (sem_timedwait(&loop.finished, &timeout) == 0)
+         running--;
+   }
+
+   // the filesystem stays mounted, fuse_teardown() unmounts it once
+   wake_workers(&loop, w, workers, running);
+
+   sem_destroy(&loop.finished);
+   free(w);
+
+   return 0;
+}
@@ -0,0 +1,1113 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+//
+// Bindings for the FUSE low-level (fuse_lowlevel) interface. The kernel talks to us in terms of
+// node ids, so no path has to be resolved by libfuse on each call. The node id -> object mapping is
+// maintained on the Java side (fuse.impl.FuseLowlevelFS).
+
+#define FUSE_USE_VERSION 26
+
+#include "javafs.h"
+#include <fuse_lowlevel.h>
+#include <sys/statvfs.h>
+
+
+// default timeouts (in seconds) for which the kernel may cache entries and attributes, the same
+// as libfuse's high-level defaults; FuseMountOptions and every single reply can override them
+#define LL_ENTRY_TIMEOUT    1.0
+#define LL_ATTR_TIMEOUT     1.0
+#define LL_NEGATIVE_TIMEOUT 0.0
+
+// d_ino of an entry the filesystem reports no inode number for, as in libfuse's high-level layer
+#define LL_UNKNOWN_INO 0xffffffff
+
+static double entryTimeout = LL_ENTRY_TIMEOUT;
+static double attrTimeout = LL_ATTR_TIMEOUT;
+static double negativeTimeout = LL_NEGATIVE_TIMEOUT;
+static int kernelCache;
+
+// the channel of the mount for fuse_lowlevel_notify_*, NULL while not mounted; notifications
+// hold the read lock so the channel is not removed under them
+static struct fuse_chan *notifyChan;
+static pthread_rwlock_t notifyLock = PTHREAD_RWLOCK_INITIALIZER;
+
+
+static jclass_fuse_impl_FuseLowlevelFS *FuseLowlevelFS;
+
+static jobject fuseLowlevelFS;
+
+
+static void free_fuseLowlevelFS(JNIEnv *env)
+{
+   if (fuseLowlevelFS != NULL)
+   {
+      (*env)->DeleteGlobalRef(env, fuseLowlevelFS);
+      fuseLowlevelFS = NULL;
+   }
+
+   if (FuseLowlevelFS != NULL)
+   {
+      free_jclass_fuse_impl_FuseLowlevelFS(env, FuseLowlevelFS);
+      FuseLowlevelFS = NULL;
+   }
+}
+
+
+static int retain_fuseLowlevelFS(JNIEnv *env, jobject util)
+{
+   if ((FuseLowlevelFS = alloc_jclass_fuse_impl_FuseLowlevelFS(env)) == NULL)
+   {
+      free_fuseLowlevelFS(env);
+      return 0;
+   }
+
+   fuseLowlevelFS = (*env)->NewGlobalRef(env, util);
+
+   if ((*env)->ExceptionCheck(env))
+   {
+      (*env)->ExceptionDescribe(env);
+      free_fuseLowlevelFS(env);
+      return 0;
+   }
+
+   return 1;
+}
+
+
+//
+// reply helpers
+
+// the timeouts Java does not set stay negative, which selects the mount defaults
+static void init_attr(javafs_attr *attr)
+{
+   memset(attr, 0, sizeof(*attr));
+   attr->attr_timeout = -1;
+   attr->entry_timeout = -1;
+}
+
+
+static void reply_entry(fuse_req_t req, const javafs_attr *attr)
+{
+   struct fuse_entry_param e;
+
+   memset(&e, 0, sizeof(e));
+   attr_to_stat(attr, &e.attr);
+   e.ino = (fuse_ino_t) attr->node;
+   e.attr_timeout = (attr->attr_timeout < 0)? attrTimeout : attr->attr_timeout;
+   e.entry_timeout = (attr->entry_timeout < 0)? entryTimeout : attr->entry_timeout;
+
+   fuse_reply_entry(req, &e);
+}
+
+
+// a lookup of a missing name: with a negative timeout the kernel remembers the miss
+static void reply_no_entry(fuse_req_t req)
+{
+   struct fuse_entry_param e;
+
+   if (negativeTimeout <= 0)
+   {
+      fuse_reply_err(req, ENOENT);
+      return;
+   }
+
+   memset(&e, 0, sizeof(e));
+   e.ino = 0;
+   e.entry_timeout = negativeTimeout;
+
+   fuse_reply_entry(req, &e);
+}
+
+
+static void reply_attr(fuse_req_t req, const javafs_attr *attr)
+{
+   struct stat stbuf;
+
+   attr_to_stat(attr, &stbuf);
+
+   fuse_reply_attr(req, &stbuf, (attr->attr_timeout < 0)? attrTimeout : attr->attr_timeout);
+}
+
+
+// the env of the thread serving a lowlevel request, with its caller published to Java
+static JNIEnv *get_req_env(fuse_req_t req)
+{
+   JNIEnv *env = get_env();
+   const struct fuse_ctx *ctx = fuse_req_ctx(req);
+
+   set_context(env, ctx->uid, ctx->gid, ctx->pid, ctx->umask);
+
+   return env;
+}
+
+
+//
+// lowlevel FUSE operations -> Java callbacks
+
+static void javafs_ll_lookup(fuse_req_t req, fuse_ino_t parent, const char *name)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jName = NULL;
+   jobject jEntry = NULL;
+   jint jerrno = 0;
+   javafs_attr entry;
+
+   init_attr(&entry);
+
+   while (1)
+   {
+      jName = wrap_buffer(env, BUF_NAME, (void *)name, strlen(name));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jEntry = wrap_buffer(env, BUF_ATTR, &entry, sizeof(entry));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.lookup__JLjava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, (jlong)parent, jName, jEntry);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      reply_entry(req, &entry);
+      break;
+   }
+
+   if (jerrno == ENOENT)
+      reply_no_entry(req);
+   else if (jerrno)
+      fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_forget(fuse_req_t req, fuse_ino_t ino, unsigned long nlookup)
+{
+   JNIEnv *env = get_req_env(req);
+   jint jerrno = 0;
+
+   (*env)->CallVoidMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.forget__JJ, (jlong)ino, (jlong)nlookup);
+   exception_check_jerrno(env, &jerrno);
+
+   fuse_reply_none(req);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_getattr(fuse_req_t req, fuse_ino_t ino, struct fuse_file_info *fi)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jAttr = NULL;
+   jint jerrno = 0;
+   javafs_attr attr;
+
+   init_attr(&attr);
+
+   while (1)
+   {
+      jAttr = wrap_buffer(env, BUF_ATTR, &attr, sizeof(attr));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.getattr__JLjava_nio_ByteBuffer_, (jlong)ino, jAttr);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      reply_attr(req, &attr);
+      break;
+   }
+
+   if (jerrno) fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_setattr(fuse_req_t req, fuse_ino_t ino, struct stat *attr, int to_set, struct fuse_file_info *fi)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jAttr = NULL;
+   jint jerrno = 0;
+   javafs_attr reply;
+
+   init_attr(&reply);
+
+   while (1)
+   {
+      jAttr = wrap_buffer(env, BUF_ATTR, &reply, sizeof(reply));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      // FUSE_SET_ATTR_* bits match FuseLowlevelFS.SET_ATTR_* constants
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.setattr__JIIIIJIILjava_nio_ByteBuffer_,
+                                     (jlong)ino, (jint)to_set, (jint)(attr->st_mode), (jint)(attr->st_uid), (jint)(attr->st_gid),
+                                     (jlong)(attr->st_size), (jint)(attr->st_atime), (jint)(attr->st_mtime), jAttr);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      reply_attr(req, &reply);
+      break;
+   }
+
+   if (jerrno) fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_readlink(fuse_req_t req, fuse_ino_t ino)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jLink = NULL;
+   jint jerrno = 0;
+   char link[PATH_MAX + 1];
+
+   while (1)
+   {
+      jLink = wrap_buffer(env, BUF_DATA, link, PATH_MAX);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.readlink__JLjava_nio_ByteBuffer_, (jlong)ino, jLink);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      // append NUL terminator
+      link[buffer_position(env, jLink)] = '\0';
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      fuse_reply_readlink(req, link);
+      break;
+   }
+
+   if (jerrno) fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+// an open directory: the listing in the format of the kernel, built by opendir and again on
+// rewinddir(); readdir replies with the part from the offset on, as libfuse's high-level layer does
+typedef struct _ll_dir
+{
+   pthread_mutex_t lock;
+   char *contents;
+   size_t length;
+   int fresh;             // built by opendir and not served yet
+
+} ll_dir;
+
+
+// list the directory through FuseLowlevelFS.readdir() into dir->contents
+static jint fill_dir(JNIEnv *env, fuse_req_t req, fuse_ino_t ino, ll_dir *dir)
+{
+   jobject jDirFiller;
+   javafs_dirent *records;
+   javafs_dirent *d;
+   size_t length;
+   size_t offset;
+   size_t size = 0;
+   char *contents;
+   jint jerrno = 0;
+
+   while (1)
+   {
+      jDirFiller = thread_dir_filler(env);
+      if (exception_check_jerrno(env, &jerrno)) break;
+      if (jDirFiller == NULL)
+      {
+         jerrno = ENOMEM;
+         break;
+      }
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.readdir__JLfuse_impl_FuseFSDirFiller_, (jlong)ino, jDirFiller);
+      if (exception_check_jerrno(env, &jerrno)) break;
+      if (jerrno != 0) break;
+
+      records = dir_filler_records(env, jDirFiller, &length);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      for (offset = 0; offset < length; offset += DIRENT_SIZE(d))
+      {
+         d = (javafs_dirent *)((char *)records + offset);
+         size += fuse_add_direntry(req, NULL, 0, d->name, NULL, 0);
+      }
+
+      if ((contents = (char *)malloc(size? size : 1)) == NULL)
+      {
+         jerrno = ENOMEM;
+         break;
+      }
+
+      free(dir->contents);
+      dir->contents = contents;
+      dir->length = 0;
+
+      // the offset of an entry is where the next one starts
+      for (offset = 0; offset < length; offset += DIRENT_SIZE(d))
+      {
+         struct stat stbuf;
+         size_t entLength;
+
+         d = (javafs_dirent *)((char *)records + offset);
+
+         memset(&stbuf, 0, sizeof(stbuf));
+         stbuf.st_mode = (mode_t)d->mode;
+         stbuf.st_ino = (d->inode != 0)? (ino_t)d->inode : LL_UNKNOWN_INO;
+
+         entLength = fuse_add_direntry(req, NULL, 0, d->name, NULL, 0);
+         fuse_add_direntry(req, contents + dir->length, size - dir->length, d->name, &stbuf, (off_t)(dir->length + entLength));
+         dir->length += entLength;
+      }
+
+      break;
+   }
+
+   return jerrno;
+}
+
+
+static void javafs_ll_opendir(fuse_req_t req, fuse_ino_t ino, struct fuse_file_info *fi)
+{
+   JNIEnv *env = get_req_env(req);
+   ll_dir *dir;
+   jint jerrno;
+
+   dir = (ll_dir *) calloc(1, sizeof(ll_dir));
+   if (dir == NULL)
+   {
+      fuse_reply_err(req, ENOMEM);
+      release_env(env);
+      return;
+   }
+
+   pthread_mutex_init(&dir->lock, NULL);
+
+   // listing up front reports a failure to opendir() rather than to the first readdir()
+   jerrno = fill_dir(env, req, ino, dir);
+   dir->fresh = 1;
+
+   fi->fh = (uint64_t)(intptr_t)dir;
+
+   // if the opendir was interrupted the releasedir callback is never called for it
+   if (jerrno != 0 || fuse_reply_open(req, fi) == -ENOENT)
+   {
+      if (jerrno != 0)
+         fuse_reply_err(req, jerrno);
+
+      pthread_mutex_destroy(&dir->lock);
+      free(dir->contents);
+      free(dir);
+      fi->fh = 0;
+   }
+
+   release_env(env);
+}
+
+
+static void javafs_ll_readdir(fuse_req_t req, fuse_ino_t ino, size_t size, off_t off, struct fuse_file_info *fi)
+{
+   ll_dir *dir = (ll_dir *)(intptr_t) fi->fh;
+   JNIEnv *env;
+   jint jerrno = 0;
+
+   pthread_mutex_lock(&dir->lock);
+
+   // SUS wants the listing refreshed on rewinddir()
+   if (off == 0 && !dir->fresh)
+   {
+      env = get_req_env(req);
+      jerrno = fill_dir(env, req, ino, dir);
+      release_env(env);
+   }
+
+   dir->fresh = 0;
+
+   if (jerrno)
+      fuse_reply_err(req, jerrno);
+   else if ((size_t)off < dir->length)
+      // the kernel drops an entry cut off at the end and asks for it with the next offset
+      fuse_reply_buf(req, dir->contents + off, ((size_t)off + size > dir->length)? dir->length - (size_t)off : size);
+   else
+      fuse_reply_buf(req, NULL, 0);
+
+   pthread_mutex_unlock(&dir->lock);
+}
+
+
+static void javafs_ll_releasedir(fuse_req_t req, fuse_ino_t ino, struct fuse_file_info *fi)
+{
+   ll_dir *dir = (ll_dir *)(intptr_t) fi->fh;
+
+   pthread_mutex_destroy(&dir->lock);
+   free(dir->contents);
+   free(dir);
+   fi->fh = 0;
+
+   fuse_reply_err(req, 0);
+}
+
+
+static void javafs_ll_mknod(fuse_req_t req, fuse_ino_t parent, const char *name, mode_t mode, dev_t rdev)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jName = NULL;
+   jobject jEntry = NULL;
+   jint jerrno = 0;
+   javafs_attr entry;
+
+   init_attr(&entry);
+
+   while (1)
+   {
+      jName = wrap_buffer(env, BUF_NAME, (void *)name, strlen(name));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jEntry = wrap_buffer(env, BUF_ATTR, &entry, sizeof(entry));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.mknod__JLjava_nio_ByteBuffer_IILjava_nio_ByteBuffer_, (jlong)parent, jName, (jint)mode, (jint)rdev, jEntry);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      reply_entry(req, &entry);
+      break;
+   }
+
+   if (jerrno) fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_mkdir(fuse_req_t req, fuse_ino_t parent, const char *name, mode_t mode)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jName = NULL;
+   jobject jEntry = NULL;
+   jint jerrno = 0;
+   javafs_attr entry;
+
+   init_attr(&entry);
+
+   while (1)
+   {
+      jName = wrap_buffer(env, BUF_NAME, (void *)name, strlen(name));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jEntry = wrap_buffer(env, BUF_ATTR, &entry, sizeof(entry));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.mkdir__JLjava_nio_ByteBuffer_ILjava_nio_ByteBuffer_, (jlong)parent, jName, (jint)mode, jEntry);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      reply_entry(req, &entry);
+      break;
+   }
+
+   if (jerrno) fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_unlink(fuse_req_t req, fuse_ino_t parent, const char *name)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jName = NULL;
+   jint jerrno = 0;
+
+   while (1)
+   {
+      jName = wrap_buffer(env, BUF_NAME, (void *)name, strlen(name));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.unlink__JLjava_nio_ByteBuffer_, (jlong)parent, jName);
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_rmdir(fuse_req_t req, fuse_ino_t parent, const char *name)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jName = NULL;
+   jint jerrno = 0;
+
+   while (1)
+   {
+      jName = wrap_buffer(env, BUF_NAME, (void *)name, strlen(name));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.rmdir__JLjava_nio_ByteBuffer_, (jlong)parent, jName);
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_symlink(fuse_req_t req, const char *link, fuse_ino_t parent, const char *name)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jLink = NULL;
+   jobject jName = NULL;
+   jobject jEntry = NULL;
+   jint jerrno = 0;
+   javafs_attr entry;
+
+   init_attr(&entry);
+
+   while (1)
+   {
+      jLink = wrap_buffer(env, BUF_PATH, (void *)link, strlen(link));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jName = wrap_buffer(env, BUF_NAME, (void *)name, strlen(name));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jEntry = wrap_buffer(env, BUF_ATTR, &entry, sizeof(entry));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.symlink__Ljava_nio_ByteBuffer_JLjava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, jLink, (jlong)parent, jName, jEntry);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      reply_entry(req, &entry);
+      break;
+   }
+
+   if (jerrno) fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_rename(fuse_req_t req, fuse_ino_t parent, const char *name, fuse_ino_t newparent, const char *newname)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jName = NULL;
+   jobject jNewName = NULL;
+   jint jerrno = 0;
+
+   while (1)
+   {
+      jName = wrap_buffer(env, BUF_PATH, (void *)name, strlen(name));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jNewName = wrap_buffer(env, BUF_NAME, (void *)newname, strlen(newname));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.rename__JLjava_nio_ByteBuffer_JLjava_nio_ByteBuffer_, (jlong)parent, jName, (jlong)newparent, jNewName);
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_link(fuse_req_t req, fuse_ino_t ino, fuse_ino_t newparent, const char *newname)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jNewName = NULL;
+   jobject jEntry = NULL;
+   jint jerrno = 0;
+   javafs_attr entry;
+
+   init_attr(&entry);
+
+   while (1)
+   {
+      jNewName = wrap_buffer(env, BUF_NAME, (void *)newname, strlen(newname));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jEntry = wrap_buffer(env, BUF_ATTR, &entry, sizeof(entry));
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.link__JJLjava_nio_ByteBuffer_Ljava_nio_ByteBuffer_, (jlong)ino, (jlong)newparent, jNewName, jEntry);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      reply_entry(req, &entry);
+      break;
+   }
+
+   if (jerrno) fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_open(fuse_req_t req, fuse_ino_t ino, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jOpen = NULL;
+   jint jerrno = 0;
+
+   while (1)
+   {
+      jOpen = (*env)->NewObject(env, FuseOpen->class, FuseOpen->constructor.new);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      (*env)->SetBooleanField(env, jOpen, FuseOpen->field.directIO, ffi->direct_io ? JNI_TRUE : JNI_FALSE);
+      // kernel_cache: keep the page cache on every open, the filesystem can still turn it off
+      (*env)->SetBooleanField(env, jOpen, FuseOpen->field.keepCache, (ffi->keep_cache || kernelCache)? JNI_TRUE : JNI_FALSE);
+
+      writeback_open_flags(ffi);
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.open__JILfuse_impl_FuseOpenSetter_, (jlong)ino, (jint)(ffi->flags), jOpen);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      // fh is a handle of the Java side file handle table, the release callback frees it
+      ffi->fh = (uint64_t) (*env)->GetLongField(env, jOpen, FuseOpen->field.fh);
+      ffi->direct_io = ((*env)->GetBooleanField(env, jOpen, FuseOpen->field.directIO) == JNI_TRUE)? 1 : 0;
+      ffi->keep_cache = ((*env)->GetBooleanField(env, jOpen, FuseOpen->field.keepCache) == JNI_TRUE)? 1 : 0;
+
+      // if the open was interrupted the release callback is never called for it
+      if (fuse_reply_open(req, ffi) == -ENOENT && ffi->fh != 0)
+      {
+         (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.release__JJI, (jlong)ino, (jlong) (ffi->fh), (jint)(ffi->flags));
+         if ((*env)->ExceptionCheck(env)) (*env)->ExceptionClear(env);
+         ffi->fh = 0;
+      }
+
+      break;
+   }
+
+   // cleanup
+
+   if (jOpen != NULL) (*env)->DeleteLocalRef(env, jOpen);
+
+   if (jerrno) fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_read(fuse_req_t req, fuse_ino_t ino, size_t size, off_t off, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jBuf = NULL;
+   jint jerrno = 0;
+   jint nread = 0;
+   char *buf;
+
+   while (1)
+   {
+      // fuse_reply_buf() has written the reply to the kernel when it returns
+      if ((buf = (char *)thread_read_buffer(env, size)) == NULL)
+      {
+         jerrno = ENOMEM;
+         break;
+      }
+
+      jBuf = wrap_buffer(env, BUF_DATA, buf, size);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.read__JJLjava_nio_ByteBuffer_J, (jlong)ino, (jlong) (ffi->fh), jBuf, (jlong)off);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      // to obtain # of bytes read, get current position from ByteBuffer
+      nread = buffer_position(env, jBuf);
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   if (jerrno)
+      fuse_reply_err(req, jerrno);
+   else
+      fuse_reply_buf(req, buf, (size_t)nread);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_write(fuse_req_t req, fuse_ino_t ino, const char *buf, size_t size, off_t off, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jBuf = NULL;
+   jint jerrno = 0;
+   jint nwriten = 0;
+
+   while (1)
+   {
+      jBuf = wrap_buffer(env, BUF_DATA, (void *)buf, size);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.write__JJZLjava_nio_ByteBuffer_J, (jlong)ino, (jlong) (ffi->fh), (ffi->writepage)? JNI_TRUE : JNI_FALSE, jBuf, (jlong)off);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      // to obtain # of bytes writen, get current position from ByteBuffer
+      nwriten = buffer_position(env, jBuf);
+      exception_check_jerrno(env, &jerrno);
+      break;
+   }
+
+   if (jerrno)
+      fuse_reply_err(req, jerrno);
+   else
+      fuse_reply_write(req, (size_t)nwriten);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_flush(fuse_req_t req, fuse_ino_t ino, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_req_env(req);
+   jint jerrno = 0;
+
+   jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.flush__JJ, (jlong)ino, (jlong) (ffi->fh));
+   exception_check_jerrno(env, &jerrno);
+
+   fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_release(fuse_req_t req, fuse_ino_t ino, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_req_env(req);
+   jint jerrno = 0;
+
+   // frees the handle on the Java side
+   jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.release__JJI, (jlong)ino, (jlong) (ffi->fh), (jint)(ffi->flags));
+   exception_check_jerrno(env, &jerrno);
+
+   ffi->fh = 0;
+
+   fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_fsync(fuse_req_t req, fuse_ino_t ino, int datasync, struct fuse_file_info *ffi)
+{
+   JNIEnv *env = get_req_env(req);
+   jint jerrno = 0;
+
+   jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.fsync__JJZ, (jlong)ino, (jlong) (ffi->fh), datasync? JNI_TRUE : JNI_FALSE);
+   exception_check_jerrno(env, &jerrno);
+
+   fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_statfs(fuse_req_t req, fuse_ino_t ino)
+{
+   JNIEnv *env = get_req_env(req);
+   jobject jStatfs = NULL;
+   jint jerrno = 0;
+   struct statvfs fst;
+
+   while (1)
+   {
+      jStatfs = (*env)->NewObject(env, FuseStatfs->class, FuseStatfs->constructor.new);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      jerrno = (*env)->CallIntMethod(env, fuseLowlevelFS, FuseLowlevelFS->method.statfs__Lfuse_impl_FuseStatfsSetter_, jStatfs);
+      if (exception_check_jerrno(env, &jerrno)) break;
+
+      memset(&fst, 0, sizeof(fst));
+      fst.f_bsize   = (unsigned long) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.blockSize);
+      fst.f_frsize  = fst.f_bsize;
+      fst.f_blocks  = (fsblkcnt_t) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.blocks);
+      fst.f_bfree   = (fsblkcnt_t) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.blocksFree);
+      fst.f_bavail  = (fsblkcnt_t) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.blocksAvail);
+      fst.f_files   = (fsfilcnt_t) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.files);
+      fst.f_ffree   = (fsfilcnt_t) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.filesFree);
+      fst.f_namemax = (unsigned long) (*env)->GetIntField(env, jStatfs, FuseStatfs->field.namelen);
+
+      fuse_reply_statfs(req, &fst);
+      break;
+   }
+
+   // cleanup
+
+   if (jStatfs != NULL) (*env)->DeleteLocalRef(env, jStatfs);
+
+   if (jerrno) fuse_reply_err(req, jerrno);
+
+   release_env(env);
+}
+
+
+static void javafs_ll_init(void *userdata, struct fuse_conn_info *conn)
+{
+   init_writeback_cache(conn);
+}
+
+
+static struct fuse_lowlevel_ops javafs_ll_oper = {
+   init:       javafs_ll_init,
+   lookup:     javafs_ll_lookup,
+   forget:     javafs_ll_forget,
+   getattr:    javafs_ll_getattr,
+   setattr:    javafs_ll_setattr,
+   readlink:   javafs_ll_readlink,
+   opendir:    javafs_ll_opendir,
+   readdir:    javafs_ll_readdir,
+   releasedir: javafs_ll_releasedir,
+   mknod:      javafs_ll_mknod,
+   mkdir:      javafs_ll_mkdir,
+   unlink:     javafs_ll_unlink,
+   rmdir:      javafs_ll_rmdir,
+   symlink:    javafs_ll_symlink,
+   rename:     javafs_ll_rename,
+   link:       javafs_ll_link,
+   open:       javafs_ll_open,
+   read:       javafs_ll_read,
+   write:      javafs_ll_write,
+   flush:      javafs_ll_flush,
+   release:    javafs_ll_release,
+   fsync:      javafs_ll_fsync,
+   statfs:     javafs_ll_statfs
+};
+
+
+//
+// kernel cache notifications (fuse.impl.FuseLowlevelNotifier)
+
+// copies the name into buf, returns its length or -1 if it is too long
+static int notify_name(JNIEnv *env, jbyteArray jName, char *buf, int size)
+{
+   jsize length = (*env)->GetArrayLength(env, jName);
+
+   if (length >= size)
+      return -1;
+
+   (*env)->GetByteArrayRegion(env, jName, 0, length, (jbyte *)buf);
+   buf[length] = '\0';
+
+   return (int)length;
+}
+
+
+/*
+ * Class:     fuse_impl_FuseLowlevelNotifier
+ * Method:    notifyInvalInode
+ * Signature: (JJJ)I
+ */
+JNIEXPORT jint JNICALL Java_fuse_impl_FuseLowlevelNotifier_notifyInvalInode(JNIEnv *env, jclass class, jlong ino, jlong offset, jlong length)
+{
+   int res = -ENOTCONN;
+
+   pthread_rwlock_rdlock(&notifyLock);
+   if (notifyChan != NULL)
+      res = fuse_lowlevel_notify_inval_inode(notifyChan, (fuse_ino_t)ino, (off_t)offset, (off_t)length);
+   pthread_rwlock_unlock(&notifyLock);
+
+   return -res;
+}
+
+
+/*
+ * Class:     fuse_impl_FuseLowlevelNotifier
+ * Method:    notifyInvalEntry
+ * Signature: (J[B)I
+ */
+JNIEXPORT jint JNICALL Java_fuse_impl_FuseLowlevelNotifier_notifyInvalEntry(JNIEnv *env, jclass class, jlong parent, jbyteArray jName)
+{
+   char name[NAME_MAX + 1];
+   int nameLength = notify_name(env, jName, name, sizeof(name));
+   int res = -ENOTCONN;
+
+   if (nameLength < 0)
+      return ENAMETOOLONG;
+
+   pthread_rwlock_rdlock(&notifyLock);
+   if (notifyChan != NULL)
+      res = fuse_lowlevel_notify_inval_entry(notifyChan, (fuse_ino_t)parent, name, (size_t)nameLength);
+   pthread_rwlock_unlock(&notifyLock);
+
+   return -res;
+}
+
+
+/*
+ * Class:     fuse_impl_FuseLowlevelNotifier
+ * Method:    notifyDelete
+ * Signature: (JJ[B)I
+ */
+JNIEXPORT jint JNICALL Java_fuse_impl_FuseLowlevelNotifier_notifyDelete(JNIEnv *env, jclass class, jlong parent, jlong child, jbyteArray jName)
+{
+   char name[NAME_MAX + 1];
+   int nameLength = notify_name(env, jName, name, sizeof(name));
+   int res = -ENOTCONN;
+
+   if (nameLength < 0)
+      return ENAMETOOLONG;
+
+   pthread_rwlock_rdlock(&notifyLock);
+   if (notifyChan != NULL)
+      res = fuse_lowlevel_notify_delete(notifyChan, (fuse_ino_t)parent, (fuse_ino_t)child, name, (size_t)nameLength);
+   pthread_rwlock_unlock(&notifyLock);
+
+   return -res;
+}
+
+
+/*
+ * Class:     fuse_impl_FuseLowlevelNotifier
+ * Method:    notifyStore
+ * Signature: (JJLjava/nio/ByteBuffer;)I
+ */
+JNIEXPORT jint JNICALL Java_fuse_impl_FuseLowlevelNotifier_notifyStore(JNIEnv *env, jclass class, jlong ino, jlong offset, jobject jData)
+{
+   size_t length;
+   void *data = buffer_data(env, jData, &length);
+   struct fuse_bufvec bufv = FUSE_BUFVEC_INIT(length);
+   int res = -ENOTCONN;
+
+   if (data == NULL)
+      return EINVAL;
+
+   bufv.buf[0].mem = data;
+
+   pthread_rwlock_rdlock(&notifyLock);
+   if (notifyChan != NULL)
+      res = fuse_lowlevel_notify_store(notifyChan, (fuse_ino_t)ino, (off_t)offset, &bufv, 0);
+   pthread_rwlock_unlock(&notifyLock);
+
+   return -res;
+}
+
+
+//
+// command line boot-up
+
+// like javafs_main(), the requests are served by javafs_session_loop() on pre-attached threads
+static void ll_session_main(int argc, char *argv[], int workers)
+{
+   struct fuse_args args = FUSE_ARGS_INIT(argc, argv);
+   struct fuse_chan *ch;
+   struct fuse_session *se;
+   char *mountpoint = NULL;
+   int multithreaded = 1;
+   int foreground = 0;
+
+   if (fuse_parse_cmdline(&args, &mountpoint, &multithreaded, &foreground) != -1 &&
+       (ch = fuse_mount(mountpoint, &args)) != NULL)
+   {
+      se = fuse_lowlevel_new(&args, &javafs_ll_oper, sizeof(javafs_ll_oper), NULL);
+      if (se != NULL)
+      {
+         if (fuse_set_signal_handlers(se) != -1)
+         {
+            fuse_session_add_chan(se, ch);
+
+            pthread_rwlock_wrlock(&notifyLock);
+            notifyChan = ch;
+            pthread_rwlock_unlock(&notifyLock);
+
+            // -s on the command line wins
+            if (!multithreaded)
+               workers = 1;
+
+            // main loop
+            javafs_session_loop(se, workers);
+
+            pthread_rwlock_wrlock(&notifyLock);
+            notifyChan = NULL;
+            pthread_rwlock_unlock(&notifyLock);
+
+            fuse_remove_signal_handlers(se);
+            fuse_session_remove_chan(ch);
+         }
+
+         fuse_session_destroy(se);
+      }
+
+      fuse_unmount(mountpoint, ch);
+   }
+
+   if (mountpoint != NULL) free(mountpoint);
+
+   fuse_opt_free_args(&args);
+}
+
+
+/*
+ * Class:     fuse_FuseMount
+ * Method:    mountLowlevel
+ * Signature: ([Ljava/lang/String;Lfuse/impl/FuseLowlevelFS;Ljava/lang/ThreadGroup;IDDDZZ)V
+ */
+JNIEXPORT void JNICALL Java_fuse_FuseMount_mountLowlevel(JNIEnv *env, jclass class, jobjectArray jArgs, jobject jFuseLowlevelFS, jobject jThreadGroup, jint workers,
+                                                         jdouble jAttrTimeout, jdouble jEntryTimeout, jdouble jNegativeTimeout, jboolean jKernelCache,
+                                                         jboolean jWritebackCache)
+{
+   if (!((*env)->GetJavaVM(env, &vm)))
+   {
+      mainEnv = env;
+      int i;
+
+      // negative values are FuseMountOptions.DEFAULT_TIMEOUT
+      attrTimeout = (jAttrTimeout < 0)? LL_ATTR_TIMEOUT : (double)jAttrTimeout;
+      entryTimeout = (jEntryTimeout < 0)? LL_ENTRY_TIMEOUT : (double)jEntryTimeout;
+      negativeTimeout = (jNegativeTimeout < 0)? LL_NEGATIVE_TIMEOUT : (double)jNegativeTimeout;
+      kernelCache = (jKernelCache == JNI_TRUE);
+      request_writeback_cache(jWritebackCache == JNI_TRUE);
+
+      int n = (*env)->GetArrayLength(env, jArgs);
+      int fuseArgc = n + 1;
+      char *fuseArgv[fuseArgc + 1];
+
+      // fake 1st argument to be the name of executable
+      fuseArgv[0] = "javafs";
+
+      // convert String[] jArgs -> char *fuseArgv[];
+      for (i = 0; i < n; i++)
+      {
+         jstring jArg = (*env)->GetObjectArrayElement(env, jArgs, i);
+         const char *arg = (*env)->GetStringUTFChars(env, jArg, NULL);
+         char *fuseArg = (char *)malloc(strlen(arg) + 1);
+         strcpy(fuseArg, arg);
+         (*env)->ReleaseStringUTFChars(env, jArg, arg);
+         (*env)->DeleteLocalRef(env, jArg);
+
+         fuseArgv[i + 1] = fuseArg;
+      }
+
+      fuseArgv[fuseArgc] = NULL;
+
+      if (alloc_classes(env))
+      {
+         if (retain_fuseLowlevelFS(env, jFuseLowlevelFS))
+         {
+            if (retain_threadGroup(env, jThreadGroup))
+            {
+               ll_session_main(fuseArgc, fuseArgv, (int)workers);
+
+               // cleanup
+               free_threadGroup(env);
+            }
+
+            // cleanup
+            free_fuseLowlevelFS(env);
+         }
+
+         // cleanup
+         free_classes(env);
+      }
+
+      // free char *fuseArgv[] strings
+      for (i = 1; i < fuseArgc; i++)
+      {
+         free(fuseArgv[i]);
+      }
+
+      vm = NULL;
+      mainEnv = NULL;
+   }
+}
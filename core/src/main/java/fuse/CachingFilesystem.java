@@ -0,0 +1,636 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import fuse.impl.util.FilesystemImplCheck;
+
+/**
+ * A Filesystem decorator that caches getattr() results and ENOENT misses of the wrapped
+ * Filesystem. Entries expire after a per-entry time to live and the least recently used
+ * entries are evicted when the cache is full. Operations that change attributes or the
+ * namespace go through this decorator and invalidate the affected paths (and their parent
+ * directories). Changes made to the wrapped Filesystem behind its back are only seen after
+ * the entries expire.
+ *
+ * <pre>
+ * Filesystem fs = CachingFilesystem.newBuilder(new MyFilesystem())
+ *    .attrTimeout(1000)
+ *    .negativeTimeout(500)
+ *    .maxEntries(10000)
+ *    .build();
+ * </pre>
+ */
+public class CachingFilesystem extends Filesystem {
+	private final Filesystem delegate;
+	private final long attrTimeout;
+	private final long negativeTimeout;
+	private final Map<String, Entry> cache;
+	// the delegate checks access per caller in getattr(), its answers can not be shared
+	private final boolean contextGetattr;
+
+	// bumped by every invalidation, a getattr() that raced with one does not store its result;
+	// guarded by cache
+	private long generation;
+
+	// statistics, guarded by cache
+	private long hits;
+	private long negativeHits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	private static final class Entry {
+		// null for a cached ENOENT
+		final FuseAttr attr;
+		final long expires;
+
+		Entry(FuseAttr attr, long expires) {
+			this.attr = attr;
+			this.expires = expires;
+		}
+	}
+
+	private CachingFilesystem(Filesystem delegate, long attrTimeout, long negativeTimeout, final int maxEntries) {
+		this.delegate = delegate;
+		this.attrTimeout = attrTimeout;
+		this.negativeTimeout = negativeTimeout;
+		this.contextGetattr = FilesystemImplCheck.isOverridden(delegate.getClass(), "getattr",
+				String.class, FuseAttrSetter.class, FuseContext.class);
+		this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 0;
+
+			protected boolean removeEldestEntry(Map.Entry<String, CachingFilesystem.Entry> eldest) {
+				if (size() > maxEntries) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public Filesystem getDelegate() {
+		return delegate;
+	}
+
+	//
+	// cache
+
+	private Entry lookup(String path) {
+		synchronized (cache) {
+			Entry e = cache.get(path);
+			if (e != null && e.expires < System.currentTimeMillis()) {
+				cache.remove(path);
+				e = null;
+			}
+			if (e == null)
+				misses++;
+			else if (e.attr == null)
+				negativeHits++;
+			else
+				hits++;
+			return e;
+		}
+	}
+
+	private long generation() {
+		synchronized (cache) {
+			return generation;
+		}
+	}
+
+	/**
+	 * Stores a result fetched from the delegate unless an invalidation happened since
+	 * <code>generation</code> was read before the fetch, the result may predate it then.
+	 */
+	private void store(String path, FuseAttr attr, long generation) {
+		long timeout = (attr == null)? negativeTimeout : attrTimeout;
+		if (timeout <= 0)
+			return;
+		synchronized (cache) {
+			if (this.generation == generation)
+				cache.put(path, new Entry(attr, System.currentTimeMillis() + timeout));
+		}
+	}
+
+	/**
+	 * Drops the cached entry of <code>path</code> and of its parent directory. A null path (writes to
+	 * a removed file mounted with <code>FuseMountOptions.nullPathOk()</code>) drops everything.
+	 */
+	public void invalidate(String path) {
+		if (path == null) {
+			invalidateAll();
+			return;
+		}
+		synchronized (cache) {
+			generation++;
+			if (cache.remove(path) != null)
+				invalidations++;
+			String parent = parentOf(path);
+			if (parent != null && cache.remove(parent) != null)
+				invalidations++;
+		}
+	}
+
+	/**
+	 * Drops the cached entries of <code>path</code>, everything below it and its parent directory.
+	 */
+	public void invalidateTree(String path) {
+		String prefix = path.endsWith("/")? path : path + "/";
+		synchronized (cache) {
+			generation++;
+			for (Iterator<String> i = cache.keySet().iterator(); i.hasNext(); ) {
+				if (i.next().startsWith(prefix)) {
+					i.remove();
+					invalidations++;
+				}
+			}
+		}
+		invalidate(path);
+	}
+
+	public void invalidateAll() {
+		synchronized (cache) {
+			generation++;
+			invalidations += cache.size();
+			cache.clear();
+		}
+	}
+
+	private static String parentOf(String path) {
+		int i = path.lastIndexOf('/');
+		if (i < 0 || path.length() == 1)
+			return null;
+		return (i == 0)? "/" : path.substring(0, i);
+	}
+
+	//
+	// statistics
+
+	public long getHits() {
+		synchronized (cache) {
+			return hits;
+		}
+	}
+
+	public long getNegativeHits() {
+		synchronized (cache) {
+			return negativeHits;
+		}
+	}
+
+	public long getMisses() {
+		synchronized (cache) {
+			return misses;
+		}
+	}
+
+	public long getEvictions() {
+		synchronized (cache) {
+			return evictions;
+		}
+	}
+
+	public long getInvalidations() {
+		synchronized (cache) {
+			return invalidations;
+		}
+	}
+
+	public int getSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * @return the ratio of getattr calls answered from the cache (including ENOENT) to all getattr calls
+	 */
+	public double getHitRate() {
+		synchronized (cache) {
+			long total = hits + negativeHits + misses;
+			return (total == 0)? 0.0 : (double) (hits + negativeHits) / total;
+		}
+	}
+
+	public String toString() {
+		synchronized (cache) {
+			return "CachingFilesystem[size=" + cache.size() + ", hits=" + hits + ", negativeHits=" + negativeHits
+				+ ", misses=" + misses + ", evictions=" + evictions + ", invalidations=" + invalidations + "]";
+		}
+	}
+
+	//
+	// cached operations
+
+	public FuseAttr getattr(String path) throws FuseException {
+		Entry e = lookup(path);
+		if (e != null) {
+			if (e.attr == null)
+				throw FuseException.shared(Errno.ENOENT);
+			return e.attr;
+		}
+		return load(path);
+	}
+
+	public void getattr(String path, FuseAttrSetter attrSetter) throws FuseException {
+		Entry e = lookup(path);
+		FuseAttr attr;
+		if (e != null) {
+			if (e.attr == null)
+				throw FuseException.shared(Errno.ENOENT);
+			attr = e.attr;
+		} else {
+			attr = load(path);
+		}
+		attrSetter.set(attr.getInode(), attr.getMode(), attr.getNlink(), attr.getUid(), attr.getGid(), attr.getRdev(),
+				attr.getSize(), attr.getBlocks(), attr.getAtime(), attr.getMtime(), attr.getCtime());
+		if (attr.getAttrTimeout() != FuseAttr.MOUNT_TIMEOUT || attr.getEntryTimeout() != FuseAttr.MOUNT_TIMEOUT) {
+			attrSetter.setTimeouts(attr.getAttrTimeout(), attr.getEntryTimeout());
+		}
+	}
+
+	public void getattr(String path, FuseAttrSetter attrSetter, FuseContext context) throws FuseException {
+		if (contextGetattr)
+			delegate.getattr(path, attrSetter, context);
+		else
+			getattr(path, attrSetter);
+	}
+
+	private FuseAttr load(String path) throws FuseException {
+		final FuseAttr.Builder[] result = new FuseAttr.Builder[1];
+		long generation = generation();
+		try {
+			delegate.getattr(path, new FuseAttrSetter() {
+				public void set(long inode, int mode, int nlink, int uid, int gid, int rdev, long size, long blocks, int atime, int mtime, int ctime) {
+					result[0] = FuseAttr.newBuilder().inode(inode).mode(mode).nlink(nlink).uid(uid).gid(gid).rdev(rdev)
+						.size(size).blocks(blocks).atime(atime).mtime(mtime).ctime(ctime);
+				}
+
+				public void setTimeouts(double attrTimeout, double entryTimeout) {
+					if (result[0] == null)
+						return;
+					if (attrTimeout != FuseAttr.MOUNT_TIMEOUT)
+						result[0].attrTimeout(attrTimeout);
+					if (entryTimeout != FuseAttr.MOUNT_TIMEOUT)
+						result[0].entryTimeout(entryTimeout);
+				}
+			});
+		} catch (FuseException e) {
+			if (e.getErrno() == Errno.ENOENT)
+				store(path, null, generation);
+			throw e;
+		}
+		if (result[0] == null) {
+			store(path, null, generation);
+			throw FuseException.shared(Errno.ENOENT);
+		}
+		FuseAttr attr = result[0].build();
+		store(path, attr, generation);
+		return attr;
+	}
+
+	//
+	// invalidating operations
+
+	public void mknod(String path, int mode, int rdev) throws FuseException {
+		try {
+			delegate.mknod(path, mode, rdev);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public Object create(String path, int mode, int rdev) throws FuseException {
+		try {
+			return delegate.create(path, mode, rdev);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public Object create(String path, int mode, int rdev, FuseContext context) throws FuseException {
+		try {
+			return delegate.create(path, mode, rdev, context);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void create(String path, int mode, FuseFileInfo ffi, FuseContext context) throws FuseException {
+		try {
+			delegate.create(path, mode, ffi, context);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void mkdir(String path, int mode) throws FuseException {
+		try {
+			delegate.mkdir(path, mode);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void unlink(String path) throws FuseException {
+		try {
+			delegate.unlink(path);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void rmdir(String path) throws FuseException {
+		try {
+			delegate.rmdir(path);
+		} finally {
+			invalidateTree(path);
+		}
+	}
+
+	public void symlink(String from, String to) throws FuseException {
+		try {
+			delegate.symlink(from, to);
+		} finally {
+			invalidate(to);
+		}
+	}
+
+	public void rename(String from, String to) throws FuseException {
+		try {
+			delegate.rename(from, to);
+		} finally {
+			invalidateTree(from);
+			invalidateTree(to);
+		}
+	}
+
+	public void link(String from, String to) throws FuseException {
+		try {
+			delegate.link(from, to);
+		} finally {
+			// nlink of the source changes too
+			invalidate(from);
+			invalidate(to);
+		}
+	}
+
+	public void chmod(String path, int mode) throws FuseException {
+		try {
+			delegate.chmod(path, mode);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void chown(String path, int uid, int gid) throws FuseException {
+		try {
+			delegate.chown(path, uid, gid);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void truncate(String path, long size) throws FuseException {
+		try {
+			delegate.truncate(path, size);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void ftruncate(String path, Object fh, long size) throws FuseException {
+		try {
+			delegate.ftruncate(path, fh, size);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void utime(String path, int atime, int mtime) throws FuseException {
+		try {
+			delegate.utime(path, atime, mtime);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void write(String path, Object fh, boolean isWritepage, ByteBuffer buf, long offset) throws FuseException {
+		try {
+			delegate.write(path, fh, isWritepage, buf, offset);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void setxattr(String path, String name, ByteBuffer value, XAttrSetMode flags) throws FuseException {
+		try {
+			delegate.setxattr(path, name, value, flags);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	public void removexattr(String path, String name) throws FuseException {
+		try {
+			delegate.removexattr(path, name);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	//
+	// pass-through operations
+
+	public void readlink(String path, CharBuffer link) throws FuseException {
+		delegate.readlink(path, link);
+	}
+
+	public void getdir(String path, FuseDirFiller dirFiller) throws FuseException {
+		delegate.getdir(path, dirFiller);
+	}
+
+	public void readdir(String path, Object fh, long offset, FuseReaddirFiller filler) throws FuseException {
+		delegate.readdir(path, fh, offset, filler);
+	}
+
+	/**
+	 * Passes the listing through and stores the attributes of the entries in the cache.
+	 */
+	public void readdirplus(final String path, Object fh, long offset, final FuseReaddirPlusFiller filler) throws FuseException {
+		final long generation = generation();
+		delegate.readdirplus(path, fh, offset, new FuseReaddirPlusFiller() {
+			public boolean add(String name, long inode, int mode, int nlink, int uid, int gid, int rdev, long size, long blocks, int atime, int mtime, int ctime, long nextOffset) {
+				if (!contextGetattr && !name.equals(".") && !name.equals("..")) {
+					store(path.endsWith("/")? path + name : path + "/" + name, FuseAttr.newBuilder().inode(inode).mode(mode).nlink(nlink)
+						.uid(uid).gid(gid).rdev(rdev).size(size).blocks(blocks).atime(atime).mtime(mtime).ctime(ctime).build(), generation);
+				}
+				return filler.add(name, inode, mode, nlink, uid, gid, rdev, size, blocks, atime, mtime, ctime, nextOffset);
+			}
+		});
+	}
+
+	public FuseStatfs statfs() throws FuseException {
+		return delegate.statfs();
+	}
+
+	public void open(String path, FuseFileInfo ffi) throws FuseException {
+		delegate.open(path, ffi);
+	}
+
+	public void open(String path, FuseFileInfo ffi, FuseContext context) throws FuseException {
+		delegate.open(path, ffi, context);
+	}
+
+	public void read(String path, Object fh, ByteBuffer buf, long offset) throws FuseException {
+		delegate.read(path, fh, buf, offset);
+	}
+
+	public ByteBuffer readBuffer(String path, Object fh, long offset, int size) throws FuseException {
+		return delegate.readBuffer(path, fh, offset, size);
+	}
+
+	public FuseFileRegion readRegion(String path, Object fh, long offset, int size) throws FuseException {
+		return delegate.readRegion(path, fh, offset, size);
+	}
+
+	public FuseFileRegion writeRegion(String path, Object fh, long offset, int size) throws FuseException {
+		try {
+			return delegate.writeRegion(path, fh, offset, size);
+		} finally {
+			invalidate(path);
+		}
+	}
+
+	// the handle knows its file, fstat() is not cached
+	public void fgetattr(String path, Object fh, FuseAttrSetter attrSetter) throws FuseException {
+		delegate.fgetattr(path, fh, attrSetter);
+	}
+
+	public void flush(String path, Object fh) throws FuseException {
+		delegate.flush(path, fh);
+	}
+
+	public void release(String path, Object fh, int flags) throws FuseException {
+		delegate.release(path, fh, flags);
+	}
+
+	public void fsync(String path, Object fh, boolean isDatasync) throws FuseException {
+		delegate.fsync(path, fh, isDatasync);
+	}
+
+	@Deprecated
+	public int getxattrsize(String path, String name) throws FuseException {
+		return delegate.getxattrsize(path, name);
+	}
+
+	public void getxattr(String path, String name, ByteBuffer dst) throws FuseException, BufferOverflowException {
+		delegate.getxattr(path, name, dst);
+	}
+
+	public void listxattr(String path, XattrLister lister) throws FuseException {
+		delegate.listxattr(path, lister);
+	}
+
+	/**
+	 * The wrapped Filesystem gets a notifier that drops the entries of this cache before the
+	 * kernel's, otherwise the kernel would get the stale attributes back from here.
+	 */
+	public void setNotifier(FuseNotifier notifier) {
+		delegate.setNotifier((notifier == null)? null : new CachingNotifier(notifier));
+	}
+
+	private final class CachingNotifier implements FuseNotifier {
+		private final FuseNotifier notifier;
+
+		CachingNotifier(FuseNotifier notifier) {
+			this.notifier = notifier;
+		}
+
+		public void invalidateData(String path, long offset, long length) throws FuseException {
+			invalidate(path);
+			notifier.invalidateData(path, offset, length);
+		}
+
+		public void invalidateAttributes(String path) throws FuseException {
+			invalidate(path);
+			notifier.invalidateAttributes(path);
+		}
+
+		public void invalidateEntry(String path) throws FuseException {
+			invalidate(path);
+			notifier.invalidateEntry(path);
+		}
+
+		public void deleted(String path) throws FuseException {
+			invalidateTree(path);
+			notifier.deleted(path);
+		}
+
+		public boolean store(String path, long offset, ByteBuffer data) throws FuseException {
+			return notifier.store(path, offset, data);
+		}
+	}
+
+	public Charset getPathCharSet() {
+		return delegate.getPathCharSet();
+	}
+
+	//
+	// builder
+
+	public static Builder newBuilder(Filesystem delegate) {
+		return new Builder(delegate);
+	}
+
+	public static class Builder {
+		private final Filesystem delegate;
+		private long attrTimeout = 1000;
+		private long negativeTimeout = 1000;
+		private int maxEntries = 10000;
+
+		private Builder(Filesystem delegate) {
+			this.delegate = delegate;
+		}
+
+		public CachingFilesystem build() {
+			return new CachingFilesystem(delegate, attrTimeout, negativeTimeout, maxEntries);
+		}
+
+		/**
+		 * @param attrTimeout time in milliseconds for which getattr() results are cached, 0 disables caching them
+		 */
+		public Builder attrTimeout(long attrTimeout) {
+			this.attrTimeout = attrTimeout;
+			return this;
+		}
+
+		/**
+		 * @param negativeTimeout time in milliseconds for which ENOENT is cached, 0 disables caching it
+		 */
+		public Builder negativeTimeout(long negativeTimeout) {
+			this.negativeTimeout = negativeTimeout;
+			return this;
+		}
+
+		public Builder maxEntries(int maxEntries) {
+			this.maxEntries = maxEntries;
+			return this;
+		}
+	}
+}
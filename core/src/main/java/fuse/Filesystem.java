@@ -21,15 +21,18 @@ import java.nio.charset.Charset;
  *
  *  - All operations should return the error value (errno) by either:
  *     - throwing a fuse.FuseException with a errno field of the exception set to the desired fuse.Errno.E* value.
- *     - returning an integer value taken from fuse.Errno.E* constants.
- *       this is supposed to be less expensive in terms of CPU cycles and should only be used
- *       for very frequent errors (for example ENOENT).
+ *     - throwing FuseException.shared(errno), a preallocated exception without a stack trace.
+ *       This allocates nothing, is not logged and is the cheapest way to report very frequent
+ *       errors (for example ENOENT from getattr).
  *
  *  - getdir() is the opendir(), readdir(), ..., closedir() sequence
- *  in one call.
+ *  in one call. readdir() streams the entries and can be resumed at an
+ *  offset; by default it delegates to getdir().
  *
- *  - There is no create() operation, mknod() will be called for
- *  creation of all non directory, non symlink nodes.
+ *  - create() creates and opens a regular file in one call and returns
+ *  its filehandle like open(). If it is not implemented, mknod() and
+ *  open() are called instead. mknod() is called for creation of all
+ *  other non directory, non symlink nodes.
  *
  *  - open() No
  *  creation, or trunctation flags (O_CREAT, O_EXCL, O_TRUNC) will be
@@ -39,6 +42,9 @@ import java.nio.charset.Charset;
  *  - read(), write(), release() are are passed a filehandle that is returned from open() in
  *  addition to a pathname.  The offset of the read and write is passed as the last
  *  argument, the number of bytes read/writen is returned through the java.nio.ByteBuffer object
+ *  When mounted with FuseMountOptions.nullPathOk() the path of the operations on open files
+ *  (read, write, flush, release, fsync, fgetattr, ftruncate) is null once the file was removed
+ *  while open.
  *
  *  - release() is called when an open file has:
  *       1) all file descriptors closed
@@ -64,7 +70,13 @@ public abstract class Filesystem
 			return flags;
 		}
 		
+		/**
+		 * @return the mode for <code>flags</code> or null if no flags are set
+		 */
 		public static XAttrSetMode byFlag(int flags) {
+			if (flags == 0) {
+				return null;
+			}
 			for(XAttrSetMode mode : values()) {
 				if(mode.getFlags() == flags) {
 					return mode;
@@ -75,98 +87,277 @@ public abstract class Filesystem
 	}
 	
    public FuseAttr getattr(String path) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
+   }
+
+   /**
+    * Reports the attributes of a node through <code>attrSetter</code>. This is the variant
+    * called by the bindings; overriding it instead of <code>getattr(String)</code> avoids
+    * allocating a FuseAttr on every call. The default implementation delegates to
+    * <code>getattr(String)</code>.
+    *
+    * @param path the path of the node
+    * @param attrSetter a callback interface that should be used to set the attributes
+    * @throws FuseException
+    */
+   public void getattr(String path, FuseAttrSetter attrSetter) throws FuseException {
+	   FuseAttr attr = getattr(path);
+	   if (attr == null) {
+		   throw FuseException.shared(Errno.ENOENT);
+	   }
+	   attrSetter.set(attr.getInode(), attr.getMode(), attr.getNlink(), attr.getUid(), attr.getGid(), attr.getRdev(),
+			   attr.getSize(), attr.getBlocks(), attr.getAtime(), attr.getMtime(), attr.getCtime());
+	   if (attr.getAttrTimeout() != FuseAttr.MOUNT_TIMEOUT || attr.getEntryTimeout() != FuseAttr.MOUNT_TIMEOUT) {
+		   attrSetter.setTimeouts(attr.getAttrTimeout(), attr.getEntryTimeout());
+	   }
+   }
+
+   /**
+    * Reports the attributes of an open file (<code>fstat()</code>). Overriding it lets the
+    * filesystem use the handle instead of resolving the path again. The default implementation
+    * delegates to <code>getattr(String, FuseAttrSetter)</code>.
+    *
+    * @param path the path of the file, null for a removed file when mounted with <code>FuseMountOptions.nullPathOk()</code>
+    * @param fh filehandle passed from open
+    */
+   public void fgetattr(String path, Object fh, FuseAttrSetter attrSetter) throws FuseException {
+	   getattr(path, attrSetter);
+   }
+
+   /**
+    * The variant of <code>getattr()</code> the bindings call, with the caller of the operation
+    * for per-user access checks. The default implementation delegates to
+    * <code>getattr(String, FuseAttrSetter)</code>.
+    *
+    * @param context the caller, only valid during the call (see <code>FuseContext.current()</code>)
+    */
+   public void getattr(String path, FuseAttrSetter attrSetter, FuseContext context) throws FuseException {
+	   getattr(path, attrSetter);
    }
 
    public void readlink(String path, CharBuffer link) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void getdir(String path, FuseDirFiller dirFiller) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
+   }
+
+   /**
+    * Lists the directory starting at the given offset. Entries should be added until
+    * <code>filler.add()</code> returns false; readdir() is then called again with the
+    * <code>nextOffset</code> of the last accepted entry. The default implementation
+    * lists the whole directory with <code>getdir()</code> and ignores offsets.
+    *
+    * @param path the path of the directory
+    * @param fh filehandle passed from opendir or null
+    * @param offset 0 for the first call, otherwise <code>nextOffset</code> of the last accepted entry
+    * @param filler a callback interface that should be used to add the entries
+    * @throws FuseException
+    */
+   public void readdir(String path, Object fh, long offset, final FuseReaddirFiller filler) throws FuseException {
+	   getdir(path, new FuseDirFiller() {
+		   public void add(String name, long inode, int mode) {
+			   filler.add(name, inode, mode, 0);
+		   }
+	   });
+   }
+
+   /**
+    * Lists the directory like <code>readdir()</code>, but with the complete attributes of every
+    * entry. Only called when overridden, instead of <code>readdir()</code>. libfuse 2.x can not pass
+    * the attributes to the kernel with the entries, so the native side keeps them for a second and
+    * answers the <code>getattr()</code> calls for the entries from them. Operations that change
+    * attributes or the namespace through this mount drop them. Filesystems that override
+    * <code>getattr(String, FuseAttrSetter, FuseContext)</code> always get their getattr() calls.
+    *
+    * @param path the path of the directory
+    * @param fh filehandle passed from opendir or null
+    * @param offset 0 for the first call, otherwise <code>nextOffset</code> of the last accepted entry
+    * @param filler a callback interface that should be used to add the entries
+    * @throws FuseException
+    */
+   public void readdirplus(String path, Object fh, long offset, FuseReaddirPlusFiller filler) throws FuseException {
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void mknod(String path, int mode, int rdev) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
    
+   /**
+    * Creates a regular file and opens it for reading and writing.
+    *
+    * @param mode the permissions and <code>S_IFREG</code> type bits of the new file
+    * @param rdev always 0
+    * @return the filehandle passed to read, write and release, may be null
+    */
    public Object create(String path, int mode, int rdev) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
+   }
+
+   /**
+    * The variant of <code>create()</code> with the caller that becomes the owner of the file.
+    * The default implementation delegates to <code>create(String, int, int)</code>.
+    *
+    * @param context the caller, only valid during the call
+    */
+   public Object create(String path, int mode, int rdev, FuseContext context) throws FuseException {
+	   return create(path, mode, rdev);
+   }
+
+   /**
+    * The variant of <code>create()</code> the bindings call. Like in <code>open()</code>,
+    * <code>ffi</code> carries the open flags and takes the filehandle and the direct_io and
+    * keep_cache options. The default implementation sets the filehandle returned by
+    * <code>create(String, int, int, FuseContext)</code>.
+    *
+    * @param context the caller, only valid during the call
+    */
+   public void create(String path, int mode, FuseFileInfo ffi, FuseContext context) throws FuseException {
+	   ffi.setFh(create(path, mode, 0, context));
    }
 
    public void mkdir(String path, int mode) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void unlink(String path) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void rmdir(String path) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void symlink(String from, String to) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void rename(String from, String to) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void link(String from, String to) throws FuseException  {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void chmod(String path, int mode) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void chown(String path, int uid, int gid) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void truncate(String path, long size) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
+   }
+
+   /**
+    * Truncates an open file (<code>ftruncate()</code>). The default implementation delegates to
+    * <code>truncate()</code>.
+    *
+    * @param path the path of the file, null for a removed file when mounted with <code>FuseMountOptions.nullPathOk()</code>
+    * @param fh filehandle passed from open
+    */
+   public void ftruncate(String path, Object fh, long size) throws FuseException {
+	   truncate(path, size);
    }
 
    public void utime(String path, int atime, int mtime) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public FuseStatfs statfs() throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    public void open(String path, FuseFileInfo ffi) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
+   }
+
+   /**
+    * The variant of <code>open()</code> the bindings call, with the caller of the operation.
+    * The default implementation delegates to <code>open(String, FuseFileInfo)</code>.
+    *
+    * @param context the caller, only valid during the call
+    */
+   public void open(String path, FuseFileInfo ffi, FuseContext context) throws FuseException {
+	   open(path, ffi);
    }
 
    // fh is filehandle passed from open
    public void read(String path, Object fh, ByteBuffer buf, long offset) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
+   }
+
+   /**
+    * A read that hands out the data instead of copying it. The returned buffer must hold the data
+    * between its position and limit (only the first <code>size</code> bytes are used, none at end of
+    * file). A direct or memory-mapped buffer (or a slice of one) is copied straight into the reply
+    * by the native side, without passing the bytes through Java. The buffer must not change until
+    * this call returns, its position and limit are left alone, so a cached buffer can be returned. Implement this instead of <code>read()</code> when the data already is in
+    * such a buffer; the default reads through <code>read()</code>.
+    *
+    * @param fh filehandle passed from open
+    */
+   public ByteBuffer readBuffer(String path, Object fh, long offset, int size) throws FuseException {
+	   ByteBuffer buf = ByteBuffer.allocate(size);
+	   read(path, fh, buf, offset);
+	   buf.flip();
+	   return buf;
+   }
+
+   /**
+    * A read served straight from a file descriptor. Return the range of an open file that holds
+    * the data at <code>offset</code> and the native side splices it into the reply without the
+    * bytes passing through Java; at most <code>size</code> bytes are used, fewer if the range is
+    * shorter or the file ends first. Return null to serve this call through
+    * <code>readBuffer()</code>/<code>read()</code> instead (the default).
+    *
+    * @param fh filehandle passed from open
+    */
+   public FuseFileRegion readRegion(String path, Object fh, long offset, int size) throws FuseException {
+	   return null;
    }
 
    // fh is filehandle passed from open,
-   // isWritepage indicates that write was caused by a writepage
+   // isWritepage indicates that write was caused by a writepage;
+   // with FuseMountOptions.writebackCache() writes arrive in large chunks after the fact, possibly
+   // through a handle the application opened read-only; the kernel then sets mtime through utime()
    public void write(String path, Object fh, boolean isWritepage, ByteBuffer buf, long offset) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
+   }
+
+   /**
+    * A write served straight into a file descriptor. Return the range of an open file where the
+    * <code>size</code> bytes written at <code>offset</code> go and the native side splices them
+    * there without the bytes passing through Java. If the range is shorter than
+    * <code>size</code>, only that many bytes are written. <code>write()</code> is not called for
+    * the data, so any bookkeeping (file size, mtime) has to be done here. Return null to serve
+    * this call through <code>write()</code> instead (the default).
+    *
+    * @param fh filehandle passed from open
+    */
+   public FuseFileRegion writeRegion(String path, Object fh, long offset, int size) throws FuseException {
+	   return null;
    }
 
    // called on every filehandle close, fh is filehandle passed from open
    public void flush(String path, Object fh) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    // called when last filehandle is closed, fh is filehandle passed from open
    public void release(String path, Object fh, int flags) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    // Synchronize file contents, fh is filehandle passed from open,
    // isDatasync indicates that only the user data should be flushed, not the meta data
    public void fsync(String path, Object fh, boolean isDatasync) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    /**
@@ -177,9 +368,11 @@ public abstract class Filesystem
     * @param sizeSetter a callback interface that should be used to set the attribute's size
     * @return 0 if Ok or errno when error
     * @throws FuseException an alternative to returning errno is to throw this exception with errno initialized
+    * @deprecated no longer called, the size is taken from the value <code>getxattr()</code> produces
     */
+   @Deprecated
    public int getxattrsize(String path, String name) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    /**
@@ -195,7 +388,7 @@ public abstract class Filesystem
     *         be called again with a larger buffer.
     */
    public void getxattr(String path, String name, ByteBuffer dst) throws FuseException, BufferOverflowException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    /**
@@ -207,7 +400,7 @@ public abstract class Filesystem
     * @throws FuseException an alternative to returning errno is to throw this exception with errno initialized
     */
    public void listxattr(String path, XattrLister lister) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    /**
@@ -219,12 +412,12 @@ public abstract class Filesystem
     * @param flags parameter can be used to refine the semantics of the operation.<p>
     *        <code>XATTR_CREATE</code> specifies a pure create, which should fail with <code>Errno.EEXIST</code> if the named attribute exists already.<p>
     *        <code>XATTR_REPLACE</code> specifies a pure replace operation, which should fail with <code>Errno.ENOATTR</code> if the named attribute does not already exist.<p>
-    *        By default (no flags), the  extended  attribute  will  be created if need be, or will simply replace the value if the attribute exists.
+    *        By default (no flags, <code>null</code>), the  extended  attribute  will  be created if need be, or will simply replace the value if the attribute exists.
     * @return 0 if Ok or errno when error
     * @throws FuseException an alternative to returning errno is to throw this exception with errno initialized
     */
    public void setxattr(String path, String name, ByteBuffer value, XAttrSetMode flags) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
 
    /**
@@ -236,11 +429,19 @@ public abstract class Filesystem
     * @throws FuseException an alternative to returning errno is to throw this exception with errno initialized
     */
    public void removexattr(String path, String name) throws FuseException {
-	   throw FuseException.fromErrno(Errno.ENOTSUPP);
+	   throw FuseException.shared(Errno.ENOTSUPP);
    }
    
    public Charset getPathCharSet() {
 	   String encoding = System.getProperty("file.encoding", "UTF-8");
 	   return Charset.forName(encoding);
    }
+
+   /**
+    * Called by the low-level mount with the notifier of the mount before it serves the first
+    * request, and with null after it is unmounted. Keep it to push cache invalidations for
+    * changes the kernel cannot see. The path based mount never calls it.
+    */
+   public void setNotifier(FuseNotifier notifier) {
+   }
 }
@@ -1,6 +1,11 @@
 package fuse;
 
 public class FuseAttr {
+	/**
+	 * timeout value meaning "use the attr_timeout/entry_timeout of the mount"
+	 */
+	public static final double MOUNT_TIMEOUT = -1;
+
 	private final long inode;
 	private final int mode;
 	private final int nlink;
@@ -12,6 +17,8 @@ public class FuseAttr {
 	private final int atime;
 	private final int mtime;
 	private final int ctime;
+	private final double attrTimeout;
+	private final double entryTimeout;
 	
 	public long getInode() {
 		return inode;
@@ -48,9 +55,24 @@ public class FuseAttr {
 	public int getCtime() {
 		return ctime;
 	}
+
+	/**
+	 * @return seconds the kernel may cache these attributes or <code>MOUNT_TIMEOUT</code>
+	 */
+	public double getAttrTimeout() {
+		return attrTimeout;
+	}
+
+	/**
+	 * @return seconds the kernel may cache the name to node lookup or <code>MOUNT_TIMEOUT</code>
+	 */
+	public double getEntryTimeout() {
+		return entryTimeout;
+	}
 	
 	private FuseAttr(long inode, int mode, int nlink, int uid, int gid,
-			int rdev, long size, long blocks, int atime, int mtime, int ctime) {
+			int rdev, long size, long blocks, int atime, int mtime, int ctime,
+			double attrTimeout, double entryTimeout) {
 		super();
 		this.inode = inode;
 		this.mode = mode;
@@ -63,6 +85,8 @@ public class FuseAttr {
 		this.atime = atime;
 		this.mtime = mtime;
 		this.ctime = ctime;
+		this.attrTimeout = attrTimeout;
+		this.entryTimeout = entryTimeout;
 	}
 	
 	public static Builder newBuilder() {
@@ -81,12 +105,14 @@ public class FuseAttr {
 		private int atime = 0;
 		private int mtime = 0;
 		private int ctime = 0;
+		private double attrTimeout = MOUNT_TIMEOUT;
+		private double entryTimeout = MOUNT_TIMEOUT;
 		
 		private Builder() {	
 		}
 		
 		public FuseAttr build() {
-			return new FuseAttr(inode, mode, nlink, uid, gid, rdev, size, blocks, atime, mtime, ctime);
+			return new FuseAttr(inode, mode, nlink, uid, gid, rdev, size, blocks, atime, mtime, ctime, attrTimeout, entryTimeout);
 		}
 		
 		public Builder inode(long inode) {
@@ -147,5 +173,30 @@ public class FuseAttr {
 			this.ctime = ctime;
 			return this;
 		}
+
+		/**
+		 * Lets the kernel cache these attributes for <code>seconds</code> instead of the
+		 * attr_timeout of the mount, e.g. an hour for immutable files and 0 for files that change
+		 * behind its back. Honored by the low-level mount (<code>FuseMount.mountLowlevel()</code>);
+		 * the path based libfuse API only has the per mount timeout.
+		 */
+		public Builder attrTimeout(double seconds) {
+			if (seconds < 0)
+				throw new IllegalArgumentException("negative timeout: " + seconds);
+			this.attrTimeout = seconds;
+			return this;
+		}
+
+		/**
+		 * Lets the kernel cache the name lookup of this node for <code>seconds</code> instead of
+		 * the entry_timeout of the mount. Honored by the low-level mount only, like
+		 * <code>attrTimeout()</code>.
+		 */
+		public Builder entryTimeout(double seconds) {
+			if (seconds < 0)
+				throw new IllegalArgumentException("negative timeout: " + seconds);
+			this.entryTimeout = seconds;
+			return this;
+		}
 	}
 }
@@ -0,0 +1,19 @@
+package fuse;
+
+/**
+ * Callback used by <code>Filesystem.getattr(String, FuseAttrSetter)</code> to report the
+ * attributes of a node without allocating a FuseAttr object.
+ */
+public interface FuseAttrSetter
+{
+   public void set(long inode, int mode, int nlink, int uid, int gid, int rdev, long size, long blocks, int atime, int mtime, int ctime);
+
+   /**
+    * Optionally overrides the cache timeouts of the mount for this reply, see
+    * <code>FuseAttr.Builder.attrTimeout()</code> and <code>entryTimeout()</code>.
+    *
+    * @param attrTimeout seconds the kernel may cache the attributes or <code>FuseAttr.MOUNT_TIMEOUT</code>
+    * @param entryTimeout seconds the kernel may cache the name lookup or <code>FuseAttr.MOUNT_TIMEOUT</code>
+    */
+   public void setTimeouts(double attrTimeout, double entryTimeout);
+}
@@ -1,35 +1,79 @@
 package fuse;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
- * Java counterpart of struct fuse_context FUSE C API. Every instance is
- * filled-in with current Thread's active FUSE context which is only relevant
- * for the duration of a filesystem operation
+ * Java counterpart of struct fuse_context FUSE C API: the caller of the
+ * filesystem operation the current thread is serving.
+ *
+ * The native side writes the caller into a per-thread buffer at the start of
+ * every operation, so reading it costs neither a JNI call nor an allocation.
+ * The layout must match <code>javafs_context</code> in javafs.h.
  */
 public class FuseContext {
-	private int uid;
-	private int gid;
-	private int pid;
+	private static final int UID = 0;
+	private static final int GID = 4;
+	private static final int PID = 8;
+	private static final int UMASK = 12;
+
+	private static final int LENGTH = 16;
+
+	private static final ThreadLocal<FuseContext> current = new ThreadLocal<FuseContext>() {
+		protected FuseContext initialValue() {
+			return new FuseContext(ByteBuffer.allocateDirect(LENGTH));
+		}
+	};
+
+	private final ByteBuffer buffer;
+
+	private FuseContext(ByteBuffer buffer) {
+		this.buffer = buffer.order(ByteOrder.nativeOrder());
+	}
 
 	public int getUid() {
-		return uid;
+		return buffer.getInt(UID);
 	}
 
 	public int getGid() {
-		return gid;
+		return buffer.getInt(GID);
 	}
 
 	public int getPid() {
-		return pid;
+		return buffer.getInt(PID);
 	}
 
-	private FuseContext() {
+	public int getUmask() {
+		return buffer.getInt(UMASK);
 	}
 
+	/**
+	 * The context of the current thread. The instance belongs to the thread and
+	 * always shows the operation it is serving, so it must not be kept beyond the
+	 * operation; use <code>get()</code> for a copy. All values are 0 on threads
+	 * that never served an operation.
+	 */
+	public static FuseContext current() {
+		return current.get();
+	}
+
+	/**
+	 * @return a copy of the context of the current thread
+	 */
 	public static FuseContext get() {
-		FuseContext fuseContext = new FuseContext();
-		fuseContext.fillInFuseContext();
-		return fuseContext;
+		ByteBuffer copy = ByteBuffer.allocate(LENGTH);
+		copy.put(current().buffer.duplicate());
+		return new FuseContext(copy);
 	}
 
-	private native void fillInFuseContext();
+	public String toString() {
+		return "FuseContext[uid=" + getUid() + ", gid=" + getGid() + ", pid=" + getPid() + ", umask=" + Integer.toOctalString(getUmask()) + "]";
+	}
+
+	/**
+	 * Called by the native side once per thread and mount, the buffer it fills in.
+	 */
+	static ByteBuffer threadBuffer() {
+		return current().buffer;
+	}
 }
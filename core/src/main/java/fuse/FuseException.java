@@ -39,7 +39,54 @@ public class FuseException extends Exception {
 		return errno;
 	}
 	
+	/**
+	 * @return true if this is one of the preallocated instances returned by <code>shared()</code>
+	 */
+	public boolean isShared() {
+		return false;
+	}
+
 	public static FuseException fromErrno(Errno errno) {
 		return new FuseException(errno);
 	}
+
+	/**
+	 * Returns a preallocated exception without a stack trace for the given errno. Throwing it
+	 * allocates nothing and the bindings do not log it, so it is meant for frequent, expected
+	 * errors like ENOENT from getattr. The instance is shared between all callers and threads:
+	 * never add a cause to it or rely on its stack trace.
+	 */
+	public static FuseException shared(Errno errno) {
+		return SHARED[errno.ordinal()];
+	}
+
+	private static final FuseException[] SHARED;
+
+	static {
+		Errno[] errnos = Errno.values();
+		SHARED = new FuseException[errnos.length];
+		for (Errno errno : errnos) {
+			SHARED[errno.ordinal()] = new Shared(errno);
+		}
+	}
+
+	private static final class Shared extends FuseException {
+		private static final long serialVersionUID = 0;
+
+		Shared(Errno errno) {
+			super(errno);
+		}
+
+		public boolean isShared() {
+			return true;
+		}
+
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+
+		public synchronized Throwable initCause(Throwable cause) {
+			throw new IllegalStateException("Can't set the cause of a shared FuseException");
+		}
+	}
 }
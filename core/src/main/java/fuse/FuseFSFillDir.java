@@ -0,0 +1,63 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * This is a byte level API readdir filler. It wraps the fuse_fill_dir_t function and the reply
+ * buffer that libfuse passes to the readdir callback, so every entry goes straight into the
+ * kernel reply. An instance is only valid for the duration of the readdir call it was passed to.
+ */
+public class FuseFSFillDir
+{
+   // opaque libfuse reply buffer and fuse_fill_dir_t function pointer
+   private final long buf;
+   private final long fillDir;
+   // the path of the directory (a const char *), only set for readdirplus
+   private final long path;
+
+   public FuseFSFillDir(long buf, long fillDir)
+   {
+      this(buf, fillDir, 0L);
+   }
+
+   public FuseFSFillDir(long buf, long fillDir, long path)
+   {
+      this.buf = buf;
+      this.fillDir = fillDir;
+      this.path = path;
+   }
+
+   /**
+    * @param name a direct ByteBuffer holding the NUL terminated name of the entry starting at position 0
+    * @return false if the reply buffer is full
+    */
+   public boolean fill(ByteBuffer name, long inode, int mode, long nextOffset)
+   {
+      return fill(name, inode, mode, nextOffset, buf, fillDir);
+   }
+
+   /**
+    * Same as <code>fill()</code>, the native side keeps the attributes for the getattr() of the entry.
+    *
+    * @param attr a direct ByteBuffer holding the attributes of the entry in the layout of FuseGetattrBuffer
+    * @return false if the reply buffer is full
+    */
+   public boolean fillPlus(ByteBuffer name, ByteBuffer attr, long nextOffset)
+   {
+      return fillPlus(name, attr, nextOffset, buf, fillDir, path);
+   }
+
+   private native boolean fill(ByteBuffer name, long inode, int mode, long nextOffset, long buf, long fillDir);
+
+   private native boolean fillPlus(ByteBuffer name, ByteBuffer attr, long nextOffset, long buf, long fillDir, long path);
+}
@@ -1,8 +1,8 @@
 package fuse;
 
 public class FuseFileInfo {
-	private final boolean directIO;
-	private final boolean keepCache;
+	private boolean directIO;
+	private boolean keepCache;
 	private int flags;
 	private Object fh;
 	
@@ -19,10 +19,24 @@ public class FuseFileInfo {
 		return directIO;
 	}
 
+	/**
+	 * Bypasses the page cache for this open file (direct_io), set by open() or create().
+	 */
+	public void setDirectIO(boolean directIO) {
+		this.directIO = directIO;
+	}
+
 	public boolean isKeepCache() {
 		return keepCache;
 	}
 
+	/**
+	 * Keeps the cached data of the file on open (keep_cache), set by open() or create().
+	 */
+	public void setKeepCache(boolean keepCache) {
+		this.keepCache = keepCache;
+	}
+
 	public int getFlags() {
 		return flags;
 	}
@@ -0,0 +1,49 @@
+package fuse;
+
+import java.io.FileDescriptor;
+
+/**
+ * A byte range of an open file, returned by <code>Filesystem.readRegion()</code> and
+ * <code>Filesystem.writeRegion()</code>. The native side moves the data between the file
+ * descriptor and the kernel with splice(2) where it can, so it never enters the JVM heap.
+ * Obtain the descriptor with <code>FileInputStream.getFD()</code>,
+ * <code>FileOutputStream.getFD()</code> or <code>RandomAccessFile.getFD()</code> of the
+ * stream backing the FileChannel. The native side works on a duplicate of the descriptor, so
+ * closing it once the call returned does not disturb a reply that is still being sent.
+ */
+public class FuseFileRegion {
+	private final FileDescriptor fd;
+	private final long position;
+	private final long length;
+
+	/**
+	 * @param fd an open file descriptor, it must stay open until the call that returned the region completes
+	 * @param position the position in the file where the data starts
+	 * @param length the number of bytes available from <code>position</code>
+	 */
+	public FuseFileRegion(FileDescriptor fd, long position, long length) {
+		if (fd == null)
+			throw new NullPointerException("fd");
+		if (position < 0 || length < 0)
+			throw new IllegalArgumentException("position=" + position + ", length=" + length);
+		this.fd = fd;
+		this.position = position;
+		this.length = length;
+	}
+
+	public FileDescriptor getFd() {
+		return fd;
+	}
+
+	public long getPosition() {
+		return position;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public String toString() {
+		return "FuseFileRegion[position=" + position + ", length=" + length + "]";
+	}
+}
@@ -13,13 +13,20 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.commons.logging.Log;
 
 import fuse.impl.FilesystemToFuseFSAdapter;
+import fuse.impl.FilesystemToFuseLowlevelFSAdapter;
 import fuse.impl.FuseFS;
+import fuse.impl.InstrumentedFuseFS;
+import fuse.impl.FuseLowlevelFS;
+import fuse.impl.FuseLowlevelNotifier;
 
 
 public class FuseMount
 {
 	private static final Log log = LogFactory.getLog(FuseMount.class);
 
+	// -Dfuse.stats=true publishes per operation statistics as MBeans (see fuse.impl.InstrumentedFuseFS)
+	private static final boolean STATS = Boolean.getBoolean("fuse.stats");
+
 	static class FuseLibrary {
 		public FuseLibrary() {
 			System.loadLibrary("fuse4java");
@@ -38,23 +45,139 @@ public class FuseMount
 
 	public static void mount(String[] args, Filesystem filesystem, Log log) throws Exception
 	{ 
-		mount(args, new FilesystemToFuseFSAdapter(filesystem, log));
+		mount(args, filesystem, log, FuseMountOptions.DEFAULT);
+	}
+
+	public static void mount(String[] args, Filesystem filesystem, Log log, FuseMountOptions options) throws Exception
+	{ 
+		FuseFS fuseFS = new FilesystemToFuseFSAdapter(filesystem, log);
+
+		if (!STATS)
+		{
+			mount(args, fuseFS, options);
+			return;
+		}
+
+		InstrumentedFuseFS instrumented = new InstrumentedFuseFS(fuseFS);
+		instrumented.registerMBeans(mountPoint(args));
+		try
+		{
+			mount(args, instrumented, options);
+		}
+		finally
+		{
+			instrumented.unregisterMBeans();
+		}
 	} 
 
+	/**
+	 * Mounts the filesystem through the FUSE low-level (node-id based) interface. Operations
+	 * are passed node ids and single path components instead of full paths.
+	 */
+	public static void mountLowlevel(String[] args, Filesystem filesystem, Log log) throws Exception
+	{
+		mountLowlevel(args, filesystem, log, FuseMountOptions.DEFAULT);
+	}
+
+	/**
+	 * Like <code>mountLowlevel(String[], Filesystem, Log)</code>. The low-level mount honors the
+	 * per node cache timeouts of <code>FuseAttr</code> and hands the filesystem a FuseNotifier
+	 * through <code>Filesystem.setNotifier()</code>.
+	 */
+	public static void mountLowlevel(String[] args, Filesystem filesystem, Log log, FuseMountOptions options) throws Exception
+	{
+		FilesystemToFuseLowlevelFSAdapter adapter = new FilesystemToFuseLowlevelFSAdapter(filesystem, log);
+
+		filesystem.setNotifier(new FuseLowlevelNotifier(adapter));
+		try
+		{
+			mount(args, adapter, options);
+		}
+		finally
+		{
+			filesystem.setNotifier(null);
+		}
+	}
+
 	//
 	// byte level API
 
 	protected static void mount(String[] args, FuseFS fuseFS) throws Exception
 	{
-		ThreadGroup threadGroup = new ThreadGroup(Thread.currentThread().getThreadGroup(), "FUSE Threads");
-		threadGroup.setDaemon(true);
+		mount(args, fuseFS, FuseMountOptions.DEFAULT);
+	}
+
+	protected static void mount(String[] args, FuseFS fuseFS, FuseMountOptions options) throws Exception
+	{
+		ThreadGroup threadGroup = newThreadGroup();
+
+		log.info("Mounting filesystem with " + options);
 
-		log.info("Mounting filesystem");
+		mount(fuseArgs(args, options.toFuseOptions(false)), fuseFS, threadGroup, options.getWorkers(), options.getAttrTimeout(),
+			options.isWritebackCache(), options.isNullPathOk());
 
-		mount(args, fuseFS, threadGroup);
+		log.info("Filesystem is unmounted");
+
+		debugThreadGroup(threadGroup);
+	}
+
+	protected static void mount(String[] args, FuseLowlevelFS fuseFS) throws Exception
+	{
+		mount(args, fuseFS, FuseMountOptions.DEFAULT);
+	}
+
+	protected static void mount(String[] args, FuseLowlevelFS fuseFS, FuseMountOptions options) throws Exception
+	{
+		ThreadGroup threadGroup = newThreadGroup();
+
+		log.info("Mounting filesystem (low-level) with " + options);
+
+		mountLowlevel(fuseArgs(args, options.toFuseOptions(true)), fuseFS, threadGroup, options.getWorkers(),
+			options.getAttrTimeout(), options.getEntryTimeout(), options.getNegativeTimeout(), options.isKernelCache(),
+			options.isWritebackCache());
 
 		log.info("Filesystem is unmounted");
 
+		debugThreadGroup(threadGroup);
+	}
+
+	// options go in front, so -o options given on the command line win
+	private static String[] fuseArgs(String[] args, String options)
+	{
+		if (options == null)
+			return args;
+
+		String[] fuseArgs = new String[args.length + 2];
+		fuseArgs[0] = "-o";
+		fuseArgs[1] = options;
+		System.arraycopy(args, 0, fuseArgs, 2, args.length);
+		return fuseArgs;
+	}
+
+	private static String mountPoint(String[] args)
+	{
+		String mountPoint = "unknown";
+
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-o"))
+				i++;
+			else if (!args[i].startsWith("-"))
+				mountPoint = args[i];
+		}
+
+		return mountPoint;
+	}
+
+	private static ThreadGroup newThreadGroup()
+	{
+		ThreadGroup threadGroup = new ThreadGroup(Thread.currentThread().getThreadGroup(), "FUSE Threads");
+		threadGroup.setDaemon(true);
+		return threadGroup;
+	}
+
+	private static void debugThreadGroup(ThreadGroup threadGroup)
+	{
 		if (log.isDebugEnabled())
 		{
 			int n = threadGroup.activeCount();
@@ -70,5 +193,10 @@ public class FuseMount
 	}
 
 
-	private static native void mount(String[] args, FuseFS fuseFS, ThreadGroup threadGroup) throws Exception;
+	private static native void mount(String[] args, FuseFS fuseFS, ThreadGroup threadGroup, int workers,
+		double attrTimeout, boolean writebackCache, boolean nullPathOk) throws Exception;
+
+	private static native void mountLowlevel(String[] args, FuseLowlevelFS fuseFS, ThreadGroup threadGroup, int workers,
+		double attrTimeout, double entryTimeout, double negativeTimeout, boolean kernelCache,
+		boolean writebackCache) throws Exception;
 }
@@ -0,0 +1,357 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse;
+
+/**
+ * Typed options for <code>FuseMount.mount()</code>, in addition to the FUSE command line arguments.
+ *
+ * <pre>
+ * FuseMount.mount(args, filesystem, log, FuseMountOptions.newBuilder()
+ *    .multiThreaded(Runtime.getRuntime().availableProcessors())
+ *    .attrTimeout(60).entryTimeout(60).negativeTimeout(5)
+ *    .kernelCache()
+ *    .build());
+ * </pre>
+ *
+ * The cache options are passed to libfuse as <code>-o</code> options. Unset options keep the
+ * libfuse defaults: 1 second for the attribute and entry timeouts, no negative caching, the
+ * page cache of a file flushed on every open and writes of at most 4 KiB per call.
+ */
+public class FuseMountOptions {
+	/**
+	 * the same limit as libfuse's own multi-threaded loop
+	 */
+	public static final int DEFAULT_WORKERS = 10;
+
+	public static final FuseMountOptions DEFAULT = newBuilder().build();
+
+	/**
+	 * value of an unset timeout
+	 */
+	public static final double DEFAULT_TIMEOUT = -1;
+
+	private final boolean multiThreaded;
+	private final int workers;
+	private final double attrTimeout;
+	private final double entryTimeout;
+	private final double negativeTimeout;
+	private final boolean kernelCache;
+	private final boolean autoCache;
+	private final int maxRead;
+	private final int maxReadahead;
+	private final boolean bigWrites;
+	private final int maxWrite;
+	private final boolean writebackCache;
+	private final boolean nullPathOk;
+
+	private FuseMountOptions(boolean multiThreaded, int workers, double attrTimeout, double entryTimeout,
+			double negativeTimeout, boolean kernelCache, boolean autoCache, int maxRead, int maxReadahead,
+			boolean bigWrites, int maxWrite, boolean writebackCache, boolean nullPathOk) {
+		this.multiThreaded = multiThreaded;
+		this.workers = workers;
+		this.attrTimeout = attrTimeout;
+		this.entryTimeout = entryTimeout;
+		this.negativeTimeout = negativeTimeout;
+		this.kernelCache = kernelCache;
+		this.autoCache = autoCache;
+		this.maxRead = maxRead;
+		this.maxReadahead = maxReadahead;
+		this.bigWrites = bigWrites;
+		this.maxWrite = maxWrite;
+		this.writebackCache = writebackCache;
+		this.nullPathOk = nullPathOk;
+	}
+
+	public boolean isMultiThreaded() {
+		return multiThreaded;
+	}
+
+	/**
+	 * @return number of threads serving requests, always 1 when single-threaded
+	 */
+	public int getWorkers() {
+		return multiThreaded? workers : 1;
+	}
+
+	/**
+	 * @return seconds the kernel caches attributes or <code>DEFAULT_TIMEOUT</code>
+	 */
+	public double getAttrTimeout() {
+		return attrTimeout;
+	}
+
+	/**
+	 * @return seconds the kernel caches name lookups or <code>DEFAULT_TIMEOUT</code>
+	 */
+	public double getEntryTimeout() {
+		return entryTimeout;
+	}
+
+	/**
+	 * @return seconds the kernel caches failed name lookups or <code>DEFAULT_TIMEOUT</code>
+	 */
+	public double getNegativeTimeout() {
+		return negativeTimeout;
+	}
+
+	public boolean isKernelCache() {
+		return kernelCache;
+	}
+
+	public boolean isAutoCache() {
+		return autoCache;
+	}
+
+	/**
+	 * @return max. size of a read request in bytes or 0 for the default
+	 */
+	public int getMaxRead() {
+		return maxRead;
+	}
+
+	/**
+	 * @return max. readahead in bytes or 0 for the default
+	 */
+	public int getMaxReadahead() {
+		return maxReadahead;
+	}
+
+	public boolean isBigWrites() {
+		return bigWrites;
+	}
+
+	/**
+	 * @return max. size of a write request in bytes or 0 for the default
+	 */
+	public int getMaxWrite() {
+		return maxWrite;
+	}
+
+	public boolean isWritebackCache() {
+		return writebackCache;
+	}
+
+	public boolean isNullPathOk() {
+		return nullPathOk;
+	}
+
+	/**
+	 * The <code>-o</code> option string for libfuse. The low-level interface does not know the
+	 * options of the path based API (timeouts, kernel_cache, auto_cache), its bindings apply the
+	 * timeouts and kernel_cache themselves. The writeback cache is not an option at all, it is
+	 * negotiated with the kernel when the mount is initialized.
+	 *
+	 * @return the comma separated options or null if there are none
+	 */
+	String toFuseOptions(boolean lowlevel) {
+		StringBuilder sb = new StringBuilder();
+		if (!lowlevel) {
+			if (attrTimeout != DEFAULT_TIMEOUT)
+				option(sb, "attr_timeout=" + attrTimeout);
+			if (entryTimeout != DEFAULT_TIMEOUT)
+				option(sb, "entry_timeout=" + entryTimeout);
+			if (negativeTimeout != DEFAULT_TIMEOUT)
+				option(sb, "negative_timeout=" + negativeTimeout);
+			if (kernelCache)
+				option(sb, "kernel_cache");
+			if (autoCache)
+				option(sb, "auto_cache");
+		}
+		if (maxRead > 0)
+			option(sb, "max_read=" + maxRead);
+		if (maxReadahead > 0)
+			option(sb, "max_readahead=" + maxReadahead);
+		if (bigWrites)
+			option(sb, "big_writes");
+		if (maxWrite > 0)
+			option(sb, "max_write=" + maxWrite);
+		return (sb.length() == 0)? null : sb.toString();
+	}
+
+	private static void option(StringBuilder sb, String option) {
+		if (sb.length() > 0)
+			sb.append(',');
+		sb.append(option);
+	}
+
+	public String toString() {
+		return "FuseMountOptions[multiThreaded=" + multiThreaded + ", workers=" + getWorkers()
+			+ ", writebackCache=" + writebackCache + ", nullPathOk=" + nullPathOk + ", options=" + toFuseOptions(false) + "]";
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private boolean multiThreaded = true;
+		private int workers = DEFAULT_WORKERS;
+		private double attrTimeout = DEFAULT_TIMEOUT;
+		private double entryTimeout = DEFAULT_TIMEOUT;
+		private double negativeTimeout = DEFAULT_TIMEOUT;
+		private boolean kernelCache;
+		private boolean autoCache;
+		private int maxRead;
+		private int maxReadahead;
+		private boolean bigWrites;
+		private int maxWrite;
+		private boolean writebackCache;
+		private boolean nullPathOk;
+
+		private Builder() {
+		}
+
+		public FuseMountOptions build() {
+			return new FuseMountOptions(multiThreaded, workers, attrTimeout, entryTimeout, negativeTimeout,
+					kernelCache, autoCache, maxRead, maxReadahead, bigWrites, maxWrite, writebackCache,
+					nullPathOk);
+		}
+
+		/**
+		 * Serve all requests on the mounting thread, the same as the <code>-s</code> argument.
+		 */
+		public Builder singleThreaded() {
+			this.multiThreaded = false;
+			return this;
+		}
+
+		/**
+		 * Serve requests on a fixed pool of <code>workers</code> threads. They are started and
+		 * attached to the JVM at mount time as daemon threads named <code>fuse-worker-N</code> in the
+		 * <code>FUSE Threads</code> group. A <code>-s</code> argument still forces single-threaded mode.
+		 */
+		public Builder multiThreaded(int workers) {
+			if (workers < 1)
+				throw new IllegalArgumentException("workers must be positive: " + workers);
+			this.multiThreaded = true;
+			this.workers = workers;
+			return this;
+		}
+
+		/**
+		 * Seconds the kernel may cache attributes before asking <code>getattr()</code> again
+		 * (<code>attr_timeout</code>). A <code>FuseAttr</code> can override it per node on the
+		 * low-level mount.
+		 */
+		public Builder attrTimeout(double seconds) {
+			this.attrTimeout = timeout(seconds);
+			return this;
+		}
+
+		/**
+		 * Seconds the kernel may cache a name to node lookup (<code>entry_timeout</code>).
+		 */
+		public Builder entryTimeout(double seconds) {
+			this.entryTimeout = timeout(seconds);
+			return this;
+		}
+
+		/**
+		 * Seconds the kernel may remember that a name does not exist (<code>negative_timeout</code>),
+		 * so repeated lookups of missing files (search paths, editor backups) never reach Java.
+		 */
+		public Builder negativeTimeout(double seconds) {
+			this.negativeTimeout = timeout(seconds);
+			return this;
+		}
+
+		/**
+		 * Keep the page cache of files across opens (<code>kernel_cache</code>). Only for
+		 * filesystems whose data never changes other than through the mount.
+		 */
+		public Builder kernelCache() {
+			this.kernelCache = true;
+			this.autoCache = false;
+			return this;
+		}
+
+		/**
+		 * Keep the page cache of a file across opens unless its size or mtime changed
+		 * (<code>auto_cache</code>). Not available on the low-level mount.
+		 */
+		public Builder autoCache() {
+			this.autoCache = true;
+			this.kernelCache = false;
+			return this;
+		}
+
+		/**
+		 * Max. size of a read request in bytes (<code>max_read</code>).
+		 */
+		public Builder maxRead(int bytes) {
+			this.maxRead = size(bytes);
+			return this;
+		}
+
+		/**
+		 * Max. bytes the kernel reads ahead of sequential reads (<code>max_readahead</code>).
+		 */
+		public Builder maxReadahead(int bytes) {
+			this.maxReadahead = size(bytes);
+			return this;
+		}
+
+		/**
+		 * Let the kernel send writes larger than a page (<code>big_writes</code>), up to
+		 * <code>maxWrite()</code> or 128 KiB by default. <code>write()</code> must accept any size.
+		 */
+		public Builder bigWrites() {
+			this.bigWrites = true;
+			return this;
+		}
+
+		/**
+		 * Max. size of a write request in bytes (<code>max_write</code>), implies <code>bigWrites()</code>.
+		 * The kernel caps it at 128 KiB.
+		 */
+		public Builder maxWrite(int bytes) {
+			this.maxWrite = size(bytes);
+			this.bigWrites = true;
+			return this;
+		}
+
+		/**
+		 * Cache writes in the kernel and flush them in large chunks (the FUSE writeback cache),
+		 * implies <code>bigWrites()</code>. The kernel then owns the size and mtime of open files:
+		 * writes arrive late and may extend the file past the size <code>getattr()</code> reported,
+		 * mtime is set through <code>utime()</code>, and writes (and reads) of cached pages may come
+		 * through any handle of the file, so handles opened write-only are opened read-write and
+		 * <code>O_APPEND</code> is left to the kernel. Needs a libfuse and kernel that support it,
+		 * otherwise the mount goes on without it and a warning is printed.
+		 */
+		public Builder writebackCache() {
+			this.writebackCache = true;
+			this.bigWrites = true;
+			return this;
+		}
+
+		/**
+		 * Keep serving the operations on open files (read, write, flush, release, fsync,
+		 * fgetattr, ftruncate) after the file was removed, with a null path instead of failing
+		 * them. Only for filesystems that find an open file through its handle. Listing a
+		 * removed directory fails with ENOENT. Ignored by the low-level mount.
+		 */
+		public Builder nullPathOk() {
+			this.nullPathOk = true;
+			return this;
+		}
+
+		private static double timeout(double seconds) {
+			if (seconds < 0 || Double.isNaN(seconds) || Double.isInfinite(seconds))
+				throw new IllegalArgumentException("invalid timeout: " + seconds);
+			return seconds;
+		}
+
+		private static int size(int bytes) {
+			if (bytes < 1)
+				throw new IllegalArgumentException("size must be positive: " + bytes);
+			return bytes;
+		}
+	}
+}
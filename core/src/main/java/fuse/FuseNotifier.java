@@ -0,0 +1,53 @@
+package fuse;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pushes cache invalidations and file data to the kernel, so a filesystem whose backing store
+ * changes behind the mount can run long cache timeouts and still stay coherent, and hot files can
+ * be put into the page cache before the first read. Passed to
+ * <code>Filesystem.setNotifier()</code> by the low-level mount (<code>FuseMount.mountLowlevel()</code>);
+ * the path based libfuse API has no way to address the kernel's nodes.
+ *
+ * The methods write to the FUSE device and may block until the kernel has dropped the cache,
+ * so never call them from a Filesystem operation on the same node, as that can deadlock.
+ * Nodes and names the kernel does not know are silently ignored.
+ */
+public interface FuseNotifier
+{
+   /**
+    * Drops the cached attributes of <code>path</code> and its cached data in the given range.
+    *
+    * @param offset the start of the range
+    * @param length the length of the range or 0 to drop everything from <code>offset</code> on
+    */
+   public void invalidateData(String path, long offset, long length) throws FuseException;
+
+   /**
+    * Drops the cached attributes of <code>path</code>, keeping its cached data.
+    */
+   public void invalidateAttributes(String path) throws FuseException;
+
+   /**
+    * Drops the cached name lookup of <code>path</code>, the next access looks it up again.
+    */
+   public void invalidateEntry(String path) throws FuseException;
+
+   /**
+    * Tells the kernel that <code>path</code> was deleted. Unlike <code>invalidateEntry()</code>
+    * this also detaches the node from processes that have it as their working directory or
+    * have it open, like a local unlink.
+    */
+   public void deleted(String path) throws FuseException;
+
+   /**
+    * Puts <code>data</code> (between its position and limit) into the page cache of
+    * <code>path</code> at <code>offset</code>, extending the cached file size if needed. The
+    * position of <code>data</code> is not changed. Pages stored this way are dropped when the file
+    * is opened again without keep_cache, so this pays off with the <code>kernel_cache</code> mount
+    * option (see FuseMountOptions). FusePrewarmer stores whole files.
+    *
+    * @return false if the kernel does not know the node (it was never looked up or is forgotten)
+    */
+   public boolean store(String path, long offset, ByteBuffer data) throws FuseException;
+}
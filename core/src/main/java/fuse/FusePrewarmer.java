@@ -0,0 +1,142 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import fuse.impl.util.FilesystemImplCheck;
+
+/**
+ * Fills the kernel page cache with whole files through <code>FuseNotifier.store()</code>, so their
+ * first reads never reach Java. The data is read from the Filesystem directly (open, readBuffer,
+ * release), not through the mount. Useful after a restart for files known to be hot; mount with
+ * <code>kernel_cache</code> or the stored pages are dropped on the next open.
+ *
+ * <pre>
+ * // notifier as passed to Filesystem.setNotifier(), once the mount is up
+ * FusePrewarmer prewarmer = new FusePrewarmer(filesystem, notifier, new File("/mnt/models"));
+ * prewarmer.prewarm(Arrays.asList("/weights.bin", "/lib/libtensor.so"));
+ * </pre>
+ *
+ * The kernel only takes data for nodes it has looked up. With a mount point, nodes it does not
+ * know yet are looked up by a stat() through the mount, so <code>prewarm()</code> must not run on
+ * a thread that serves FUSE requests, and not before the mount is up.
+ */
+public class FusePrewarmer {
+	private static final Log log = LogFactory.getLog(FusePrewarmer.class);
+
+	public static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+
+	private final Filesystem filesystem;
+	private final FuseNotifier notifier;
+	private final File mountPoint;
+	private final int chunkSize;
+
+	/**
+	 * @param mountPoint the mount point used to look up unknown nodes or null to skip them
+	 */
+	public FusePrewarmer(Filesystem filesystem, FuseNotifier notifier, File mountPoint) {
+		this(filesystem, notifier, mountPoint, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param chunkSize the number of bytes read and stored at once
+	 */
+	public FusePrewarmer(Filesystem filesystem, FuseNotifier notifier, File mountPoint, int chunkSize) {
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+		this.filesystem = filesystem;
+		this.notifier = notifier;
+		this.mountPoint = mountPoint;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Stores the given files, a file that fails is logged and skipped.
+	 *
+	 * @return the number of bytes stored
+	 */
+	public long prewarm(Iterable<String> paths) {
+		long stored = 0;
+		for (String path : paths) {
+			try {
+				stored += prewarm(path);
+			} catch (FuseException e) {
+				log.warn("prewarm of " + path + " failed: " + e.getErrno());
+			}
+		}
+		return stored;
+	}
+
+	/**
+	 * Stores a single file, anything but a regular file is skipped.
+	 *
+	 * @return the number of bytes stored
+	 */
+	public long prewarm(String path) throws FuseException {
+		final long[] attr = new long[2];
+		filesystem.getattr(path, new FuseAttrSetter() {
+			public void set(long inode, int mode, int nlink, int uid, int gid, int rdev, long size, long blocks, int atime, int mtime, int ctime) {
+				attr[0] = mode;
+				attr[1] = size;
+			}
+
+			public void setTimeouts(double attrTimeout, double entryTimeout) {
+			}
+		});
+
+		if ((attr[0] & Mode.TYPE_MASK.getMode()) != Mode.TYPE_FILE.getMode())
+			return 0;
+
+		long size = attr[1];
+		int flags = AccessMode.O_RDONLY.getCode();
+		FuseFileInfo ffi = new FuseFileInfo(false, true, flags, null);
+
+		// without open() the bindings pass a null filehandle as well
+		boolean open = FilesystemImplCheck.isImplemented(filesystem, "open");
+		if (open)
+			filesystem.open(path, ffi);
+
+		try {
+			long offset = 0;
+			while (offset < size) {
+				int n = (int) Math.min(chunkSize, size - offset);
+				ByteBuffer data = filesystem.readBuffer(path, ffi.getFh(), offset, n);
+				if (data == null || !data.hasRemaining())
+					break;
+				if (data.remaining() > n)
+					data.limit(data.position() + n);
+
+				if (!store(path, offset, data))
+					break;
+
+				offset += data.remaining();
+			}
+			return offset;
+		} finally {
+			if (open)
+				filesystem.release(path, ffi.getFh(), flags);
+		}
+	}
+
+	private boolean store(String path, long offset, ByteBuffer data) throws FuseException {
+		if (notifier.store(path, offset, data))
+			return true;
+
+		// let the kernel look the node up and try once more
+		if (offset == 0 && mountPoint != null && new File(mountPoint, path).exists())
+			return notifier.store(path, offset, data);
+
+		return false;
+	}
+}
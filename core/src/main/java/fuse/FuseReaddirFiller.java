@@ -0,0 +1,22 @@
+package fuse;
+
+/**
+ * Callback passed to <code>Filesystem.readdir()</code>. Every entry is handed to the kernel
+ * as soon as it is added, so the directory never has to be materialized as a whole.
+ */
+public interface FuseReaddirFiller
+{
+   /**
+    * Adds a directory entry to the reply.
+    *
+    * @param name the name of the entry
+    * @param inode the inode number of the entry or 0 if unknown
+    * @param mode the file type bits of the entry (only the <code>S_IFMT</code> part is used)
+    * @param nextOffset the offset at which <code>readdir()</code> should continue after this entry
+    *        or 0 if the offsets are not used (then all entries must be added in a single call)
+    * @return false if the reply buffer is full and the entry was not added. <code>readdir()</code>
+    *         should return then; it will be called again with <code>nextOffset</code> of the last
+    *         accepted entry.
+    */
+   public boolean add(String name, long inode, int mode, long nextOffset);
+}
@@ -0,0 +1,22 @@
+package fuse;
+
+/**
+ * Callback passed to <code>Filesystem.readdirplus()</code>. Like FuseReaddirFiller, but every
+ * entry carries its complete attributes, which answer the getattr() calls that usually follow
+ * a directory listing (<code>ls -l</code>, <code>find</code>) without calling the Filesystem.
+ */
+public interface FuseReaddirPlusFiller
+{
+   /**
+    * Adds a directory entry with its attributes to the reply. The attributes are the ones
+    * <code>FuseAttrSetter.set()</code> takes.
+    *
+    * @param name the name of the entry
+    * @param nextOffset the offset at which <code>readdirplus()</code> should continue after this
+    *        entry or 0 if the offsets are not used (then all entries must be added in a single call)
+    * @return false if the reply buffer is full and the entry was not added. <code>readdirplus()</code>
+    *         should return then; it will be called again with <code>nextOffset</code> of the last
+    *         accepted entry.
+    */
+   public boolean add(String name, long inode, int mode, int nlink, int uid, int gid, int rdev, long size, long blocks, int atime, int mtime, int ctime, long nextOffset);
+}
@@ -22,13 +22,20 @@ import org.apache.commons.logging.Log;
 import fuse.Errno;
 import fuse.Filesystem;
 import fuse.FuseAttr;
-import fuse.FuseDirFiller;
+import fuse.FuseAttrSetter;
+import fuse.FuseContext;
 import fuse.FuseException;
+import fuse.FuseFSFillDir;
 import fuse.FuseFileInfo;
+import fuse.FuseFileRegion;
+import fuse.FuseReaddirFiller;
+import fuse.FuseReaddirPlusFiller;
 import fuse.FuseStatfs;
 import fuse.XattrLister;
 import fuse.Filesystem.XAttrSetMode;
+import fuse.impl.util.FileHandleTable;
 import fuse.impl.util.FilesystemImplCheck;
+import fuse.impl.util.PathDecoder;
 
 /**
  * This is an adapter that implements fuse.FuseFS byte level API and delegates
@@ -37,15 +44,46 @@ import fuse.impl.util.FilesystemImplCheck;
  */
 public class FilesystemToFuseFSAdapter implements FuseFS
 {
+   // max. length of an encoded directory entry name, same as MAX_GETDIR_NAME_LENGTH in javafs.h
+   private static final int MAX_NAME_LENGTH = 1023;
+
+   // default size of the decoded path cache, 0 disables it
+   private static final int PATH_CACHE_SIZE = Integer.getInteger("fuse.pathCacheSize", 0).intValue();
+
    private Filesystem fs;
    private Charset cs;
+   private PathDecoder pathDecoder;
    private Log log;
 
+   // open files, the native side only keeps their long handles
+   private final FileHandleTable handles = new FileHandleTable();
+
+   // how readRegion() reads when the filesystem has no region to hand out
+   private final boolean readBufferImplemented;
+
    public FilesystemToFuseFSAdapter(Filesystem fs, Log log)
+   {
+      this(fs, log, PATH_CACHE_SIZE);
+   }
+
+   /**
+    * @param pathCacheSize max. number of decoded paths to cache, 0 disables the cache
+    */
+   public FilesystemToFuseFSAdapter(Filesystem fs, Log log, int pathCacheSize)
    {
       this.fs= fs;
       this.cs = fs.getPathCharSet();
+      this.pathDecoder = new PathDecoder(cs, pathCacheSize);
       this.log = log;
+      this.readBufferImplemented = FilesystemImplCheck.isImplemented(fs, "readBuffer");
+   }
+
+   /**
+    * @return the decoder of paths passed to this adapter, exposes path cache hit/miss counters
+    */
+   public PathDecoder getPathDecoder()
+   {
+      return pathDecoder;
    }
 
    //
@@ -53,20 +91,14 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int getattr(ByteBuffer path, FuseGetattrSetter getattrSetter)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("getattr: path=" + pathStr);
 
       try
       {
-         FuseAttr attr = fs.getattr(pathStr);
-         if(attr == null) {
-        	 return Errno.ENOENT.getErrno();
-         }
-         int mode = attr.getMode();
-         getattrSetter.set(attr.getInode(), mode, attr.getNlink(), attr.getUid(), attr.getGid(), attr.getRdev(), 
-        		 attr.getSize(), attr.getBlocks(), attr.getAtime(), attr.getMtime(), attr.getCtime());
+         fs.getattr(pathStr, getattrSetter, FuseContext.current());
          return 0;
       }
       catch (Exception e)
@@ -75,10 +107,69 @@ public class FilesystemToFuseFSAdapter implements FuseFS
       }
    }
 
+   private final ThreadLocal<FuseGetattrBuffer> getattrBuffers = new ThreadLocal<FuseGetattrBuffer>()
+   {
+      protected FuseGetattrBuffer initialValue()
+      {
+         return new FuseGetattrBuffer();
+      }
+   };
+
+   public int getattr(ByteBuffer path, ByteBuffer attr)
+   {
+      String pathStr = pathDecoder.decode(path);
+
+      if (log != null && log.isDebugEnabled())
+         log.debug("getattr: path=" + pathStr);
+
+      FuseGetattrBuffer getattrBuffer = getattrBuffers.get();
+      getattrBuffer.setBuffer(attr);
+
+      try
+      {
+         fs.getattr(pathStr, getattrBuffer, FuseContext.current());
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+      finally
+      {
+         getattrBuffer.setBuffer(null);
+      }
+   }
+
+
+   public int fgetattr(ByteBuffer path, long fh, ByteBuffer attr)
+   {
+      String pathStr = pathDecoder.decode(path);
+
+      if (log != null && log.isDebugEnabled())
+         log.debug("fgetattr: path=" + pathStr + ", fh=" + fh);
+
+      FuseGetattrBuffer getattrBuffer = getattrBuffers.get();
+      getattrBuffer.setBuffer(attr);
+
+      try
+      {
+         fs.fgetattr(pathStr, handles.get(fh), getattrBuffer);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+      finally
+      {
+         getattrBuffer.setBuffer(null);
+      }
+   }
+
 
    public int readlink(ByteBuffer path, ByteBuffer link)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("readlink: path=" + pathStr);
@@ -107,21 +198,9 @@ public class FilesystemToFuseFSAdapter implements FuseFS
       }
    }
 
-   class FuseDirFillerAdapter implements FuseDirFiller {
-	   private final FuseFSDirFiller df;
-
-	   FuseDirFillerAdapter(FuseFSDirFiller df) {
-		   this.df = df;
-	   }
-	   
-	public void add(String name, long inode, int mode) {
-		df.add(name, inode, mode);
-	}
-   }
-
    public int getdir(ByteBuffer path, FuseFSDirFiller dirFiller)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("getdir: path=" + pathStr);
@@ -129,19 +208,156 @@ public class FilesystemToFuseFSAdapter implements FuseFS
       try
       {
          dirFiller.setCharset(cs);
-         fs.getdir(pathStr, new FuseDirFillerAdapter(dirFiller)); 
+         dirFiller.reset();
+         fs.getdir(pathStr, dirFiller);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   /**
+    * Encodes entry names into a reusable direct buffer and hands them to the native filler.
+    * There is one instance per thread so no objects are allocated per entry.
+    */
+   class FuseReaddirFillerAdapter implements FuseReaddirFiller
+   {
+      private final CharsetEncoder enc = cs.newEncoder()
+         .onUnmappableCharacter(CodingErrorAction.REPLACE)
+         .onMalformedInput(CodingErrorAction.REPLACE);
+      final ByteBuffer nameBuf = ByteBuffer.allocateDirect(MAX_NAME_LENGTH + 1);
+      FuseFSFillDir fillDir;
+
+      public boolean add(String name, long inode, int mode, long nextOffset)
+      {
+         // skipped, but the listing goes on
+         if (!encodeName(name))
+            return true;
+
+         return fillDir.fill(nameBuf, inode, mode, nextOffset);
+      }
+
+      // NUL terminated name in nameBuf, false if it is too long
+      boolean encodeName(String name)
+      {
+         nameBuf.clear();
+         enc.reset();
+         CoderResult result = enc.encode(CharBuffer.wrap(name), nameBuf, true);
+         if (!result.isOverflow())
+            result = enc.flush(nameBuf);
+
+         // leave room for the NUL terminator
+         if (result.isOverflow() || !nameBuf.hasRemaining())
+         {
+            if (log != null)
+               log.warn("readdir: skipping entry with too long name: " + name);
+            return false;
+         }
+
+         nameBuf.put((byte) 0);
+
+         return true;
+      }
+   }
+
+   /**
+    * Also writes the attributes of every entry into a reusable direct buffer in the layout of
+    * FuseGetattrBuffer, which goes to the native filler with the name.
+    */
+   class FuseReaddirPlusFillerAdapter extends FuseReaddirFillerAdapter implements FuseReaddirPlusFiller
+   {
+      private final ByteBuffer attrBuf = ByteBuffer.allocateDirect(FuseGetattrBuffer.LENGTH);
+      private final FuseGetattrBuffer attr = new FuseGetattrBuffer();
+
+      FuseReaddirPlusFillerAdapter()
+      {
+         attr.setBuffer(attrBuf);
+      }
+
+      public boolean add(String name, long inode, int mode, int nlink, int uid, int gid, int rdev, long size, long blocks, int atime, int mtime, int ctime, long nextOffset)
+      {
+         if (!encodeName(name))
+            return true;
+
+         attr.set(inode, mode, nlink, uid, gid, rdev, size, blocks, atime, mtime, ctime);
+         attr.setTimeouts(FuseAttr.MOUNT_TIMEOUT, FuseAttr.MOUNT_TIMEOUT);
+
+         return fillDir.fillPlus(nameBuf, attrBuf, nextOffset);
+      }
+   }
+
+   private final ThreadLocal<FuseReaddirFillerAdapter> readdirFillers = new ThreadLocal<FuseReaddirFillerAdapter>()
+   {
+      protected FuseReaddirFillerAdapter initialValue()
+      {
+         return new FuseReaddirFillerAdapter();
+      }
+   };
+
+   public int readdir(ByteBuffer path, long fh, long offset, FuseFSFillDir fillDir)
+   {
+      String pathStr = pathDecoder.decode(path);
+
+      if (log != null && log.isDebugEnabled())
+         log.debug("readdir: path=" + pathStr + ", offset=" + offset);
+
+      FuseReaddirFillerAdapter filler = readdirFillers.get();
+      filler.fillDir = fillDir;
+
+      try
+      {
+         fs.readdir(pathStr, handles.get(fh), offset, filler);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+      finally
+      {
+         filler.fillDir = null;
+      }
+   }
+
+   private final ThreadLocal<FuseReaddirPlusFillerAdapter> readdirplusFillers = new ThreadLocal<FuseReaddirPlusFillerAdapter>()
+   {
+      protected FuseReaddirPlusFillerAdapter initialValue()
+      {
+         return new FuseReaddirPlusFillerAdapter();
+      }
+   };
+
+   public int readdirplus(ByteBuffer path, long fh, long offset, FuseFSFillDir fillDir)
+   {
+      String pathStr = pathDecoder.decode(path);
+
+      if (log != null && log.isDebugEnabled())
+         log.debug("readdirplus: path=" + pathStr + ", offset=" + offset);
+
+      FuseReaddirPlusFillerAdapter filler = readdirplusFillers.get();
+      filler.fillDir = fillDir;
+
+      try
+      {
+         fs.readdirplus(pathStr, handles.get(fh), offset, filler);
          return 0;
       }
       catch (Exception e)
       {
          return handleException(e);
       }
+      finally
+      {
+         filler.fillDir = null;
+      }
    }
 
 
    public int mknod(ByteBuffer path, int mode, int rdev)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("mknod: path=" + pathStr + ", mode=" + Integer.toOctalString(mode) + "(OCT), rdev=" + rdev);
@@ -160,7 +376,7 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int mkdir(ByteBuffer path, int mode)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("mkdir: path=" + pathStr + ", mode=" + Integer.toOctalString(mode) + "(OCT)");
@@ -179,7 +395,7 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int unlink(ByteBuffer path)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("unlink: path=" + pathStr);
@@ -198,7 +414,7 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int rmdir(ByteBuffer path)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("rmdir: path=" + pathStr);
@@ -217,8 +433,8 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int symlink(ByteBuffer from, ByteBuffer to)
    {
-      String fromStr = cs.decode(from).toString();
-      String toStr = cs.decode(to).toString();
+      String fromStr = pathDecoder.decode(from);
+      String toStr = pathDecoder.decode(to);
 
       if (log != null && log.isDebugEnabled())
          log.debug("symlink: from=" + fromStr + " to=" + toStr);
@@ -237,8 +453,8 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int rename(ByteBuffer from, ByteBuffer to)
    {
-      String fromStr = cs.decode(from).toString();
-      String toStr = cs.decode(to).toString();
+      String fromStr = pathDecoder.decode(from);
+      String toStr = pathDecoder.decode(to);
 
       if (log != null && log.isDebugEnabled())
          log.debug("rename: from=" + fromStr + " to=" + toStr);
@@ -257,8 +473,8 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int link(ByteBuffer from, ByteBuffer to)
    {
-      String fromStr = cs.decode(from).toString();
-      String toStr = cs.decode(to).toString();
+      String fromStr = pathDecoder.decode(from);
+      String toStr = pathDecoder.decode(to);
 
       if (log != null && log.isDebugEnabled())
          log.debug("link: from=" + fromStr + " to=" + toStr);
@@ -277,7 +493,7 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int chmod(ByteBuffer path, int mode)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("chmod: path=" + pathStr + ", mode=" + Integer.toOctalString(mode) + "(OCT)");
@@ -296,7 +512,7 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int chown(ByteBuffer path, int uid, int gid)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("chown: path=" + pathStr + ", uid=" + uid + ", gid=" + gid);
@@ -315,7 +531,7 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int truncate(ByteBuffer path, long size)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("truncate: path=" + pathStr + ", size=" + size);
@@ -332,9 +548,28 @@ public class FilesystemToFuseFSAdapter implements FuseFS
    }
 
 
+   public int ftruncate(ByteBuffer path, long fh, long size)
+   {
+      String pathStr = pathDecoder.decode(path);
+
+      if (log != null && log.isDebugEnabled())
+         log.debug("ftruncate: path=" + pathStr + ", fh=" + fh + ", size=" + size);
+
+      try
+      {
+         fs.ftruncate(pathStr, handles.get(fh), size);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+
    public int utime(ByteBuffer path, int atime, int mtime)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("utime: path=" + pathStr + ", atime=" + atime + " (" + new Date((long)atime * 1000L) + "), mtime=" + mtime + " (" + new Date((long)mtime * 1000L) + ")");
@@ -371,7 +606,7 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int open(ByteBuffer path, int flags, FuseOpenSetter openSetter)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("open: path=" + pathStr + ", flags=" + flags);
@@ -379,8 +614,8 @@ public class FilesystemToFuseFSAdapter implements FuseFS
       try
       {
     	  FuseFileInfo ffi = new FuseFileInfo(openSetter.isDirectIO(), openSetter.isKeepCache(), flags, null);
-         fs.open(pathStr, ffi);
-         openSetter.setFh(ffi.getFh());
+         fs.open(pathStr, ffi, FuseContext.current());
+         opened(ffi, openSetter);
          return 0;
       }
       catch (Exception e)
@@ -390,16 +625,18 @@ public class FilesystemToFuseFSAdapter implements FuseFS
    }
 
 
-   public int read(ByteBuffer path, Object fh, ByteBuffer buf, long offset)
+   public int create(ByteBuffer path, int mode, int flags, FuseOpenSetter openSetter)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
-         log.debug("read: path=" + pathStr + ", fh=" + fh + ", offset=" + offset);
+         log.debug("create: path=" + pathStr + ", mode=" + Integer.toOctalString(mode) + "(OCT), flags=" + flags);
 
       try
       {
-         fs.read(pathStr, fh, buf, offset);
+         FuseFileInfo ffi = new FuseFileInfo(openSetter.isDirectIO(), openSetter.isKeepCache(), flags, null);
+         fs.create(pathStr, mode, ffi, FuseContext.current());
+         opened(ffi, openSetter);
          return 0;
       }
       catch (Exception e)
@@ -409,16 +646,25 @@ public class FilesystemToFuseFSAdapter implements FuseFS
    }
 
 
-   public int write(ByteBuffer path, Object fh, boolean isWritepage, ByteBuffer buf, long offset)
+   // passes the filehandle and the options open() or create() set to the native side
+   private void opened(FuseFileInfo ffi, FuseOpenSetter openSetter)
    {
-      String pathStr = cs.decode(path).toString();
+      openSetter.setFh(handles.put(ffi.getFh()));
+      openSetter.setDirectIO(ffi.isDirectIO());
+      openSetter.setKeepCache(ffi.isKeepCache());
+   }
+
+
+   public int read(ByteBuffer path, long fh, ByteBuffer buf, long offset)
+   {
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
-         log.debug("write: path=" + pathStr + ", fh=" + fh + ", isWritepage=" + isWritepage + ", offset=" + offset);
+         log.debug("read: path=" + pathStr + ", fh=" + fh + ", offset=" + offset);
 
       try
       {
-         fs.write(pathStr, fh, isWritepage, buf, offset);
+         fs.read(pathStr, handles.get(fh), buf, offset);
          return 0;
       }
       catch (Exception e)
@@ -428,16 +674,25 @@ public class FilesystemToFuseFSAdapter implements FuseFS
    }
 
 
-   public int flush(ByteBuffer path, Object fh)
+   public int readBuffer(ByteBuffer path, long fh, ByteBuffer buf, long offset, FuseBufferSetter bufferSetter)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
-         log.debug("flush: path=" + pathStr + ", fh=" + fh);
+         log.debug("readBuffer: path=" + pathStr + ", fh=" + fh + ", offset=" + offset);
 
       try
       {
-         fs.flush(pathStr, fh);
+         ByteBuffer data = fs.readBuffer(pathStr, handles.get(fh), offset, buf.remaining());
+
+         if (data != null)
+         {
+            if (data.isDirect())
+               bufferSetter.setBuffer(data);
+            else
+               copy(data, buf);
+         }
+
          return 0;
       }
       catch (Exception e)
@@ -447,16 +702,39 @@ public class FilesystemToFuseFSAdapter implements FuseFS
    }
 
 
-   public int release(ByteBuffer path, Object fh, int flags)
+   // copies what fits of the buffer returned by readBuffer(), leaving the Filesystem's buffer alone
+   private static void copy(ByteBuffer data, ByteBuffer buf)
    {
-      String pathStr = cs.decode(path).toString();
+      ByteBuffer src = data.duplicate();
+      if (src.remaining() > buf.remaining())
+         src.limit(src.position() + buf.remaining());
+      buf.put(src);
+   }
+
+
+   public int readRegion(ByteBuffer path, long fh, ByteBuffer buf, long offset, FuseRegionSetter regionSetter)
+   {
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
-         log.debug("release: path=" + pathStr + ", fh=" + fh + ", flags=" + flags);
+         log.debug("readRegion: path=" + pathStr + ", fh=" + fh + ", offset=" + offset + ", size=" + buf.remaining());
 
       try
       {
-         fs.release(pathStr, fh, flags);
+         Object fhObject = handles.get(fh);
+         FuseFileRegion region = fs.readRegion(pathStr, fhObject, offset, buf.remaining());
+
+         if (region != null)
+            regionSetter.setRegion(region.getFd(), region.getPosition(), region.getLength());
+         else if (readBufferImplemented)
+         {
+            ByteBuffer data = fs.readBuffer(pathStr, fhObject, offset, buf.remaining());
+            if (data != null)
+               copy(data, buf);
+         }
+         else
+            fs.read(pathStr, fhObject, buf, offset);
+
          return 0;
       }
       catch (Exception e)
@@ -466,16 +744,16 @@ public class FilesystemToFuseFSAdapter implements FuseFS
    }
 
 
-   public int fsync(ByteBuffer path, Object fh, boolean isDatasync)
+   public int write(ByteBuffer path, long fh, boolean isWritepage, ByteBuffer buf, long offset)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
-         log.debug("fsync: path=" + pathStr + ", fh=" + fh + ", isDatasync=" + isDatasync);
+         log.debug("write: path=" + pathStr + ", fh=" + fh + ", isWritepage=" + isWritepage + ", offset=" + offset);
 
       try
       {
-         fs.fsync(cs.decode(path).toString(), fh, isDatasync);
+         fs.write(pathStr, handles.get(fh), isWritepage, buf, offset);
          return 0;
       }
       catch (Exception e)
@@ -484,21 +762,19 @@ public class FilesystemToFuseFSAdapter implements FuseFS
       }
    }
 
-   //
-   // extended attribute support is optional
 
-   public int getxattrsize(ByteBuffer path, ByteBuffer name, FuseSizeSetter sizeSetter)
+   public int writeRegion(ByteBuffer path, long fh, long offset, int size, FuseRegionSetter regionSetter)
    {
-      String pathStr = cs.decode(path).toString();
-      String nameStr = cs.decode(name).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
-         log.debug("getxattrsize: path=" + pathStr + ", name=" + nameStr);
+         log.debug("writeRegion: path=" + pathStr + ", fh=" + fh + ", offset=" + offset + ", size=" + size);
 
       try
       {
-         int size = fs.getxattrsize(pathStr, nameStr);
-         sizeSetter.setSize(size);
+         FuseFileRegion region = fs.writeRegion(pathStr, handles.get(fh), offset, size);
+         if (region != null)
+            regionSetter.setRegion(region.getFd(), region.getPosition(), region.getLength());
          return 0;
       }
       catch (Exception e)
@@ -507,17 +783,17 @@ public class FilesystemToFuseFSAdapter implements FuseFS
       }
    }
 
-   public int getxattr(ByteBuffer path, ByteBuffer name, ByteBuffer value)
+
+   public int flush(ByteBuffer path, long fh)
    {
-      String pathStr = cs.decode(path).toString();
-      String nameStr = cs.decode(name).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
-         log.debug("getxattr: path=" + pathStr + ", name=" + nameStr);
+         log.debug("flush: path=" + pathStr + ", fh=" + fh);
 
       try
       {
-         fs.getxattr(pathStr, nameStr, value);
+         fs.flush(pathStr, handles.get(fh));
          return 0;
       }
       catch (Exception e)
@@ -526,37 +802,38 @@ public class FilesystemToFuseFSAdapter implements FuseFS
       }
    }
 
-   //
-   // private implementation of XattrLister that estimates the byte size of the attribute names list
-   // using Charset of the enclosing Filesystem3ToFuseFSAdapter class
 
-   private class XattrSizeLister implements XattrLister
+   public int release(ByteBuffer path, long fh, int flags)
    {
-      CharsetEncoder enc = cs.newEncoder();
-      int size = 0;
+      // the handle is released even if the release fails
+      Object fhObject = handles.remove(fh);
+      String pathStr = pathDecoder.decode(path);
 
-      public void add(String xattrName)
+      if (log != null && log.isDebugEnabled())
+         log.debug("release: path=" + pathStr + ", fh=" + fh + ", flags=" + flags);
+
+      try
       {
-         size += (int) ((float) xattrName.length() * enc.averageBytesPerChar()) + 1;
+         fs.release(pathStr, fhObject, flags);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
       }
    }
 
-   //
-   // estimate the byte size of attribute names list...
 
-   public int listxattrsize(ByteBuffer path, FuseSizeSetter sizeSetter)
+   public int fsync(ByteBuffer path, long fh, boolean isDatasync)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
-         log.debug("listxattrsize: path=" + pathStr);
-
-      XattrSizeLister lister = new XattrSizeLister();
+         log.debug("fsync: path=" + pathStr + ", fh=" + fh + ", isDatasync=" + isDatasync);
 
       try
       {
-         fs.listxattr(pathStr, lister);
-         sizeSetter.setSize(lister.size);
+         fs.fsync(pathStr, handles.get(fh), isDatasync);
          return 0;
       }
       catch (Exception e)
@@ -566,78 +843,134 @@ public class FilesystemToFuseFSAdapter implements FuseFS
    }
 
    //
-   // private implementation of XattrLister that encodes list of attribute names into given ByteBuffer
-   // using Charset of the enclosing Filesystem3ToFuseFSAdapter class
+   // extended attribute support is optional
 
-   private class XattrValueLister implements XattrLister
+   // initial and max. size of the per-thread xattr buffer, XATTR_SIZE_MAX and XATTR_LIST_MAX of Linux
+   private static final int XATTR_BUFFER_SIZE = 256;
+   private static final int XATTR_MAX_SIZE = 65536;
+
+   /**
+    * A reusable direct buffer that attribute values and name lists are produced into and handed
+    * to the native side, which serves both the size probe and the fetch of getxattr(2) and
+    * listxattr(2) from it. It grows until the value fits. There is one instance per thread.
+    */
+   class XattrBuffer implements XattrLister
    {
-      CharsetEncoder enc = cs.newEncoder()
+      private final CharsetEncoder enc = cs.newEncoder()
          .onMalformedInput(CodingErrorAction.REPLACE)
          .onUnmappableCharacter(CodingErrorAction.REPLACE);
-      ByteBuffer list;
+      private ByteBuffer buf = ByteBuffer.allocateDirect(XATTR_BUFFER_SIZE);
 
-      XattrValueLister(ByteBuffer list)
+      ByteBuffer clear()
       {
-         this.list = list;
+         buf.clear();
+         return buf;
       }
 
-      public void add(String xattrName)
+      // doubles the buffer keeping its content, false if it can't grow any more
+      boolean grow()
       {
-               enc.encode(CharBuffer.wrap(xattrName), list, true);
-               list.put((byte) 0); // each attribute name is terminated by byte 0
-      }
+         if (buf.capacity() >= XATTR_MAX_SIZE)
+            return false;
+
+         ByteBuffer grown = ByteBuffer.allocateDirect(Math.min(buf.capacity() * 2, XATTR_MAX_SIZE));
+         buf.flip();
+         grown.put(buf);
+         buf = grown;
 
-      //
-      // for debugging
+         return true;
+      }
 
-      public String toString()
+      // the value between position 0 and the current position, ready for the native side
+      ByteBuffer value()
       {
-         StringBuilder sb = new StringBuilder();
+         buf.flip();
+         return buf;
+      }
 
-         sb.append("[");
-         boolean first = true;
+      public void add(String xattrName)
+      {
+         int start = buf.position();
 
-         for (int i = 0; i < list.position(); i++)
+         while (true)
          {
-            int offset = i;
-            int length = 0;
-            while (offset + length < list.position() && list.get(offset + length) != 0)
-               length++;
+            enc.reset();
+            CoderResult result = enc.encode(CharBuffer.wrap(xattrName), buf, true);
+            if (!result.isOverflow())
+               result = enc.flush(buf);
+
+            // each attribute name is terminated by byte 0
+            if (!result.isOverflow() && buf.hasRemaining())
+            {
+               buf.put((byte) 0);
+               return;
+            }
+
+            buf.position(start);
+            if (!grow())
+               throw new BufferOverflowException();
+         }
+      }
+   }
 
-            byte[] nameBytes = new byte[length];
-            for (int j = 0; j < length; j++)
-               nameBytes[j] = list.get(offset + j);
+   private final ThreadLocal<XattrBuffer> xattrBuffers = new ThreadLocal<XattrBuffer>()
+   {
+      protected XattrBuffer initialValue()
+      {
+         return new XattrBuffer();
+      }
+   };
 
-            if (first)
-               first = false;
-            else
-               sb.append(", ");
+   public int getxattr(ByteBuffer path, ByteBuffer name, FuseBufferSetter valueSetter)
+   {
+      String pathStr = pathDecoder.decode(path);
+      String nameStr = pathDecoder.decode(name);
+
+      if (log != null && log.isDebugEnabled())
+         log.debug("getxattr: path=" + pathStr + ", name=" + nameStr);
 
-            sb.append('"').append(cs.decode(ByteBuffer.wrap(nameBytes))).append('"');
+      XattrBuffer xattrBuffer = xattrBuffers.get();
 
-            i = offset + length;
+      try
+      {
+         while (true)
+         {
+            try
+            {
+               fs.getxattr(pathStr, nameStr, xattrBuffer.clear());
+               break;
+            }
+            catch (BufferOverflowException e)
+            {
+               // called again with a larger buffer, as documented by Filesystem.getxattr()
+               if (!xattrBuffer.grow())
+                  throw e;
+            }
          }
 
-         sb.append("]");
-
-         return sb.toString();
+         valueSetter.setBuffer(xattrBuffer.value());
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
       }
    }
 
-   //
-   // list attributes into given ByteBuffer...
-
-   public int listxattr(ByteBuffer path, final ByteBuffer list)
+   public int listxattr(ByteBuffer path, FuseBufferSetter listSetter)
    {
-      String pathStr = cs.decode(path).toString();
+      String pathStr = pathDecoder.decode(path);
 
       if (log != null && log.isDebugEnabled())
          log.debug("listxattr: path=" + pathStr);
-      XattrValueLister lister = new XattrValueLister(list);
+
+      XattrBuffer xattrBuffer = xattrBuffers.get();
+      xattrBuffer.clear();
 
       try
       {
-         fs.listxattr(pathStr, lister);
+         fs.listxattr(pathStr, xattrBuffer);
+         listSetter.setBuffer(xattrBuffer.value());
          return 0;
       }
       catch (Exception e)
@@ -648,8 +981,8 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int setxattr(ByteBuffer path, ByteBuffer name, ByteBuffer value, int flags)
    {
-      String pathStr = cs.decode(path).toString();
-      String nameStr = cs.decode(name).toString();
+      String pathStr = pathDecoder.decode(path);
+      String nameStr = pathDecoder.decode(name);
 
       if (log != null && log.isDebugEnabled())
          log.debug("setxattr: path=" + pathStr + ", name=" + nameStr + ", value=" + value + ", flags=" + flags);
@@ -668,8 +1001,8 @@ public class FilesystemToFuseFSAdapter implements FuseFS
 
    public int removexattr(ByteBuffer path, ByteBuffer name)
    {
-      String pathStr = cs.decode(path).toString();
-      String nameStr = cs.decode(name).toString();
+      String pathStr = pathDecoder.decode(path);
+      String nameStr = pathDecoder.decode(name);
 
       if (log != null && log.isDebugEnabled())
          log.debug("removexattr: path= " + pathStr + ", name=" + nameStr);
@@ -712,6 +1045,10 @@ public class FilesystemToFuseFSAdapter implements FuseFS
    {
       int errno;
 
+      // shared exceptions are expected errors, don't spend any time on them
+      if (e instanceof FuseException && ((FuseException) e).isShared())
+         return ((FuseException) e).getErrno().getErrno();
+
       if (e instanceof FuseException)
       {
          errno = handleErrno(((FuseException) e).getErrno().getErrno());
@@ -734,7 +1071,21 @@ public class FilesystemToFuseFSAdapter implements FuseFS
       return errno;
    }
 
-public boolean isImplemented(String methodName) {
-	return FilesystemImplCheck.isImplemented(fs.getClass(), methodName);
-}
+   public boolean isImplemented(String methodName)
+   {
+      // Filesystem.readdir() falls back to getdir() by default
+      if ("readdir".equals(methodName))
+         return FilesystemImplCheck.isImplemented(fs, "readdir") || FilesystemImplCheck.isImplemented(fs, "getdir");
+
+      // the read callback serves both read() and readBuffer()
+      if ("read".equals(methodName))
+         return FilesystemImplCheck.isImplemented(fs, "read") || FilesystemImplCheck.isImplemented(fs, "readBuffer");
+
+      // the attributes listed are served to getattr() natively, not if it answers per caller
+      if ("readdirplus".equals(methodName))
+         return FilesystemImplCheck.isImplemented(fs, "readdirplus") &&
+            !FilesystemImplCheck.isOverridden(fs, "getattr", String.class, FuseAttrSetter.class, FuseContext.class);
+
+      return FilesystemImplCheck.isImplemented(fs, methodName);
+   }
 }
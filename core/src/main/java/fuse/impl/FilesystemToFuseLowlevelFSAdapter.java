@@ -0,0 +1,868 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse.impl;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+
+import fuse.Errno;
+import fuse.Filesystem;
+import fuse.FuseContext;
+import fuse.FuseException;
+import fuse.FuseFileInfo;
+import fuse.FuseStatfs;
+import fuse.Mode;
+import fuse.impl.util.FileHandleTable;
+import fuse.impl.util.PathDecoder;
+
+/**
+ * This is an adapter that implements fuse.impl.FuseLowlevelFS node-id based API and delegates
+ * to the fuse.Filesystem String level API.
+ *
+ * The adapter keeps a table of the nodes the kernel currently knows about. Each node remembers
+ * its full path, so an operation only has to decode a single path component (if any) and look
+ * up its node instead of decoding a full path that libfuse has rebuilt from the root. The
+ * children of a node are indexed by name, so a rename only updates the nodes below the renamed
+ * one, and operations on known nodes never lock the table.
+ */
+public class FilesystemToFuseLowlevelFSAdapter implements FuseLowlevelFS
+{
+   private Filesystem fs;
+   private Charset cs;
+   private PathDecoder nameDecoder;
+   private Log log;
+
+   /**
+    * A node the kernel knows. It is reachable through the names in <code>links</code>, the first
+    * of which gives its path; a hard linked file can have more. A node that lost all its names
+    * (unlink, rmdir, rename over it) keeps its last path, so its open files can still be used.
+    */
+   private static class Node
+   {
+      final long ino;
+      final AtomicLong nlookup = new AtomicLong();
+      final ConcurrentMap<String, Node> children = new ConcurrentHashMap<String, Node>();
+
+      // the Filesystem's inode of a hard linked file, 0 if the node is not in nodesByInode
+      long fsInode;
+
+      // guarded by the node table lock
+      final List<Link> links = new ArrayList<Link>(1);
+
+      volatile String path;
+
+      Node(long ino, String path)
+      {
+         this.ino = ino;
+         this.path = path;
+      }
+
+      public String toString()
+      {
+         return "Node[ino=" + ino + ", path=" + path + ", nlookup=" + nlookup + "]";
+      }
+   }
+
+   private static class Link
+   {
+      final Node parent;
+      final String name;
+
+      Link(Node parent, String name)
+      {
+         this.parent = parent;
+         this.name = name;
+      }
+   }
+
+   private final ThreadLocal<FuseGetattrBuffer> getattrBuffers = new ThreadLocal<FuseGetattrBuffer>()
+   {
+      protected FuseGetattrBuffer initialValue()
+      {
+         return new FuseGetattrBuffer();
+      }
+   };
+
+   // operations on known nodes only read the table, changes to the namespace take the lock
+   private final ConcurrentMap<Long, Node> nodes = new ConcurrentHashMap<Long, Node>();
+   private final ConcurrentMap<Long, Node> nodesByInode = new ConcurrentHashMap<Long, Node>();
+   private final Object lock = new Object();
+   private final Node root = new Node(ROOT_ID, "/");
+   private long nextIno = ROOT_ID + 1;
+
+   private final FileHandleTable handles = new FileHandleTable();
+
+   public FilesystemToFuseLowlevelFSAdapter(Filesystem fs, Log log)
+   {
+      this.fs = fs;
+      this.cs = fs.getPathCharSet();
+      this.nameDecoder = new PathDecoder(cs, 0);
+      this.log = log;
+
+      root.nlookup.set(1);
+      nodes.put(root.ino, root);
+   }
+
+   //
+   // node table
+
+   private Node node(long ino) throws FuseException
+   {
+      Node node = nodes.get(ino);
+      if (node == null)
+         throw FuseException.fromErrno(Errno.ESTALE);
+
+      return node;
+   }
+
+   private String path(long ino) throws FuseException
+   {
+      return node(ino).path;
+   }
+
+   /**
+    * @return the node id the kernel knows <code>path</code> by or 0 if it does not know it
+    */
+   long nodeId(String path)
+   {
+      Node node = resolve(path);
+      return (node == null)? 0 : node.ino;
+   }
+
+   Charset getPathCharSet()
+   {
+      return cs;
+   }
+
+   private Node resolve(String path)
+   {
+      Node node = root;
+
+      for (int start = 1; node != null && start < path.length(); )
+      {
+         int end = path.indexOf('/', start);
+         if (end < 0)
+            end = path.length();
+
+         node = node.children.get(path.substring(start, end));
+         start = end + 1;
+      }
+
+      return node;
+   }
+
+   private static String childPath(String parentPath, String name)
+   {
+      return parentPath.equals("/") ? "/" + name : parentPath + "/" + name;
+   }
+
+   private String childPath(long parent, ByteBuffer name) throws FuseException
+   {
+      return childPath(path(parent), nameDecoder.decode(name));
+   }
+
+   /**
+    * Counts a lookup of <code>name</code> in <code>parent</code> whose attributes are in
+    * <code>entry</code> and returns the node id of it.
+    */
+   private long remember(Node parent, String name, ByteBuffer entry)
+   {
+      Node node = parent.children.get(name);
+      if (node != null && increment(node))
+         return node.ino;
+
+      long fsInode = hardLinkInode(entry);
+
+      synchronized (lock)
+      {
+         node = parent.children.get(name);
+         if (node == null && fsInode != 0)
+         {
+            // another name of a hard linked file the kernel knows
+            node = nodesByInode.get(fsInode);
+            if (node != null)
+               attach(node, parent, name);
+         }
+         if (node == null)
+         {
+            node = new Node(nextIno++, childPath(parent.path, name));
+            nodes.put(node.ino, node);
+            attach(node, parent, name);
+            if (fsInode != 0)
+            {
+               node.fsInode = fsInode;
+               nodesByInode.put(fsInode, node);
+            }
+         }
+         node.nlookup.incrementAndGet();
+      }
+
+      return node.ino;
+   }
+
+   // a lookup of a node that is not being forgotten needs no lock
+   private static boolean increment(Node node)
+   {
+      while (true)
+      {
+         long n = node.nlookup.get();
+         if (n <= 0)
+            return false;
+         if (node.nlookup.compareAndSet(n, n + 1))
+            return true;
+      }
+   }
+
+   // the Filesystem's inode of a file with more than one name, 0 if not hard linked
+   private static long hardLinkInode(ByteBuffer entry)
+   {
+      int mode = entry.getInt(FuseGetattrBuffer.MODE);
+      if ((mode & Mode.TYPE_MASK.getMode()) == Mode.TYPE_DIR.getMode() || entry.getInt(FuseGetattrBuffer.NLINK) < 2)
+         return 0;
+
+      return entry.getLong(FuseGetattrBuffer.INODE);
+   }
+
+   // called with the lock held
+   private void attach(Node node, Node parent, String name)
+   {
+      parent.children.put(name, node);
+      node.links.add(new Link(parent, name));
+      if (node.links.size() == 1)
+         setPath(node, childPath(parent.path, name));
+   }
+
+   // called with the lock held, the node of the name keeps its last path when it has no other
+   private void detach(Node parent, String name)
+   {
+      Node node = parent.children.remove(name);
+      if (node == null)
+         return;
+
+      for (int i = 0; i < node.links.size(); i++)
+      {
+         Link link = node.links.get(i);
+         if (link.parent == parent && link.name.equals(name))
+         {
+            node.links.remove(i);
+            if (i == 0 && !node.links.isEmpty())
+               setPath(node, childPath(node.links.get(0).parent.path, node.links.get(0).name));
+            break;
+         }
+      }
+   }
+
+   // updates the paths of the known nodes below as well, called with the lock held
+   private static void setPath(Node node, String path)
+   {
+      node.path = path;
+
+      for (Map.Entry<String, Node> entry : node.children.entrySet())
+      {
+         Node child = entry.getValue();
+         Link link = child.links.isEmpty()? null : child.links.get(0);
+         if (link != null && link.parent == node && link.name.equals(entry.getKey()))
+            setPath(child, childPath(path, link.name));
+      }
+   }
+
+   /**
+    * Drops <code>path</code> from the node table, the notifier calls it for a name removed behind
+    * the kernel's back.
+    */
+   void detach(String path)
+   {
+      int i = path.lastIndexOf('/');
+      Node parent = (i <= 0)? root : resolve(path.substring(0, i));
+
+      if (parent != null && path.length() > 1)
+      {
+         synchronized (lock)
+         {
+            detach(parent, path.substring(i + 1));
+         }
+      }
+   }
+
+   private void moved(long parent, String name, long newparent, String newname) throws FuseException
+   {
+      Node from = node(parent);
+      Node to = node(newparent);
+
+      synchronized (lock)
+      {
+         Node node = from.children.get(name);
+
+         detach(to, newname);
+         if (node != null)
+         {
+            detach(from, name);
+            attach(node, to, newname);
+         }
+      }
+   }
+
+   //
+   // FuseLowlevelFS implementation
+
+   public int lookup(long parent, ByteBuffer name, ByteBuffer entry)
+   {
+      try
+      {
+         Node parentNode = node(parent);
+         String nameStr = nameDecoder.decode(name);
+         String path = childPath(parentNode.path, nameStr);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("lookup: parent=" + parent + ", path=" + path);
+
+         return entry(parentNode, nameStr, path, entry);
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public void forget(long ino, long nlookup)
+   {
+      if (log != null && log.isDebugEnabled())
+         log.debug("forget: ino=" + ino + ", nlookup=" + nlookup);
+
+      if (ino == ROOT_ID)
+         return;
+
+      Node node = nodes.get(ino);
+      if (node == null)
+         return;
+
+      synchronized (lock)
+      {
+         if (node.nlookup.addAndGet(-nlookup) <= 0)
+         {
+            while (!node.links.isEmpty())
+            {
+               Link link = node.links.get(node.links.size() - 1);
+               detach(link.parent, link.name);
+            }
+            nodes.remove(ino);
+            if (node.fsInode != 0)
+               nodesByInode.remove(node.fsInode, node);
+         }
+      }
+   }
+
+   public int getattr(long ino, ByteBuffer attr)
+   {
+      try
+      {
+         String path = path(ino);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("getattr: ino=" + ino + ", path=" + path);
+
+         return attr(ino, path, attr);
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int setattr(long ino, int toSet, int mode, int uid, int gid, long size, int atime, int mtime, ByteBuffer attr)
+   {
+      try
+      {
+         String path = path(ino);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("setattr: ino=" + ino + ", path=" + path + ", toSet=" + Integer.toHexString(toSet));
+
+         if ((toSet & SET_ATTR_MODE) != 0)
+            fs.chmod(path, mode);
+
+         if ((toSet & (SET_ATTR_UID | SET_ATTR_GID)) != 0)
+            fs.chown(path, (toSet & SET_ATTR_UID) != 0 ? uid : -1, (toSet & SET_ATTR_GID) != 0 ? gid : -1);
+
+         if ((toSet & SET_ATTR_SIZE) != 0)
+            fs.truncate(path, size);
+
+         if ((toSet & (SET_ATTR_ATIME | SET_ATTR_MTIME)) != 0)
+            fs.utime(path, atime, mtime);
+
+         return attr(ino, path, attr);
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int readlink(long ino, ByteBuffer link)
+   {
+      try
+      {
+         String path = path(ino);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("readlink: ino=" + ino + ", path=" + path);
+
+         CharBuffer linkCb = CharBuffer.allocate(link.capacity());
+         fs.readlink(path, linkCb);
+         linkCb.flip();
+
+         CharsetEncoder enc = cs.newEncoder()
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .onMalformedInput(CodingErrorAction.REPLACE);
+
+         CoderResult result = enc.encode(linkCb, link, true);
+         if (result.isOverflow())
+            throw new FuseException(Errno.ENAMETOOLONG, "Buffer owerflow while encoding result");
+
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int readdir(long ino, FuseFSDirFiller dirFiller)
+   {
+      try
+      {
+         String path = path(ino);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("readdir: ino=" + ino + ", path=" + path);
+
+         dirFiller.setCharset(cs);
+         dirFiller.reset();
+         fs.getdir(path, dirFiller);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int mknod(long parent, ByteBuffer name, int mode, int rdev, ByteBuffer entry)
+   {
+      try
+      {
+         Node parentNode = node(parent);
+         String nameStr = nameDecoder.decode(name);
+         String path = childPath(parentNode.path, nameStr);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("mknod: path=" + path + ", mode=" + Integer.toOctalString(mode) + "(OCT), rdev=" + rdev);
+
+         fs.mknod(path, mode, rdev);
+         return entry(parentNode, nameStr, path, entry);
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int mkdir(long parent, ByteBuffer name, int mode, ByteBuffer entry)
+   {
+      try
+      {
+         Node parentNode = node(parent);
+         String nameStr = nameDecoder.decode(name);
+         String path = childPath(parentNode.path, nameStr);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("mkdir: path=" + path + ", mode=" + Integer.toOctalString(mode) + "(OCT)");
+
+         fs.mkdir(path, mode);
+         return entry(parentNode, nameStr, path, entry);
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int unlink(long parent, ByteBuffer name)
+   {
+      try
+      {
+         Node parentNode = node(parent);
+         String nameStr = nameDecoder.decode(name);
+         String path = childPath(parentNode.path, nameStr);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("unlink: path=" + path);
+
+         fs.unlink(path);
+
+         synchronized (lock)
+         {
+            detach(parentNode, nameStr);
+         }
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int rmdir(long parent, ByteBuffer name)
+   {
+      try
+      {
+         Node parentNode = node(parent);
+         String nameStr = nameDecoder.decode(name);
+         String path = childPath(parentNode.path, nameStr);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("rmdir: path=" + path);
+
+         fs.rmdir(path);
+
+         synchronized (lock)
+         {
+            detach(parentNode, nameStr);
+         }
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int symlink(ByteBuffer link, long parent, ByteBuffer name, ByteBuffer entry)
+   {
+      try
+      {
+         String linkStr = nameDecoder.decode(link);
+         Node parentNode = node(parent);
+         String nameStr = nameDecoder.decode(name);
+         String path = childPath(parentNode.path, nameStr);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("symlink: from=" + linkStr + " to=" + path);
+
+         fs.symlink(linkStr, path);
+         return entry(parentNode, nameStr, path, entry);
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int rename(long parent, ByteBuffer name, long newparent, ByteBuffer newname)
+   {
+      try
+      {
+         String nameStr = nameDecoder.decode(name);
+         String newnameStr = nameDecoder.decode(newname);
+         String from = childPath(path(parent), nameStr);
+         String to = childPath(path(newparent), newnameStr);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("rename: from=" + from + " to=" + to);
+
+         fs.rename(from, to);
+         moved(parent, nameStr, newparent, newnameStr);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int link(long ino, long newparent, ByteBuffer newname, ByteBuffer entry)
+   {
+      try
+      {
+         Node node = node(ino);
+         Node parentNode = node(newparent);
+         String nameStr = nameDecoder.decode(newname);
+         String from = node.path;
+         String to = childPath(parentNode.path, nameStr);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("link: from=" + from + " to=" + to);
+
+         fs.link(from, to);
+         return linkEntry(node, parentNode, nameStr, to, entry);
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int statfs(FuseStatfsSetter statfsSetter)
+   {
+      if (log != null && log.isDebugEnabled())
+         log.debug("statfs");
+
+      try
+      {
+         FuseStatfs statfs = fs.statfs();
+         statfsSetter.set(statfs.getBlockSize(), statfs.getBlocks(), statfs.getBlocksFree(), statfs.getBlocksAvail(), statfs.getFiles(), statfs.getFilesFree(), statfs.getNamelen());
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int open(long ino, int flags, FuseOpenSetter openSetter)
+   {
+      try
+      {
+         String path = path(ino);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("open: ino=" + ino + ", path=" + path + ", flags=" + flags);
+
+         FuseFileInfo ffi = new FuseFileInfo(openSetter.isDirectIO(), openSetter.isKeepCache(), flags, null);
+         fs.open(path, ffi, FuseContext.current());
+         openSetter.setFh(handles.put(ffi.getFh()));
+         openSetter.setDirectIO(ffi.isDirectIO());
+         openSetter.setKeepCache(ffi.isKeepCache());
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int read(long ino, long fh, ByteBuffer buf, long offset)
+   {
+      try
+      {
+         String path = path(ino);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("read: ino=" + ino + ", path=" + path + ", fh=" + fh + ", offset=" + offset);
+
+         fs.read(path, handles.get(fh), buf, offset);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int write(long ino, long fh, boolean isWritepage, ByteBuffer buf, long offset)
+   {
+      try
+      {
+         String path = path(ino);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("write: ino=" + ino + ", path=" + path + ", fh=" + fh + ", isWritepage=" + isWritepage + ", offset=" + offset);
+
+         fs.write(path, handles.get(fh), isWritepage, buf, offset);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int flush(long ino, long fh)
+   {
+      try
+      {
+         String path = path(ino);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("flush: ino=" + ino + ", path=" + path + ", fh=" + fh);
+
+         fs.flush(path, handles.get(fh));
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int release(long ino, long fh, int flags)
+   {
+      // the handle is released even if the node or the release fails
+      Object fhObject = handles.remove(fh);
+
+      try
+      {
+         // the Filesystem gets every release, with a null path if the node is unknown
+         Node node = nodes.get(ino);
+         String path = (node == null)? null : node.path;
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("release: ino=" + ino + ", path=" + path + ", fh=" + fh + ", flags=" + flags);
+
+         fs.release(path, fhObject, flags);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   public int fsync(long ino, long fh, boolean isDatasync)
+   {
+      try
+      {
+         String path = path(ino);
+
+         if (log != null && log.isDebugEnabled())
+            log.debug("fsync: ino=" + ino + ", path=" + path + ", fh=" + fh + ", isDatasync=" + isDatasync);
+
+         fs.fsync(path, handles.get(fh), isDatasync);
+         return 0;
+      }
+      catch (Exception e)
+      {
+         return handleException(e);
+      }
+   }
+
+   //
+   // private
+
+   private int attr(long ino, String path, ByteBuffer attr) throws FuseException
+   {
+      FuseGetattrBuffer getattrBuffer = getattrBuffers.get();
+      getattrBuffer.setBuffer(attr);
+
+      try
+      {
+         fs.getattr(path, getattrBuffer, FuseContext.current());
+         defaultInode(getattrBuffer, attr, ino);
+         return 0;
+      }
+      finally
+      {
+         getattrBuffer.setBuffer(null);
+      }
+   }
+
+   private int entry(Node parent, String name, String path, ByteBuffer entry) throws FuseException
+   {
+      FuseGetattrBuffer getattrBuffer = getattrBuffers.get();
+      getattrBuffer.setBuffer(entry);
+
+      try
+      {
+         fs.getattr(path, getattrBuffer, FuseContext.current());
+
+         long ino = remember(parent, name, entry);
+         getattrBuffer.setNodeId(ino);
+         defaultInode(getattrBuffer, entry, ino);
+         return 0;
+      }
+      finally
+      {
+         getattrBuffer.setBuffer(null);
+      }
+   }
+
+   // the entry of a new hard link is the node the kernel already knows the file by
+   private int linkEntry(Node node, Node parent, String name, String path, ByteBuffer entry) throws FuseException
+   {
+      FuseGetattrBuffer getattrBuffer = getattrBuffers.get();
+      getattrBuffer.setBuffer(entry);
+
+      try
+      {
+         fs.getattr(path, getattrBuffer, FuseContext.current());
+
+         long fsInode = hardLinkInode(entry);
+
+         synchronized (lock)
+         {
+            detach(parent, name);
+            attach(node, parent, name);
+            node.nlookup.incrementAndGet();
+            if (fsInode != 0 && node.fsInode == 0 && nodesByInode.putIfAbsent(fsInode, node) == null)
+               node.fsInode = fsInode;
+         }
+
+         getattrBuffer.setNodeId(node.ino);
+         defaultInode(getattrBuffer, entry, node.ino);
+         return 0;
+      }
+      finally
+      {
+         getattrBuffer.setBuffer(null);
+      }
+   }
+
+   // st_ino is the Filesystem's inode like d_ino of readdir(), the node id if it reports none
+   private static void defaultInode(FuseGetattrBuffer getattrBuffer, ByteBuffer attr, long ino)
+   {
+      if (attr.getLong(FuseGetattrBuffer.INODE) == 0)
+         getattrBuffer.setInode(ino);
+   }
+
+   private int handleException(Exception e)
+   {
+      int errno;
+
+      // shared exceptions are expected errors, don't spend any time on them
+      if (e instanceof FuseException && ((FuseException) e).isShared())
+         return ((FuseException) e).getErrno().getErrno();
+
+      if (e instanceof FuseException)
+      {
+         errno = ((FuseException) e).getErrno().getErrno();
+         if (log != null && log.isDebugEnabled())
+            log.debug(e);
+      }
+      else if (e instanceof BufferOverflowException)
+      {
+         errno = Errno.ERANGE.getErrno();
+         if (log != null && log.isDebugEnabled())
+            log.debug(e);
+      }
+      else
+      {
+         errno = Errno.EFAULT.getErrno();
+         if (log != null)
+            log.error(e);
+      }
+
+      if (log != null && log.isDebugEnabled())
+         log.debug("  returning errno: " + errno);
+
+      return errno;
+   }
+}
@@ -0,0 +1,27 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * The FuseBufferSetter the native side passes to <code>FuseFS.readBuffer()</code>. One instance is
+ * kept per native thread; the native side reads and clears <code>buffer</code> after every call.
+ */
+public class FuseBuffer implements FuseBufferSetter
+{
+   public ByteBuffer buffer;
+
+   public void setBuffer(ByteBuffer buf)
+   {
+      this.buffer = buf;
+   }
+}
@@ -0,0 +1,14 @@
+package fuse.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Callback through which <code>FuseFS.readBuffer()</code> hands a direct ByteBuffer to the native side.
+ */
+public interface FuseBufferSetter
+{
+   /**
+    * @param buf a direct ByteBuffer holding the data between its position and limit
+    */
+   public void setBuffer(ByteBuffer buf);
+}
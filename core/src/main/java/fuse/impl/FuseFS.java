@@ -11,6 +11,8 @@ package fuse.impl;
 
 import java.nio.ByteBuffer;
 
+import fuse.FuseFSFillDir;
+
 
 /**
  * This is a byte level filesystem API (in contrast to String level filesystem API like fuse.Filesystem[123]).
@@ -20,16 +22,49 @@ import java.nio.ByteBuffer;
  * be left to a special adapter class: fuse.Filesystem3ToFuseFSAdapter.
  *
  * Return value from every method is always 0 for success or errno for error
+ *
+ * The ByteBuffer arguments are per-thread buffers that the native side re-points at every call,
+ * so they are only valid for the duration of the call and must never be retained.
+ *
+ * The fh arguments are the handles that <code>open()</code> passed to its FuseOpenSetter, the
+ * adapter maps them to the file handle objects of the filesystem (fuse.impl.util.FileHandleTable).
  */
 public interface FuseFS
 {
    public int getattr(ByteBuffer path, FuseGetattrSetter getattrSetter);
-   
+
+   /**
+    * Same as <code>getattr(ByteBuffer, FuseGetattrSetter)</code> but the attributes are written
+    * into <code>attr</code> using the layout described by fuse.impl.FuseGetattrBuffer.
+    */
+   public int getattr(ByteBuffer path, ByteBuffer attr);
+
+   /**
+    * <code>getattr()</code> of an open file. <code>path</code> is null for a removed file when
+    * mounted with <code>FuseMountOptions.nullPathOk()</code>, the same for all operations that get
+    * a handle.
+    * Only called when <code>isImplemented("fgetattr")</code>.
+    */
+   public int fgetattr(ByteBuffer path, long fh, ByteBuffer attr);
+   
+   /**
+    * Called once at mount time for every operation. Operations that are not implemented
+    * are not registered with libfuse, which answers them with ENOSYS on its own.
+    */
    public boolean isImplemented(String methodName);
 
    public int readlink(ByteBuffer path, ByteBuffer link);
 
    public int getdir(ByteBuffer path, FuseFSDirFiller dirFiller);
+
+   public int readdir(ByteBuffer path, long fh, long offset, FuseFSFillDir fillDir);
+
+   /**
+    * Same as <code>readdir()</code>, but the entries are added with <code>fillDir.fillPlus()</code>
+    * together with their attributes. The native side uses this instead of <code>readdir()</code>
+    * when <code>isImplemented("readdirplus")</code>.
+    */
+   public int readdirplus(ByteBuffer path, long fh, long offset, FuseFSFillDir fillDir);
    
 
 
@@ -68,6 +103,11 @@ public interface FuseFS
 
 
    public int truncate(ByteBuffer path, long size);
+
+   /**
+    * <code>truncate()</code> of an open file. Only called when <code>isImplemented("ftruncate")</code>.
+    */
+   public int ftruncate(ByteBuffer path, long fh, long size);
    
 
 
@@ -78,24 +118,55 @@ public interface FuseFS
 
 
    public int open(ByteBuffer path, int flags, FuseOpenSetter openSetter);
+
+   /**
+    * Creates and opens a regular file in one call, the handle is passed to
+    * <code>openSetter</code> like in <code>open()</code>. Only called when
+    * <code>isImplemented("create")</code>, otherwise new files go through
+    * <code>mknod()</code> and <code>open()</code>.
+    */
+   public int create(ByteBuffer path, int mode, int flags, FuseOpenSetter openSetter);
    
 
 
-   public int read(ByteBuffer path, Object fh, ByteBuffer buf, long offset);
+   public int read(ByteBuffer path, long fh, ByteBuffer buf, long offset);
+
+   /**
+    * Same as <code>read()</code>, but the data may instead be handed out as a direct ByteBuffer
+    * through <code>bufferSetter</code>, which the native side copies from directly. If no buffer is
+    * set, the data is in <code>buf</code> as with <code>read()</code>. The native side uses this
+    * instead of <code>read()</code> when <code>isImplemented("readBuffer")</code>.
+    */
+   public int readBuffer(ByteBuffer path, long fh, ByteBuffer buf, long offset, FuseBufferSetter bufferSetter);
 
+   /**
+    * Asks for a file descriptor range holding the <code>buf.remaining()</code> bytes to read. If
+    * one is set through <code>regionSetter</code> the native side splices it into the reply,
+    * otherwise the data must be read into <code>buf</code> in the same call, as with
+    * <code>read()</code>. Only called when <code>isImplemented("readRegion")</code>.
+    */
+   public int readRegion(ByteBuffer path, long fh, ByteBuffer buf, long offset, FuseRegionSetter regionSetter);
 
-   public int write(ByteBuffer path, Object fh, boolean isWritepage, ByteBuffer buf, long offset);
+
+   public int write(ByteBuffer path, long fh, boolean isWritepage, ByteBuffer buf, long offset);
+
+   /**
+    * Asks for a file descriptor range to write the data to. If one is set through
+    * <code>regionSetter</code> the native side splices the data there, otherwise it falls back to
+    * <code>write()</code>. Only called when <code>isImplemented("writeRegion")</code>.
+    */
+   public int writeRegion(ByteBuffer path, long fh, long offset, int size, FuseRegionSetter regionSetter);
    
 
 
-   public int flush(ByteBuffer path, Object fh);
+   public int flush(ByteBuffer path, long fh);
    
 
 
-   public int release(ByteBuffer path, Object fh, int flags);
+   public int release(ByteBuffer path, long fh, int flags);
 
 
-   public int fsync(ByteBuffer path, Object fh, boolean isDatasync);
+   public int fsync(ByteBuffer path, long fh, boolean isDatasync);
    
 
    //
@@ -106,19 +177,18 @@ public interface FuseFS
    
 
 
-   public int getxattrsize(ByteBuffer path, ByteBuffer name, FuseSizeSetter sizeSetter);
-   
-
-
-   public int getxattr(ByteBuffer path, ByteBuffer name, ByteBuffer value);
-
-
-   
-   public int listxattrsize(ByteBuffer path, FuseSizeSetter sizeSetter);
-   
+   /**
+    * Hands out the value of the extended attribute as a direct ByteBuffer through
+    * <code>valueSetter</code>. The native side answers the size probe of <code>getxattr(2)</code>
+    * from it and keeps it for the fetch that follows, so the value crosses into Java once.
+    */
+   public int getxattr(ByteBuffer path, ByteBuffer name, FuseBufferSetter valueSetter);
 
 
-   public int listxattr(ByteBuffer path, ByteBuffer list);
+   /**
+    * Same as <code>getxattr()</code> for the list of attribute names, each terminated by byte 0.
+    */
+   public int listxattr(ByteBuffer path, FuseBufferSetter listSetter);
 
    
    public int removexattr(ByteBuffer path, ByteBuffer name);
@@ -1,85 +1,154 @@
 package fuse.impl;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.nio.charset.Charset;
-import java.nio.CharBuffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import fuse.FuseDirFiller;
 
 /**
- * User: peter
- * Date: Nov 4, 2005
- * Time: 1:36:36 PM
+ * Collects the entries of a getdir() as records in one direct buffer which the native side walks
+ * after the call. A record is the name length, the mode and the inode followed by the NUL
+ * terminated name, padded to 8 bytes; the layout must match <code>javafs_dirent</code> in javafs.h.
+ * The native side keeps one instance per thread, so names are encoded with a reusable encoder and
+ * nothing is allocated per entry.
  */
-public class FuseFSDirFiller
+public class FuseFSDirFiller implements FuseDirFiller
 {
+   public static final int LENGTH = 0;
+   public static final int MODE = 4;
+   public static final int INODE = 8;
+   public static final int NAME = 16;
+
+   private static final int INITIAL_SIZE = 16 * 1024;
+
+   // a buffer grown beyond this by a huge directory is dropped on the next reset()
+   private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
    private Charset cs;
-   private List<FuseFSDirEnt> nodes = new ArrayList<FuseFSDirEnt>();
+   private CharsetEncoder enc;
+
+   // the records from 0 to the position, read by the native side
+   private ByteBuffer buffer = allocate(INITIAL_SIZE);
+   private int count;
 
    public void setCharset(Charset cs)
    {
+      if (cs.equals(this.cs))
+         return;
+
       this.cs = cs;
+      this.enc = cs.newEncoder()
+         .onMalformedInput(CodingErrorAction.REPLACE)
+         .onUnmappableCharacter(CodingErrorAction.REPLACE);
    }
 
-   public FuseFSDirEnt[] toArray() {
-	   FuseFSDirEnt[] a = new FuseFSDirEnt[nodes.size()];
-	   nodes.toArray(a);
-	   return a;
+   /**
+    * Drops the entries of the previous call.
+    */
+   public void reset()
+   {
+      if (buffer.capacity() > MAX_RETAINED_SIZE)
+         buffer = allocate(INITIAL_SIZE);
+      else
+         buffer.clear();
+
+      count = 0;
    }
-   
+
+   /**
+    * @return number of entries added since the last <code>reset()</code>
+    */
+   public int size()
+   {
+      return count;
+   }
+
    //
    // FuseDirFiller implementation
 
-   public void add(String name, long inode, int mode) 
+   public void add(String name, long inode, int mode)
    {
-      FuseFSDirEnt dirEntry = new FuseFSDirEnt();
+      int start = buffer.position();
 
-      ByteBuffer nameBuf = cs.encode(CharBuffer.wrap(name));
-      dirEntry.name = new byte[nameBuf.remaining()];
-      nameBuf.get(dirEntry.name);
+      while (true)
+      {
+         if (buffer.remaining() > NAME)
+         {
+            buffer.position(start + NAME);
+            enc.reset();
+            CoderResult result = enc.encode(CharBuffer.wrap(name), buffer, true);
+            if (!result.isOverflow())
+               result = enc.flush(buffer);
+
+            // room for the NUL, the capacity is a multiple of 8 so the padding fits as well
+            if (!result.isOverflow() && buffer.hasRemaining())
+            {
+               buffer.putInt(start + LENGTH, buffer.position() - start - NAME);
+               buffer.putInt(start + MODE, mode);
+               buffer.putLong(start + INODE, inode);
+               buffer.put((byte) 0);
+               buffer.position((buffer.position() + 7) & ~7);
+               count++;
+               return;
+            }
+         }
+
+         buffer.position(start);
+         grow();
+      }
+   }
 
-      dirEntry.inode = inode;
+   /**
+    * @return the records added since the last <code>reset()</code>, as the native side reads them
+    */
+   ByteBuffer records()
+   {
+      ByteBuffer records = buffer.duplicate().order(buffer.order());
+      records.flip();
+      return records;
+   }
 
-      dirEntry.mode = mode;
+   private void grow()
+   {
+      ByteBuffer grown = allocate(buffer.capacity() * 2);
+      buffer.flip();
+      grown.put(buffer);
+      buffer = grown;
+   }
 
-      nodes.add(dirEntry);
+   private static ByteBuffer allocate(int size)
+   {
+      return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
    }
 
    //
    // for debugging
 
-   /**
-    * Returns a string representation of this collection.  The string
-    * representation consists of a list of the collection's elements in the
-    * order they are returned by its iterator, enclosed in square brackets
-    * (<tt>"[]"</tt>).  Adjacent elements are separated by the characters
-    * <tt>", "</tt> (comma and space).  Elements are converted to strings as
-    * by <tt>String.valueOf(Object)</tt>.<p>
-    * <p/>
-    * This implementation creates an empty string buffer, appends a left
-    * square bracket, and iterates over the collection appending the string
-    * representation of each element in turn.  After appending each element
-    * except the last, the string <tt>", "</tt> is appended.  Finally a right
-    * bracket is appended.  A string is obtained from the string buffer, and
-    * returned.
-    *
-    * @return a string representation of this collection.
-    */
    public String toString()
    {
       StringBuilder sb = new StringBuilder();
 
       sb.append("[");
-      boolean first = true;
 
-      for (FuseFSDirEnt dirEnt : nodes)
+      for (int offset = 0; offset < buffer.position(); )
       {
-         if (first)
-            first = false;
-         else
+         int length = buffer.getInt(offset + LENGTH);
+
+         byte[] nameBytes = new byte[length];
+         for (int i = 0; i < length; i++)
+            nameBytes[i] = buffer.get(offset + NAME + i);
+
+         if (offset > 0)
             sb.append(", ");
 
-         sb.append('"').append(cs.decode(ByteBuffer.wrap(dirEnt.name))).append('"');
+         sb.append('"').append(cs.decode(ByteBuffer.wrap(nameBytes))).append('"');
+
+         offset = (offset + NAME + length + 1 + 7) & ~7;
       }
 
       sb.append("]");
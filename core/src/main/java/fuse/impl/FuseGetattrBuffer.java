@@ -0,0 +1,90 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * A FuseGetattrSetter that writes the attributes into a direct ByteBuffer supplied by the
+ * native side. The layout must match <code>javafs_attr</code> in javafs.h: all values are
+ * in native byte order at the fixed offsets below.
+ */
+public class FuseGetattrBuffer implements FuseGetattrSetter
+{
+   public static final int INODE = 0;
+   public static final int SIZE = 8;
+   public static final int BLOCKS = 16;
+   public static final int MODE = 24;
+   public static final int NLINK = 28;
+   public static final int UID = 32;
+   public static final int GID = 36;
+   public static final int RDEV = 40;
+   public static final int ATIME = 44;
+   public static final int MTIME = 48;
+   public static final int CTIME = 52;
+   public static final int ATTR_TIMEOUT = 56;
+   public static final int ENTRY_TIMEOUT = 64;
+   public static final int NODE_ID = 72;
+
+   public static final int LENGTH = 80;
+
+   private ByteBuffer buf;
+
+   /**
+    * Points this setter at the buffer to be filled by the next <code>set()</code>.
+    */
+   public void setBuffer(ByteBuffer buf)
+   {
+      this.buf = (buf == null)? null : buf.order(ByteOrder.nativeOrder());
+   }
+
+   //
+   // FuseGetattrSetter implementation
+
+   public void set(long inode, int mode, int nlink, int uid, int gid, int rdev, long size, long blocks, int atime, int mtime, int ctime)
+   {
+      buf.putLong(INODE, inode);
+      buf.putLong(SIZE, size);
+      buf.putLong(BLOCKS, blocks);
+      buf.putInt(MODE, mode);
+      buf.putInt(NLINK, nlink);
+      buf.putInt(UID, uid);
+      buf.putInt(GID, gid);
+      buf.putInt(RDEV, rdev);
+      buf.putInt(ATIME, atime);
+      buf.putInt(MTIME, mtime);
+      buf.putInt(CTIME, ctime);
+   }
+
+   public void setTimeouts(double attrTimeout, double entryTimeout)
+   {
+      buf.putDouble(ATTR_TIMEOUT, attrTimeout);
+      buf.putDouble(ENTRY_TIMEOUT, entryTimeout);
+   }
+
+   /**
+    * Replaces the inode set by the filesystem, the low-level adapter reports its node id for a
+    * filesystem that reports no inode numbers.
+    */
+   public void setInode(long inode)
+   {
+      buf.putLong(INODE, inode);
+   }
+
+   /**
+    * Sets the node id of a low-level entry reply, the high-level bindings ignore it.
+    */
+   public void setNodeId(long nodeId)
+   {
+      buf.putLong(NODE_ID, nodeId);
+   }
+}
@@ -0,0 +1,91 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * This is a byte level, node-id based filesystem API that is called from the JNI bindings of the
+ * FUSE low-level (fuse_lowlevel) interface. In contrast to fuse.impl.FuseFS no full paths are ever
+ * passed, only node ids and single path components. Node ids are handed to the kernel through
+ * the entry reply of <code>lookup()</code>, <code>mknod()</code>, <code>mkdir()</code>,
+ * <code>symlink()</code> and <code>link()</code> and stay valid until the kernel forgets them
+ * through <code>forget()</code>. The root directory always has the node id <code>ROOT_ID</code>.
+ *
+ * As with fuse.impl.FuseFS it is not intended that this interface be implemented directly by users,
+ * a fuse.Filesystem should be implemented instead and adapted with fuse.impl.FilesystemToFuseLowlevelFSAdapter.
+ *
+ * The <code>entry</code> and <code>attr</code> arguments are direct ByteBuffers laid out as
+ * described in fuse.impl.FuseGetattrBuffer, including the optional per reply cache timeouts. An
+ * entry reply carries the node id in its own field; the inode is the number <code>stat()</code>
+ * reports and should match the one <code>readdir()</code> reports for the entry.
+ *
+ * Return value from every method is always 0 for success or errno for error. The ByteBuffer
+ * arguments are only valid for the duration of the call and must never be retained.
+ */
+public interface FuseLowlevelFS
+{
+   public static final long ROOT_ID = 1;
+
+   //
+   // bits of the toSet argument of setattr()
+
+   public static final int SET_ATTR_MODE = 1 << 0;
+   public static final int SET_ATTR_UID = 1 << 1;
+   public static final int SET_ATTR_GID = 1 << 2;
+   public static final int SET_ATTR_SIZE = 1 << 3;
+   public static final int SET_ATTR_ATIME = 1 << 4;
+   public static final int SET_ATTR_MTIME = 1 << 5;
+
+
+   public int lookup(long parent, ByteBuffer name, ByteBuffer entry);
+
+   public void forget(long ino, long nlookup);
+
+   public int getattr(long ino, ByteBuffer attr);
+
+   public int setattr(long ino, int toSet, int mode, int uid, int gid, long size, int atime, int mtime, ByteBuffer attr);
+
+   public int readlink(long ino, ByteBuffer link);
+
+   public int readdir(long ino, FuseFSDirFiller dirFiller);
+
+
+   public int mknod(long parent, ByteBuffer name, int mode, int rdev, ByteBuffer entry);
+
+   public int mkdir(long parent, ByteBuffer name, int mode, ByteBuffer entry);
+
+   public int unlink(long parent, ByteBuffer name);
+
+   public int rmdir(long parent, ByteBuffer name);
+
+   public int symlink(ByteBuffer link, long parent, ByteBuffer name, ByteBuffer entry);
+
+   public int rename(long parent, ByteBuffer name, long newparent, ByteBuffer newname);
+
+   public int link(long ino, long newparent, ByteBuffer newname, ByteBuffer entry);
+
+
+   public int statfs(FuseStatfsSetter statfsSetter);
+
+
+   public int open(long ino, int flags, FuseOpenSetter openSetter);
+
+   public int read(long ino, long fh, ByteBuffer buf, long offset);
+
+   public int write(long ino, long fh, boolean isWritepage, ByteBuffer buf, long offset);
+
+   public int flush(long ino, long fh);
+
+   public int release(long ino, long fh, int flags);
+
+   public int fsync(long ino, long fh, boolean isDatasync);
+}
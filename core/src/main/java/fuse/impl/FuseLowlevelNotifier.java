@@ -0,0 +1,169 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import fuse.Errno;
+import fuse.FuseException;
+import fuse.FuseNotifier;
+
+
+/**
+ * FuseNotifier of the low-level mount. Paths are resolved to node ids through the node table of
+ * the adapter and passed to the fuse_lowlevel_notify_* functions of libfuse.
+ */
+public class FuseLowlevelNotifier implements FuseNotifier
+{
+   private final FilesystemToFuseLowlevelFSAdapter adapter;
+   private final Charset cs;
+
+   // copies of heap buffers for notifyStore()
+   private final ThreadLocal<ByteBuffer> directBuffers = new ThreadLocal<ByteBuffer>();
+
+   public FuseLowlevelNotifier(FilesystemToFuseLowlevelFSAdapter adapter)
+   {
+      this.adapter = adapter;
+      this.cs = adapter.getPathCharSet();
+   }
+
+   public void invalidateData(String path, long offset, long length) throws FuseException
+   {
+      if (offset < 0 || length < 0)
+         throw new IllegalArgumentException("offset=" + offset + ", length=" + length);
+
+      long ino = adapter.nodeId(path);
+      if (ino != 0)
+         check(notifyInvalInode(ino, offset, length));
+   }
+
+   public void invalidateAttributes(String path) throws FuseException
+   {
+      // a negative offset drops the attributes only
+      long ino = adapter.nodeId(path);
+      if (ino != 0)
+         check(notifyInvalInode(ino, -1, 0));
+   }
+
+   public void invalidateEntry(String path) throws FuseException
+   {
+      String parentPath = parentOf(path);
+      long parent = (parentPath == null)? 0 : adapter.nodeId(parentPath);
+      if (parent != 0)
+         check(notifyInvalEntry(parent, encode(nameOf(path))));
+   }
+
+   public void deleted(String path) throws FuseException
+   {
+      String parentPath = parentOf(path);
+      long parent = (parentPath == null)? 0 : adapter.nodeId(parentPath);
+      long child = adapter.nodeId(path);
+
+      if (parent != 0)
+      {
+         byte[] name = encode(nameOf(path));
+         int errno = (child != 0)? notifyDelete(parent, child, name) : Errno.ENOSYS.getErrno();
+
+         // kernels before 3.3 have no delete notification
+         if (errno == Errno.ENOSYS.getErrno())
+            errno = notifyInvalEntry(parent, name);
+
+         check(errno);
+      }
+
+      adapter.detach(path);
+   }
+
+   public boolean store(String path, long offset, ByteBuffer data) throws FuseException
+   {
+      if (offset < 0)
+         throw new IllegalArgumentException("offset=" + offset);
+
+      long ino = adapter.nodeId(path);
+      if (ino == 0)
+         return false;
+
+      if (!data.isDirect())
+      {
+         ByteBuffer direct = directBuffer(data.remaining());
+         direct.put(data.duplicate());
+         direct.flip();
+         data = direct;
+      }
+
+      int errno = notifyStore(ino, offset, data);
+      if (errno == Errno.ENOENT.getErrno())
+         return false;
+
+      check(errno);
+      return true;
+   }
+
+
+   private ByteBuffer directBuffer(int size)
+   {
+      ByteBuffer buf = directBuffers.get();
+      if (buf == null || buf.capacity() < size)
+      {
+         buf = ByteBuffer.allocateDirect(size);
+         directBuffers.set(buf);
+      }
+      buf.clear();
+      return buf;
+   }
+
+   private byte[] encode(String name)
+   {
+      ByteBuffer buf = cs.encode(name);
+      byte[] bytes = new byte[buf.remaining()];
+      buf.get(bytes);
+      return bytes;
+   }
+
+   private static String parentOf(String path)
+   {
+      int i = path.lastIndexOf('/');
+      if (i < 0 || path.length() == 1)
+         return null;
+      return (i == 0)? "/" : path.substring(0, i);
+   }
+
+   private static String nameOf(String path)
+   {
+      return path.substring(path.lastIndexOf('/') + 1);
+   }
+
+   // ENOENT: the kernel has already dropped the node or entry
+   private static void check(int errno) throws FuseException
+   {
+      if (errno == 0 || errno == Errno.ENOENT.getErrno())
+         return;
+
+      for (Errno e : Errno.values())
+         if (e.getErrno() == errno)
+            throw new FuseException(e);
+
+      throw new FuseException(Errno.EIO, "notification failed with errno " + errno);
+   }
+
+
+   //
+   // return 0 or errno, ENOTCONN when the filesystem is not mounted
+
+   private static native int notifyInvalInode(long ino, long offset, long length);
+
+   private static native int notifyInvalEntry(long parent, byte[] name);
+
+   private static native int notifyDelete(long parent, long child, byte[] name);
+
+   // data must be a direct ByteBuffer
+   private static native int notifyStore(long ino, long offset, ByteBuffer data);
+}
@@ -16,9 +16,10 @@ public interface FuseOpenSetter
    /**
     * Callback for filehandle API
     * <p/>
-    * @param fh the filehandle to return from <code>open()<code> method.
+    * @param fh the handle of the filehandle to return from <code>open()<code> method,
+    *        see fuse.impl.util.FileHandleTable; 0 for none
     */
-   public void setFh(Object fh);
+   public void setFh(long fh);
 
    /**
     * Sets/gets the direct_io FUSE option for this opened file
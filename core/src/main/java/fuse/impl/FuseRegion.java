@@ -0,0 +1,32 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl;
+
+import java.io.FileDescriptor;
+
+
+/**
+ * The FuseRegionSetter the native side passes to <code>FuseFS.readRegion()</code> and
+ * <code>FuseFS.writeRegion()</code>. One instance is kept per native thread; the native side reads
+ * the fields and clears <code>fd</code> after every call.
+ */
+public class FuseRegion implements FuseRegionSetter
+{
+   public FileDescriptor fd;
+   public long position;
+   public long length;
+
+   public void setRegion(FileDescriptor fd, long position, long length)
+   {
+      this.fd = fd;
+      this.position = position;
+      this.length = length;
+   }
+}
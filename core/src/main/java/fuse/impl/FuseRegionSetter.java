@@ -0,0 +1,17 @@
+package fuse.impl;
+
+import java.io.FileDescriptor;
+
+/**
+ * Callback through which <code>FuseFS.readRegion()</code> and <code>FuseFS.writeRegion()</code>
+ * hand a file descriptor range to the native side.
+ */
+public interface FuseRegionSetter
+{
+   /**
+    * @param fd an open file descriptor
+    * @param position the position in the file where the range starts
+    * @param length the number of bytes in the range
+    */
+   public void setRegion(FileDescriptor fd, long position, long length);
+}
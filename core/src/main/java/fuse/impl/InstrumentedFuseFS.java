@@ -0,0 +1,437 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import fuse.FuseFSFillDir;
+import fuse.impl.util.OperationStats;
+
+
+/**
+ * A FuseFS decorator that records, for every operation, the number of calls, the errors by
+ * errno, the bytes read/written and a latency histogram. The overhead is two System.nanoTime()
+ * calls and a few atomic increments per call, so it can stay enabled in production.
+ *
+ * The statistics can be published as MBeans named
+ * <code>fuse:type=Operation,mount=&lt;mount&gt;,name=&lt;operation&gt;</code>. The path cache
+ * of a decorated FilesystemToFuseFSAdapter is published as
+ * <code>fuse:type=PathCache,mount=&lt;mount&gt;</code>.
+ */
+public class InstrumentedFuseFS implements FuseFS
+{
+   private final FuseFS fuseFS;
+   private final Map<String, OperationStats> stats = new LinkedHashMap<String, OperationStats>();
+   private final List<ObjectName> registered = new ArrayList<ObjectName>();
+
+   private final OperationStats getattr = stats("getattr");
+   private final OperationStats fgetattr = stats("fgetattr");
+   private final OperationStats readlink = stats("readlink");
+   private final OperationStats getdir = stats("getdir");
+   private final OperationStats readdir = stats("readdir");
+   private final OperationStats readdirplus = stats("readdirplus");
+   private final OperationStats mknod = stats("mknod");
+   private final OperationStats mkdir = stats("mkdir");
+   private final OperationStats unlink = stats("unlink");
+   private final OperationStats rmdir = stats("rmdir");
+   private final OperationStats symlink = stats("symlink");
+   private final OperationStats rename = stats("rename");
+   private final OperationStats link = stats("link");
+   private final OperationStats chmod = stats("chmod");
+   private final OperationStats chown = stats("chown");
+   private final OperationStats truncate = stats("truncate");
+   private final OperationStats ftruncate = stats("ftruncate");
+   private final OperationStats utime = stats("utime");
+   private final OperationStats statfs = stats("statfs");
+   private final OperationStats open = stats("open");
+   private final OperationStats create = stats("create");
+   private final OperationStats read = stats("read");
+   private final OperationStats write = stats("write");
+   private final OperationStats flush = stats("flush");
+   private final OperationStats release = stats("release");
+   private final OperationStats fsync = stats("fsync");
+   private final OperationStats setxattr = stats("setxattr");
+   private final OperationStats getxattr = stats("getxattr");
+   private final OperationStats listxattr = stats("listxattr");
+   private final OperationStats removexattr = stats("removexattr");
+
+
+   public InstrumentedFuseFS(FuseFS fuseFS)
+   {
+      this.fuseFS = fuseFS;
+   }
+
+   private OperationStats stats(String operation)
+   {
+      OperationStats s = new OperationStats(operation);
+      stats.put(operation, s);
+      return s;
+   }
+
+   public Collection<OperationStats> getStats()
+   {
+      return stats.values();
+   }
+
+   public OperationStats getStats(String operation)
+   {
+      return stats.get(operation);
+   }
+
+   /**
+    * Registers an MBean per operation, and one for the path cache of a FilesystemToFuseFSAdapter,
+    * with the platform MBeanServer.
+    *
+    * @param mount the value of the <code>mount</code> key of the MBean names, usually the mount point
+    */
+   public synchronized void registerMBeans(String mount) throws JMException
+   {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+      for (OperationStats s : stats.values())
+      {
+         ObjectName name = new ObjectName("fuse:type=Operation,mount=" + ObjectName.quote(mount) + ",name=" + s.getOperation());
+         server.registerMBean(s, name);
+         registered.add(name);
+      }
+
+      if (fuseFS instanceof FilesystemToFuseFSAdapter)
+      {
+         ObjectName name = new ObjectName("fuse:type=PathCache,mount=" + ObjectName.quote(mount));
+         server.registerMBean(((FilesystemToFuseFSAdapter) fuseFS).getPathDecoder(), name);
+         registered.add(name);
+      }
+   }
+
+   public synchronized void unregisterMBeans()
+   {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+      for (ObjectName name : registered)
+      {
+         try
+         {
+            server.unregisterMBean(name);
+         }
+         catch (JMException e)
+         {
+            // already unregistered
+         }
+      }
+
+      registered.clear();
+   }
+
+   //
+   // FuseFS implementation
+
+   public int getattr(ByteBuffer path, FuseGetattrSetter getattrSetter)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.getattr(path, getattrSetter);
+      getattr.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int getattr(ByteBuffer path, ByteBuffer attr)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.getattr(path, attr);
+      getattr.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int fgetattr(ByteBuffer path, long fh, ByteBuffer attr)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.fgetattr(path, fh, attr);
+      fgetattr.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public boolean isImplemented(String methodName)
+   {
+      return fuseFS.isImplemented(methodName);
+   }
+
+   public int readlink(ByteBuffer path, ByteBuffer link)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.readlink(path, link);
+      readlink.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int getdir(ByteBuffer path, FuseFSDirFiller dirFiller)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.getdir(path, dirFiller);
+      getdir.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int readdir(ByteBuffer path, long fh, long offset, FuseFSFillDir fillDir)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.readdir(path, fh, offset, fillDir);
+      readdir.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int readdirplus(ByteBuffer path, long fh, long offset, FuseFSFillDir fillDir)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.readdirplus(path, fh, offset, fillDir);
+      readdirplus.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int mknod(ByteBuffer path, int mode, int rdev)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.mknod(path, mode, rdev);
+      mknod.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int mkdir(ByteBuffer path, int mode)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.mkdir(path, mode);
+      mkdir.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int unlink(ByteBuffer path)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.unlink(path);
+      unlink.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int rmdir(ByteBuffer path)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.rmdir(path);
+      rmdir.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int symlink(ByteBuffer from, ByteBuffer to)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.symlink(from, to);
+      symlink.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int rename(ByteBuffer from, ByteBuffer to)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.rename(from, to);
+      rename.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int link(ByteBuffer from, ByteBuffer to)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.link(from, to);
+      link.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int chmod(ByteBuffer path, int mode)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.chmod(path, mode);
+      chmod.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int chown(ByteBuffer path, int uid, int gid)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.chown(path, uid, gid);
+      chown.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int truncate(ByteBuffer path, long size)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.truncate(path, size);
+      truncate.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int ftruncate(ByteBuffer path, long fh, long size)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.ftruncate(path, fh, size);
+      ftruncate.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int utime(ByteBuffer path, int atime, int mtime)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.utime(path, atime, mtime);
+      utime.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int statfs(FuseStatfsSetter statfsSetter)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.statfs(statfsSetter);
+      statfs.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int open(ByteBuffer path, int flags, FuseOpenSetter openSetter)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.open(path, flags, openSetter);
+      open.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int create(ByteBuffer path, int mode, int flags, FuseOpenSetter openSetter)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.create(path, mode, flags, openSetter);
+      create.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int read(ByteBuffer path, long fh, ByteBuffer buf, long offset)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.read(path, fh, buf, offset);
+      read.record(System.nanoTime() - start, errno, (errno == 0)? buf.position() : 0);
+      return errno;
+   }
+
+   public int readBuffer(ByteBuffer path, long fh, ByteBuffer buf, long offset, FuseBufferSetter bufferSetter)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.readBuffer(path, fh, buf, offset, bufferSetter);
+      long bytes = 0;
+      if (errno == 0)
+      {
+         ByteBuffer data = (bufferSetter instanceof FuseBuffer)? ((FuseBuffer) bufferSetter).buffer : null;
+         bytes = (data != null)? Math.min(data.remaining(), buf.remaining()) : buf.position();
+      }
+      read.record(System.nanoTime() - start, errno, bytes);
+      return errno;
+   }
+
+   public int readRegion(ByteBuffer path, long fh, ByteBuffer buf, long offset, FuseRegionSetter regionSetter)
+   {
+      long start = System.nanoTime();
+      int size = buf.remaining();
+      int errno = fuseFS.readRegion(path, fh, buf, offset, regionSetter);
+      FuseRegion region = (regionSetter instanceof FuseRegion)? (FuseRegion) regionSetter : null;
+      long bytes = 0;
+      if (errno == 0)
+         bytes = (region != null && region.fd != null)? Math.min(region.length, size) : buf.position();
+      read.record(System.nanoTime() - start, errno, bytes);
+      return errno;
+   }
+
+   public int write(ByteBuffer path, long fh, boolean isWritepage, ByteBuffer buf, long offset)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.write(path, fh, isWritepage, buf, offset);
+      write.record(System.nanoTime() - start, errno, (errno == 0)? buf.position() : 0);
+      return errno;
+   }
+
+   // without a region the call falls back to write(), which is recorded there
+   public int writeRegion(ByteBuffer path, long fh, long offset, int size, FuseRegionSetter regionSetter)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.writeRegion(path, fh, offset, size, regionSetter);
+      FuseRegion region = (regionSetter instanceof FuseRegion)? (FuseRegion) regionSetter : null;
+      if (errno != 0)
+         write.record(System.nanoTime() - start, errno, 0);
+      else if (region != null && region.fd != null)
+         write.record(System.nanoTime() - start, errno, Math.min(region.length, size));
+      return errno;
+   }
+
+   public int flush(ByteBuffer path, long fh)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.flush(path, fh);
+      flush.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int release(ByteBuffer path, long fh, int flags)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.release(path, fh, flags);
+      release.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int fsync(ByteBuffer path, long fh, boolean isDatasync)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.fsync(path, fh, isDatasync);
+      fsync.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int setxattr(ByteBuffer path, ByteBuffer name, ByteBuffer value, int flags)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.setxattr(path, name, value, flags);
+      setxattr.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int getxattr(ByteBuffer path, ByteBuffer name, FuseBufferSetter valueSetter)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.getxattr(path, name, valueSetter);
+      getxattr.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int listxattr(ByteBuffer path, FuseBufferSetter listSetter)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.listxattr(path, listSetter);
+      listxattr.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+
+   public int removexattr(ByteBuffer path, ByteBuffer name)
+   {
+      long start = System.nanoTime();
+      int errno = fuseFS.removexattr(path, name);
+      removexattr.record(System.nanoTime() - start, errno, 0);
+      return errno;
+   }
+}
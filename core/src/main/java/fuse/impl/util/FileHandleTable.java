@@ -0,0 +1,200 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Maps the file handles returned by <code>open()</code> to longs that the native side keeps in
+ * <code>fuse_file_info.fh</code>, so open files need no JNI global references.
+ *
+ * A handle is the slot index + 1 in the low 32 bits and the generation of the slot in the high
+ * 32 bits. Freeing a slot bumps its generation, so a stale handle never finds the object that
+ * reuses the slot. Free slots are kept on a lock-free stack whose head carries a tag against ABA;
+ * only adding a new segment of slots takes a lock. The handle of null is 0.
+ */
+public class FileHandleTable
+{
+   private static final int SEGMENT_BITS = 10;
+   private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+   private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+   // copy on write, a segment once published never moves
+   private volatile Segment[] segments = new Segment[0];
+
+   // number of slots ever handed out, slots below it exist
+   private final AtomicInteger used = new AtomicInteger();
+
+   // top of the free stack: tag in the high 32 bits, index + 1 in the low 32 bits (0 if empty)
+   private final AtomicLong freeHead = new AtomicLong();
+
+   private final AtomicInteger size = new AtomicInteger();
+
+
+   /**
+    * @return the handle of <code>fh</code>, 0 if <code>fh</code> is null
+    */
+   public long put(Object fh)
+   {
+      if (fh == null)
+         return 0L;
+
+      int index = pop();
+      if (index < 0)
+      {
+         index = used.getAndIncrement();
+         if (index < 0)
+            throw new IllegalStateException("file handle table is full");
+      }
+
+      Segment s = segment(index);
+      int i = index & SEGMENT_MASK;
+      s.values.set(i, fh);
+      size.incrementAndGet();
+
+      return ((long) s.generations.get(i) << 32) | (index + 1L);
+   }
+
+   /**
+    * @return the object of <code>handle</code> or null if the handle is 0, unknown or released
+    */
+   public Object get(long handle)
+   {
+      int index = (int) handle - 1;
+      Segment s = lookup(index);
+      if (s == null)
+         return null;
+
+      int i = index & SEGMENT_MASK;
+
+      Object fh = s.values.get(i);
+      // the slot may have been released and reused since the value was read
+      if (s.generations.get(i) != (int) (handle >>> 32))
+         return null;
+
+      return fh;
+   }
+
+   /**
+    * Releases <code>handle</code>, only the first call for a handle finds the object.
+    *
+    * @return the object of <code>handle</code> or null if the handle is 0, unknown or released
+    */
+   public Object remove(long handle)
+   {
+      int index = (int) handle - 1;
+      Segment s = lookup(index);
+      if (s == null)
+         return null;
+
+      int i = index & SEGMENT_MASK;
+      int generation = (int) (handle >>> 32);
+
+      if (!s.generations.compareAndSet(i, generation, generation + 1))
+         return null;
+
+      Object fh = s.values.getAndSet(i, null);
+      size.decrementAndGet();
+      push(index);
+
+      return fh;
+   }
+
+   /**
+    * @return number of open handles
+    */
+   public int size()
+   {
+      return size.get();
+   }
+
+
+   private int pop()
+   {
+      while (true)
+      {
+         long head = freeHead.get();
+         int top = (int) head;
+         if (top == 0)
+            return -1;
+
+         int index = top - 1;
+         int next = segments[index >>> SEGMENT_BITS].next.get(index & SEGMENT_MASK);
+         long newHead = (((head >>> 32) + 1) << 32) | (next & 0xFFFFFFFFL);
+
+         if (freeHead.compareAndSet(head, newHead))
+            return index;
+      }
+   }
+
+   private void push(int index)
+   {
+      AtomicIntegerArray next = segments[index >>> SEGMENT_BITS].next;
+
+      while (true)
+      {
+         long head = freeHead.get();
+         next.set(index & SEGMENT_MASK, (int) head);
+         long newHead = (((head >>> 32) + 1) << 32) | (index + 1L);
+
+         if (freeHead.compareAndSet(head, newHead))
+            return;
+      }
+   }
+
+   // the segment of a slot that was handed out or null
+   private Segment lookup(int index)
+   {
+      if (index < 0 || index >= used.get())
+         return null;
+
+      Segment[] current = segments;
+      int n = index >>> SEGMENT_BITS;
+
+      return (n < current.length)? current[n] : null;
+   }
+
+   private Segment segment(int index)
+   {
+      int n = index >>> SEGMENT_BITS;
+      Segment[] current = segments;
+
+      return (n < current.length)? current[n] : grow(n);
+   }
+
+   private synchronized Segment grow(int n)
+   {
+      Segment[] current = segments;
+
+      if (n >= current.length)
+      {
+         Segment[] grown = new Segment[Math.max(n + 1, current.length * 2)];
+         System.arraycopy(current, 0, grown, 0, current.length);
+         for (int i = current.length; i < grown.length; i++)
+            grown[i] = new Segment();
+         segments = grown;
+         current = grown;
+      }
+
+      return current[n];
+   }
+
+
+   private static final class Segment
+   {
+      final AtomicReferenceArray<Object> values = new AtomicReferenceArray<Object>(SEGMENT_SIZE);
+      final AtomicIntegerArray generations = new AtomicIntegerArray(SEGMENT_SIZE);
+      final AtomicIntegerArray next = new AtomicIntegerArray(SEGMENT_SIZE);
+   }
+}
@@ -2,6 +2,7 @@ package fuse.impl.util;
 
 import java.lang.reflect.Method;
 
+import fuse.CachingFilesystem;
 import fuse.Filesystem;
 
 public class FilesystemImplCheck {
@@ -10,23 +11,62 @@ public class FilesystemImplCheck {
 	
 	private final static Method[] defaultMethods = Filesystem.class.getMethods();
 	
-	private static Method getFirstMethod(String name) throws NoSuchMethodException {
-		for(Method m : defaultMethods) {
-			if(m.getName().equals(name)) {
-				return m;
-			}
+	/**
+	 * Same as <code>isImplemented(fs.getClass(), name)</code> but looks through decorators
+	 * like CachingFilesystem that override every operation.
+	 */
+	public static boolean isImplemented(Filesystem fs, String name) {
+		while(fs instanceof CachingFilesystem) {
+			fs = ((CachingFilesystem) fs).getDelegate();
 		}
-		throw new NoSuchMethodException("No method " + name);
+		return isImplemented(fs.getClass(), name);
 	}
-	
+
+	/**
+	 * Checks whether the given Filesystem subclass overrides the named operation. Operations
+	 * with several overloads (getattr) count as implemented if any of the overloads is overridden.
+	 */
 	public static boolean isImplemented(Class<? extends Filesystem> cls, String name) {
+		boolean found = false;
 		try {
-			Method defaultMethod = getFirstMethod(name);
-			Method currentMethod = cls.getMethod(name, defaultMethod.getParameterTypes());
-	
-			return currentMethod.equals(defaultMethod);
+			for(Method defaultMethod : defaultMethods) {
+				if(!defaultMethod.getName().equals(name)) {
+					continue;
+				}
+				found = true;
+				Method currentMethod = cls.getMethod(name, defaultMethod.getParameterTypes());
+				if(!currentMethod.equals(defaultMethod)) {
+					return true;
+				}
+			}
 		} catch (NoSuchMethodException e) {
 			throw new IllegalArgumentException("Invalid method name", e);
 		}
+		if(!found) {
+			throw new IllegalArgumentException("No method " + name);
+		}
+		return false;
+	}
+
+	/**
+	 * Same as <code>isOverridden(fs.getClass(), name, parameterTypes)</code> but looks through
+	 * decorators like CachingFilesystem.
+	 */
+	public static boolean isOverridden(Filesystem fs, String name, Class<?>... parameterTypes) {
+		while(fs instanceof CachingFilesystem) {
+			fs = ((CachingFilesystem) fs).getDelegate();
+		}
+		return isOverridden(fs.getClass(), name, parameterTypes);
+	}
+
+	/**
+	 * Checks whether the given Filesystem subclass overrides one particular overload.
+	 */
+	public static boolean isOverridden(Class<? extends Filesystem> cls, String name, Class<?>... parameterTypes) {
+		try {
+			return cls.getMethod(name, parameterTypes).getDeclaringClass() != Filesystem.class;
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("No method " + name, e);
+		}
 	}
 }
@@ -0,0 +1,105 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A lock-free log-linear histogram of non negative values (latencies in nanoseconds).
+ * Every power of two range is split into 8 buckets and a percentile is reported as the middle
+ * of its bucket, so it is within 6.25% of the real value. Recording is a single atomic increment.
+ */
+public class LatencyHistogram
+{
+   private static final int SUB_BITS = 3;
+   private static final int SUB_BUCKETS = 1 << SUB_BITS;
+   private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+
+   public void record(long value)
+   {
+      counts.incrementAndGet(index(value < 0? 0 : value));
+   }
+
+   /**
+    * @param q the quantile between 0.0 and 1.0 (0.999 for p999)
+    * @return middle of the bucket containing the quantile or 0 if nothing was recorded
+    */
+   public long percentile(double q)
+   {
+      long[] snapshot = new long[BUCKETS];
+      long total = 0;
+
+      for (int i = 0; i < BUCKETS; i++)
+      {
+         snapshot[i] = counts.get(i);
+         total += snapshot[i];
+      }
+
+      if (total == 0)
+         return 0;
+
+      long rank = (long) Math.ceil(q * total);
+      if (rank < 1)
+         rank = 1;
+
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++)
+      {
+         seen += snapshot[i];
+         if (seen >= rank)
+            return middle(i);
+      }
+
+      return middle(BUCKETS - 1);
+   }
+
+   public void reset()
+   {
+      for (int i = 0; i < BUCKETS; i++)
+         counts.set(i, 0);
+   }
+
+
+   static int index(long value)
+   {
+      if (value < SUB_BUCKETS)
+         return (int) value;
+
+      int magnitude = 63 - Long.numberOfLeadingZeros(value);
+      int sub = (int) ((value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1));
+
+      return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+   }
+
+   static long lowerBound(int index)
+   {
+      if (index < SUB_BUCKETS)
+         return index;
+
+      int magnitude = index / SUB_BUCKETS + SUB_BITS - 1;
+      int sub = index % SUB_BUCKETS;
+
+      return ((long) (SUB_BUCKETS + sub)) << (magnitude - SUB_BITS);
+   }
+
+   static long middle(int index)
+   {
+      if (index < SUB_BUCKETS)
+         return index;
+
+      int magnitude = index / SUB_BUCKETS + SUB_BITS - 1;
+
+      return lowerBound(index) + ((1L << (magnitude - SUB_BITS)) >> 1);
+   }
+}
@@ -0,0 +1,158 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import fuse.Errno;
+
+
+/**
+ * Counters and a latency histogram of a single FuseFS operation. All updates are lock-free.
+ */
+public class OperationStats implements OperationStatsMBean
+{
+   // errno values above this are counted as MAX_ERRNO
+   private static final int MAX_ERRNO = 255;
+
+   private final String operation;
+   private final AtomicLong count = new AtomicLong();
+   private final AtomicLong errors = new AtomicLong();
+   private final AtomicLongArray errorsByErrno = new AtomicLongArray(MAX_ERRNO + 1);
+   private final AtomicLong bytes = new AtomicLong();
+   private final AtomicLong totalNanos = new AtomicLong();
+   private final AtomicLong maxNanos = new AtomicLong();
+   private final LatencyHistogram latency = new LatencyHistogram();
+
+
+   public OperationStats(String operation)
+   {
+      this.operation = operation;
+   }
+
+   /**
+    * @param nanos duration of the call
+    * @param errno 0 for success or errno returned to FUSE
+    * @param nbytes bytes transferred by the call
+    */
+   public void record(long nanos, int errno, long nbytes)
+   {
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      latency.record(nanos);
+
+      long max;
+      while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos))
+         ;
+
+      if (errno != 0)
+      {
+         errors.incrementAndGet();
+         errorsByErrno.incrementAndGet((errno < 0 || errno > MAX_ERRNO)? MAX_ERRNO : errno);
+      }
+
+      if (nbytes > 0)
+         bytes.addAndGet(nbytes);
+   }
+
+   //
+   // OperationStatsMBean implementation
+
+   public String getOperation()
+   {
+      return operation;
+   }
+
+   public long getCount()
+   {
+      return count.get();
+   }
+
+   public long getErrors()
+   {
+      return errors.get();
+   }
+
+   public String[] getErrorsByErrno()
+   {
+      List<String> list = new ArrayList<String>();
+
+      for (int i = 1; i <= MAX_ERRNO; i++)
+      {
+         long n = errorsByErrno.get(i);
+         if (n != 0)
+            list.add(errnoName(i) + "=" + n);
+      }
+
+      return list.toArray(new String[list.size()]);
+   }
+
+   public long getBytes()
+   {
+      return bytes.get();
+   }
+
+   public double getMeanLatencyMicros()
+   {
+      long n = count.get();
+      return (n == 0)? 0.0 : totalNanos.get() / 1000.0 / n;
+   }
+
+   public long getMaxLatencyMicros()
+   {
+      return maxNanos.get() / 1000;
+   }
+
+   public long getP50LatencyMicros()
+   {
+      return latency.percentile(0.5) / 1000;
+   }
+
+   public long getP99LatencyMicros()
+   {
+      return latency.percentile(0.99) / 1000;
+   }
+
+   public long getP999LatencyMicros()
+   {
+      return latency.percentile(0.999) / 1000;
+   }
+
+   public void reset()
+   {
+      count.set(0);
+      errors.set(0);
+      for (int i = 0; i <= MAX_ERRNO; i++)
+         errorsByErrno.set(i, 0);
+      bytes.set(0);
+      totalNanos.set(0);
+      maxNanos.set(0);
+      latency.reset();
+   }
+
+   public String toString()
+   {
+      return operation + "[count=" + getCount() + ", errors=" + getErrors() + ", bytes=" + getBytes()
+         + ", p50=" + getP50LatencyMicros() + "us, p99=" + getP99LatencyMicros() + "us, p999=" + getP999LatencyMicros() + "us]";
+   }
+
+
+   private static String errnoName(int errno)
+   {
+      for (Errno e : Errno.values())
+         if (e.getErrno() == errno)
+            return e.name();
+
+      return String.valueOf(errno);
+   }
+}
@@ -0,0 +1,42 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl.util;
+
+
+/**
+ * JMX view of the statistics of a single FuseFS operation. Latencies are in microseconds.
+ */
+public interface OperationStatsMBean
+{
+   public String getOperation();
+
+   public long getCount();
+
+   public long getErrors();
+
+   /**
+    * @return non-zero error counts as "ERRNO=count" strings
+    */
+   public String[] getErrorsByErrno();
+
+   public long getBytes();
+
+   public double getMeanLatencyMicros();
+
+   public long getMaxLatencyMicros();
+
+   public long getP50LatencyMicros();
+
+   public long getP99LatencyMicros();
+
+   public long getP999LatencyMicros();
+
+   public void reset();
+}
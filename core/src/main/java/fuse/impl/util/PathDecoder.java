@@ -0,0 +1,338 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Decodes the path and name ByteBuffers passed from the native side into Strings.
+ *
+ * For UTF-8, US-ASCII and ISO-8859-1 the bytes are decoded directly into a per-thread char
+ * array, other charsets (and malformed UTF-8) go through the Charset. Optionally the decoded
+ * Strings are kept in a bounded cache keyed by the raw bytes, so the paths that repeat all the
+ * time are decoded only once. When the cache is full an arbitrary entry is evicted.
+ */
+public class PathDecoder implements PathDecoderMBean
+{
+   private static final int ENCODING_OTHER = 0;
+   private static final int ENCODING_UTF8 = 1;
+   private static final int ENCODING_ASCII = 2;
+   private static final int ENCODING_LATIN1 = 3;
+
+   private final Charset cs;
+   private final int encoding;
+   private final int cacheSize;
+   private final ConcurrentMap<Key, String> cache;
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+
+   private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>()
+   {
+      protected Scratch initialValue()
+      {
+         return new Scratch();
+      }
+   };
+
+
+   /**
+    * @param cs the charset of the paths
+    * @param cacheSize max. number of cached paths, 0 disables the cache
+    */
+   public PathDecoder(Charset cs, int cacheSize)
+   {
+      this.cs = cs;
+      this.cacheSize = cacheSize;
+      this.cache = (cacheSize > 0)? new ConcurrentHashMap<Key, String>(cacheSize * 4 / 3 + 1) : null;
+
+      String name = cs.name();
+      if (name.equals("UTF-8"))
+         encoding = ENCODING_UTF8;
+      else if (name.equals("US-ASCII"))
+         encoding = ENCODING_ASCII;
+      else if (name.equals("ISO-8859-1"))
+         encoding = ENCODING_LATIN1;
+      else
+         encoding = ENCODING_OTHER;
+   }
+
+   /**
+    * Decodes the remaining bytes of <code>buf</code>. The position of the buffer is not changed.
+    *
+    * @return null if <code>buf</code> is null (operations on open files mounted with null paths)
+    */
+   public String decode(ByteBuffer buf)
+   {
+      if (buf == null)
+         return null;
+
+      Scratch s = scratch.get();
+      int length = buf.remaining();
+      byte[] bytes = s.bytes(length);
+
+      int pos = buf.position();
+      buf.get(bytes, 0, length);
+      buf.position(pos);
+
+      if (cache == null)
+         return decode(s, bytes, length);
+
+      Key probe = s.probe;
+      probe.set(bytes, length);
+
+      String str = cache.get(probe);
+      if (str != null)
+      {
+         hits.incrementAndGet();
+         return str;
+      }
+
+      misses.incrementAndGet();
+
+      str = decode(s, bytes, length).intern();
+
+      if (cache.size() >= cacheSize)
+         evictOne();
+
+      cache.put(probe.copy(), str);
+
+      return str;
+   }
+
+   //
+   // PathDecoderMBean implementation
+
+   public long getHits()
+   {
+      return hits.get();
+   }
+
+   public long getMisses()
+   {
+      return misses.get();
+   }
+
+   public int getCacheSize()
+   {
+      return (cache == null)? 0 : cache.size();
+   }
+
+   public int getMaxCacheSize()
+   {
+      return cacheSize;
+   }
+
+   public void clearCache()
+   {
+      if (cache != null)
+         cache.clear();
+   }
+
+
+   private void evictOne()
+   {
+      Iterator<Key> i = cache.keySet().iterator();
+      if (i.hasNext())
+      {
+         i.next();
+         i.remove();
+      }
+   }
+
+   private String decode(Scratch s, byte[] bytes, int length)
+   {
+      char[] chars = s.chars(length);
+      int n;
+
+      switch (encoding)
+      {
+         case ENCODING_UTF8:
+            n = decodeUTF8(bytes, length, chars);
+            break;
+
+         case ENCODING_ASCII:
+            n = decodeASCII(bytes, length, chars);
+            break;
+
+         case ENCODING_LATIN1:
+            for (int i = 0; i < length; i++)
+               chars[i] = (char) (bytes[i] & 0xFF);
+            n = length;
+            break;
+
+         default:
+            n = -1;
+      }
+
+      if (n < 0)
+         return cs.decode(ByteBuffer.wrap(bytes, 0, length)).toString();
+
+      return new String(chars, 0, n);
+   }
+
+   private static int decodeASCII(byte[] bytes, int length, char[] chars)
+   {
+      for (int i = 0; i < length; i++)
+      {
+         byte b = bytes[i];
+         if (b < 0)
+            return -1;
+         chars[i] = (char) b;
+      }
+
+      return length;
+   }
+
+   /**
+    * @return number of chars decoded or -1 if the input is not well formed UTF-8
+    */
+   private static int decodeUTF8(byte[] bytes, int length, char[] chars)
+   {
+      int i = 0;
+      int n = 0;
+
+      while (i < length)
+      {
+         int b0 = bytes[i];
+
+         if (b0 >= 0)
+         {
+            chars[n++] = (char) b0;
+            i++;
+         }
+         else if ((b0 & 0xE0) == 0xC0 && i + 1 < length)
+         {
+            int b1 = bytes[i + 1];
+            if ((b1 & 0xC0) != 0x80 || (b0 & 0x1E) == 0)
+               return -1;
+            chars[n++] = (char) (((b0 & 0x1F) << 6) | (b1 & 0x3F));
+            i += 2;
+         }
+         else if ((b0 & 0xF0) == 0xE0 && i + 2 < length)
+         {
+            int b1 = bytes[i + 1];
+            int b2 = bytes[i + 2];
+            if ((b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80)
+               return -1;
+            int c = ((b0 & 0x0F) << 12) | ((b1 & 0x3F) << 6) | (b2 & 0x3F);
+            // overlong encodings and surrogates
+            if (c < 0x800 || (c >= 0xD800 && c <= 0xDFFF))
+               return -1;
+            chars[n++] = (char) c;
+            i += 3;
+         }
+         else if ((b0 & 0xF8) == 0xF0 && i + 3 < length)
+         {
+            int b1 = bytes[i + 1];
+            int b2 = bytes[i + 2];
+            int b3 = bytes[i + 3];
+            if ((b1 & 0xC0) != 0x80 || (b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80)
+               return -1;
+            int c = ((b0 & 0x07) << 18) | ((b1 & 0x3F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F);
+            if (c < 0x10000 || c > 0x10FFFF)
+               return -1;
+            c -= 0x10000;
+            chars[n++] = (char) (0xD800 | (c >> 10));
+            chars[n++] = (char) (0xDC00 | (c & 0x3FF));
+            i += 4;
+         }
+         else
+         {
+            return -1;
+         }
+      }
+
+      return n;
+   }
+
+
+   /**
+    * per-thread buffers, the UTF-8 decoder never produces more chars than there are bytes
+    */
+   private static final class Scratch
+   {
+      private byte[] bytes = new byte[256];
+      private char[] chars = new char[256];
+      final Key probe = new Key();
+
+      byte[] bytes(int length)
+      {
+         if (bytes.length < length)
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+         return bytes;
+      }
+
+      char[] chars(int length)
+      {
+         if (chars.length < length)
+            chars = new char[Math.max(length, chars.length * 2)];
+         return chars;
+      }
+   }
+
+   /**
+    * cache key over raw path bytes, the per-thread probe instance is reused for lookups
+    */
+   private static final class Key
+   {
+      private byte[] bytes;
+      private int length;
+      private int hash;
+
+      void set(byte[] bytes, int length)
+      {
+         this.bytes = bytes;
+         this.length = length;
+
+         int h = 1;
+         for (int i = 0; i < length; i++)
+            h = 31 * h + bytes[i];
+         this.hash = h;
+      }
+
+      Key copy()
+      {
+         Key key = new Key();
+         key.bytes = new byte[length];
+         System.arraycopy(bytes, 0, key.bytes, 0, length);
+         key.length = length;
+         key.hash = hash;
+         return key;
+      }
+
+      public int hashCode()
+      {
+         return hash;
+      }
+
+      public boolean equals(Object o)
+      {
+         if (!(o instanceof Key))
+            return false;
+
+         Key k = (Key) o;
+         if (k.hash != hash || k.length != length)
+            return false;
+
+         for (int i = 0; i < length; i++)
+            if (k.bytes[i] != bytes[i])
+               return false;
+
+         return true;
+      }
+   }
+}
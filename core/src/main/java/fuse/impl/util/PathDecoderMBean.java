@@ -0,0 +1,28 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl.util;
+
+
+/**
+ * JMX view of the decoded path cache of a PathDecoder. The counters stay 0 while the cache is
+ * disabled (<code>-Dfuse.pathCacheSize=0</code>, the default).
+ */
+public interface PathDecoderMBean
+{
+   public long getHits();
+
+   public long getMisses();
+
+   public int getCacheSize();
+
+   public int getMaxCacheSize();
+
+   public void clearCache();
+}
@@ -0,0 +1,689 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+//
+// In-process harness for the high-level bindings.
+//
+// Creates a JVM, instantiates a Java filesystem and calls the javafs_* callbacks of the
+// operations table directly from N pthreads, exactly as libfuse would, but without /dev/fuse
+// and the kernel round trip. For every operation it reports the mean latency of a call and
+// the number of Java heap bytes allocated per call (by the bindings and the Java filesystem
+// together), so the cost of the bridge can be measured separately from the cost of FUSE.
+//
+// usage: javafs_harness -Cfuse.examples.fake.FakeFilesystem [-J<jvm option>]... [options]
+//
+//    -C<class>   fuse.Filesystem (wrapped into FilesystemToFuseFSAdapter) or fuse.impl.FuseFS class
+//    -J<option>  JVM option, e.g. -J-Djava.class.path=... (repeatable)
+//    -t<n>       number of threads (default 1)
+//    -n<n>       calls per thread (default 100000)
+//    -w<n>       warm-up calls per thread (default 10000)
+//    -o<ops>     comma separated operations (default all of them), one of: getattr, readlink,
+//                getdir, readdir, open, read, write, statfs, getxattr, listxattr
+//    -p<path>    path of a file (default /README)
+//    -d<path>    path of a directory (default /)
+//    -l<path>    path of a symlink (default /link)
+//    -x<name>    name of an extended attribute (default description)
+//    -s<size>    size of read/write/xattr buffers (default 4096)
+//
+// The harness is built by the nar plugin as a test executable that is not run with the tests.
+// To build it by hand (from the core directory, as a single command):
+//
+//    gcc -O2 -D_FILE_OFFSET_BITS=64 -DJAVAFS_HARNESS -Isrc/main/c -I$JAVA_HOME/include -I$JAVA_HOME/include/linux
+//        -o javafs_harness src/test/c/javafs_harness.c src/main/c/javafs.c src/main/c/javafs_loop.c src/main/c/javafs_bindings.c
+//        -L$JAVA_HOME/lib/server -ljvm -lfuse -lpthread -lrt
+
+#include "javafs.h"
+
+#include <time.h>
+
+
+// defined in javafs.c, registered explicitly because it is not looked up in the executable
+JNIEXPORT jboolean JNICALL Java_fuse_FuseFSFillDir_fill
+  (JNIEnv *env, jobject jFillDir, jobject jName, jlong inode, jint mode, jlong nextOffset, jlong buf, jlong fillDir);
+
+
+#define OP_GETATTR    0
+#define OP_READLINK   1
+#define OP_GETDIR     2
+#define OP_READDIR    3
+#define OP_OPEN       4
+#define OP_READ       5
+#define OP_WRITE      6
+#define OP_STATFS     7
+#define OP_GETXATTR   8
+#define OP_LISTXATTR  9
+#define OP_COUNT     10
+
+static const char *opNames[OP_COUNT] =
+{
+   "getattr", "readlink", "getdir", "readdir", "open", "read", "write", "statfs", "getxattr", "listxattr"
+};
+
+static struct
+{
+   int threads;
+   long iterations;
+   long warmup;
+   int ops[OP_COUNT];
+   const char *path;
+   const char *dir;
+   const char *link;
+   const char *xattr;
+   size_t size;
+
+} config = { 1, 100000, 10000, { 0 }, "/README", "/", "/link", "description", 4096 };
+
+static struct fuse_operations oper;
+
+// java.lang.management.ThreadMXBean of the JVM, NULL if per-thread allocation is not supported
+static jobject threadMXBean;
+static jmethodID getThreadAllocatedBytes;
+static jclass threadClass;
+static jmethodID currentThread;
+static jmethodID getId;
+
+
+typedef struct _harness_thread
+{
+   pthread_t thread;
+   int op;
+   long calls;
+   long errors;
+   int firstErrno;
+   long long nanos;
+   long long allocated;
+
+} harness_thread;
+
+static pthread_barrier_t startBarrier;
+
+
+//
+// helpers
+
+static long long now_nanos(void)
+{
+   struct timespec ts;
+
+   clock_gettime(CLOCK_MONOTONIC, &ts);
+
+   return (long long)ts.tv_sec * 1000000000LL + ts.tv_nsec;
+}
+
+
+// bytes allocated on the Java heap by the current thread so far or -1 if unknown
+static long long allocated_bytes(JNIEnv *env)
+{
+   jobject jThread = NULL;
+   jlong id;
+   jlong bytes = -1;
+
+   if (threadMXBean == NULL)
+      return -1;
+
+   while (1)
+   {
+      jThread = (*env)->CallStaticObjectMethod(env, threadClass, currentThread);
+      if ((*env)->ExceptionCheck(env)) break;
+
+      id = (*env)->CallLongMethod(env, jThread, getId);
+      if ((*env)->ExceptionCheck(env)) break;
+
+      bytes = (*env)->CallLongMethod(env, threadMXBean, getThreadAllocatedBytes, id);
+      break;
+   }
+
+   if ((*env)->ExceptionCheck(env))
+   {
+      (*env)->ExceptionClear(env);
+      bytes = -1;
+   }
+
+   if (jThread != NULL) (*env)->DeleteLocalRef(env, jThread);
+
+   return (long long)bytes;
+}
+
+
+static int alloc_allocation_counter(JNIEnv *env)
+{
+   jclass localThreadClass = NULL;
+   jclass factoryClass = NULL;
+   jclass beanClass = NULL;
+   jobject bean = NULL;
+   jmethodID getThreadMXBean;
+
+   while (1)
+   {
+      localThreadClass = (*env)->FindClass(env, "java/lang/Thread");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      threadClass = (*env)->NewGlobalRef(env, localThreadClass);
+      if ((*env)->ExceptionCheck(env)) break;
+
+      currentThread = (*env)->GetStaticMethodID(env, threadClass, "currentThread", "()Ljava/lang/Thread;");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      getId = (*env)->GetMethodID(env, threadClass, "getId", "()J");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      factoryClass = (*env)->FindClass(env, "java/lang/management/ManagementFactory");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      getThreadMXBean = (*env)->GetStaticMethodID(env, factoryClass, "getThreadMXBean", "()Ljava/lang/management/ThreadMXBean;");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      // HotSpot extension
+      beanClass = (*env)->FindClass(env, "com/sun/management/ThreadMXBean");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      getThreadAllocatedBytes = (*env)->GetMethodID(env, beanClass, "getThreadAllocatedBytes", "(J)J");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      bean = (*env)->CallStaticObjectMethod(env, factoryClass, getThreadMXBean);
+      if ((*env)->ExceptionCheck(env)) break;
+
+      if ((*env)->IsInstanceOf(env, bean, beanClass))
+         threadMXBean = (*env)->NewGlobalRef(env, bean);
+
+      break;
+   }
+
+   if ((*env)->ExceptionCheck(env))
+   {
+      (*env)->ExceptionClear(env);
+      threadMXBean = NULL;
+   }
+
+   if (bean != NULL) (*env)->DeleteLocalRef(env, bean);
+   if (beanClass != NULL) (*env)->DeleteLocalRef(env, beanClass);
+   if (factoryClass != NULL) (*env)->DeleteLocalRef(env, factoryClass);
+   if (localThreadClass != NULL) (*env)->DeleteLocalRef(env, localThreadClass);
+
+   if (threadMXBean == NULL)
+      printf("per-thread allocation counting is not supported by this JVM\n");
+
+   return threadClass != NULL;
+}
+
+
+static void free_allocation_counter(JNIEnv *env)
+{
+   if (threadMXBean != NULL)
+   {
+      (*env)->DeleteGlobalRef(env, threadMXBean);
+      threadMXBean = NULL;
+   }
+
+   if (threadClass != NULL)
+   {
+      (*env)->DeleteGlobalRef(env, threadClass);
+      threadClass = NULL;
+   }
+}
+
+
+// instantiate the filesystem class and wrap a fuse.Filesystem into FilesystemToFuseFSAdapter
+static int alloc_harness_filesystem(JNIEnv *env, const char *className)
+{
+   jclass fsClass = NULL;
+   jclass filesystemClass = NULL;
+   jclass adapterClass = NULL;
+   jobject fs = NULL;
+   jobject adapter = NULL;
+   jmethodID constructor;
+   char name[strlen(className) + 1];
+   int i;
+   int ok = 0;
+
+   // fuse.examples.Foo -> fuse/examples/Foo
+   for (i = 0; className[i]; i++)
+      name[i] = (className[i] == '.')? '/' : className[i];
+   name[i] = '\0';
+
+   while (1)
+   {
+      fsClass = (*env)->FindClass(env, name);
+      if ((*env)->ExceptionCheck(env)) break;
+
+      constructor = (*env)->GetMethodID(env, fsClass, "<init>", "()V");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      fs = (*env)->NewObject(env, fsClass, constructor);
+      if ((*env)->ExceptionCheck(env)) break;
+
+      filesystemClass = (*env)->FindClass(env, "fuse/Filesystem");
+      if ((*env)->ExceptionCheck(env)) break;
+
+      if ((*env)->IsInstanceOf(env, fs, filesystemClass))
+      {
+         adapterClass = (*env)->FindClass(env, "fuse/impl/FilesystemToFuseFSAdapter");
+         if ((*env)->ExceptionCheck(env)) break;
+
+         constructor = (*env)->GetMethodID(env, adapterClass, "<init>", "(Lfuse/Filesystem;Lorg/apache/commons/logging/Log;)V");
+         if ((*env)->ExceptionCheck(env)) break;
+
+         adapter = (*env)->NewObject(env, adapterClass, constructor, fs, NULL);
+         if ((*env)->ExceptionCheck(env)) break;
+
+         ok = retain_fuseFS(env, adapter);
+      }
+      else
+      {
+         ok = retain_fuseFS(env, fs);
+      }
+
+      break;
+   }
+
+   if ((*env)->ExceptionCheck(env))
+   {
+      (*env)->ExceptionDescribe(env);
+      (*env)->ExceptionClear(env);
+   }
+
+   if (adapter != NULL) (*env)->DeleteLocalRef(env, adapter);
+   if (adapterClass != NULL) (*env)->DeleteLocalRef(env, adapterClass);
+   if (filesystemClass != NULL) (*env)->DeleteLocalRef(env, filesystemClass);
+   if (fs != NULL) (*env)->DeleteLocalRef(env, fs);
+   if (fsClass != NULL) (*env)->DeleteLocalRef(env, fsClass);
+
+   return ok;
+}
+
+
+static int register_natives(JNIEnv *env)
+{
+   JNINativeMethod fill = { "fill", "(Ljava/nio/ByteBuffer;JIJJJ)Z", (void *)Java_fuse_FuseFSFillDir_fill };
+   jclass fillDirClass;
+   int ok;
+
+   fillDirClass = (*env)->FindClass(env, "fuse/FuseFSFillDir");
+   ok = fillDirClass != NULL && (*env)->RegisterNatives(env, fillDirClass, &fill, 1) == 0;
+
+   if ((*env)->ExceptionCheck(env))
+   {
+      (*env)->ExceptionDescribe(env);
+      (*env)->ExceptionClear(env);
+      ok = 0;
+   }
+
+   if (fillDirClass != NULL) (*env)->DeleteLocalRef(env, fillDirClass);
+
+   return ok;
+}
+
+
+//
+// fillers standing in for libfuse, they only count the entries
+
+static int harness_dirfil(fuse_dirh_t h, const char *name, int type, ino_t ino)
+{
+   (*(long *)h)++;
+   return 0;
+}
+
+
+static int harness_fill_dir(void *buf, const char *name, const struct stat *stbuf, off_t off)
+{
+   (*(long *)buf)++;
+   return 0;
+}
+
+
+//
+// a single call of an operation, returns 0 or -errno
+
+static int call_op(int op, char *data, struct fuse_file_info *ffi)
+{
+   struct stat stbuf;
+   struct statvfs fst;
+   long entries = 0;
+   int res;
+
+   switch (op)
+   {
+      case OP_GETATTR:
+         return oper.getattr(config.path, &stbuf);
+
+      case OP_READLINK:
+         return oper.readlink(config.link, data, config.size);
+
+      case OP_GETDIR:
+         return oper.getdir(config.dir, (fuse_dirh_t)&entries, harness_dirfil);
+
+      case OP_READDIR:
+         return oper.readdir(config.dir, &entries, harness_fill_dir, 0, ffi);
+
+      case OP_OPEN:
+      {
+         struct fuse_file_info openFfi;
+
+         memset(&openFfi, 0, sizeof(openFfi));
+         openFfi.flags = O_RDONLY;
+
+         res = oper.open(config.path, &openFfi);
+         if (res == 0 && oper.release != NULL)
+            oper.release(config.path, &openFfi);
+
+         return res;
+      }
+
+      case OP_READ:
+         res = oper.read(config.path, data, config.size, 0, ffi);
+         return (res < 0)? res : 0;
+
+      case OP_WRITE:
+         res = oper.write(config.path, data, config.size, 0, ffi);
+         return (res < 0)? res : 0;
+
+      case OP_STATFS:
+         return oper.statfs(config.path, &fst);
+
+      case OP_GETXATTR:
+         res = oper.getxattr(config.path, config.xattr, data, config.size);
+         return (res < 0)? res : 0;
+
+      case OP_LISTXATTR:
+         res = oper.listxattr(config.path, data, config.size);
+         return (res < 0)? res : 0;
+   }
+
+   return -ENOSYS;
+}
+
+
+static void *harness_run(void *arg)
+{
+   harness_thread *t = (harness_thread *)arg;
+   JNIEnv *env = get_env();
+   struct fuse_file_info ffi;
+   char *data = malloc(config.size);
+   long long start;
+   long long allocated;
+   long i;
+   int res;
+
+   memset(data, 'x', config.size);
+   memset(&ffi, 0, sizeof(ffi));
+
+   // read and write need an open file handle, released when done
+   if (t->op == OP_READ || t->op == OP_WRITE)
+   {
+      ffi.flags = (t->op == OP_READ)? O_RDONLY : O_WRONLY;
+      if (oper.open != NULL && (res = oper.open(config.path, &ffi)) != 0)
+      {
+         t->errors++;
+         t->firstErrno = -res;
+      }
+   }
+
+   for (i = 0; i < config.warmup; i++)
+   {
+      (*env)->PushLocalFrame(env, 16);
+      call_op(t->op, data, &ffi);
+      (*env)->PopLocalFrame(env, NULL);
+   }
+
+   pthread_barrier_wait(&startBarrier);
+
+   allocated = allocated_bytes(env);
+   start = now_nanos();
+
+   for (i = 0; i < config.iterations; i++)
+   {
+      // the threads are never detached, so local references would pile up without a frame
+      (*env)->PushLocalFrame(env, 16);
+      res = call_op(t->op, data, &ffi);
+      (*env)->PopLocalFrame(env, NULL);
+
+      if (res != 0 && t->errors++ == 0)
+         t->firstErrno = -res;
+   }
+
+   t->nanos = now_nanos() - start;
+   t->calls = config.iterations;
+
+   // the Push/PopLocalFrame calls themselves don't allocate on the Java heap
+   if (allocated >= 0)
+      t->allocated = allocated_bytes(env) - allocated;
+   else
+      t->allocated = -1;
+
+   if ((t->op == OP_READ || t->op == OP_WRITE) && ffi.fh != 0 && oper.release != NULL)
+      oper.release(config.path, &ffi);
+
+   free(data);
+
+   release_env(env);
+
+   return NULL;
+}
+
+
+static void run_op(int op)
+{
+   harness_thread threads[config.threads];
+   long long nanos = 0;
+   long long allocated = 0;
+   long calls = 0;
+   long errors = 0;
+   int firstErrno = 0;
+   int i;
+
+   memset(threads, 0, sizeof(threads));
+   pthread_barrier_init(&startBarrier, NULL, config.threads);
+
+   for (i = 0; i < config.threads; i++)
+   {
+      threads[i].op = op;
+      pthread_create(&threads[i].thread, NULL, harness_run, &threads[i]);
+   }
+
+   for (i = 0; i < config.threads; i++)
+   {
+      pthread_join(threads[i].thread, NULL);
+
+      nanos += threads[i].nanos;
+      calls += threads[i].calls;
+      errors += threads[i].errors;
+      if (firstErrno == 0)
+         firstErrno = threads[i].firstErrno;
+      if (allocated >= 0)
+         allocated = (threads[i].allocated < 0)? -1 : allocated + threads[i].allocated;
+   }
+
+   pthread_barrier_destroy(&startBarrier);
+
+   printf("%-10s %8d %12ld %12.1f", opNames[op], config.threads, calls, (double)nanos / calls);
+
+   if (allocated >= 0)
+      printf(" %12.1f", (double)allocated / calls);
+   else
+      printf(" %12s", "n/a");
+
+   if (errors > 0)
+      printf("   %ld errors, first: %s", errors, strerror(firstErrno));
+
+   printf("\n");
+}
+
+
+static int is_registered(int op)
+{
+   switch (op)
+   {
+      case OP_GETATTR:   return oper.getattr != NULL;
+      case OP_READLINK:  return oper.readlink != NULL;
+      case OP_GETDIR:    return oper.getdir != NULL;
+      case OP_READDIR:   return oper.readdir != NULL;
+      case OP_OPEN:      return oper.open != NULL;
+      case OP_READ:      return oper.read != NULL;
+      case OP_WRITE:     return oper.write != NULL;
+      case OP_STATFS:    return oper.statfs != NULL;
+      case OP_GETXATTR:  return oper.getxattr != NULL;
+      case OP_LISTXATTR: return oper.listxattr != NULL;
+   }
+
+   return 0;
+}
+
+
+static int parse_ops(char *list)
+{
+   char *op;
+   int i;
+
+   for (op = strtok(list, ","); op != NULL; op = strtok(NULL, ","))
+   {
+      for (i = 0; i < OP_COUNT; i++)
+         if (!strcmp(op, opNames[i]))
+            break;
+
+      if (i == OP_COUNT)
+      {
+         printf("Unknown operation: %s\n", op);
+         return 0;
+      }
+
+      config.ops[i] = 1;
+   }
+
+   return 1;
+}
+
+
+//
+// command line boot-up
+
+int main(int argc, char *argv[])
+{
+   char *javaArgv[argc];
+   char *filesystemClassName = NULL;
+   int javaArgc = 0;
+   int opsGiven = 0;
+   int i;
+   JavaVMInitArgs vm_args;
+   JavaVMOption options[argc];
+   JNIEnv *env;
+
+   for (i = 1; i < argc; i++)
+   {
+      char *arg = argv[i];
+      if (!strncmp(arg, "-C", 2))
+         filesystemClassName = &(arg[2]);
+      else if (!strncmp(arg, "-J", 2))
+         javaArgv[javaArgc++] = &(arg[2]);
+      else if (!strncmp(arg, "-t", 2))
+         config.threads = atoi(&(arg[2]));
+      else if (!strncmp(arg, "-n", 2))
+         config.iterations = atol(&(arg[2]));
+      else if (!strncmp(arg, "-w", 2))
+         config.warmup = atol(&(arg[2]));
+      else if (!strncmp(arg, "-o", 2))
+      {
+         if (!parse_ops(&(arg[2])))
+            return -1;
+         opsGiven = 1;
+      }
+      else if (!strncmp(arg, "-p", 2))
+         config.path = &(arg[2]);
+      else if (!strncmp(arg, "-d", 2))
+         config.dir = &(arg[2]);
+      else if (!strncmp(arg, "-l", 2))
+         config.link = &(arg[2]);
+      else if (!strncmp(arg, "-x", 2))
+         config.xattr = &(arg[2]);
+      else if (!strncmp(arg, "-s", 2))
+         config.size = (size_t)atol(&(arg[2]));
+      else
+      {
+         printf("Unknown option: %s\n", arg);
+         return -1;
+      }
+   }
+
+   if (filesystemClassName == NULL)
+   {
+      printf("Missing option: -Cfuse.FilesystemClassName\n");
+      return -1;
+   }
+
+   if (config.threads < 1 || config.iterations < 1 || config.size < 1)
+   {
+      printf("Threads, calls and size must be positive\n");
+      return -1;
+   }
+
+   if (!opsGiven)
+      for (i = 0; i < OP_COUNT; i++)
+         config.ops[i] = 1;
+
+   // unlike javafs main() no -Xint and -Xcheck:jni, they would distort the numbers
+   for (i = 0; i < javaArgc; i++)
+      options[i].optionString = javaArgv[i];
+
+   vm_args.version = JNI_VERSION_1_4;
+   vm_args.options = options;
+   vm_args.nOptions = javaArgc;
+   vm_args.ignoreUnrecognized = 0;
+
+   if (JNI_CreateJavaVM(&vm, (void **)&mainEnv, &vm_args) < 0)
+   {
+      printf("Can't create Java VM\n");
+      return -1;
+   }
+
+   env = mainEnv;
+
+   if (alloc_classes(env))
+   {
+      if (register_natives(env) && alloc_allocation_counter(env))
+      {
+         if (alloc_harness_filesystem(env, filesystemClassName))
+         {
+            select_operations(env, &oper);
+
+            printf("%-10s %8s %12s %12s %12s\n", "operation", "threads", "calls", "ns/call", "alloc B/call");
+
+            for (i = 0; i < OP_COUNT; i++)
+            {
+               if (!config.ops[i])
+                  continue;
+
+               if (!is_registered(i))
+               {
+                  printf("%-10s not implemented by the filesystem\n", opNames[i]);
+                  continue;
+               }
+
+               run_op(i);
+            }
+
+            // cleanup
+            free_fuseFS(env);
+         }
+
+         // cleanup
+         free_allocation_counter(env);
+      }
+
+      // cleanup
+      free_classes(env);
+   }
+
+   if ((*env)->ExceptionCheck(env))
+      (*env)->ExceptionClear(env);
+
+   (*vm)->DestroyJavaVM(vm);
+   vm = NULL;
+   mainEnv = NULL;
+
+   return 0;
+}
@@ -0,0 +1,230 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class CachingFilesystemTest extends TestCase {
+
+	/**
+	 * Files by path with a size, counts the getattr() calls that reach it.
+	 */
+	private static class CountingFilesystem extends Filesystem {
+		final Map<String, Long> files = new HashMap<String, Long>();
+		final Map<String, Integer> calls = new HashMap<String, Integer>();
+
+		public FuseAttr getattr(String path) throws FuseException {
+			Integer n = calls.get(path);
+			calls.put(path, (n == null)? 1 : n + 1);
+			Long size = files.get(path);
+			if (size == null)
+				throw FuseException.shared(Errno.ENOENT);
+			return FuseAttr.newBuilder().mode(Mode.TYPE_FILE.getMode() | 0644).size(size).build();
+		}
+
+		public void unlink(String path) throws FuseException {
+			files.remove(path);
+		}
+
+		public void rename(String from, String to) throws FuseException {
+			Map<String, Long> moved = new HashMap<String, Long>();
+			for (Map.Entry<String, Long> e : files.entrySet()) {
+				String path = e.getKey();
+				if (path.equals(from) || path.startsWith(from + "/"))
+					moved.put(to + path.substring(from.length()), e.getValue());
+			}
+			for (String path : moved.keySet())
+				files.remove(from + path.substring(to.length()));
+			files.putAll(moved);
+		}
+
+		public void truncate(String path, long size) throws FuseException {
+			files.put(path, size);
+		}
+
+		int calls(String path) {
+			Integer n = calls.get(path);
+			return (n == null)? 0 : n;
+		}
+	}
+
+	private CountingFilesystem delegate;
+
+	protected void setUp() {
+		delegate = new CountingFilesystem();
+		delegate.files.put("/", 0L);
+		delegate.files.put("/dir", 0L);
+		delegate.files.put("/dir/a", 1L);
+		delegate.files.put("/dir/b", 2L);
+	}
+
+	private long size(CachingFilesystem fs, String path) throws FuseException {
+		return fs.getattr(path).getSize();
+	}
+
+	private void assertENOENT(CachingFilesystem fs, String path) {
+		try {
+			fs.getattr(path);
+			fail("getattr(" + path + ") did not throw ENOENT");
+		} catch (FuseException e) {
+			assertEquals(Errno.ENOENT, e.getErrno());
+		}
+	}
+
+	public void testHitAfterMiss() throws FuseException {
+		CachingFilesystem fs = CachingFilesystem.newBuilder(delegate).build();
+
+		assertEquals(1L, size(fs, "/dir/a"));
+		assertEquals(1L, size(fs, "/dir/a"));
+		assertEquals(1, delegate.calls("/dir/a"));
+
+		assertEquals(1L, fs.getHits());
+		assertEquals(1L, fs.getMisses());
+		assertEquals(0.5, fs.getHitRate(), 0.0);
+		assertEquals(1, fs.getSize());
+	}
+
+	public void testNegativeHit() throws FuseException {
+		CachingFilesystem fs = CachingFilesystem.newBuilder(delegate).build();
+
+		assertENOENT(fs, "/missing");
+		assertENOENT(fs, "/missing");
+		assertEquals(1, delegate.calls("/missing"));
+		assertEquals(1L, fs.getNegativeHits());
+		assertEquals(1L, fs.getMisses());
+	}
+
+	public void testZeroTimeoutsDisableCaching() throws FuseException {
+		CachingFilesystem fs = CachingFilesystem.newBuilder(delegate).attrTimeout(0).negativeTimeout(0).build();
+
+		size(fs, "/dir/a");
+		size(fs, "/dir/a");
+		assertENOENT(fs, "/missing");
+		assertENOENT(fs, "/missing");
+
+		assertEquals(2, delegate.calls("/dir/a"));
+		assertEquals(2, delegate.calls("/missing"));
+		assertEquals(0, fs.getSize());
+	}
+
+	public void testEntriesExpire() throws Exception {
+		CachingFilesystem fs = CachingFilesystem.newBuilder(delegate).attrTimeout(20).negativeTimeout(20).build();
+
+		size(fs, "/dir/a");
+		assertENOENT(fs, "/missing");
+		Thread.sleep(50);
+		size(fs, "/dir/a");
+		assertENOENT(fs, "/missing");
+
+		assertEquals(2, delegate.calls("/dir/a"));
+		assertEquals(2, delegate.calls("/missing"));
+		assertEquals(0L, fs.getHits());
+		assertEquals(0L, fs.getNegativeHits());
+	}
+
+	public void testLeastRecentlyUsedIsEvicted() throws FuseException {
+		CachingFilesystem fs = CachingFilesystem.newBuilder(delegate).maxEntries(2).build();
+
+		size(fs, "/dir/a");
+		size(fs, "/dir/b");
+		// touch /dir/a so /dir/b is the eldest
+		size(fs, "/dir/a");
+		size(fs, "/dir");
+
+		assertEquals(2, fs.getSize());
+		assertEquals(1L, fs.getEvictions());
+
+		size(fs, "/dir/a");
+		assertEquals(1, delegate.calls("/dir/a"));
+		size(fs, "/dir/b");
+		assertEquals(2, delegate.calls("/dir/b"));
+	}
+
+	public void testInvalidateDropsPathAndParent() throws FuseException {
+		CachingFilesystem fs = CachingFilesystem.newBuilder(delegate).build();
+
+		size(fs, "/");
+		size(fs, "/dir");
+		size(fs, "/dir/a");
+		size(fs, "/dir/b");
+
+		fs.invalidate("/dir/a");
+
+		assertEquals(2L, fs.getInvalidations());
+		assertEquals(2, fs.getSize());
+		size(fs, "/dir/a");
+		size(fs, "/dir");
+		size(fs, "/dir/b");
+		assertEquals(2, delegate.calls("/dir/a"));
+		assertEquals(2, delegate.calls("/dir"));
+		assertEquals(1, delegate.calls("/dir/b"));
+	}
+
+	public void testInvalidateNullDropsEverything() throws FuseException {
+		CachingFilesystem fs = CachingFilesystem.newBuilder(delegate).build();
+
+		size(fs, "/dir/a");
+		size(fs, "/dir/b");
+		fs.invalidate(null);
+
+		assertEquals(0, fs.getSize());
+		assertEquals(2L, fs.getInvalidations());
+	}
+
+	public void testTruncateInvalidates() throws FuseException {
+		CachingFilesystem fs = CachingFilesystem.newBuilder(delegate).build();
+
+		assertEquals(1L, size(fs, "/dir/a"));
+		fs.truncate("/dir/a", 100);
+		assertEquals(100L, size(fs, "/dir/a"));
+	}
+
+	public void testUnlinkReplacesEntryWithMiss() throws FuseException {
+		CachingFilesystem fs = CachingFilesystem.newBuilder(delegate).build();
+
+		size(fs, "/dir/a");
+		fs.unlink("/dir/a");
+		assertENOENT(fs, "/dir/a");
+	}
+
+	public void testRenameInvalidatesBothTrees() throws FuseException {
+		CachingFilesystem fs = CachingFilesystem.newBuilder(delegate).build();
+
+		size(fs, "/dir/a");
+		size(fs, "/dir/b");
+		assertENOENT(fs, "/moved/a");
+
+		fs.rename("/dir", "/moved");
+
+		assertENOENT(fs, "/dir/a");
+		assertENOENT(fs, "/dir/b");
+		assertEquals(1L, size(fs, "/moved/a"));
+		assertEquals(2L, size(fs, "/moved/b"));
+	}
+
+	public void testResultRacingWithInvalidationIsNotStored() throws FuseException {
+		final CachingFilesystem[] fs = new CachingFilesystem[1];
+		Filesystem racing = new Filesystem() {
+			public FuseAttr getattr(String path) throws FuseException {
+				FuseAttr stale = delegate.getattr(path);
+				// a change that completes while this getattr() is in flight
+				delegate.truncate(path, 100);
+				fs[0].invalidate(path);
+				return stale;
+			}
+		};
+		fs[0] = CachingFilesystem.newBuilder(racing).build();
+
+		assertEquals(1L, size(fs[0], "/dir/a"));
+		assertEquals(0, fs[0].getSize());
+	}
+}
@@ -0,0 +1,414 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import fuse.Errno;
+import fuse.Filesystem;
+import fuse.FuseAttr;
+import fuse.FuseException;
+import fuse.FuseFileInfo;
+
+
+public class FilesystemToFuseLowlevelFSAdapterTest extends TestCase
+{
+   private static final long ROOT = FuseLowlevelFS.ROOT_ID;
+
+   /**
+    * Nodes by path with their inode numbers, remembers the paths getattr() was called with.
+    */
+   private static class TreeFilesystem extends Filesystem
+   {
+      final Map<String, Long> inodes = new HashMap<String, Long>();
+      final List<String> getattrPaths = new ArrayList<String>();
+      final List<String> readPaths = new ArrayList<String>();
+      final List<Object> released = new ArrayList<Object>();
+
+      public FuseAttr getattr(String path) throws FuseException
+      {
+         getattrPaths.add(path);
+         Long inode = inodes.get(path);
+         if (inode == null)
+            throw FuseException.shared(Errno.ENOENT);
+
+         int nlink = 0;
+         for (Long other : inodes.values())
+            if (other.equals(inode))
+               nlink++;
+
+         int type = path.equals("/") || path.endsWith("dir") ? 0040000 : 0100000;
+         return FuseAttr.newBuilder().inode(inode).mode(type | 0644).nlink(nlink).build();
+      }
+
+      public void link(String from, String to) throws FuseException
+      {
+         inodes.put(to, inodes.get(from));
+      }
+
+      public void open(String path, FuseFileInfo ffi) throws FuseException
+      {
+         ffi.setFh(path);
+      }
+
+      public void read(String path, Object fh, ByteBuffer buf, long offset) throws FuseException
+      {
+         readPaths.add(path);
+      }
+
+      public void release(String path, Object fh, int flags) throws FuseException
+      {
+         released.add(fh);
+      }
+
+      public void flush(String path, Object fh) throws FuseException
+      {
+      }
+
+      public void fsync(String path, Object fh, boolean isDatasync) throws FuseException
+      {
+      }
+
+      public void unlink(String path) throws FuseException
+      {
+         inodes.remove(path);
+      }
+
+      public void rename(String from, String to) throws FuseException
+      {
+         Map<String, Long> moved = new HashMap<String, Long>();
+         for (Map.Entry<String, Long> entry : inodes.entrySet())
+         {
+            String path = entry.getKey();
+            if (path.equals(from) || path.startsWith(from + "/"))
+               moved.put(to + path.substring(from.length()), entry.getValue());
+         }
+         for (String path : moved.keySet())
+            inodes.remove(from + path.substring(to.length()));
+         inodes.putAll(moved);
+      }
+
+      String lastGetattrPath()
+      {
+         return getattrPaths.get(getattrPaths.size() - 1);
+      }
+   }
+
+   private TreeFilesystem fs;
+   private FilesystemToFuseLowlevelFSAdapter adapter;
+
+
+   protected void setUp()
+   {
+      fs = new TreeFilesystem();
+      fs.inodes.put("/", 100L);
+      fs.inodes.put("/dir", 101L);
+      fs.inodes.put("/dir/a", 102L);
+      fs.inodes.put("/b", 103L);
+      adapter = new FilesystemToFuseLowlevelFSAdapter(fs, null);
+   }
+
+   private static ByteBuffer name(String name)
+   {
+      return ByteBuffer.wrap(name.getBytes());
+   }
+
+   private static ByteBuffer attrBuffer()
+   {
+      return ByteBuffer.allocateDirect(FuseGetattrBuffer.LENGTH).order(ByteOrder.nativeOrder());
+   }
+
+   // looks up name in parent and returns the node id the kernel gets
+   private long lookup(long parent, String name)
+   {
+      ByteBuffer entry = attrBuffer();
+      assertEquals(0, adapter.lookup(parent, name(name), entry));
+      return entry.getLong(FuseGetattrBuffer.NODE_ID);
+   }
+
+   private long open(long ino)
+   {
+      final long[] fh = new long[1];
+      FuseOpenSetter openSetter = new FuseOpenSetter()
+      {
+         public void setFh(long handle)
+         {
+            fh[0] = handle;
+         }
+
+         public boolean isDirectIO()
+         {
+            return false;
+         }
+
+         public void setDirectIO(boolean directIO)
+         {
+         }
+
+         public boolean isKeepCache()
+         {
+            return false;
+         }
+
+         public void setKeepCache(boolean keepCache)
+         {
+         }
+      };
+
+      assertEquals(0, adapter.open(ino, 0, openSetter));
+      return fh[0];
+   }
+
+   private long inode(long ino)
+   {
+      ByteBuffer attr = attrBuffer();
+      assertEquals(0, adapter.getattr(ino, attr));
+      return attr.getLong(FuseGetattrBuffer.INODE);
+   }
+
+   public void testLookupAssignsNodeIds()
+   {
+      long dir = lookup(ROOT, "dir");
+      long a = lookup(dir, "a");
+
+      assertTrue(dir != ROOT && a != ROOT && dir != a);
+      assertEquals(dir, adapter.nodeId("/dir"));
+      assertEquals(a, adapter.nodeId("/dir/a"));
+      assertEquals("/dir/a", fs.lastGetattrPath());
+
+      // the same path keeps its node id
+      assertEquals(dir, lookup(ROOT, "dir"));
+   }
+
+   public void testLookupOfMissingNameIsNotRemembered()
+   {
+      assertEquals(Errno.ENOENT.getErrno(), adapter.lookup(ROOT, name("missing"), attrBuffer()));
+      assertEquals(0, adapter.nodeId("/missing"));
+   }
+
+   public void testInodesAreTheFilesystems()
+   {
+      ByteBuffer entry = attrBuffer();
+      assertEquals(0, adapter.lookup(ROOT, name("dir"), entry));
+      long dir = entry.getLong(FuseGetattrBuffer.NODE_ID);
+
+      // the same number readdir() reports as d_ino
+      assertEquals(101L, entry.getLong(FuseGetattrBuffer.INODE));
+      assertEquals(101L, inode(dir));
+      assertEquals("/dir", fs.lastGetattrPath());
+
+      assertEquals(100L, inode(ROOT));
+      assertEquals("/", fs.lastGetattrPath());
+   }
+
+   public void testNodeIdStandsInForMissingInode()
+   {
+      fs.inodes.put("/noinode", 0L);
+      long ino = lookup(ROOT, "noinode");
+
+      assertEquals(ino, inode(ino));
+   }
+
+   public void testForgetDropsNodeAfterLastLookup()
+   {
+      long b = lookup(ROOT, "b");
+      assertEquals(b, lookup(ROOT, "b"));
+
+      adapter.forget(b, 1);
+      assertEquals(b, adapter.nodeId("/b"));
+      assertEquals(0, adapter.getattr(b, attrBuffer()));
+
+      adapter.forget(b, 1);
+      assertEquals(0, adapter.nodeId("/b"));
+      assertEquals(Errno.ESTALE.getErrno(), adapter.getattr(b, attrBuffer()));
+
+      // a new lookup gets a new node id
+      assertTrue(lookup(ROOT, "b") != b);
+   }
+
+   public void testForgetOfRootIsIgnored()
+   {
+      adapter.forget(ROOT, 1000);
+
+      assertEquals(ROOT, adapter.nodeId("/"));
+      assertEquals(0, adapter.getattr(ROOT, attrBuffer()));
+   }
+
+   public void testUnlinkDetachesNode()
+   {
+      long b = lookup(ROOT, "b");
+
+      assertEquals(0, adapter.unlink(ROOT, name("b")));
+      assertEquals(0, adapter.nodeId("/b"));
+
+      // the kernel still forgets the node later
+      adapter.forget(b, 1);
+      assertEquals(0, adapter.nodeId("/b"));
+      assertEquals(Errno.ESTALE.getErrno(), adapter.getattr(b, attrBuffer()));
+   }
+
+   public void testUnlinkedFileStaysUsableWhileOpen()
+   {
+      long b = lookup(ROOT, "b");
+      long fh = open(b);
+
+      assertEquals(0, adapter.unlink(ROOT, name("b")));
+
+      assertEquals(0, adapter.read(b, fh, ByteBuffer.allocate(16), 0));
+      assertEquals("/b", fs.readPaths.get(0));
+      assertEquals(0, adapter.flush(b, fh));
+      assertEquals(0, adapter.fsync(b, fh, false));
+
+      assertEquals(0, adapter.release(b, fh, 0));
+      assertEquals("/b", fs.released.get(0));
+   }
+
+   public void testReleaseOfForgottenNodeReachesFilesystem()
+   {
+      long b = lookup(ROOT, "b");
+      long fh = open(b);
+      adapter.forget(b, 1);
+
+      assertEquals(0, adapter.release(b, fh, 0));
+      assertEquals(1, fs.released.size());
+   }
+
+   public void testRenameMovesSubtree()
+   {
+      long dir = lookup(ROOT, "dir");
+      long a = lookup(dir, "a");
+
+      assertEquals(0, adapter.rename(ROOT, name("dir"), ROOT, name("moved")));
+
+      assertEquals(0, adapter.nodeId("/dir"));
+      assertEquals(0, adapter.nodeId("/dir/a"));
+      assertEquals(dir, adapter.nodeId("/moved"));
+      assertEquals(a, adapter.nodeId("/moved/a"));
+
+      assertEquals(0, adapter.getattr(a, attrBuffer()));
+      assertEquals("/moved/a", fs.lastGetattrPath());
+      assertEquals(a, lookup(dir, "a"));
+   }
+
+   public void testRenameOverKnownTargetDetachesIt()
+   {
+      long dir = lookup(ROOT, "dir");
+      long b = lookup(ROOT, "b");
+
+      assertEquals(0, adapter.rename(ROOT, name("dir"), ROOT, name("b")));
+
+      assertEquals(dir, adapter.nodeId("/b"));
+
+      // forgetting the replaced node must not drop the moved one
+      adapter.forget(b, 1);
+      assertEquals(dir, adapter.nodeId("/b"));
+   }
+
+   public void testRenameDoesNotMoveSiblingsWithCommonPrefix()
+   {
+      fs.inodes.put("/dir2", 104L);
+      long dir2 = lookup(ROOT, "dir2");
+      lookup(ROOT, "dir");
+
+      assertEquals(0, adapter.rename(ROOT, name("dir"), ROOT, name("moved")));
+
+      assertEquals(dir2, adapter.nodeId("/dir2"));
+   }
+
+   public void testRenameMovesOnlyTheSubtree()
+   {
+      long dir = lookup(ROOT, "dir");
+      long a = lookup(dir, "a");
+      long b = lookup(ROOT, "b");
+
+      assertEquals(0, adapter.rename(dir, name("a"), ROOT, name("c")));
+
+      assertEquals(a, adapter.nodeId("/c"));
+      assertEquals(0, adapter.nodeId("/dir/a"));
+      assertEquals(dir, adapter.nodeId("/dir"));
+      assertEquals(b, adapter.nodeId("/b"));
+   }
+
+   public void testLinkReturnsTheNodeOfTheFile()
+   {
+      long dir = lookup(ROOT, "dir");
+      long a = lookup(dir, "a");
+
+      ByteBuffer entry = attrBuffer();
+      assertEquals(0, adapter.link(a, ROOT, name("hard"), entry));
+
+      assertEquals(a, entry.getLong(FuseGetattrBuffer.NODE_ID));
+      assertEquals(102L, entry.getLong(FuseGetattrBuffer.INODE));
+      assertEquals(a, adapter.nodeId("/hard"));
+      assertEquals(a, lookup(ROOT, "hard"));
+
+      // the node lives on under its other name
+      assertEquals(0, adapter.unlink(dir, name("a")));
+      assertEquals(a, adapter.nodeId("/hard"));
+      assertEquals(0, adapter.getattr(a, attrBuffer()));
+      assertEquals("/hard", fs.lastGetattrPath());
+   }
+
+   public void testLookupOfAnotherHardLinkFindsTheKnownNode()
+   {
+      fs.inodes.put("/other", 102L);
+      long dir = lookup(ROOT, "dir");
+      long a = lookup(dir, "a");
+
+      assertEquals(a, lookup(ROOT, "other"));
+
+      // all names of the node go away with it
+      adapter.forget(a, 2);
+      assertEquals(0, adapter.nodeId("/dir/a"));
+      assertEquals(0, adapter.nodeId("/other"));
+      assertTrue(lookup(ROOT, "other") != a);
+   }
+
+   public void testConcurrentLookupAndForget() throws InterruptedException
+   {
+      final long dir = lookup(ROOT, "dir");
+      final int[] failures = new int[1];
+      Thread[] threads = new Thread[4];
+
+      for (int t = 0; t < threads.length; t++)
+      {
+         threads[t] = new Thread()
+         {
+            public void run()
+            {
+               for (int i = 0; i < 10000; i++)
+               {
+                  ByteBuffer entry = attrBuffer();
+                  if (adapter.lookup(dir, name("a"), entry) != 0 || adapter.getattr(entry.getLong(FuseGetattrBuffer.NODE_ID), attrBuffer()) != 0)
+                  {
+                     synchronized (failures)
+                     {
+                        failures[0]++;
+                     }
+                  }
+                  adapter.forget(entry.getLong(FuseGetattrBuffer.NODE_ID), 1);
+               }
+            }
+         };
+         threads[t].start();
+      }
+      for (Thread thread : threads)
+         thread.join();
+
+      assertEquals(0, failures[0]);
+      assertEquals(0, adapter.nodeId("/dir/a"));
+   }
+}
@@ -0,0 +1,147 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+package fuse.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+
+public class FuseFSDirFillerTest extends TestCase
+{
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+
+   private FuseFSDirFiller filler;
+
+
+   protected void setUp()
+   {
+      filler = new FuseFSDirFiller();
+      filler.setCharset(UTF8);
+   }
+
+   // checks the record at offset and returns the offset of the next one
+   private static int assertRecord(ByteBuffer records, int offset, byte[] name, long inode, int mode)
+   {
+      assertEquals(0, offset % 8);
+      assertEquals(name.length, records.getInt(offset + FuseFSDirFiller.LENGTH));
+      assertEquals(mode, records.getInt(offset + FuseFSDirFiller.MODE));
+      assertEquals(inode, records.getLong(offset + FuseFSDirFiller.INODE));
+
+      for (int i = 0; i < name.length; i++)
+         assertEquals(name[i], records.get(offset + FuseFSDirFiller.NAME + i));
+      assertEquals(0, records.get(offset + FuseFSDirFiller.NAME + name.length));
+
+      return (offset + FuseFSDirFiller.NAME + name.length + 1 + 7) & ~7;
+   }
+
+   public void testRecordLayout()
+   {
+      filler.add("a", 42, 0100644);
+      filler.add("dir", 43, 0040755);
+
+      ByteBuffer records = filler.records();
+      assertEquals(ByteOrder.nativeOrder(), records.order());
+
+      int offset = assertRecord(records, 0, "a".getBytes(UTF8), 42, 0100644);
+      assertEquals(24, offset);
+      offset = assertRecord(records, offset, "dir".getBytes(UTF8), 43, 0040755);
+      assertEquals(48, offset);
+      assertEquals(48, records.limit());
+      assertEquals(2, filler.size());
+   }
+
+   public void testPadding()
+   {
+      // 7 bytes and the NUL fill 8 bytes, 8 bytes and the NUL need 16
+      filler.add("1234567", 1, 0);
+      filler.add("12345678", 2, 0);
+      filler.add("", 3, 0);
+
+      ByteBuffer records = filler.records();
+
+      assertEquals(24, assertRecord(records, 0, "1234567".getBytes(UTF8), 1, 0));
+      assertEquals(56, assertRecord(records, 24, "12345678".getBytes(UTF8), 2, 0));
+      assertEquals(80, assertRecord(records, 56, new byte[0], 3, 0));
+      assertEquals(80, records.limit());
+   }
+
+   public void testLengthIsInBytes()
+   {
+      String name = "\u017Eaba\u20AC\uD83D\uDE00";
+      filler.add(name, 1, 0);
+
+      byte[] bytes = name.getBytes(UTF8);
+      assertEquals(12, bytes.length);
+      assertRecord(filler.records(), 0, bytes, 1, 0);
+   }
+
+   public void testUnmappableCharactersAreReplaced()
+   {
+      filler.setCharset(Charset.forName("US-ASCII"));
+      filler.add("a\u017Eb", 1, 0);
+
+      assertRecord(filler.records(), 0, "a?b".getBytes(UTF8), 1, 0);
+   }
+
+   public void testGrowsAndKeepsRecords()
+   {
+      int n = 5000;
+      for (int i = 0; i < n; i++)
+         filler.add("entry-" + i, i, 0100644);
+
+      assertEquals(n, filler.size());
+
+      ByteBuffer records = filler.records();
+      int offset = 0;
+      for (int i = 0; i < n; i++)
+         offset = assertRecord(records, offset, ("entry-" + i).getBytes(UTF8), i, 0100644);
+      assertEquals(records.limit(), offset);
+   }
+
+   public void testLongName()
+   {
+      StringBuilder sb = new StringBuilder();
+      while (sb.length() < 40000)
+         sb.append("long");
+      String name = sb.toString();
+
+      filler.add("a", 1, 0);
+      filler.add(name, 2, 0);
+
+      ByteBuffer records = filler.records();
+      int offset = assertRecord(records, 0, "a".getBytes(UTF8), 1, 0);
+      assertEquals(records.limit(), assertRecord(records, offset, name.getBytes(UTF8), 2, 0));
+   }
+
+   public void testReset()
+   {
+      filler.add("a", 1, 0);
+      filler.reset();
+
+      assertEquals(0, filler.size());
+      assertEquals(0, filler.records().limit());
+
+      filler.add("b", 2, 0);
+      assertRecord(filler.records(), 0, "b".getBytes(UTF8), 2, 0);
+   }
+
+   public void testResetDropsHugeBuffer()
+   {
+      for (int i = 0; i < 100000; i++)
+         filler.add("entry-" + i, i, 0);
+      assertTrue(filler.records().capacity() > 1024 * 1024);
+
+      filler.reset();
+
+      assertTrue(filler.records().capacity() <= 1024 * 1024);
+   }
+}
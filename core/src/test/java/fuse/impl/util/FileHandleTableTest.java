@@ -0,0 +1,165 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+
+public class FileHandleTableTest extends TestCase
+{
+   public void testNullHasHandleZero()
+   {
+      FileHandleTable table = new FileHandleTable();
+
+      assertEquals(0L, table.put(null));
+      assertNull(table.get(0L));
+      assertNull(table.remove(0L));
+      assertEquals(0, table.size());
+   }
+
+   public void testPutGetRemove()
+   {
+      FileHandleTable table = new FileHandleTable();
+      Object a = new Object();
+      Object b = new Object();
+
+      long ha = table.put(a);
+      long hb = table.put(b);
+
+      assertTrue(ha != 0 && hb != 0 && ha != hb);
+      assertSame(a, table.get(ha));
+      assertSame(b, table.get(hb));
+      assertEquals(2, table.size());
+
+      assertSame(a, table.remove(ha));
+      assertNull(table.get(ha));
+      assertSame(b, table.get(hb));
+      assertEquals(1, table.size());
+   }
+
+   public void testOnlyFirstRemoveFindsTheObject()
+   {
+      FileHandleTable table = new FileHandleTable();
+      Object a = new Object();
+
+      long ha = table.put(a);
+
+      assertSame(a, table.remove(ha));
+      assertNull(table.remove(ha));
+      assertEquals(0, table.size());
+   }
+
+   public void testStaleHandleDoesNotSeeReusedSlot()
+   {
+      FileHandleTable table = new FileHandleTable();
+      Object a = new Object();
+      Object b = new Object();
+
+      long ha = table.put(a);
+      table.remove(ha);
+      long hb = table.put(b);
+
+      // same slot, next generation
+      assertEquals((int) ha, (int) hb);
+      assertTrue(ha != hb);
+
+      assertNull(table.get(ha));
+      assertNull(table.remove(ha));
+      assertSame(b, table.get(hb));
+      assertEquals(1, table.size());
+   }
+
+   public void testUnknownHandles()
+   {
+      FileHandleTable table = new FileHandleTable();
+      long ha = table.put(new Object());
+
+      assertNull(table.get(ha + 1));
+      assertNull(table.get(-1L));
+      assertNull(table.get(1L << 32 | (int) ha));
+      assertNull(table.remove(ha + 1));
+      assertEquals(1, table.size());
+   }
+
+   public void testGrowsBeyondOneSegment()
+   {
+      FileHandleTable table = new FileHandleTable();
+      int n = 5000;
+      long[] handles = new long[n];
+      Integer[] values = new Integer[n];
+
+      for (int i = 0; i < n; i++)
+      {
+         values[i] = Integer.valueOf(i);
+         handles[i] = table.put(values[i]);
+      }
+
+      assertEquals(n, table.size());
+      for (int i = 0; i < n; i++)
+         assertSame(values[i], table.get(handles[i]));
+
+      for (int i = 0; i < n; i += 2)
+         assertSame(values[i], table.remove(handles[i]));
+      for (int i = 1; i < n; i += 2)
+         assertSame(values[i], table.get(handles[i]));
+
+      assertEquals(n / 2, table.size());
+   }
+
+   public void testConcurrentPutRemove() throws InterruptedException
+   {
+      final FileHandleTable table = new FileHandleTable();
+      final AtomicReference<String> failure = new AtomicReference<String>();
+      List<Thread> threads = new ArrayList<Thread>();
+
+      for (int t = 0; t < 4; t++)
+      {
+         threads.add(new Thread()
+         {
+            public void run()
+            {
+               long[] handles = new long[64];
+               Object[] values = new Object[handles.length];
+               Set<Long> seen = new HashSet<Long>();
+
+               for (int round = 0; round < 2000; round++)
+               {
+                  for (int i = 0; i < handles.length; i++)
+                  {
+                     values[i] = new Object();
+                     handles[i] = table.put(values[i]);
+                     if (!seen.add(handles[i]))
+                        failure.compareAndSet(null, "handle " + handles[i] + " handed out twice");
+                  }
+                  for (int i = 0; i < handles.length; i++)
+                  {
+                     if (table.remove(handles[i]) != values[i])
+                        failure.compareAndSet(null, "handle " + handles[i] + " lost its object");
+                  }
+               }
+            }
+         });
+      }
+
+      for (Thread thread : threads)
+         thread.start();
+      for (Thread thread : threads)
+         thread.join();
+
+      assertNull(failure.get(), failure.get());
+      assertEquals(0, table.size());
+   }
+}
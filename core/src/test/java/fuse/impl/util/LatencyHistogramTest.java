@@ -0,0 +1,116 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl.util;
+
+import junit.framework.TestCase;
+
+
+public class LatencyHistogramTest extends TestCase
+{
+   private static final int LAST = LatencyHistogram.index(Long.MAX_VALUE);
+
+
+   public void testSmallValuesHaveTheirOwnBucket()
+   {
+      for (int v = 0; v < 16; v++)
+      {
+         assertEquals(v, LatencyHistogram.index(v));
+         assertEquals(v, LatencyHistogram.lowerBound(v));
+      }
+      for (int v = 0; v < 8; v++)
+         assertEquals(v, LatencyHistogram.middle(v));
+   }
+
+   public void testBoundsRoundTrip()
+   {
+      for (int i = 0; i <= LAST; i++)
+         assertEquals("bucket " + i, i, LatencyHistogram.index(LatencyHistogram.lowerBound(i)));
+   }
+
+   public void testBucketsAreContiguous()
+   {
+      for (int i = 0; i < LAST; i++)
+      {
+         long next = LatencyHistogram.lowerBound(i + 1);
+
+         assertTrue("bucket " + i, LatencyHistogram.lowerBound(i) < next);
+         assertEquals("bucket " + i, i, LatencyHistogram.index(next - 1));
+      }
+   }
+
+   public void testMiddleIsInsideTheBucket()
+   {
+      for (int i = 0; i < LAST; i++)
+      {
+         long middle = LatencyHistogram.middle(i);
+
+         assertTrue("bucket " + i, middle >= LatencyHistogram.lowerBound(i));
+         assertTrue("bucket " + i, middle < LatencyHistogram.lowerBound(i + 1));
+      }
+   }
+
+   public void testBucketWidthIsAnEighthOfItsMagnitude()
+   {
+      for (int i = 8; i < LAST; i++)
+      {
+         long lower = LatencyHistogram.lowerBound(i);
+         long width = LatencyHistogram.lowerBound(i + 1) - lower;
+
+         assertEquals("bucket " + i, Long.highestOneBit(lower) / 8, width);
+      }
+   }
+
+   public void testLargestValue()
+   {
+      assertEquals(LAST, LatencyHistogram.index(Long.MAX_VALUE));
+      assertTrue(LatencyHistogram.lowerBound(LAST) > 0);
+      assertEquals(LAST - 1, LatencyHistogram.index(LatencyHistogram.lowerBound(LAST) - 1));
+   }
+
+   public void testEmptyPercentileIsZero()
+   {
+      assertEquals(0, new LatencyHistogram().percentile(0.5));
+   }
+
+   public void testPercentilesAreWithinTheBucketError()
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (long v = 1; v <= 100000; v++)
+         histogram.record(v);
+
+      assertWithin(50000, histogram.percentile(0.5));
+      assertWithin(99000, histogram.percentile(0.99));
+      assertWithin(99900, histogram.percentile(0.999));
+      assertWithin(100000, histogram.percentile(1.0));
+      assertEquals(1, histogram.percentile(0.0));
+   }
+
+   public void testNegativeValuesCountAsZero()
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      histogram.record(-5);
+
+      assertEquals(0, histogram.percentile(1.0));
+   }
+
+   public void testReset()
+   {
+      LatencyHistogram histogram = new LatencyHistogram();
+      histogram.record(1000);
+      histogram.reset();
+
+      assertEquals(0, histogram.percentile(0.5));
+   }
+
+   private static void assertWithin(long expected, long actual)
+   {
+      assertTrue("expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 16);
+   }
+}
@@ -0,0 +1,197 @@
+/**
+ *   FUSE-J: Java bindings for FUSE (Filesystem in Userspace by Miklos Szeredi (mszeredi@inf.bme.hu))
+ *
+ *   Copyright (C) 2003 Peter Levart (peter@select-tech.si)
+ *
+ *   This program can be distributed under the terms of the GNU LGPL.
+ *   See the file COPYING.LIB
+ */
+
+package fuse.impl.util;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+
+public class PathDecoderTest extends TestCase
+{
+   private static final Charset UTF8 = Charset.forName("UTF-8");
+   private static final Charset ASCII = Charset.forName("US-ASCII");
+   private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+
+   private static byte[] bytes(int... values)
+   {
+      byte[] bytes = new byte[values.length];
+      for (int i = 0; i < values.length; i++)
+         bytes[i] = (byte) values[i];
+      return bytes;
+   }
+
+   private static String decode(PathDecoder decoder, byte[] bytes)
+   {
+      ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+      buf.put(bytes);
+      buf.flip();
+      return decoder.decode(buf);
+   }
+
+   // the decoder must agree with the JDK, which replaces malformed input
+   private static void assertDecodes(Charset cs, byte[] bytes)
+   {
+      assertEquals(new String(bytes, cs), decode(new PathDecoder(cs, 0), bytes));
+      assertEquals(new String(bytes, cs), decode(new PathDecoder(cs, 16), bytes));
+   }
+
+   public void testNull()
+   {
+      assertNull(new PathDecoder(UTF8, 0).decode(null));
+   }
+
+   public void testWellFormedUTF8()
+   {
+      assertDecodes(UTF8, "/dir/file.txt".getBytes(UTF8));
+      // 2, 3 and 4 byte sequences
+      assertDecodes(UTF8, "/\u017Eaba/\u20AC/\uD83D\uDE00".getBytes(UTF8));
+      // the extremes of each length
+      assertDecodes(UTF8, bytes(0x7F, 0xC2, 0x80, 0xDF, 0xBF));
+      assertDecodes(UTF8, bytes(0xE0, 0xA0, 0x80, 0xEF, 0xBF, 0xBF));
+      assertDecodes(UTF8, bytes(0xF0, 0x90, 0x80, 0x80, 0xF4, 0x8F, 0xBF, 0xBF));
+   }
+
+   public void testFourByteSequenceIsASurrogatePair()
+   {
+      String s = decode(new PathDecoder(UTF8, 0), bytes(0xF0, 0x9F, 0x98, 0x80));
+
+      assertEquals(2, s.length());
+      assertEquals(0x1F600, s.codePointAt(0));
+   }
+
+   public void testMalformedUTF8()
+   {
+      // stray continuation byte
+      assertDecodes(UTF8, bytes('/', 0x80, 'a'));
+      // truncated 2, 3 and 4 byte sequences
+      assertDecodes(UTF8, bytes('/', 0xC3));
+      assertDecodes(UTF8, bytes('/', 0xE2, 0x82));
+      assertDecodes(UTF8, bytes('/', 0xF0, 0x9F, 0x98));
+      // lead byte followed by a non continuation byte
+      assertDecodes(UTF8, bytes(0xC3, 'a'));
+      assertDecodes(UTF8, bytes(0xE2, 0x82, 'a'));
+      // invalid lead bytes
+      assertDecodes(UTF8, bytes(0xF8, 0x88, 0x80, 0x80, 0x80));
+      assertDecodes(UTF8, bytes(0xFF));
+   }
+
+   public void testOverlongUTF8()
+   {
+      // '/' as 2, 3 and 4 bytes
+      assertDecodes(UTF8, bytes(0xC0, 0xAF));
+      assertDecodes(UTF8, bytes(0xE0, 0x80, 0xAF));
+      assertDecodes(UTF8, bytes(0xF0, 0x80, 0x80, 0xAF));
+      // U+07FF as 3 bytes and U+FFFF as 4 bytes
+      assertDecodes(UTF8, bytes(0xE0, 0x9F, 0xBF));
+      assertDecodes(UTF8, bytes(0xF0, 0x8F, 0xBF, 0xBF));
+   }
+
+   public void testSurrogatesAndOutOfRangeUTF8()
+   {
+      assertDecodes(UTF8, bytes(0xED, 0xA0, 0x80));
+      assertDecodes(UTF8, bytes(0xED, 0xBF, 0xBF));
+      // above U+10FFFF
+      assertDecodes(UTF8, bytes(0xF4, 0x90, 0x80, 0x80));
+   }
+
+   public void testSingleByteCharsets()
+   {
+      assertDecodes(ASCII, "/dir/file".getBytes(ASCII));
+      assertDecodes(ASCII, bytes('/', 0xE9));
+      assertDecodes(LATIN1, bytes('/', 0xE9, 0xFF, 0x80));
+   }
+
+   public void testPositionIsNotChanged()
+   {
+      ByteBuffer buf = ByteBuffer.wrap("xx/a/b".getBytes(UTF8));
+      buf.position(2);
+
+      assertEquals("/a/b", new PathDecoder(UTF8, 0).decode(buf));
+      assertEquals(2, buf.position());
+   }
+
+   public void testLongPath()
+   {
+      StringBuilder sb = new StringBuilder();
+      while (sb.length() < 5000)
+         sb.append("/\u017E\u20AC");
+
+      assertDecodes(UTF8, sb.toString().getBytes(UTF8));
+   }
+
+   public void testCacheHitsReturnSameString()
+   {
+      PathDecoder decoder = new PathDecoder(UTF8, 16);
+      byte[] bytes = "/dir/file".getBytes(UTF8);
+
+      String first = decode(decoder, bytes);
+      String second = decode(decoder, bytes);
+
+      assertSame(first, second);
+      assertEquals(1, decoder.getHits());
+      assertEquals(1, decoder.getMisses());
+      assertEquals(1, decoder.getCacheSize());
+
+      decoder.clearCache();
+      assertEquals(0, decoder.getCacheSize());
+   }
+
+   public void testCacheIsBounded()
+   {
+      PathDecoder decoder = new PathDecoder(UTF8, 4);
+
+      for (int i = 0; i < 100; i++)
+         assertEquals("/file" + i, decode(decoder, ("/file" + i).getBytes(UTF8)));
+
+      assertEquals(4, decoder.getMaxCacheSize());
+      assertTrue(decoder.getCacheSize() <= 4);
+      assertEquals(100, decoder.getMisses());
+   }
+
+   public void testCacheKeysDoNotShareTheScratchBuffer()
+   {
+      PathDecoder decoder = new PathDecoder(UTF8, 16);
+
+      decode(decoder, "/a".getBytes(UTF8));
+      decode(decoder, "/b".getBytes(UTF8));
+
+      assertEquals("/a", decode(decoder, "/a".getBytes(UTF8)));
+      assertEquals("/b", decode(decoder, "/b".getBytes(UTF8)));
+      assertEquals(2, decoder.getHits());
+   }
+
+   public void testCountersArePublishedOverJMX() throws Exception
+   {
+      PathDecoder decoder = new PathDecoder(UTF8, 16);
+      decode(decoder, "/a".getBytes(UTF8));
+      decode(decoder, "/a".getBytes(UTF8));
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("fuse:type=PathCache,mount=test");
+      server.registerMBean(decoder, name);
+      try
+      {
+         assertEquals(Long.valueOf(1), server.getAttribute(name, "Hits"));
+         assertEquals(Long.valueOf(1), server.getAttribute(name, "Misses"));
+         assertEquals(Integer.valueOf(16), server.getAttribute(name, "MaxCacheSize"));
+      }
+      finally
+      {
+         server.unregisterMBean(name);
+      }
+   }
+}
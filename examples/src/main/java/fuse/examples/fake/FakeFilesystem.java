@@ -26,7 +26,6 @@ import fuse.FuseMount;
 import fuse.FuseStatfs;
 import fuse.Mode;
 import fuse.XattrLister;
-import fuse.impl.FuseSizeSetter;
 
 public class FakeFilesystem extends Filesystem 
 {
@@ -174,7 +173,7 @@ public class FakeFilesystem extends Filesystem
 			.blocks(1)
 			.build();
 		}
-		throw FuseException.fromErrno(Errno.ENOENT);
+		throw FuseException.shared(Errno.ENOENT);
 	}
 
 	public void getdir(String path, FuseDirFiller filler) throws FuseException
@@ -265,7 +264,7 @@ public class FakeFilesystem extends Filesystem
 	}
 
 	// if open returns a filehandle by calling FuseOpenSetter.setFh() method, it will be passed to every method that supports 'fh' argument
-	public void open(String path, int flags, FuseFileInfo ffi) throws FuseException
+	public void open(String path, FuseFileInfo ffi) throws FuseException
 	{
 		Node n = lookup(path);
 		if(n == null) {
@@ -348,32 +347,6 @@ public class FakeFilesystem extends Filesystem
 		dst.put(value);
 	}
 
-	/**
-	 * This method can be called to query for the size of the extended attribute
-	 *
-	 * @param path       the path to file or directory containing extended attribute
-	 * @param name       the name of the extended attribute
-	 * @param sizeSetter a callback interface that should be used to set the attribute's size
-	 * @return 0 if Ok or errno when error
-	 * @throws fuse.FuseException an alternative to returning errno is to throw this exception with errno initialized
-	 */
-	public int getxattrsize(String path, String name, FuseSizeSetter sizeSetter) throws FuseException
-	{
-		Node n = lookup(path);
-
-		if (n == null)
-			throw FuseException.fromErrno(Errno.ENOENT);
-
-		byte[] value = n.getXAttr().get(name);
-
-		if (value == null)
-			throw FuseException.fromErrno(Errno.ENOATTR);
-
-		sizeSetter.setSize(value.length);
-
-		return 0;
-	}
-
 	/**
 	 * This method will be called to get the list of extended attribute names
 	 *
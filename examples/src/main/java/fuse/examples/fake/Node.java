@@ -33,8 +33,7 @@ class Node {
 	}
 
 	public String toString() {
-		String cn = getClass().getName();
-		return cn.substring(cn.indexOf("$")) + "[ name=" + name + ", mode="
+		return getClass().getSimpleName() + "[ name=" + name + ", mode="
 				+ Integer.toOctalString(mode) + "(OCT) ]";
 	}
 	